@@ -0,0 +1,79 @@
+package com.portfolijo.schedjoeler.batch;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.function.Function;
+
+/**
+ * Represents the outcome of processing one item of a batch, either a value or an error message
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class BatchItem<T> {
+
+    /**
+     * The position of the item in its batch
+     */
+    private final int index;
+
+    /**
+     * The processed item, or null if processing failed
+     */
+    private final T value;
+
+    /**
+     * The reason processing failed, or null if processing succeeded
+     */
+    private final String error;
+
+    /**
+     * Creates a successfully processed item
+     *
+     * @param index The position of the item in its batch
+     * @param value The processed item
+     * @return A batch item
+     * @param <T> The type of the item
+     */
+    public static <T> BatchItem<T> success(int index, T value) {
+        return new BatchItem<>(index, value, null);
+    }
+
+    /**
+     * Creates an item that failed to be processed
+     *
+     * @param index The position of the item in its batch
+     * @param error The reason processing failed
+     * @return A batch item
+     * @param <T> The type of the item
+     */
+    public static <T> BatchItem<T> failure(int index, String error) {
+        return new BatchItem<>(index, null, error);
+    }
+
+    /**
+     * Checks if the item was processed successfully
+     *
+     * @return True if the item has a value, or false if it has an error
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * Creates an item at the same position, with the value converted by the given function. Failed items keep
+     * their error
+     *
+     * @param mapper A conversion function
+     * @return A batch item
+     * @param <U> The type of the converted value
+     */
+    public <U> BatchItem<U> map(Function<? super T, ? extends U> mapper) {
+        return isSuccess() ? success(index, mapper.apply(value)) : failure(index, error);
+    }
+}
@@ -0,0 +1,61 @@
+package com.portfolijo.schedjoeler.cache;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+
+import javax.cache.Cache;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * A JCache region factory that creates every second-level cache region as a bounded Caffeine cache, limited by
+ * the {@value #MAXIMUM_SIZE} and {@value #TIME_TO_LIVE} settings, instead of the unbounded caches JCache creates
+ * by default. Each session factory gets its own cache manager, so that session factories of different databases
+ * never share cached entities
+ */
+public class BoundedJCacheRegionFactory extends JCacheRegionFactory {
+
+    /**
+     * The maximum number of entries in each region
+     */
+    public static final String MAXIMUM_SIZE = "schedjoeler.cache.maximum_size";
+
+    /**
+     * How long an entry stays in a region after it is written, as an ISO-8601 duration
+     */
+    public static final String TIME_TO_LIVE = "schedjoeler.cache.time_to_live";
+
+    private long maximumSize = 10_000;
+    private Duration timeToLive = Duration.ofMinutes(10);
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map<String, Object> configValues) {
+        Object size = configValues.get(MAXIMUM_SIZE);
+        Object ttl = configValues.get(TIME_TO_LIVE);
+
+        if (size != null)
+            maximumSize = Long.parseLong(size.toString());
+
+        if (ttl != null)
+            timeToLive = Duration.parse(ttl.toString());
+
+        super.prepareForUse(settings, configValues);
+    }
+
+    @Override
+    protected URI getUri(SessionFactoryOptions settings, Map<String, Object> properties) {
+        return URI.create("schedjoeler:hibernate:"+UUID.randomUUID());
+    }
+
+    @Override
+    protected Cache<Object, Object> createCache(String regionName) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(timeToLive.toNanos()));
+        return getCacheManager().createCache(regionName, configuration);
+    }
+}
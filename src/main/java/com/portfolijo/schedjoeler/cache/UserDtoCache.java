@@ -0,0 +1,59 @@
+package com.portfolijo.schedjoeler.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.portfolijo.schedjoeler.converter.UserConverter;
+import com.portfolijo.schedjoeler.dto.UserDto;
+import com.portfolijo.schedjoeler.service.UserChangedEvent;
+import com.portfolijo.schedjoeler.service.UserService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * A read-through cache of user DTOs in front of {@link UserService#findOne}. The cache is bounded, evicting by
+ * W-TinyLFU, and concurrent misses for the same user wait for a single load. A hit only looks up the cached
+ * DTO, which is immutable and shared between requests. Entries are invalidated when a {@link UserChangedEvent}
+ * commits, and expire after a time to live in case a user is changed without one
+ */
+@Component
+public class UserDtoCache {
+    private final LoadingCache<UUID, UserDto> CACHE;
+
+    public UserDtoCache(UserService svc,
+                        UserConverter con,
+                        @Value("${schedjoeler.cache.user-dto.maximum-size:10000}") long maximumSize,
+                        @Value("${schedjoeler.cache.user-dto.time-to-live:PT10M}") Duration timeToLive) {
+        CACHE = Caffeine
+                .newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .build(uuid -> con.toDto(svc.findOne(uuid)));
+    }
+
+    /**
+     * Gets the DTO of the identified user, loading it if it is not cached. Users that do not exist are not cached
+     *
+     * @param uuid A user uuid
+     * @return A user DTO
+     * @throws NoSuchElementException If the user does not exist
+     */
+    public UserDto get(UUID uuid) throws NoSuchElementException {
+        return CACHE.get(uuid);
+    }
+
+    /**
+     * Discards the DTO of the changed user once the change is committed, or immediately if it was made outside
+     * a transaction. A load that read the user before the commit finishes before the DTO is discarded
+     *
+     * @param event A user changed event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        CACHE.invalidate(event.getUuid());
+    }
+}
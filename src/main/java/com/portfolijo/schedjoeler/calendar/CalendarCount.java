@@ -0,0 +1,27 @@
+package com.portfolijo.schedjoeler.calendar;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDate;
+
+/**
+ * Represents the number of appointments with a status on a day, as aggregated by the database
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@RequiredArgsConstructor
+public class CalendarCount {
+    @NonNull
+    private final LocalDate day;
+
+    @NonNull
+    private final Appointment.Status status;
+
+    private final long count;
+}
@@ -0,0 +1,75 @@
+package com.portfolijo.schedjoeler.configuration;
+
+import com.portfolijo.schedjoeler.limit.Bulkhead;
+import com.portfolijo.schedjoeler.limit.Bulkheads;
+import com.portfolijo.schedjoeler.thread.VirtualThreads;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ThreadFactory;
+
+@RequiredArgsConstructor
+@Configuration
+public class BulkheadConfiguration implements WebMvcConfigurer {
+    private final ObjectProvider<Bulkheads> BULKHEADS;
+
+    /**
+     * Creates the bulkheads of the reads, writes and exports, each with its own threads and queue. The threads of
+     * all three should add up to less than the JDBC pool, leaving connections for the requests served on servlet
+     * threads
+     *
+     * @param emf The entity manager factory, kept open for each task as for a request thread, if there is one
+     * @param virtual Whether the bulkheads run on virtual threads. Their threads still bound the connections
+     *                each class of requests can take
+     * @param readThreads The number of threads running reads
+     * @param readQueue The number of reads that can wait for a thread
+     * @param writeThreads The number of threads running writes
+     * @param writeQueue The number of writes that can wait for a thread
+     * @param exportThreads The number of threads running exports
+     * @param exportQueue The number of exports that can wait for a thread
+     * @return The bulkheads
+     */
+    @Bean
+    public Bulkheads bulkheads(ObjectProvider<EntityManagerFactory> emf,
+                               @Value("${"+VirtualThreadConfiguration.PROPERTY+":false}") boolean virtual,
+                               @Value("${schedjoeler.bulkhead.reads.threads:4}") int readThreads,
+                               @Value("${schedjoeler.bulkhead.reads.queue-capacity:100}") int readQueue,
+                               @Value("${schedjoeler.bulkhead.writes.threads:3}") int writeThreads,
+                               @Value("${schedjoeler.bulkhead.writes.queue-capacity:100}") int writeQueue,
+                               @Value("${schedjoeler.bulkhead.exports.threads:1}") int exportThreads,
+                               @Value("${schedjoeler.bulkhead.exports.queue-capacity:2}") int exportQueue) {
+        RequestScopeTaskDecorator decorator = new RequestScopeTaskDecorator(emf.getIfAvailable());
+        return new Bulkheads(
+                new Bulkhead("reads", readThreads, readQueue, decorator, threadFactory("reads-", virtual)),
+                new Bulkhead("writes", writeThreads, writeQueue, decorator, threadFactory("writes-", virtual)),
+                new Bulkhead("exports", exportThreads, exportQueue, decorator, threadFactory("exports-", virtual)));
+    }
+
+    /**
+     * Creates the thread factory of a bulkhead
+     *
+     * @param prefix The prefix of the thread names
+     * @param virtual Whether to create virtual threads
+     * @return A factory of virtual threads, or null for the platform threads of the executor
+     */
+    private static ThreadFactory threadFactory(String prefix, boolean virtual) {
+        return virtual ? VirtualThreads.factory(prefix) : null;
+    }
+
+    /**
+     * Runs streamed responses, which are only used by exports, on the exports bulkhead instead of the shared
+     * application task executor
+     *
+     * @param configurer The async support configurer
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(BULKHEADS.getObject().getExports());
+    }
+}
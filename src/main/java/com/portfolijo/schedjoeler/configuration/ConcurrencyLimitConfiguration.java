@@ -0,0 +1,35 @@
+package com.portfolijo.schedjoeler.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.portfolijo.schedjoeler.limit.ConcurrencyLimitFilter;
+import com.portfolijo.schedjoeler.limit.ConcurrencyLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ConcurrencyLimitConfiguration {
+
+    /**
+     * Registers the concurrency limit filter for the api, ahead of the security filter chain so that rejecting a
+     * request never costs a password check
+     *
+     * @param limiter The limits of the route groups
+     * @param mapper The mapper writing the bodies of rejected requests
+     * @param retryAfter The seconds rejected clients are asked to wait before retrying
+     * @return A filter registration
+     */
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            ConcurrencyLimiter limiter,
+            ObjectMapper mapper,
+            @Value("${schedjoeler.limit.retry-after:1}") int retryAfter) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+                new FilterRegistrationBean<>(new ConcurrencyLimitFilter(limiter, mapper, retryAfter));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER-1);
+        return registration;
+    }
+}
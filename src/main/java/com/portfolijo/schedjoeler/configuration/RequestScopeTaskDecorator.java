@@ -0,0 +1,49 @@
+package com.portfolijo.schedjoeler.configuration;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Runs tasks handed off by a request as if they ran on the request thread. The request attributes of the
+ * submitting thread are bound while the task runs, so that the current request can be looked up, and an entity
+ * manager is kept open for the whole task, as open-in-view does for the request thread, so that converters can
+ * read lazy associations after the service transaction has ended. Without an entity manager factory, such as in
+ * web slice tests, only the request attributes are bound
+ */
+@RequiredArgsConstructor
+public class RequestScopeTaskDecorator implements TaskDecorator {
+    private final EntityManagerFactory EMF;
+
+    @Override
+    public Runnable decorate(Runnable task) {
+        // called on the submitting thread
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+
+        return () -> {
+            EntityManager em = EMF == null ? null : EMF.createEntityManager();
+
+            if (em != null)
+                TransactionSynchronizationManager.bindResource(EMF, new EntityManagerHolder(em));
+
+            RequestContextHolder.setRequestAttributes(attributes);
+
+            try {
+                task.run();
+            } finally {
+                RequestContextHolder.resetRequestAttributes();
+
+                if (em != null) {
+                    TransactionSynchronizationManager.unbindResource(EMF);
+                    EntityManagerFactoryUtils.closeEntityManager(em);
+                }
+            }
+        };
+    }
+}
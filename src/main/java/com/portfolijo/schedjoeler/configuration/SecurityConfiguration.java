@@ -1,29 +1,104 @@
 package com.portfolijo.schedjoeler.configuration;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.portfolijo.schedjoeler.limit.RateLimitFilter;
+import com.portfolijo.schedjoeler.limit.RateLimiter;
+import com.portfolijo.schedjoeler.security.TokenAuthenticationFilter;
+import com.portfolijo.schedjoeler.security.TokenService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
 import static org.springframework.security.config.Customizer.withDefaults;
 
 @Configuration
 public class SecurityConfiguration {
+
+    /**
+     * Creates the encoder of user passwords. New passwords are hashed with bcrypt, and the prefix of each stored
+     * hash names the encoding it was made with, so that hashes made with another encoding still match
+     *
+     * @return A password encoder
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder() {
+        return PasswordEncoderFactories.createDelegatingPasswordEncoder();
+    }
+
+    /**
+     * Creates the filter chain of the api, which authenticates every request on its own and never creates an
+     * HTTP session
+     *
+     * @param http The security builder
+     * @param tokenService The service verifying bearer tokens
+     * @param rateLimiter The request rates allowed to each user
+     * @param mapper The mapper writing the bodies of rate limited requests
+     * @return A security filter chain
+     * @throws Exception If the chain cannot be built
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain apiFilterChain(HttpSecurity http,
+                                              TokenService tokenService,
+                                              RateLimiter rateLimiter,
+                                              ObjectMapper mapper) throws Exception {
+        http.securityMatcher(AntPathRequestMatcher.antMatcher("/api/**"));
+
+        // the diagnostics describe the load and internals of the whole server, so only admins may read them
+        http.authorizeHttpRequests(auth -> auth
+                .requestMatchers(AntPathRequestMatcher.antMatcher("/api/diagnostics/**")).hasRole("ADMIN")
+                .anyRequest().authenticated());
+
+        // cross site request forgery relies on credentials the browser sends by itself, such as session
+        // cookies. api requests carry their credentials explicitly, so there is nothing to protect
+        http.csrf(csrf -> csrf.disable());
+
+        // neither creates a session nor reads the security context from one. a session would hold the
+        // authentication on the heap for as long as it lives, for clients that authenticate every request anyway
+        http.sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
+
+        // allows bearer tokens issued by POST /api/token, which are verified with a single hmac
+        http.addFilterBefore(new TokenAuthenticationFilter(tokenService), BasicAuthenticationFilter.class);
+
+        // allows credentials via http headers. every request hashes the password again, so clients making more
+        // than a few requests should exchange them for a token
+        http.httpBasic(withDefaults());
+
+        // limits the request rate of each user once the request is authorized, so that anonymous requests are
+        // rejected before they are given a bucket
+        http.addFilterAfter(new RateLimitFilter(rateLimiter, mapper), AuthorizationFilter.class);
+
+        return http.build();
+    }
+
+    /**
+     * Creates the filter chain of everything outside the api, such as the h2-console
+     *
+     * @param http The security builder
+     * @return A security filter chain
+     * @throws Exception If the chain cannot be built
+     */
     @Bean
+    @Order(2)
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
 
         // specify authorization requirements for each request path
         http.authorizeHttpRequests(auth -> auth
-                .requestMatchers(AntPathRequestMatcher.antMatcher("/h2-console/**")).permitAll()
-                .requestMatchers(AntPathRequestMatcher.antMatcher("/api/**")).authenticated());
+                .requestMatchers(AntPathRequestMatcher.antMatcher("/h2-console/**")).permitAll());
 
         // cross site request forgery
         // all methods resulting in data change (POST, DELETE, etc.) are blocked by default
         // by spring security; ignore for selected paths
         http.csrf(csrf -> csrf
-                .ignoringRequestMatchers(AntPathRequestMatcher.antMatcher("/h2-console/**"))
-                .ignoringRequestMatchers(AntPathRequestMatcher.antMatcher("/api/**")));
+                .ignoringRequestMatchers(AntPathRequestMatcher.antMatcher("/h2-console/**")));
 
         // allows credentials via login form
         // use .loginPage(String loginPage) to use a custom login page
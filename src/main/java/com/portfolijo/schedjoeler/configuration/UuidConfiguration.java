@@ -0,0 +1,31 @@
+package com.portfolijo.schedjoeler.configuration;
+
+import com.portfolijo.schedjoeler.id.RandomUuidGenerator;
+import com.portfolijo.schedjoeler.id.TimeOrderedUuidGenerator;
+import com.portfolijo.schedjoeler.id.UuidGenerator;
+import com.portfolijo.schedjoeler.id.Uuids;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class UuidConfiguration {
+
+    /**
+     * Creates the uuid generator selected by the {@code schedjoeler.uuid.version} property and installs it for
+     * entity lifecycle callbacks
+     *
+     * @param version The uuid version to generate, 4 (random) or 7 (time-ordered)
+     * @return A uuid generator
+     */
+    @Bean
+    public UuidGenerator uuidGenerator(@Value("${schedjoeler.uuid.version:7}") int version) {
+        UuidGenerator generator = switch (version) {
+            case 4 -> new RandomUuidGenerator();
+            case 7 -> new TimeOrderedUuidGenerator();
+            default -> throw new IllegalArgumentException("Unsupported schedjoeler.uuid.version="+version+".");
+        };
+        Uuids.use(generator);
+        return generator;
+    }
+}
@@ -0,0 +1,51 @@
+package com.portfolijo.schedjoeler.configuration;
+
+import com.portfolijo.schedjoeler.thread.VirtualThreads;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+
+/**
+ * Runs request handling and application tasks on virtual threads when {@value #PROPERTY} is set. Requests are then
+ * no longer limited by the size of the Tomcat thread pool, only by the concurrency limits, the bulkheads and the
+ * JDBC pool. Fails on startup if the JDK does not support virtual threads, rather than quietly falling back to
+ * platform threads
+ */
+@Configuration
+@ConditionalOnProperty(name = VirtualThreadConfiguration.PROPERTY, havingValue = "true")
+public class VirtualThreadConfiguration {
+    public static final String PROPERTY = "schedjoeler.threads.virtual.enabled";
+
+    public VirtualThreadConfiguration() {
+        VirtualThreads.checkSupported(PROPERTY);
+    }
+
+    /**
+     * Replaces the Tomcat thread pool with an executor starting a virtual thread for each request. The
+     * server.tomcat.threads settings no longer apply
+     *
+     * @return A protocol handler customizer
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return handler -> handler.setExecutor(VirtualThreads.newExecutor("http-"));
+    }
+
+    /**
+     * Creates the application task executor, which runs {@code @Async} methods, on virtual threads. Replaces the
+     * bounded pool Spring Boot would otherwise create
+     *
+     * @return An async task executor
+     */
+    @Bean(name = {
+            TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(VirtualThreads.newExecutor("task-"));
+    }
+}
@@ -1,17 +1,49 @@
 package com.portfolijo.schedjoeler.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.portfolijo.schedjoeler.converter.AppointmentConverter;
 import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.dto.AppointmentBulkResultDto;
+import com.portfolijo.schedjoeler.dto.AppointmentCountDto;
 import com.portfolijo.schedjoeler.dto.AppointmentCreateDto;
+import com.portfolijo.schedjoeler.dto.AppointmentDayCountDto;
 import com.portfolijo.schedjoeler.dto.AppointmentDto;
 import com.portfolijo.schedjoeler.dto.AppointmentDtoBase;
+import com.portfolijo.schedjoeler.dto.AppointmentNormalizedDto;
+import com.portfolijo.schedjoeler.dto.AppointmentStatusUpdateDto;
 import com.portfolijo.schedjoeler.dto.AppointmentUpdateDto;
+import com.portfolijo.schedjoeler.dto.IncludedDto;
+import com.portfolijo.schedjoeler.dto.UserDto;
+import com.portfolijo.schedjoeler.limit.Bulkheads;
+import com.portfolijo.schedjoeler.limit.ConcurrencyLimitFilter;
+import com.portfolijo.schedjoeler.pagination.AppointmentCursor;
+import com.portfolijo.schedjoeler.pagination.CursorPage;
+import com.portfolijo.schedjoeler.projection.AppointmentView;
+import com.portfolijo.schedjoeler.projection.Watermark;
 import com.portfolijo.schedjoeler.service.AppointmentService;
+import com.portfolijo.schedjoeler.service.RecurrenceService;
 import jakarta.validation.Valid;
+import jakarta.validation.ValidationException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Handles requests for {@link Appointment} resources
@@ -21,30 +53,361 @@ import java.util.UUID;
 @RequestMapping("/api/appointments")
 public class AppointmentController extends Controller<AppointmentDtoBase> {
     private final AppointmentService SVC;
+    private final RecurrenceService REC_SVC;
+    private final AppointmentConverter CON;
+    private final ObjectMapper MAPPER;
+    private final Bulkheads BULKHEADS;
 
+    /**
+     * Gets the identified appointment. The appointment is tagged with the watermark of its row and those of its
+     * provider and client, which is checked before the appointment is read
+     *
+     * @param uuid An appointment uuid
+     * @param request The request, which may carry conditional headers
+     * @return A response entity containing an appointment, or null if the client's copy is current
+     */
     @GetMapping("/{uuid}")
-    public ResponseEntity<Response<AppointmentDto>> getOne(@PathVariable(name = "uuid") UUID uuid) {
-        return null;
+    public ResponseEntity<Response<AppointmentDto>> getOne(@PathVariable(name = "uuid") UUID uuid,
+                                                           WebRequest request) {
+        if (isNotModified(request, SVC.findWatermark(uuid)))
+            return null;
+
+        AppointmentView appointment = SVC.findOneView(uuid);
+        AppointmentDto data = CON.toDto(appointment);
+        return responseCodeOk(List.of(data));
     }
 
+    /**
+     * Gets all appointments matching the given criteria, ordered by date/time. If a limit or cursor is given,
+     * a single page of appointments is returned along with the cursor of the following page. Every page is
+     * tagged with the watermark of all appointments matching the criteria, which is checked before any
+     * appointment is read. The appointments are read on the reads bulkhead
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null
+     * @param status An appointment status, can be null
+     * @param cursor The continuation token returned with the previous page, can be null
+     * @param limit The maximum number of appointments in the page, can be null
+     * @param include The related resources to include separately, can be null
+     * @param request The request, which may carry conditional headers
+     * @return A future response entity containing a list of appointments, or null if the client's copy is current
+     * @throws ValidationException If the related resources are not supported
+     */
     @GetMapping("")
-    public ResponseEntity<Response<AppointmentDto>> getAll() {
-        return null;
+    public CompletableFuture<ResponseEntity<Response<AppointmentDto>>> getAll(
+            @RequestParam(name = "user", required = false) UUID user,
+            @RequestParam(name = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "status", required = false) Appointment.Status status,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "include", required = false) String include,
+            WebRequest request) throws ValidationException {
+
+        if (include != null)
+            throw new ValidationException("Unsupported include="+include+".");
+
+        return BULKHEADS.getReads().supply(() -> {
+            if (isNotModified(request, SVC.findWatermark(user, from, to, status)))
+                return null;
+
+            CursorPage<AppointmentDto> page = findAll(user, from, to, status, cursor, limit).map(CON::toDto);
+            return responseCodeOk(page.getContent(), page.getNextCursor());
+        });
     }
 
+    /**
+     * Gets all appointments matching the given criteria in normalized form, ordered by date/time. Appointments
+     * reference their provider and client by uuid, and each distinct user is included once in the response.
+     * Pages are tagged and read as by {@link #getAll}
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null
+     * @param status An appointment status, can be null
+     * @param cursor The continuation token returned with the previous page, can be null
+     * @param limit The maximum number of appointments in the page, can be null
+     * @param request The request, which may carry conditional headers
+     * @return A future response entity containing a list of normalized appointments and the users they reference,
+     * or null if the client's copy is current
+     */
+    @GetMapping(value = "", params = "include=users")
+    public CompletableFuture<ResponseEntity<Response<AppointmentNormalizedDto>>> getAllIncludingUsers(
+            @RequestParam(name = "user", required = false) UUID user,
+            @RequestParam(name = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "status", required = false) Appointment.Status status,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            WebRequest request) {
+
+        return BULKHEADS.getReads().supply(() -> {
+            if (isNotModified(request, SVC.findWatermark(user, from, to, status)))
+                return null;
+
+            Map<UUID, UserDto> users = new LinkedHashMap<>();
+            CursorPage<AppointmentNormalizedDto> page = findAll(user, from, to, status, cursor, limit)
+                    .map(appointment -> CON.toNormalizedDto(appointment, users));
+            IncludedDto included = IncludedDto.builder().users(users).build();
+            return responseCodeOk(page.getContent(), page.getNextCursor(), included);
+        });
+    }
+
+    /**
+     * Gets the number of appointments matching the given criteria per day and status, ordered by day and status.
+     * The counts are aggregated without loading the appointments, on the reads bulkhead
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null
+     * @param status An appointment status, can be null
+     * @return A future response entity containing a list of day counts
+     */
+    @GetMapping("/calendar")
+    public CompletableFuture<ResponseEntity<Response<AppointmentDayCountDto>>> getCalendar(
+            @RequestParam(name = "user", required = false) UUID user,
+            @RequestParam(name = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "status", required = false) Appointment.Status status) {
+
+        return BULKHEADS.getReads().supply(() -> {
+            List<AppointmentDayCountDto> data = SVC
+                    .countAll(user, from, to, status)
+                    .stream()
+                    .map(CON::toDto)
+                    .toList();
+            return responseCodeOk(data);
+        });
+    }
+
+    /**
+     * Streams all appointments matching the given criteria as newline delimited JSON, ordered by date/time,
+     * including the occurrences of recurrences as listed by {@link #getAll}. Appointments are written as they
+     * are read or expanded, so the export is never held in memory as a whole. The export
+     * is streamed on the exports bulkhead, and its duration is not taken for a sign of load
+     *
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null
+     * @param status An appointment status, can be null
+     * @param request The request
+     * @return A response entity streaming one appointment per line
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(name = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "status", required = false) Appointment.Status status,
+            WebRequest request) {
+
+        request.setAttribute(ConcurrencyLimitFilter.UNTIMED, true, RequestAttributes.SCOPE_REQUEST);
+        StreamingResponseBody body = out -> {
+            ObjectWriter writer = MAPPER.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+            try (JsonGenerator generator = MAPPER.createGenerator(out)) {
+                // lines are delimited explicitly rather than by the default root value separator
+                generator.setRootValueSeparator(null);
+
+                SVC.export(from, to, status, appointment -> {
+                    try {
+                        writer.writeValue(generator, CON.toDto(appointment));
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity
+                .ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * Saves the given appointment on the writes bulkhead
+     *
+     * @param dto An appointment create DTO
+     * @return A future response entity containing the saved appointment
+     */
     @PostMapping("")
-    public ResponseEntity<Response<AppointmentDto>> saveOne(@Valid @RequestBody AppointmentCreateDto dto) {
-        return null;
+    public CompletableFuture<ResponseEntity<Response<AppointmentDto>>> saveOne(
+            @Valid @RequestBody AppointmentCreateDto dto) {
+
+        return BULKHEADS.getWrites().supply(() -> {
+            Appointment appointment = CON.toAppointment(dto);
+            appointment = SVC.saveOne(appointment);
+            AppointmentDto data = CON.toDto(appointment);
+            return responseCodeCreated(List.of(data), "/"+data.getUuid());
+        });
     }
 
+    /**
+     * Saves the given appointments in chunks, reporting the outcome of each appointment separately so that
+     * invalid or conflicting appointments do not prevent the rest from being saved. The appointments are saved on
+     * the writes bulkhead
+     *
+     * @param dtos A list of appointment create DTOs
+     * @return A future response entity containing a result for each appointment, in the order of the request
+     * @throws ValidationException If the request contains more than {@link AppointmentService#MAX_BULK_SIZE}
+     * appointments
+     */
+    @PostMapping("/bulk")
+    public CompletableFuture<ResponseEntity<Response<AppointmentBulkResultDto>>> saveAll(
+            @RequestBody List<AppointmentCreateDto> dtos) throws ValidationException {
+
+        if (dtos.size() > AppointmentService.MAX_BULK_SIZE)
+            throw new ValidationException(
+                    "Bulk requests must not exceed "+AppointmentService.MAX_BULK_SIZE+" appointments.");
+
+        return BULKHEADS.getWrites().supply(() -> {
+            List<AppointmentBulkResultDto> data = SVC
+                    .saveAll(CON.toAppointments(dtos))
+                    .stream()
+                    .map(CON::toBulkResultDto)
+                    .toList();
+            return responseCodeOk(data);
+        });
+    }
+
+    /**
+     * Updates the identified appointment. If an If-Match header is given, the appointment is only updated if it
+     * still has the version tagged by the header, whatever the versions of its provider and client. Changes that
+     * leave the booking as it is are written by a single update statement of the supplied columns, without
+     * reading the appointment first. Changes to the booking read the appointment, since they must be checked for
+     * conflicts. Either runs on the writes bulkhead
+     *
+     * @param uuid An appointment uuid
+     * @param dto An appointment update DTO
+     * @param ifMatch The entity tag of the appointment the update applies to, can be null
+     * @return A future response entity containing the updated appointment
+     */
     @PatchMapping("/{uuid}")
-    public ResponseEntity<Response<AppointmentDto>> updateOne(@PathVariable(name = "uuid") UUID uuid,
-                                                              @Valid @RequestBody AppointmentUpdateDto dto) {
-        return null;
+    public CompletableFuture<ResponseEntity<Response<AppointmentDto>>> updateOne(
+            @PathVariable(name = "uuid") UUID uuid,
+            @Valid @RequestBody AppointmentUpdateDto dto,
+            @RequestHeader(name = "If-Match", required = false) String ifMatch) {
+
+        Long version = versionOf(ifMatch);
+
+        return BULKHEADS.getWrites().supply(() -> {
+            Map<String, Object> changes = CON.toChanges(dto);
+            AppointmentDto data;
+
+            if (AppointmentService.changesBooking(changes)) {
+                Appointment appointment = CON.toAppointment(SVC.findOne(uuid, version), dto);
+                data = CON.toDto(SVC.saveOne(appointment));
+            } else {
+                SVC.updateOne(uuid, version, changes);
+                data = CON.toDto(SVC.findOneView(uuid));
+            }
+            return responseCodeOk(List.of(data));
+        });
     }
 
+    /**
+     * Updates one occurrence of a recurrence, storing it as an appointment that replaces the occurrence expanded
+     * from the recurrence rule. Updating an occurrence that is already stored updates the stored appointment. The
+     * occurrence is updated on the writes bulkhead
+     *
+     * @param recurrence A recurrence uuid
+     * @param dateTime The date/time the recurrence rule places the occurrence at
+     * @param dto An appointment update DTO
+     * @return A future response entity containing the updated occurrence
+     */
+    @PatchMapping("/occurrences/{recurrence}/{dateTime}")
+    public CompletableFuture<ResponseEntity<Response<AppointmentDto>>> updateOccurrence(
+            @PathVariable(name = "recurrence") UUID recurrence,
+            @PathVariable(name = "dateTime") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dateTime,
+            @Valid @RequestBody AppointmentUpdateDto dto) {
+
+        return BULKHEADS.getWrites().supply(() -> {
+            Appointment appointment = CON.toAppointment(REC_SVC.findOccurrence(recurrence, dateTime), dto);
+            appointment = SVC.saveOne(appointment);
+            AppointmentDto data = CON.toDto(appointment);
+            return responseCodeOk(List.of(data));
+        });
+    }
+
+    /**
+     * Updates the status of all appointments matching the given criteria with a single set-based update, on the
+     * writes bulkhead. Matching occurrences of recurrences are stored as exceptions with the new status
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null
+     * @param status The current appointment status, can be null
+     * @param dto An appointment status update DTO
+     * @return A future response entity containing the number of updated appointments
+     */
+    @PatchMapping("")
+    public CompletableFuture<ResponseEntity<Response<AppointmentCountDto>>> updateAll(
+            @RequestParam(name = "user", required = false) UUID user,
+            @RequestParam(name = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "status", required = false) Appointment.Status status,
+            @Valid @RequestBody AppointmentStatusUpdateDto dto) {
+
+        return BULKHEADS.getWrites().supply(() -> {
+            int count = SVC.updateAll(user, from, to, status, dto.getStatus());
+            AppointmentCountDto data = AppointmentCountDto.builder().count(count).build();
+            return responseCodeOk(List.of(data));
+        });
+    }
+
+    /**
+     * Deletes the identified appointment on the writes bulkhead
+     *
+     * @param uuid An appointment uuid
+     * @return A future response entity containing the result of the deletion
+     */
     @DeleteMapping("/{uuid}")
-    public ResponseEntity<Response<AppointmentDto>> deleteOne(@PathVariable(name = "uuid") UUID uuid) {
-        return null;
+    public CompletableFuture<ResponseEntity<Response<AppointmentDto>>> deleteOne(
+            @PathVariable(name = "uuid") UUID uuid) {
+
+        return BULKHEADS.getWrites().supply(() -> {
+            SVC.deleteOne(uuid);
+            return responseCodeNoContent();
+        });
+    }
+
+    /**
+     * Finds the views of all appointments matching the given criteria, or of a single page of them if a limit or
+     * cursor is given
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null
+     * @param status An appointment status, can be null
+     * @param cursor The continuation token returned with the previous page, can be null
+     * @param limit The maximum number of appointments in the page, can be null
+     * @return A page of appointment views, which is the only page if no limit or cursor is given
+     */
+    private CursorPage<AppointmentView> findAll(UUID user,
+                                                LocalDateTime from,
+                                                LocalDateTime to,
+                                                Appointment.Status status,
+                                                String cursor,
+                                                Integer limit) {
+        if (cursor == null && limit == null)
+            return new CursorPage<>(SVC.findAllViews(user, from, to, status), null);
+
+        return SVC.findAllViews(
+                user,
+                from,
+                to,
+                status,
+                AppointmentCursor.decode(cursor),
+                limit == null ? AppointmentService.DEFAULT_PAGE_SIZE : limit);
     }
 }
@@ -1,13 +1,21 @@
 package com.portfolijo.schedjoeler.controller;
 
+import com.portfolijo.schedjoeler.dto.IncludedDto;
+import com.portfolijo.schedjoeler.projection.Watermark;
+import com.portfolijo.schedjoeler.schedule.ScheduleConflictException;
 import jakarta.validation.ValidationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * A base class for all Controllers
@@ -38,6 +46,84 @@ public abstract class Controller<T> {
         return responseCodeNotFound(e.getMessage());
     }
 
+    /**
+     * Handles {@link ScheduleConflictException}s
+     *
+     * @param e A ScheduleConflictException
+     * @return A 409 CONFLICT response entity
+     * @param <U> The type of data returned to the client
+     */
+    @ExceptionHandler({ScheduleConflictException.class})
+    private <U extends T> ResponseEntity<Response<U>> handleException(ScheduleConflictException e) {
+        return responseCodeConflict(e.getMessage());
+    }
+
+    /**
+     * Handles {@link DataIntegrityViolationException}s, such as saving a user with the email address of another.
+     * The message of the exception describes the violated constraint in SQL, so it is not returned to the client
+     *
+     * @param e A DataIntegrityViolationException
+     * @return A 409 CONFLICT response entity
+     * @param <U> The type of data returned to the client
+     */
+    @ExceptionHandler({DataIntegrityViolationException.class})
+    private <U extends T> ResponseEntity<Response<U>> handleException(DataIntegrityViolationException e) {
+        return responseCodeConflict("The request conflicts with existing data.");
+    }
+
+    /**
+     * Handles {@link OptimisticLockingFailureException}s
+     *
+     * @param e An OptimisticLockingFailureException
+     * @return A 412 PRECONDITION FAILED response entity
+     * @param <U> The type of data returned to the client
+     */
+    @ExceptionHandler({OptimisticLockingFailureException.class})
+    private <U extends T> ResponseEntity<Response<U>> handleException(OptimisticLockingFailureException e) {
+        return responseCodePreconditionFailed(e.getMessage());
+    }
+
+    /**
+     * Handles {@link RejectedExecutionException}s, raised when the bulkhead of a request is full
+     *
+     * @param e A RejectedExecutionException
+     * @return A 503 SERVICE UNAVAILABLE response entity
+     * @param <U> The type of data returned to the client
+     */
+    @ExceptionHandler({RejectedExecutionException.class})
+    private <U extends T> ResponseEntity<Response<U>> handleException(RejectedExecutionException e) {
+        // task executors wrap the rejection of their pool, whose message is the one meant for the client
+        Throwable rejection = e.getCause() instanceof RejectedExecutionException ? e.getCause() : e;
+        return responseCodeServiceUnavailable(rejection.getMessage());
+    }
+
+    /**
+     * Reads the version a conditional update applies to from the given If-Match header, which holds the entity
+     * tag of the resource the client last read
+     *
+     * @param ifMatch An If-Match header, can be null
+     * @return The version of the resource tagged by the entity tag, or null if the update is unconditional
+     */
+    public Long versionOf(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*"))
+            return null;
+
+        return Watermark.versionOf(ifMatch.trim());
+    }
+
+    /**
+     * Checks the given watermark against the If-None-Match and If-Modified-Since headers of the given request.
+     * If the client's copy is current, the response status is set to 304 NOT MODIFIED and the handler must return
+     * null. Otherwise the watermark is sent in the ETag and Last-Modified headers of the response
+     *
+     * @param request A GET request
+     * @param watermark The watermark of the requested resources
+     * @return True if the client's copy is current, or false otherwise
+     */
+    public boolean isNotModified(WebRequest request, Watermark watermark) {
+        return request.checkNotModified(watermark.getETag(), watermark.getLastModifiedMillis());
+    }
+
     /**
      * Creates a response entity indicating that the request successful
      *
@@ -46,8 +132,36 @@ public abstract class Controller<T> {
      * @param <U> The type of data returned to the client
      */
     public <U extends T> ResponseEntity<Response<U>> responseCodeOk(List<U> data) {
+        return responseCodeOk(data, null);
+    }
+
+    /**
+     * Creates a response entity indicating that the request successful, containing one page of a paginated result
+     *
+     * @param data The data to be returned to the client
+     * @param nextCursor The continuation token of the following page, or null if this is the last page
+     * @return A 200 OK response entity
+     * @param <U> The type of data returned to the client
+     */
+    public <U extends T> ResponseEntity<Response<U>> responseCodeOk(List<U> data, String nextCursor) {
+        return responseCodeOk(data, nextCursor, null);
+    }
+
+    /**
+     * Creates a response entity indicating that the request successful, containing the resources referenced by
+     * the data alongside it
+     *
+     * @param data The data to be returned to the client
+     * @param nextCursor The continuation token of the following page, or null if this is the last page
+     * @param included The resources referenced by the data, can be null
+     * @return A 200 OK response entity
+     * @param <U> The type of data returned to the client
+     */
+    public <U extends T> ResponseEntity<Response<U>> responseCodeOk(List<U> data,
+                                                                    String nextCursor,
+                                                                    IncludedDto included) {
         HttpStatus status = HttpStatus.OK;
-        return responseEntity(status, data, status.name(), null);
+        return responseEntity(status, data, status.name(), null, nextCursor, included);
     }
 
     /**
@@ -67,7 +181,9 @@ public abstract class Controller<T> {
                 ServletUriComponentsBuilder
                         .fromCurrentRequest()
                         .toUriString()
-                        +path);
+                        +path,
+                null,
+                null);
     }
 
     /**
@@ -78,7 +194,7 @@ public abstract class Controller<T> {
      */
     public <U extends T> ResponseEntity<Response<U>> responseCodeNoContent() {
         HttpStatus status = HttpStatus.NO_CONTENT;
-        return responseEntity(status, null, status.name(), null);
+        return responseEntity(status, null, status.name(), null, null, null);
     }
 
     /**
@@ -89,7 +205,7 @@ public abstract class Controller<T> {
      * @param <U> The type of data returned to the client
      */
     public <U extends T> ResponseEntity<Response<U>> responseCodeBadRequest(String message) {
-        return responseEntity(HttpStatus.BAD_REQUEST, null, message, null);
+        return responseEntity(HttpStatus.BAD_REQUEST, null, message, null, null, null);
     }
 
     /**
@@ -100,7 +216,44 @@ public abstract class Controller<T> {
      * @param <U> The type of data returned to the client
      */
     public <U extends T> ResponseEntity<Response<U>> responseCodeNotFound(String message) {
-        return responseEntity(HttpStatus.NOT_FOUND, null, message, null);
+        return responseEntity(HttpStatus.NOT_FOUND, null, message, null, null, null);
+    }
+
+    /**
+     * Creates a response entity indicating that the request conflicts with the current state of a resource
+     *
+     * @param message An error message
+     * @return A 409 CONFLICT response entity
+     * @param <U> The type of data returned to the client
+     */
+    public <U extends T> ResponseEntity<Response<U>> responseCodeConflict(String message) {
+        return responseEntity(HttpStatus.CONFLICT, null, message, null, null, null);
+    }
+
+    /**
+     * Creates a response entity indicating that the resource was modified since the client read it
+     *
+     * @param message An error message
+     * @return A 412 PRECONDITION FAILED response entity
+     * @param <U> The type of data returned to the client
+     */
+    public <U extends T> ResponseEntity<Response<U>> responseCodePreconditionFailed(String message) {
+        return responseEntity(HttpStatus.PRECONDITION_FAILED, null, message, null, null, null);
+    }
+
+    /**
+     * Creates a response entity indicating that the server is too busy to handle the request, asking the client
+     * to retry after a second
+     *
+     * @param message An error message
+     * @return A 503 SERVICE UNAVAILABLE response entity containing a Retry-After header
+     * @param <U> The type of data returned to the client
+     */
+    public <U extends T> ResponseEntity<Response<U>> responseCodeServiceUnavailable(String message) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response(null, message, null, null));
     }
 
     /**
@@ -110,22 +263,26 @@ public abstract class Controller<T> {
      * @param data The data to be returned to the client
      * @param message A response message
      * @param path The URI path of a new or updated resource
+     * @param nextCursor The continuation token of the following page of a paginated response
+     * @param included The resources referenced by the data of a normalized response
      * @return A response entity
      * @param <U> The type of data returned to the client
      */
     private <U extends T> ResponseEntity<Response<U>> responseEntity(HttpStatus status,
                                                                      List<U> data,
                                                                      String message,
-                                                                     String path) {
+                                                                     String path,
+                                                                     String nextCursor,
+                                                                     IncludedDto included) {
         if (path != null) {
             return ResponseEntity
                     .status(status)
                     .header("Location", path)
-                    .body(response(data, message));
+                    .body(response(data, message, nextCursor, included));
         }
         return ResponseEntity
                 .status(status)
-                .body(response(data, message));
+                .body(response(data, message, nextCursor, included));
     }
 
     /**
@@ -133,14 +290,21 @@ public abstract class Controller<T> {
      *
      * @param data The data to be returned to the client
      * @param message A response message
+     * @param nextCursor The continuation token of the following page of a paginated response
+     * @param included The resources referenced by the data of a normalized response
      * @return A response
      * @param <U> The type of data returned to the client
      */
-    private <U extends T> Response<U> response(List<U> data, String message) {
+    private <U extends T> Response<U> response(List<U> data,
+                                               String message,
+                                               String nextCursor,
+                                               IncludedDto included) {
         return Response
                 .<U>builder()
                 .data(data)
                 .message(message)
+                .nextCursor(nextCursor)
+                .included(included)
                 .build();
     }
 }
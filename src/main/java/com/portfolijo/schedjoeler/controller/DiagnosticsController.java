@@ -0,0 +1,91 @@
+package com.portfolijo.schedjoeler.controller;
+
+import com.portfolijo.schedjoeler.converter.DiagnosticsConverter;
+import com.portfolijo.schedjoeler.dto.BulkheadDto;
+import com.portfolijo.schedjoeler.dto.CacheStatisticsDto;
+import com.portfolijo.schedjoeler.dto.ConcurrencyLimitDto;
+import com.portfolijo.schedjoeler.dto.PinningSiteDto;
+import com.portfolijo.schedjoeler.limit.Bulkheads;
+import com.portfolijo.schedjoeler.limit.ConcurrencyLimiter;
+import com.portfolijo.schedjoeler.service.CacheStatisticsService;
+import com.portfolijo.schedjoeler.thread.PinningMonitor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Handles requests for the diagnostics of the api, which only admins may read
+ */
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api/diagnostics")
+public class DiagnosticsController extends Controller<Object> {
+    private final CacheStatisticsService CACHE_SVC;
+    private final ConcurrencyLimiter LIMITER;
+    private final Bulkheads BULKHEADS;
+    private final PinningMonitor PINNING;
+    private final DiagnosticsConverter CON;
+
+    /**
+     * Gets the hit and miss statistics of every second-level cache region
+     *
+     * @return A response entity containing a list of region statistics
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<Response<CacheStatisticsDto>> getCache() {
+        List<CacheStatisticsDto> data = CACHE_SVC
+                .findAll()
+                .stream()
+                .map(CON::toDto)
+                .toList();
+        return responseCodeOk(data);
+    }
+
+    /**
+     * Gets the current adaptive concurrency limit of every route group
+     *
+     * @return A response entity containing a list of limits
+     */
+    @GetMapping("/limits")
+    public ResponseEntity<Response<ConcurrencyLimitDto>> getLimits() {
+        List<ConcurrencyLimitDto> data = LIMITER
+                .findAll()
+                .stream()
+                .map(CON::toDto)
+                .toList();
+        return responseCodeOk(data);
+    }
+
+    /**
+     * Gets the load of every bulkhead
+     *
+     * @return A response entity containing a list of bulkheads
+     */
+    @GetMapping("/bulkheads")
+    public ResponseEntity<Response<BulkheadDto>> getBulkheads() {
+        List<BulkheadDto> data = BULKHEADS
+                .findAll()
+                .stream()
+                .map(CON::toDto)
+                .toList();
+        return responseCodeOk(data);
+    }
+
+    /**
+     * Gets every site virtual threads have been pinned to their carrier threads at since startup, the JDBC and
+     * Hibernate sites first
+     *
+     * @return A response entity containing a list of sites, empty if pinning is not monitored
+     */
+    @GetMapping("/pinning")
+    public ResponseEntity<Response<PinningSiteDto>> getPinning() {
+        List<PinningSiteDto> data = PINNING
+                .findAll()
+                .stream()
+                .map(CON::toDto)
+                .toList();
+        return responseCodeOk(data);
+    }
+}
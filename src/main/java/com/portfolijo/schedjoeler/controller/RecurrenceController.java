@@ -0,0 +1,66 @@
+package com.portfolijo.schedjoeler.controller;
+
+import com.portfolijo.schedjoeler.converter.RecurrenceConverter;
+import com.portfolijo.schedjoeler.domain.Recurrence;
+import com.portfolijo.schedjoeler.dto.RecurrenceCreateDto;
+import com.portfolijo.schedjoeler.dto.RecurrenceDto;
+import com.portfolijo.schedjoeler.dto.RecurrenceDtoBase;
+import com.portfolijo.schedjoeler.service.RecurrenceService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Handles requests for {@link Recurrence} resources. Occurrences are listed and modified through the appointment
+ * endpoints
+ */
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api/recurrences")
+public class RecurrenceController extends Controller<RecurrenceDtoBase> {
+    private final RecurrenceService SVC;
+    private final RecurrenceConverter CON;
+
+    /**
+     * Gets the identified recurrence
+     *
+     * @param uuid A recurrence uuid
+     * @return A response entity containing a recurrence
+     */
+    @GetMapping("/{uuid}")
+    public ResponseEntity<Response<RecurrenceDto>> getOne(@PathVariable(name = "uuid") UUID uuid) {
+        Recurrence recurrence = SVC.findOne(uuid);
+        RecurrenceDto data = CON.toDto(recurrence);
+        return responseCodeOk(List.of(data));
+    }
+
+    /**
+     * Saves the given recurrence
+     *
+     * @param dto A recurrence create DTO
+     * @return A response entity containing the saved recurrence
+     */
+    @PostMapping("")
+    public ResponseEntity<Response<RecurrenceDto>> saveOne(@Valid @RequestBody RecurrenceCreateDto dto) {
+        Recurrence recurrence = CON.toRecurrence(dto);
+        recurrence = SVC.saveOne(recurrence);
+        RecurrenceDto data = CON.toDto(recurrence);
+        return responseCodeCreated(List.of(data), "/"+data.getUuid());
+    }
+
+    /**
+     * Deletes the identified recurrence along with its modified occurrences
+     *
+     * @param uuid A recurrence uuid
+     * @return A response entity containing the result of the deletion
+     */
+    @DeleteMapping("/{uuid}")
+    public ResponseEntity<Response<RecurrenceDto>> deleteOne(@PathVariable(name = "uuid") UUID uuid) {
+        SVC.deleteOne(uuid);
+        return responseCodeNoContent();
+    }
+}
@@ -1,5 +1,7 @@
 package com.portfolijo.schedjoeler.controller;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.portfolijo.schedjoeler.dto.IncludedDto;
 import lombok.Builder;
 import lombok.Getter;
 
@@ -16,4 +18,16 @@ public class Response<T> {
    private final LocalDateTime TIMESTAMP = LocalDateTime.now();
    private List<T> data;
    private String message;
+
+   /**
+    * The continuation token of the following page of a paginated response
+    */
+   @JsonInclude(JsonInclude.Include.NON_NULL)
+   private String nextCursor;
+
+   /**
+    * The resources referenced by the data of a normalized response
+    */
+   @JsonInclude(JsonInclude.Include.NON_NULL)
+   private IncludedDto included;
 }
@@ -0,0 +1,55 @@
+package com.portfolijo.schedjoeler.controller;
+
+import com.portfolijo.schedjoeler.converter.SlotConverter;
+import com.portfolijo.schedjoeler.dto.SlotDto;
+import com.portfolijo.schedjoeler.schedule.Slot;
+import com.portfolijo.schedjoeler.service.SlotService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Handles requests for free {@link Slot}s in provider schedules
+ */
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api/slots")
+public class SlotController extends Controller<SlotDto> {
+    private final SlotService SVC;
+    private final SlotConverter CON;
+
+    /**
+     * Gets the free slots in the identified provider's schedule
+     *
+     * @param provider A provider uuid
+     * @param from The start of the window (inclusive)
+     * @param to The end of the window (exclusive)
+     * @param length The length of each slot, as an ISO-8601 duration
+     * @param open The daily opening time (inclusive)
+     * @param close The daily closing time (exclusive)
+     * @return A response entity containing a list of slots
+     */
+    @GetMapping("")
+    public ResponseEntity<Response<SlotDto>> getAll(
+            @RequestParam(name = "provider") UUID provider,
+            @RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(name = "length") Duration length,
+            @RequestParam(name = "open") @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime open,
+            @RequestParam(name = "close") @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime close) {
+
+        List<SlotDto> data = SVC
+                .findAll(provider, from, to, length, open, close)
+                .stream()
+                .map(CON::toDto)
+                .toList();
+        return responseCodeOk(data);
+    }
+}
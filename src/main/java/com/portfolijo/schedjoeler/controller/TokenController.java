@@ -0,0 +1,34 @@
+package com.portfolijo.schedjoeler.controller;
+
+import com.portfolijo.schedjoeler.converter.TokenConverter;
+import com.portfolijo.schedjoeler.dto.TokenDto;
+import com.portfolijo.schedjoeler.security.TokenService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Handles requests for bearer tokens, which authenticate subsequent requests without their password
+ */
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api/token")
+public class TokenController extends Controller<TokenDto> {
+    private final TokenService SVC;
+    private final TokenConverter CON;
+
+    /**
+     * Issues a bearer token to the user authenticating the request, typically with their password over HTTP
+     * basic authentication
+     *
+     * @param authentication The authentication of the request
+     * @return A response entity containing the token
+     */
+    @PostMapping
+    public ResponseEntity<Response<TokenDto>> createOne(Authentication authentication) {
+        return responseCodeOk(List.of(CON.toDto(SVC.issue(authentication))));
+    }
+}
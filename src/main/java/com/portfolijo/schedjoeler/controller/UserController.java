@@ -1,16 +1,19 @@
 package com.portfolijo.schedjoeler.controller;
 
+import com.portfolijo.schedjoeler.cache.UserDtoCache;
 import com.portfolijo.schedjoeler.converter.UserConverter;
 import com.portfolijo.schedjoeler.domain.User;
 import com.portfolijo.schedjoeler.dto.UserCreateDto;
 import com.portfolijo.schedjoeler.dto.UserDto;
 import com.portfolijo.schedjoeler.dto.UserDtoBase;
 import com.portfolijo.schedjoeler.dto.UserUpdateDto;
+import com.portfolijo.schedjoeler.projection.Watermark;
 import com.portfolijo.schedjoeler.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.UUID;
@@ -24,17 +27,23 @@ import java.util.UUID;
 public class UserController extends Controller<UserDtoBase> {
     private final UserService SVC;
     private final UserConverter CON;
+    private final UserDtoCache CACHE;
 
     /**
-     * Gets the identified user
+     * Gets the identified user. The user is tagged with its version, which is checked against the cached DTO so
+     * that a client with a current copy is answered without querying the database
      *
      * @param uuid A user uuid
-     * @return A response entity containing a user
+     * @param request The request, which may carry conditional headers
+     * @return A response entity containing a user, or null if the client's copy is current
      */
     @GetMapping("/{uuid}")
-    public ResponseEntity<Response<UserDto>> getOne(@PathVariable(name = "uuid") UUID uuid) {
-        User user = SVC.findOne(uuid);
-        UserDto data = CON.toDto(user);
+    public ResponseEntity<Response<UserDto>> getOne(@PathVariable(name = "uuid") UUID uuid, WebRequest request) {
+        UserDto data = CACHE.get(uuid);
+
+        if (isNotModified(request, Watermark.of(data.getVersion(), data.getUpdatedAt())))
+            return null;
+
         return responseCodeOk(List.of(data));
     }
 
@@ -62,23 +71,29 @@ public class UserController extends Controller<UserDtoBase> {
     @PostMapping("")
     public ResponseEntity<Response<UserDto>> saveOne(@Valid @RequestBody UserCreateDto dto) {
         User user = CON.toUser(dto);
-        user = SVC.saveOne(user);
+        user = SVC.saveOne(user, dto.getPassword());
         UserDto data = CON.toDto(user);
         return responseCodeCreated(List.of(data), "/"+data.getUuid());
     }
 
     /**
-     * Updates the identified user
+     * Updates the identified user. If an If-Match header is given, the user is only updated if it still has the
+     * version tagged by the header. The user is read from the second-level cache and only the supplied columns
+     * are written, by an update statement that checks the version again
      *
      * @param uuid A user uuid
      * @param dto A user update DTO
+     * @param ifMatch The entity tag of the user the update applies to, can be null
      * @return A response entity containing the updated user
      */
     @PatchMapping("/{uuid}")
-    public ResponseEntity<Response<UserDto>> updateOne(@PathVariable(name = "uuid") UUID uuid,
-                                                       @Valid @RequestBody UserUpdateDto dto) {
-        User user = CON.toUser(uuid, dto);
-        user = SVC.saveOne(user);
+    public ResponseEntity<Response<UserDto>> updateOne(
+            @PathVariable(name = "uuid") UUID uuid,
+            @Valid @RequestBody UserUpdateDto dto,
+            @RequestHeader(name = "If-Match", required = false) String ifMatch) {
+
+        User user = CON.toUser(SVC.findOne(uuid, versionOf(ifMatch)), dto);
+        user = SVC.saveOne(user, dto.getPassword());
         UserDto data = CON.toDto(user);
         return responseCodeOk(List.of(data));
     }
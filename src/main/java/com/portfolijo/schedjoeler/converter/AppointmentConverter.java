@@ -1,15 +1,32 @@
 package com.portfolijo.schedjoeler.converter;
 
+import com.portfolijo.schedjoeler.batch.BatchItem;
+import com.portfolijo.schedjoeler.calendar.CalendarCount;
 import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.dto.AppointmentBulkResultDto;
 import com.portfolijo.schedjoeler.dto.AppointmentCreateDto;
+import com.portfolijo.schedjoeler.dto.AppointmentDayCountDto;
 import com.portfolijo.schedjoeler.dto.AppointmentDto;
+import com.portfolijo.schedjoeler.dto.AppointmentNormalizedDto;
 import com.portfolijo.schedjoeler.dto.AppointmentUpdateDto;
+import com.portfolijo.schedjoeler.dto.UserDto;
+import com.portfolijo.schedjoeler.id.Uuids;
+import com.portfolijo.schedjoeler.projection.AppointmentView;
+import com.portfolijo.schedjoeler.projection.UserView;
 import com.portfolijo.schedjoeler.service.AppointmentService;
 import com.portfolijo.schedjoeler.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -33,11 +50,96 @@ public class AppointmentConverter {
                 .builder()
                 .uuid(appointment.getUuid())
                 .dateTime(appointment.getDateTime())
+                .endDateTime(appointment.getEndDateTime())
                 .provider(uCon.toDto(appointment.getProvider()))
                 .client(uCon.toDto(appointment.getClient()))
                 .status(appointment.getStatus())
                 .location(appointment.getLocation())
                 .description(appointment.getDescription())
+                .recurrence(appointment.getRecurrence() != null ? appointment.getRecurrence().getUuid() : null)
+                .recurrenceDateTime(appointment.getRecurrenceDateTime())
+                .build();
+    }
+
+    /**
+     * Creates an appointment DTO based on the given appointment view
+     *
+     * @param appointment An appointment view
+     * @return An appointment DTO
+     */
+    public AppointmentDto toDto(AppointmentView appointment) {
+        return AppointmentDto
+                .builder()
+                .uuid(appointment.getUuid())
+                .dateTime(appointment.getDateTime())
+                .endDateTime(appointment.getEndDateTime())
+                .provider(uCon.toDto(appointment.getProvider()))
+                .client(uCon.toDto(appointment.getClient()))
+                .status(appointment.getStatus())
+                .location(appointment.getLocation())
+                .description(appointment.getDescription())
+                .recurrence(appointment.getRecurrence())
+                .recurrenceDateTime(appointment.getRecurrenceDateTime())
+                .build();
+    }
+
+    /**
+     * Creates a normalized appointment DTO based on the given appointment view, adding its provider and client to
+     * the given users unless they were already converted. Sharing one map across a response converts each
+     * distinct user once
+     *
+     * @param appointment An appointment view
+     * @param users The user DTOs converted so far by uuid, which is updated
+     * @return A normalized appointment DTO
+     */
+    public AppointmentNormalizedDto toNormalizedDto(AppointmentView appointment, Map<UUID, UserDto> users) {
+        UserView provider = appointment.getProvider();
+        UserView client = appointment.getClient();
+        users.computeIfAbsent(provider.getUuid(), uuid -> uCon.toDto(provider));
+        users.computeIfAbsent(client.getUuid(), uuid -> uCon.toDto(client));
+
+        return AppointmentNormalizedDto
+                .builder()
+                .uuid(appointment.getUuid())
+                .dateTime(appointment.getDateTime())
+                .endDateTime(appointment.getEndDateTime())
+                .provider(provider.getUuid())
+                .client(client.getUuid())
+                .status(appointment.getStatus())
+                .location(appointment.getLocation())
+                .description(appointment.getDescription())
+                .recurrence(appointment.getRecurrence())
+                .recurrenceDateTime(appointment.getRecurrenceDateTime())
+                .build();
+    }
+
+    /**
+     * Creates a day count DTO based on the given calendar count
+     *
+     * @param count A calendar count
+     * @return An appointment day count DTO
+     */
+    public AppointmentDayCountDto toDto(CalendarCount count) {
+        return AppointmentDayCountDto
+                .builder()
+                .day(count.getDay())
+                .status(count.getStatus())
+                .count(count.getCount())
+                .build();
+    }
+
+    /**
+     * Creates a bulk result DTO based on the given batch item
+     *
+     * @param item A batch item of an appointment
+     * @return An appointment bulk result DTO
+     */
+    public AppointmentBulkResultDto toBulkResultDto(BatchItem<Appointment> item) {
+        return AppointmentBulkResultDto
+                .builder()
+                .index(item.getIndex())
+                .appointment(item.isSuccess() ? toDto(item.getValue()) : null)
+                .error(item.getError())
                 .build();
     }
 
@@ -50,8 +152,9 @@ public class AppointmentConverter {
     public Appointment toAppointment(AppointmentCreateDto dto) {
         return Appointment
                 .builder()
-                .uuid(UUID.randomUUID())
+                .uuid(Uuids.generate())
                 .dateTime(dto.getDateTime())
+                .endDateTime(dto.getEndDateTime())
                 .provider(uSvc.findOne(dto.getProvider()))
                 .client(uSvc.findOne(dto.getClient()))
                 .status(Appointment.Status.NEW)
@@ -60,6 +163,50 @@ public class AppointmentConverter {
                 .build();
     }
 
+    /**
+     * Creates appointments based on the given appointment create DTOs. The providers and clients of all DTOs are
+     * found with a single query, and a DTO naming a user that does not exist fails on its own
+     *
+     * @param dtos A list of appointment create DTOs
+     * @return A list of batch items of appointments, in the order of the DTOs
+     */
+    public List<BatchItem<Appointment>> toAppointments(List<AppointmentCreateDto> dtos) {
+        Set<UUID> uuids = new HashSet<>();
+
+        for (AppointmentCreateDto dto : dtos) {
+            uuids.add(dto.getProvider());
+            uuids.add(dto.getClient());
+        }
+
+        Map<UUID, User> users = uSvc.findAll(uuids);
+        List<BatchItem<Appointment>> items = new ArrayList<>(dtos.size());
+
+        for (int i = 0; i < dtos.size(); i++) {
+            AppointmentCreateDto dto = dtos.get(i);
+            User provider = users.get(dto.getProvider());
+            User client = users.get(dto.getClient());
+
+            if (provider == null || client == null) {
+                UUID missing = provider == null ? dto.getProvider() : dto.getClient();
+                items.add(BatchItem.failure(i, "User uuid="+missing+" not found."));
+                continue;
+            }
+
+            items.add(BatchItem.success(i, Appointment
+                    .builder()
+                    .uuid(Uuids.generate())
+                    .dateTime(dto.getDateTime())
+                    .endDateTime(dto.getEndDateTime())
+                    .provider(provider)
+                    .client(client)
+                    .status(Appointment.Status.NEW)
+                    .location(dto.getLocation())
+                    .description(dto.getDescription())
+                    .build()));
+        }
+        return items;
+    }
+
     /**
      * Creates an updated version of the identified appointment based on the given appointment update DTO
      *
@@ -68,12 +215,30 @@ public class AppointmentConverter {
      * @return An appointment
      */
     public Appointment toAppointment(UUID uuid, AppointmentUpdateDto dto) {
-        Appointment updated = svc.findOne(uuid);
+        return toAppointment(svc.findOne(uuid), dto);
+    }
 
+    /**
+     * Applies the given appointment update DTO to the given appointment
+     *
+     * @param updated An appointment
+     * @param dto An appointment update DTO
+     * @return The updated appointment
+     */
+    public Appointment toAppointment(Appointment updated, AppointmentUpdateDto dto) {
         LocalDateTime dateTime = dto.getDateTime();
+        LocalDateTime endDateTime = dto.getEndDateTime();
+
+        // moving an appointment without a new end date/time keeps its duration
+        if (dateTime != null && endDateTime == null && updated.getEndDateTime() != null)
+            endDateTime = dateTime.plus(Duration.between(updated.getDateTime(), updated.getEndDateTime()));
+
         if (dateTime != null)
             updated.setDateTime(dateTime);
 
+        if (endDateTime != null)
+            updated.setEndDateTime(endDateTime);
+
         UUID pUuid = dto.getProvider();
         if (pUuid != null)
             updated.setProvider(uSvc.findOne(pUuid));
@@ -96,4 +261,37 @@ public class AppointmentConverter {
 
         return updated;
     }
+
+    /**
+     * Creates the changes to an appointment supplied by the given appointment update DTO
+     *
+     * @param dto An appointment update DTO
+     * @return A map of the supplied values by appointment attribute name, with users as entities
+     */
+    public Map<String, Object> toChanges(AppointmentUpdateDto dto) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+
+        if (dto.getDateTime() != null)
+            changes.put(Appointment.Fields.dateTime, dto.getDateTime());
+
+        if (dto.getEndDateTime() != null)
+            changes.put(Appointment.Fields.endDateTime, dto.getEndDateTime());
+
+        if (dto.getProvider() != null)
+            changes.put(Appointment.Fields.provider, uSvc.findOne(dto.getProvider()));
+
+        if (dto.getClient() != null)
+            changes.put(Appointment.Fields.client, uSvc.findOne(dto.getClient()));
+
+        if (dto.getStatus() != null)
+            changes.put(Appointment.Fields.status, dto.getStatus());
+
+        if (dto.getLocation() != null)
+            changes.put(Appointment.Fields.location, dto.getLocation());
+
+        if (dto.getDescription() != null)
+            changes.put(Appointment.Fields.description, dto.getDescription());
+
+        return changes;
+    }
 }
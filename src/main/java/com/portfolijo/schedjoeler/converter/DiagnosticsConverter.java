@@ -0,0 +1,87 @@
+package com.portfolijo.schedjoeler.converter;
+
+import com.portfolijo.schedjoeler.dto.BulkheadDto;
+import com.portfolijo.schedjoeler.dto.CacheStatisticsDto;
+import com.portfolijo.schedjoeler.dto.ConcurrencyLimitDto;
+import com.portfolijo.schedjoeler.dto.PinningSiteDto;
+import com.portfolijo.schedjoeler.limit.AdaptiveLimit;
+import com.portfolijo.schedjoeler.limit.Bulkhead;
+import com.portfolijo.schedjoeler.thread.PinningSite;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.springframework.stereotype.Component;
+
+/**
+ * Converts the diagnostics of the api to DTO representations. Durations are converted to milliseconds
+ */
+@Component
+public class DiagnosticsConverter {
+
+    /**
+     * Creates a cache statistics DTO based on the given region statistics
+     *
+     * @param statistics The statistics of a second-level cache region
+     * @return A cache statistics DTO
+     */
+    public CacheStatisticsDto toDto(CacheRegionStatistics statistics) {
+        return CacheStatisticsDto
+                .builder()
+                .region(statistics.getRegionName())
+                .hitCount(statistics.getHitCount())
+                .missCount(statistics.getMissCount())
+                .putCount(statistics.getPutCount())
+                .size(statistics.getElementCountInMemory())
+                .build();
+    }
+
+    /**
+     * Creates a concurrency limit DTO based on the given limit
+     *
+     * @param limit The limit of a route group
+     * @return A concurrency limit DTO
+     */
+    public ConcurrencyLimitDto toDto(AdaptiveLimit limit) {
+        return ConcurrencyLimitDto
+                .builder()
+                .group(limit.getName())
+                .limit(limit.getLimit())
+                .inFlight(limit.getInFlight())
+                .rejected(limit.getRejected())
+                .baselineLatency(limit.getBaselineNanos() / 1_000_000.0)
+                .build();
+    }
+
+    /**
+     * Creates a bulkhead DTO based on the given bulkhead
+     *
+     * @param bulkhead A bulkhead
+     * @return A bulkhead DTO
+     */
+    public BulkheadDto toDto(Bulkhead bulkhead) {
+        return BulkheadDto
+                .builder()
+                .name(bulkhead.getName())
+                .threads(bulkhead.getMaxPoolSize())
+                .active(bulkhead.getActiveCount())
+                .queueDepth(bulkhead.getQueueDepth())
+                .queueCapacity(bulkhead.getQueueLimit())
+                .rejected(bulkhead.getRejected())
+                .build();
+    }
+
+    /**
+     * Creates a pinning site DTO based on the given site
+     *
+     * @param site A site virtual threads were pinned at
+     * @return A pinning site DTO
+     */
+    public PinningSiteDto toDto(PinningSite site) {
+        return PinningSiteDto
+                .builder()
+                .site(site.getSite())
+                .jdbc(site.isJdbc())
+                .count(site.getCount())
+                .totalDuration(site.getTotalNanos() / 1_000_000.0)
+                .maxDuration(site.getMaxNanos() / 1_000_000.0)
+                .build();
+    }
+}
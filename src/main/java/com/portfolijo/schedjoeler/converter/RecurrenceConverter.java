@@ -0,0 +1,64 @@
+package com.portfolijo.schedjoeler.converter;
+
+import com.portfolijo.schedjoeler.domain.Recurrence;
+import com.portfolijo.schedjoeler.dto.RecurrenceCreateDto;
+import com.portfolijo.schedjoeler.dto.RecurrenceDto;
+import com.portfolijo.schedjoeler.id.Uuids;
+import com.portfolijo.schedjoeler.recurrence.RecurrenceRule;
+import com.portfolijo.schedjoeler.service.UserService;
+import jakarta.validation.ValidationException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Converts {@link Recurrence} objects to/from DTO representations
+ */
+@RequiredArgsConstructor
+@Component
+public class RecurrenceConverter {
+    private final UserService uSvc;
+    private final UserConverter uCon;
+
+    /**
+     * Creates a recurrence DTO based on the given recurrence
+     *
+     * @param recurrence A recurrence
+     * @return A recurrence DTO
+     */
+    public RecurrenceDto toDto(Recurrence recurrence) {
+        return RecurrenceDto
+                .builder()
+                .uuid(recurrence.getUuid())
+                .dateTime(recurrence.getDateTime())
+                .endDateTime(recurrence.getEndDateTime())
+                .lastDateTime(recurrence.getLastDateTime())
+                .rule(recurrence.getRule().toString())
+                .provider(uCon.toDto(recurrence.getProvider()))
+                .client(uCon.toDto(recurrence.getClient()))
+                .location(recurrence.getLocation())
+                .description(recurrence.getDescription())
+                .build();
+    }
+
+    /**
+     * Creates a recurrence based on the given recurrence create DTO
+     *
+     * @param dto A recurrence create DTO
+     * @return A recurrence
+     * @throws ValidationException If the recurrence rule is invalid
+     */
+    public Recurrence toRecurrence(RecurrenceCreateDto dto) throws ValidationException {
+        return Recurrence
+                .builder()
+                .uuid(Uuids.generate())
+                .dateTime(dto.getDateTime())
+                .endDateTime(dto.getEndDateTime())
+                .rule(RecurrenceRule.parse(dto.getRule()))
+                .provider(uSvc.findOne(dto.getProvider()))
+                .client(uSvc.findOne(dto.getClient()))
+                .location(dto.getLocation())
+                .description(dto.getDescription())
+                .build();
+    }
+}
@@ -0,0 +1,26 @@
+package com.portfolijo.schedjoeler.converter;
+
+import com.portfolijo.schedjoeler.dto.SlotDto;
+import com.portfolijo.schedjoeler.schedule.Slot;
+import org.springframework.stereotype.Component;
+
+/**
+ * Converts {@link Slot} objects to DTO representations
+ */
+@Component
+public class SlotConverter {
+
+    /**
+     * Creates a slot DTO based on the given slot
+     *
+     * @param slot A slot
+     * @return A slot DTO
+     */
+    public SlotDto toDto(Slot slot) {
+        return SlotDto
+                .builder()
+                .dateTime(slot.getDateTime())
+                .endDateTime(slot.getEndDateTime())
+                .build();
+    }
+}
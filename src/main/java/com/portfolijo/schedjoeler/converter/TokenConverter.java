@@ -0,0 +1,27 @@
+package com.portfolijo.schedjoeler.converter;
+
+import com.portfolijo.schedjoeler.dto.TokenDto;
+import com.portfolijo.schedjoeler.security.Token;
+import org.springframework.stereotype.Component;
+
+/**
+ * Converts {@link Token} objects to DTO representations
+ */
+@Component
+public class TokenConverter {
+
+    /**
+     * Creates a token DTO based on the given token
+     *
+     * @param token A token
+     * @return A token DTO
+     */
+    public TokenDto toDto(Token token) {
+        return TokenDto
+                .builder()
+                .token(token.getValue())
+                .tokenType("Bearer")
+                .expiresAt(token.getExpiresAt())
+                .build();
+    }
+}
@@ -4,6 +4,8 @@ import com.portfolijo.schedjoeler.domain.User;
 import com.portfolijo.schedjoeler.dto.UserCreateDto;
 import com.portfolijo.schedjoeler.dto.UserDto;
 import com.portfolijo.schedjoeler.dto.UserUpdateDto;
+import com.portfolijo.schedjoeler.id.Uuids;
+import com.portfolijo.schedjoeler.projection.UserView;
 import com.portfolijo.schedjoeler.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
@@ -25,6 +27,25 @@ public class UserConverter {
      * @return A user DTO
      */
     public UserDto toDto(User user) {
+        return UserDto
+                .builder()
+                .uuid(user.getUuid())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .email(user.getEmail())
+                .phone(user.getPhone())
+                .version(user.getVersion())
+                .updatedAt(user.getUpdatedAt())
+                .build();
+    }
+
+    /**
+     * Creates a user DTO based on the given user view
+     *
+     * @param user A user view
+     * @return A user DTO
+     */
+    public UserDto toDto(UserView user) {
         return UserDto
                 .builder()
                 .uuid(user.getUuid())
@@ -44,7 +65,7 @@ public class UserConverter {
     public User toUser(UserCreateDto dto) {
         return User
                 .builder()
-                .uuid(UUID.randomUUID())
+                .uuid(Uuids.generate())
                 .firstName(dto.getFirstName())
                 .lastName(dto.getLastName())
                 .email(dto.getEmail())
@@ -60,8 +81,17 @@ public class UserConverter {
      * @return A user
      */
     public User toUser(UUID uuid, UserUpdateDto dto) {
-        User updated = SVC.findOne(uuid);
+        return toUser(SVC.findOne(uuid), dto);
+    }
 
+    /**
+     * Applies the given user update DTO to the given user
+     *
+     * @param updated A user
+     * @param dto A user update DTO
+     * @return The updated user
+     */
+    public User toUser(User updated, UserUpdateDto dto) {
         String firstName = dto.getFirstName();
         if (firstName != null)
             updated.setFirstName(firstName);
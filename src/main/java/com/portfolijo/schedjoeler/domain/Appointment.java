@@ -1,10 +1,17 @@
 package com.portfolijo.schedjoeler.domain;
 
+import com.portfolijo.schedjoeler.id.Uuids;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
 import lombok.experimental.FieldNameConstants;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.type.SqlTypes;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -17,31 +24,72 @@ import java.util.UUID;
 @AllArgsConstructor
 @FieldNameConstants
 @Entity
-@Table(name = "sj_appointment")
+@DynamicUpdate
+@NamedEntityGraph(
+        name = Appointment.WITH_USERS,
+        attributeNodes = {@NamedAttributeNode("provider"), @NamedAttributeNode("client")}
+)
+@Table(
+        name = "sj_appointment",
+        indexes = {
+                @Index(name = "ix__appointment__provider_id__date_time", columnList = "provider_id, date_time"),
+                @Index(name = "ix__appointment__client_id__date_time", columnList = "client_id, date_time"),
+                @Index(name = "ix__appointment__status__date_time", columnList = "status, date_time"),
+                @Index(name = "ix__appointment__date_time__id", columnList = "date_time, id")
+        },
+        uniqueConstraints = {
+                @UniqueConstraint(
+                        name = "ux__appointment__recurrence_id__recurrence_date_time",
+                        columnNames = {"recurrence_id", "recurrence_date_time"})
+        }
+)
 public class Appointment {
 
+    /**
+     * The entity graph fetching the provider and client with the appointment, in the same statement
+     */
+    public static final String WITH_USERS = "Appointment.withUsers";
+
+    /**
+     * The length of an appointment created without an end date/time
+     */
+    public static final Duration DEFAULT_DURATION = Duration.ofHours(1);
+
     @RequiredArgsConstructor
     @Getter
     public enum Status {
-        NEW,
-        RESCHEDULED,
-        COMPLETE,
-        CANCELLED
+        NEW(true),
+        RESCHEDULED(true),
+        COMPLETE(false),
+        CANCELLED(false);
+
+        /**
+         * Whether an appointment with this status occupies its provider's time
+         */
+        private final boolean booked;
     }
 
+    /**
+     * Ids are allocated from a pooled sequence, rather than an identity column, so that inserts can be batched
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sj_appointment_seq")
+    @SequenceGenerator(name = "sj_appointment_seq", sequenceName = "sj_appointment_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
-    @Column(name = "uuid", nullable = false, unique = true)
+    /**
+     * Stored as 16 bytes rather than as text, which keeps the entries of the uuid index small
+     */
+    @Column(name = "uuid", nullable = false, unique = true, length = 16)
+    @JdbcTypeCode(SqlTypes.BINARY)
     @NotNull
     private UUID uuid;
 
     @PrePersist
     private void initUuid() {
         if (uuid == null)
-            uuid = UUID.randomUUID();
+            uuid = Uuids.generate();
     }
 
     @Column(name = "date_time", nullable = false)
@@ -49,7 +97,11 @@ public class Appointment {
     @NonNull
     private LocalDateTime dateTime;
 
-    @ManyToOne(fetch = FetchType.EAGER, optional = false)
+    @Column(name = "end_date_time", nullable = false)
+    @NotNull
+    private LocalDateTime endDateTime;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(
             name = "provider_id",
             referencedColumnName = "id",
@@ -60,7 +112,7 @@ public class Appointment {
     @NonNull
     private User provider;
 
-    @ManyToOne(fetch = FetchType.EAGER, optional = false)
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
     @JoinColumn(
             name = "client_id",
             referencedColumnName = "id",
@@ -76,9 +128,43 @@ public class Appointment {
     @NonNull
     private Status status;
 
+    /**
+     * The recurrence this appointment is an exception to, or null if the appointment does not recur
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(
+            name = "recurrence_id",
+            referencedColumnName = "id",
+            foreignKey = @ForeignKey(name = "fk__appointment__recurrence_id")
+    )
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Recurrence recurrence;
+
+    /**
+     * The date/time the recurrence rule places this appointment at, which differs from its date/time if the
+     * occurrence was moved
+     */
+    @Column(name = "recurrence_date_time")
+    private LocalDateTime recurrenceDateTime;
+
     @Column(name = "location")
     private String location;
 
     @Column(name = "description")
     private String description;
+
+    /**
+     * Incremented by every update, including bulk status updates, which set it explicitly
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    /**
+     * The date/time of the latest insert or update, which bulk status updates also set explicitly
+     */
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
 }
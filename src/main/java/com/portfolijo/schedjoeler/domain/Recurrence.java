@@ -0,0 +1,129 @@
+package com.portfolijo.schedjoeler.domain;
+
+import com.portfolijo.schedjoeler.id.Uuids;
+import com.portfolijo.schedjoeler.recurrence.RecurrenceRule;
+import com.portfolijo.schedjoeler.recurrence.RecurrenceRuleConverter;
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+import lombok.experimental.FieldNameConstants;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.type.SqlTypes;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Represents a series of appointments between a provider and client, stored once as a recurrence rule. Its
+ * occurrences are expanded when appointments are searched, and only occurrences that differ from the rule are
+ * stored, as appointments referencing the recurrence
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldNameConstants
+@Entity
+@NamedEntityGraph(
+        name = Recurrence.WITH_USERS,
+        attributeNodes = {@NamedAttributeNode("provider"), @NamedAttributeNode("client")}
+)
+@Table(
+        name = "sj_recurrence",
+        indexes = {
+                @Index(name = "ix__recurrence__provider_id__date_time", columnList = "provider_id, date_time"),
+                @Index(name = "ix__recurrence__client_id__date_time", columnList = "client_id, date_time")
+        }
+)
+public class Recurrence {
+
+    /**
+     * The entity graph fetching the provider and client with the recurrence, in the same statement
+     */
+    public static final String WITH_USERS = "Recurrence.withUsers";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "uuid", nullable = false, unique = true, length = 16)
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @NotNull
+    private UUID uuid;
+
+    @PrePersist
+    private void initUuid() {
+        if (uuid == null)
+            uuid = Uuids.generate();
+    }
+
+    /**
+     * The start of the first occurrence
+     */
+    @Column(name = "date_time", nullable = false)
+    @NotNull
+    @NonNull
+    private LocalDateTime dateTime;
+
+    /**
+     * The end of the first occurrence, which sets the duration of every occurrence
+     */
+    @Column(name = "end_date_time", nullable = false)
+    @NotNull
+    private LocalDateTime endDateTime;
+
+    /**
+     * The latest date/time an occurrence can start, or null if the recurrence does not end
+     */
+    @Column(name = "last_date_time")
+    private LocalDateTime lastDateTime;
+
+    @Column(name = "rule", nullable = false)
+    @Convert(converter = RecurrenceRuleConverter.class)
+    @NotNull
+    @NonNull
+    private RecurrenceRule rule;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(
+            name = "provider_id",
+            referencedColumnName = "id",
+            foreignKey = @ForeignKey(name = "fk__recurrence__provider_id"),
+            nullable = false
+    )
+    @NotNull
+    @NonNull
+    private User provider;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(
+            name = "client_id",
+            referencedColumnName = "id",
+            foreignKey = @ForeignKey(name = "fk__recurrence__client_id"),
+            nullable = false
+    )
+    @NotNull
+    @NonNull
+    private User client;
+
+    @Column(name = "location")
+    private String location;
+
+    @Column(name = "description")
+    private String description;
+
+    /**
+     * Recurrences are not updated once saved, but are versioned like appointments so that the occurrences
+     * expanded from them are tagged the same way
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
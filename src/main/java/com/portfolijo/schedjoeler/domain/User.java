@@ -1,15 +1,27 @@
 package com.portfolijo.schedjoeler.domain;
 
+import com.portfolijo.schedjoeler.id.Uuids;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
 import lombok.experimental.FieldNameConstants;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.type.SqlTypes;
 
+import java.time.Instant;
 import java.util.UUID;
 
 /**
- * Represents an application user
+ * Represents an application user. Updates only write the changed columns, guarded by the version the user was
+ * read at. A user with a password hash can log in to the api with their email address
  */
 @Data
 @Builder
@@ -17,21 +29,43 @@ import java.util.UUID;
 @AllArgsConstructor
 @FieldNameConstants
 @Entity
-@Table(name = "sj_user")
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION)
+@NaturalIdCache(region = User.NATURAL_ID_CACHE_REGION)
+@Table(
+        name = "sj_user",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "ux__user__email", columnNames = "email")
+        }
+)
 public class User {
+
+    /**
+     * The second-level cache region holding users by id
+     */
+    public static final String CACHE_REGION = "sj_user";
+
+    /**
+     * The second-level cache region resolving user uuids to ids
+     */
+    public static final String NATURAL_ID_CACHE_REGION = "sj_user_natural_id";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id")
     private Long id;
 
-    @Column(name = "uuid", nullable = false, unique = true)
+    @NaturalId
+    @Column(name = "uuid", nullable = false, unique = true, length = 16)
+    @JdbcTypeCode(SqlTypes.BINARY)
     @NotNull
     private UUID uuid;
 
     @PrePersist
     private void initUuid() {
         if (uuid == null)
-            uuid = UUID.randomUUID();
+            uuid = Uuids.generate();
     }
 
     @Column(name = "first_name", nullable = false)
@@ -44,9 +78,44 @@ public class User {
     @NonNull
     private String lastName;
 
+    /**
+     * The login name of the user, unique among all users
+     */
     @Column(name = "email")
     private String email;
 
     @Column(name = "phone")
     private String phone;
+
+    /**
+     * The password encoded by a delegating password encoder, prefixed with the id of the encoding such as
+     * {@code {bcrypt}}, or null if the user cannot log in
+     */
+    @Column(name = "password_hash")
+    @ToString.Exclude
+    private String passwordHash;
+
+    @Column(name = "enabled", nullable = false)
+    @ColumnDefault("true")
+    @Builder.Default
+    private boolean enabled = true;
+
+    /**
+     * Whether the user may read the diagnostics of the api. Set in the database only, never through the api
+     */
+    @Column(name = "admin", nullable = false)
+    @ColumnDefault("false")
+    @Builder.Default
+    private boolean admin = false;
+
+    /**
+     * Incremented by every update, so that the version identifies the state of the user
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
 }
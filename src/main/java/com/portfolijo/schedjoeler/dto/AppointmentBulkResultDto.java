@@ -0,0 +1,19 @@
+package com.portfolijo.schedjoeler.dto;
+
+import lombok.*;
+
+/**
+ * Represents the outcome of creating one appointment of a bulk request, either the created appointment or the
+ * reason it was not created
+ */
+@Getter
+@EqualsAndHashCode(callSuper = false)
+@ToString
+@Builder
+public class AppointmentBulkResultDto extends AppointmentDtoBase {
+    private int index;
+
+    private AppointmentDto appointment;
+
+    private String error;
+}
@@ -0,0 +1,14 @@
+package com.portfolijo.schedjoeler.dto;
+
+import lombok.*;
+
+/**
+ * Represents the number of appointments affected by a request
+ */
+@Getter
+@EqualsAndHashCode(callSuper = false)
+@ToString
+@Builder
+public class AppointmentCountDto extends AppointmentDtoBase {
+    private long count;
+}
@@ -18,6 +18,8 @@ public class AppointmentCreateDto extends AppointmentDtoBase {
     @NonNull
     private LocalDateTime dateTime;
 
+    private LocalDateTime endDateTime;
+
     @NotNull
     @NonNull
     private UUID provider;
@@ -0,0 +1,26 @@
+package com.portfolijo.schedjoeler.dto;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Represents the number of appointments with a status on a day
+ */
+@Getter
+@EqualsAndHashCode(callSuper = false)
+@ToString
+@Builder
+public class AppointmentDayCountDto extends AppointmentDtoBase {
+    @NotNull
+    @NonNull
+    private LocalDate day;
+
+    @NotNull
+    @NonNull
+    private Appointment.Status status;
+
+    private long count;
+}
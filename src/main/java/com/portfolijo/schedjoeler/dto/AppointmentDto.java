@@ -23,6 +23,8 @@ public class AppointmentDto extends AppointmentDtoBase {
     @NonNull
     private LocalDateTime dateTime;
 
+    private LocalDateTime endDateTime;
+
     @NotNull
     @NonNull
     private UserDto provider;
@@ -38,4 +40,14 @@ public class AppointmentDto extends AppointmentDtoBase {
     private String location;
 
     private String description;
+
+    /**
+     * The recurrence this appointment is an occurrence of, or null if the appointment does not recur
+     */
+    private UUID recurrence;
+
+    /**
+     * The date/time the recurrence rule places this occurrence at, or null if the appointment does not recur
+     */
+    private LocalDateTime recurrenceDateTime;
 }
@@ -0,0 +1,48 @@
+package com.portfolijo.schedjoeler.dto;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Represents a scheduled appointment between a provider and client, referencing the users by uuid. The users
+ * are included once per response rather than once per appointment
+ */
+@Getter
+@EqualsAndHashCode(callSuper = false)
+@ToString
+@Builder
+public class AppointmentNormalizedDto extends AppointmentDtoBase {
+    @NotNull
+    @NonNull
+    private UUID uuid;
+
+    @NotNull
+    @NonNull
+    private LocalDateTime dateTime;
+
+    private LocalDateTime endDateTime;
+
+    @NotNull
+    @NonNull
+    private UUID provider;
+
+    @NotNull
+    @NonNull
+    private UUID client;
+
+    @NotNull
+    @NonNull
+    private Appointment.Status status;
+
+    private String location;
+
+    private String description;
+
+    private UUID recurrence;
+
+    private LocalDateTime recurrenceDateTime;
+}
@@ -0,0 +1,18 @@
+package com.portfolijo.schedjoeler.dto;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+import lombok.extern.jackson.Jacksonized;
+
+/**
+ * Represents a new status for every appointment matching a set of criteria
+ */
+@Getter
+@Builder
+@Jacksonized
+public class AppointmentStatusUpdateDto extends AppointmentDtoBase {
+    @NotNull
+    @NonNull
+    private Appointment.Status status;
+}
@@ -14,6 +14,7 @@ import java.util.UUID;
 @Builder
 public class AppointmentUpdateDto extends AppointmentDtoBase {
     private LocalDateTime dateTime;
+    private LocalDateTime endDateTime;
     private UUID provider;
     private UUID client;
     private Appointment.Status status;
@@ -0,0 +1,34 @@
+package com.portfolijo.schedjoeler.dto;
+
+import lombok.*;
+
+/**
+ * Represents the current load of one bulkhead of the api
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@Builder
+public class BulkheadDto {
+    @NonNull
+    private String name;
+
+    private int threads;
+
+    /**
+     * The number of threads currently running a task
+     */
+    private int active;
+
+    /**
+     * The number of tasks waiting for a thread
+     */
+    private int queueDepth;
+
+    private int queueCapacity;
+
+    /**
+     * The number of tasks rejected since startup
+     */
+    private long rejected;
+}
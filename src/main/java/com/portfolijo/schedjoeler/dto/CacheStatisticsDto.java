@@ -0,0 +1,26 @@
+package com.portfolijo.schedjoeler.dto;
+
+import lombok.*;
+
+/**
+ * Represents the usage of one second-level cache region since startup
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@Builder
+public class CacheStatisticsDto {
+    @NonNull
+    private String region;
+
+    private long hitCount;
+
+    private long missCount;
+
+    private long putCount;
+
+    /**
+     * The number of entries currently held by the region, or a negative number if the provider does not report it
+     */
+    private long size;
+}
@@ -0,0 +1,32 @@
+package com.portfolijo.schedjoeler.dto;
+
+import lombok.*;
+
+/**
+ * Represents the current concurrency limit of one route group of the api
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@Builder
+public class ConcurrencyLimitDto {
+    @NonNull
+    private String group;
+
+    /**
+     * The number of requests admitted at a time
+     */
+    private int limit;
+
+    private int inFlight;
+
+    /**
+     * The number of requests rejected since startup
+     */
+    private long rejected;
+
+    /**
+     * The latency each request is compared to, in milliseconds
+     */
+    private double baselineLatency;
+}
@@ -0,0 +1,21 @@
+package com.portfolijo.schedjoeler.dto;
+
+import lombok.*;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Represents the resources referenced by the data of a normalized response, each included once
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@Builder
+public class IncludedDto {
+
+    /**
+     * The referenced users by uuid
+     */
+    private Map<UUID, UserDto> users;
+}
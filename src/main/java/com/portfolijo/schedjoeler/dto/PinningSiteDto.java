@@ -0,0 +1,39 @@
+package com.portfolijo.schedjoeler.dto;
+
+import lombok.*;
+
+/**
+ * Represents the pinning of virtual threads at one place in the code
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@Builder
+public class PinningSiteDto {
+
+    /**
+     * The method the threads were pinned in, as class.method
+     */
+    @NonNull
+    private String site;
+
+    /**
+     * Whether the method is on the JDBC or Hibernate path
+     */
+    private boolean jdbc;
+
+    /**
+     * The number of pins since startup
+     */
+    private long count;
+
+    /**
+     * The total time threads were pinned for, in milliseconds
+     */
+    private double totalDuration;
+
+    /**
+     * The longest time a thread was pinned for, in milliseconds
+     */
+    private double maxDuration;
+}
@@ -0,0 +1,42 @@
+package com.portfolijo.schedjoeler.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Represents a new series of appointments between a provider and client
+ */
+@Getter
+@Builder
+public class RecurrenceCreateDto extends RecurrenceDtoBase {
+    @NotNull
+    @NonNull
+    private LocalDateTime dateTime;
+
+    private LocalDateTime endDateTime;
+
+    /**
+     * An iCalendar recurrence rule, e.g. FREQ=WEEKLY;BYDAY=MO,WE;COUNT=10
+     */
+    @NotBlank
+    @NonNull
+    private String rule;
+
+    @NotNull
+    @NonNull
+    private UUID provider;
+
+    @NotNull
+    @NonNull
+    private UUID client;
+
+    private String location;
+
+    private String description;
+}
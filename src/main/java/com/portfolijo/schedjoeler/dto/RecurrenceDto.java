@@ -0,0 +1,46 @@
+package com.portfolijo.schedjoeler.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Represents a series of appointments between a provider and client
+ */
+@Getter
+@EqualsAndHashCode(callSuper = false)
+@ToString
+@Builder
+public class RecurrenceDto extends RecurrenceDtoBase {
+    @NotNull
+    @NonNull
+    private UUID uuid;
+
+    @NotNull
+    @NonNull
+    private LocalDateTime dateTime;
+
+    @NotNull
+    @NonNull
+    private LocalDateTime endDateTime;
+
+    private LocalDateTime lastDateTime;
+
+    @NotNull
+    @NonNull
+    private String rule;
+
+    @NotNull
+    @NonNull
+    private UserDto provider;
+
+    @NotNull
+    @NonNull
+    private UserDto client;
+
+    private String location;
+
+    private String description;
+}
@@ -0,0 +1,7 @@
+package com.portfolijo.schedjoeler.dto;
+
+/**
+ * A base class for all recurrence DTOs
+ */
+public abstract class RecurrenceDtoBase {
+}
@@ -0,0 +1,23 @@
+package com.portfolijo.schedjoeler.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a period in a provider's schedule that is free to be booked
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@Builder
+public class SlotDto {
+    @NotNull
+    @NonNull
+    private LocalDateTime dateTime;
+
+    @NotNull
+    @NonNull
+    private LocalDateTime endDateTime;
+}
@@ -0,0 +1,27 @@
+package com.portfolijo.schedjoeler.dto;
+
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Represents a bearer token issued to an authenticated user
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@Builder
+public class TokenDto {
+    @NonNull
+    @ToString.Exclude
+    private String token;
+
+    /**
+     * The authentication scheme to send the token with in the Authorization header
+     */
+    @NonNull
+    private String tokenType;
+
+    @NonNull
+    private Instant expiresAt;
+}
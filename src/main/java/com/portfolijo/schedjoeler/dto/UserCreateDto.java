@@ -1,6 +1,8 @@
 package com.portfolijo.schedjoeler.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
@@ -22,4 +24,12 @@ public class UserCreateDto extends UserDtoBase {
     private String email;
 
     private String phone;
+
+    /**
+     * The password the user logs in with, which is hashed before it is stored and never returned. Passwords are
+     * hashed with bcrypt, which ignores anything beyond 72 bytes
+     */
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    @Size(min = 8, max = 72)
+    private String password;
 }
@@ -1,9 +1,11 @@
 package com.portfolijo.schedjoeler.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
 
+import java.time.Instant;
 import java.util.UUID;
 
 /**
@@ -29,4 +31,18 @@ public class UserDto extends UserDtoBase {
     private String email;
 
     private String phone;
+
+    /**
+     * The user version, which is sent as the entity tag of the user rather than in the body
+     */
+    @JsonIgnore
+    @ToString.Exclude
+    private Long version;
+
+    /**
+     * The date/time the user was last modified, which is sent as the Last-Modified header rather than in the body
+     */
+    @JsonIgnore
+    @ToString.Exclude
+    private Instant updatedAt;
 }
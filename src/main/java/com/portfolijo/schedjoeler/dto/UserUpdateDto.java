@@ -1,5 +1,7 @@
 package com.portfolijo.schedjoeler.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.Size;
 import lombok.Builder;
 import lombok.Getter;
 
@@ -13,4 +15,11 @@ public class UserUpdateDto extends UserDtoBase {
     private String lastName;
     private String email;
     private String phone;
+
+    /**
+     * A new password for the user, replacing the current one
+     */
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    @Size(min = 8, max = 72)
+    private String password;
 }
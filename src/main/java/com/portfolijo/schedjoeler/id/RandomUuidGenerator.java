@@ -0,0 +1,14 @@
+package com.portfolijo.schedjoeler.id;
+
+import java.util.UUID;
+
+/**
+ * Generates random (version 4) uuids
+ */
+public class RandomUuidGenerator implements UuidGenerator {
+
+    @Override
+    public UUID generate() {
+        return UUID.randomUUID();
+    }
+}
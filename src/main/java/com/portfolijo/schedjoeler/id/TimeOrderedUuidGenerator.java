@@ -0,0 +1,65 @@
+package com.portfolijo.schedjoeler.id;
+
+import java.time.Clock;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates time-ordered (version 7, RFC 9562) uuids, which begin with a 48 bit Unix timestamp in milliseconds so
+ * that consecutive uuids land next to each other in an index. The 12 bits following the timestamp hold a counter
+ * that is seeded randomly each millisecond and incremented for every further uuid in the same millisecond, so
+ * uuids from one generator are strictly increasing. The remaining 62 bits are random.
+ * <p>
+ * The timestamp and counter are advanced together with a compare-and-set, so concurrent callers never block
+ * each other. A counter that overflows carries into the timestamp, and the timestamp never moves backwards when
+ * the clock does
+ */
+public class TimeOrderedUuidGenerator implements UuidGenerator {
+    private static final int COUNTER_BITS = 12;
+
+    /**
+     * The bound of the random counter seed, which leaves half of the counter range for uuids generated in the
+     * same millisecond
+     */
+    private static final int SEED_BOUND = 1 << (COUNTER_BITS-1);
+    private static final long VERSION = 0x7L << COUNTER_BITS;
+    private static final long VARIANT = 0x2L << 62;
+    private static final long RANDOM_MASK = (1L << 62)-1;
+
+    private final Clock clock;
+
+    /**
+     * The timestamp and counter of the last generated uuid, as the 60 bits that precede the version bits
+     */
+    private final AtomicLong last = new AtomicLong();
+
+    public TimeOrderedUuidGenerator() {
+        this(Clock.systemUTC());
+    }
+
+    public TimeOrderedUuidGenerator(Clock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public UUID generate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long next;
+
+        while (true) {
+            long previous = last.get();
+            long seeded = (clock.millis() << COUNTER_BITS) | random.nextInt(SEED_BOUND);
+            next = Math.max(seeded, previous+1);
+
+            if (last.compareAndSet(previous, next))
+                break;
+        }
+
+        long timestamp = next >>> COUNTER_BITS;
+        long counter = next & ((1L << COUNTER_BITS)-1);
+        return new UUID(
+                (timestamp << 16) | VERSION | counter,
+                VARIANT | (random.nextLong() & RANDOM_MASK));
+    }
+}
@@ -0,0 +1,17 @@
+package com.portfolijo.schedjoeler.id;
+
+import java.util.UUID;
+
+/**
+ * Generates the uuids that identify entities outside the database
+ */
+@FunctionalInterface
+public interface UuidGenerator {
+
+    /**
+     * Generates a new uuid
+     *
+     * @return A uuid
+     */
+    UUID generate();
+}
@@ -0,0 +1,34 @@
+package com.portfolijo.schedjoeler.id;
+
+import lombok.NonNull;
+
+import java.util.UUID;
+
+/**
+ * Provides the application wide {@link UuidGenerator} to code that cannot have it injected, such as entity
+ * lifecycle callbacks. Generates time-ordered uuids unless another generator is installed
+ */
+public final class Uuids {
+    private static volatile UuidGenerator generator = new TimeOrderedUuidGenerator();
+
+    private Uuids() {
+    }
+
+    /**
+     * Generates a new uuid with the installed generator
+     *
+     * @return A uuid
+     */
+    public static UUID generate() {
+        return generator.generate();
+    }
+
+    /**
+     * Installs the given generator for all subsequently generated uuids
+     *
+     * @param generator A uuid generator
+     */
+    public static void use(@NonNull UuidGenerator generator) {
+        Uuids.generator = generator;
+    }
+}
@@ -0,0 +1,178 @@
+package com.portfolijo.schedjoeler.limit;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Limits the number of requests of one route group in flight at a time, adapting the limit to the latency of the
+ * requests by additive increase, multiplicative decrease (AIMD). Each latency sample is compared to a slowly
+ * moving average of past latencies, the baseline. A sample within the tolerated multiple of the baseline raises
+ * the limit by one per limit's worth of requests, while a slower sample, an error or an exception cuts the limit
+ * by the backoff ratio. When the database slows down, requests then queue in front of the service as rejections
+ * rather than inside it as blocked threads.
+ * <p>
+ * All state is held in atomic counters, updated by compare-and-set, so acquiring and releasing never blocks
+ */
+public class AdaptiveLimit {
+
+    /**
+     * The name of the route group
+     */
+    @Getter
+    private final String name;
+
+    private final double minLimit;
+    private final double maxLimit;
+    private final double tolerance;
+    private final double backoff;
+    private final double smoothing;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    // doubles stored as their raw long bits, since there is no atomic double
+    private final AtomicLong limit;
+    private final AtomicLong baseline = new AtomicLong(Double.doubleToRawLongBits(0));
+
+    /**
+     * Creates a limit
+     *
+     * @param name The name of the route group
+     * @param initialLimit The limit before any latency has been measured
+     * @param minLimit The limit is never cut below this
+     * @param maxLimit The limit is never raised above this
+     * @param tolerance The multiple of the baseline latency above which a request counts as slow, such as 2
+     * @param backoff The ratio a slow request cuts the limit by, such as 0.9
+     * @param smoothing The weight of each sample in the baseline latency, such as 0.05. Smaller weights make the
+     *                  baseline follow lasting changes in latency more slowly
+     */
+    public AdaptiveLimit(String name,
+                         int initialLimit,
+                         int minLimit,
+                         int maxLimit,
+                         double tolerance,
+                         double backoff,
+                         double smoothing) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit)
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max.");
+
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.backoff = backoff;
+        this.smoothing = smoothing;
+        this.limit = new AtomicLong(Double.doubleToRawLongBits(initialLimit));
+    }
+
+    /**
+     * Admits a request if fewer requests than the limit are in flight. An admitted request must be released by
+     * exactly one of {@link #onSample}, {@link #onDropped} or {@link #onIgnored}
+     *
+     * @return The number of requests in flight including the admitted one, or 0 if the request is rejected
+     */
+    public int tryAcquire() {
+        int limit = getLimit();
+
+        while (true) {
+            int current = inFlight.get();
+
+            if (current >= limit) {
+                rejected.increment();
+                return 0;
+            }
+
+            if (inFlight.compareAndSet(current, current+1))
+                return current+1;
+        }
+    }
+
+    /**
+     * Releases a request that completed normally, adapting the limit to its latency
+     *
+     * @param latencyNanos The time the request took
+     * @param inFlight The number of requests in flight when it was admitted
+     */
+    public void onSample(long latencyNanos, int inFlight) {
+        this.inFlight.decrementAndGet();
+
+        double latency = latencyNanos;
+        double previous = update(baseline, b -> b == 0 ? latency : b+smoothing*(latency-b));
+
+        if (previous != 0 && latency > previous*tolerance) {
+            update(limit, l -> Math.max(minLimit, l*backoff));
+        } else if (inFlight*2 >= getLimit()) {
+            // only grows while the limit is being used, so that an idle group does not drift to the maximum
+            // and admit a burst it was never tested with
+            update(limit, l -> Math.min(maxLimit, l+1/l));
+        }
+    }
+
+    /**
+     * Releases a request that failed, such as with an exception or a server error, cutting the limit
+     */
+    public void onDropped() {
+        inFlight.decrementAndGet();
+        update(limit, l -> Math.max(minLimit, l*backoff));
+    }
+
+    /**
+     * Releases a request without adapting the limit, such as a streamed response whose latency says nothing
+     * about the load
+     */
+    public void onIgnored() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Gets the current limit
+     *
+     * @return The number of requests admitted at a time
+     */
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limit.get());
+    }
+
+    /**
+     * Gets the number of requests currently in flight
+     *
+     * @return A number of requests
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Gets the number of requests rejected since startup
+     *
+     * @return A number of requests
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Gets the baseline latency the latency of each request is compared to
+     *
+     * @return A latency in nanoseconds, or 0 if no request has completed yet
+     */
+    public long getBaselineNanos() {
+        return (long) Double.longBitsToDouble(baseline.get());
+    }
+
+    /**
+     * Atomically applies the given function to the double held by the given bits
+     *
+     * @param bits The raw long bits of a double
+     * @param function A side-effect-free function, which may be applied more than once under contention
+     * @return The previous value
+     */
+    private static double update(AtomicLong bits, DoubleUnaryOperator function) {
+        return Double.longBitsToDouble(bits.getAndUpdate(
+                value -> Double.doubleToRawLongBits(function.applyAsDouble(Double.longBitsToDouble(value)))));
+    }
+}
@@ -0,0 +1,98 @@
+package com.portfolijo.schedjoeler.limit;
+
+import lombok.Getter;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A fixed pool of threads with a bounded queue, reserved for one class of requests. Sizing the pools of all
+ * classes to the JDBC pool keeps any one class from holding every connection, so heavy reports cannot starve
+ * writes or cheap reads. Tasks beyond the queue are rejected at once with a {@link RejectedExecutionException},
+ * which is answered with 503 SERVICE UNAVAILABLE, rather than waiting unboundedly
+ */
+public class Bulkhead extends ThreadPoolTaskExecutor {
+
+    /**
+     * The name of the class of requests
+     */
+    @Getter
+    private final String name;
+
+    private final int queueCapacity;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates and starts a bulkhead
+     *
+     * @param name The name of the class of requests, which prefixes the names of the threads
+     * @param threads The number of threads
+     * @param queueCapacity The number of tasks that can wait for a thread
+     * @param decorator The decorator applied to every task, can be null
+     * @param threadFactory The factory of the threads, such as of virtual threads, or null for platform threads
+     */
+    public Bulkhead(String name, int threads, int queueCapacity, TaskDecorator decorator, ThreadFactory threadFactory) {
+        this.name = name;
+        this.queueCapacity = queueCapacity;
+        setCorePoolSize(threads);
+        setMaxPoolSize(threads);
+        setQueueCapacity(queueCapacity);
+        setThreadNamePrefix(name+"-");
+        setRejectedExecutionHandler((task, executor) -> {
+            rejected.increment();
+            throw new RejectedExecutionException("Too many concurrent "+name+", retry later.");
+        });
+
+        if (decorator != null)
+            setTaskDecorator(decorator);
+
+        if (threadFactory != null)
+            setThreadFactory(threadFactory);
+
+        initialize();
+    }
+
+    /**
+     * Runs the given work on this bulkhead
+     *
+     * @param work The work
+     * @return A future completed with the result of the work
+     * @param <T> The type of the result
+     * @throws RejectedExecutionException If all threads are busy and the queue is full
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> work) throws RejectedExecutionException {
+        return CompletableFuture.supplyAsync(work, this);
+    }
+
+    /**
+     * Gets the number of tasks waiting for a thread
+     *
+     * @return A number of tasks
+     */
+    public int getQueueDepth() {
+        return getThreadPoolExecutor().getQueue().size();
+    }
+
+    /**
+     * Gets the number of tasks that can wait for a thread
+     *
+     * @return A number of tasks
+     */
+    public int getQueueLimit() {
+        return queueCapacity;
+    }
+
+    /**
+     * Gets the number of tasks rejected since startup
+     *
+     * @return A number of tasks
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
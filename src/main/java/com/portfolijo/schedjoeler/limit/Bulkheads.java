@@ -0,0 +1,47 @@
+package com.portfolijo.schedjoeler.limit;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.List;
+
+/**
+ * Holds the {@link Bulkhead}s requests are dispatched to by class of traffic
+ */
+@Getter
+@RequiredArgsConstructor
+public class Bulkheads implements DisposableBean {
+
+    /**
+     * Runs reads that may query many rows, such as appointment listings
+     */
+    private final Bulkhead reads;
+
+    /**
+     * Runs writes
+     */
+    private final Bulkhead writes;
+
+    /**
+     * Runs streamed exports, each of which holds its thread and connection until the export completes
+     */
+    private final Bulkhead exports;
+
+    /**
+     * Finds all bulkheads
+     *
+     * @return A list of bulkheads
+     */
+    public List<Bulkhead> findAll() {
+        return List.of(reads, writes, exports);
+    }
+
+    /**
+     * Shuts down every bulkhead, waiting for running tasks to complete
+     */
+    @Override
+    public void destroy() {
+        findAll().forEach(Bulkhead::shutdown);
+    }
+}
@@ -0,0 +1,119 @@
+package com.portfolijo.schedjoeler.limit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Sheds the load of a route group beyond its {@link AdaptiveLimit}. A request over the limit is rejected at once
+ * with 503 SERVICE UNAVAILABLE and a Retry-After header, instead of waiting for a thread or connection. A request
+ * within the limit is timed until its response completes, whether on the servlet thread or asynchronously, and
+ * its latency adapts the limit. Handlers whose latency says nothing about the load, such as streamed exports, set
+ * the {@link #UNTIMED} request attribute: they hold their place until they complete but do not adapt the limit
+ */
+@RequiredArgsConstructor
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    public static final String UNTIMED = ConcurrencyLimitFilter.class.getName()+".UNTIMED";
+
+    private final ConcurrencyLimiter LIMITER;
+    private final ObjectMapper MAPPER;
+    private final int RETRY_AFTER_SECONDS;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        AdaptiveLimit limit = LIMITER.find(request.getRequestURI().substring(request.getContextPath().length()));
+        int inFlight = limit.tryAcquire();
+
+        if (inFlight == 0) {
+            Routes.reject(
+                    response,
+                    HttpStatus.SERVICE_UNAVAILABLE,
+                    RETRY_AFTER_SECONDS,
+                    "Too many concurrent "+limit.getName()+" requests, retry later.",
+                    MAPPER);
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        try {
+            chain.doFilter(request, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            limit.onDropped();
+            throw e;
+        }
+
+        if (request.isAsyncStarted())
+            request.getAsyncContext().addListener(new ReleaseListener(limit, request, response, start, inFlight));
+        else
+            release(limit, request, response, start, inFlight);
+    }
+
+    /**
+     * Releases a completed request
+     *
+     * @param limit The limit the request was admitted by
+     * @param request The request
+     * @param response The response
+     * @param start The time the request was admitted
+     * @param inFlight The number of requests in flight when it was admitted
+     */
+    private static void release(AdaptiveLimit limit,
+                                HttpServletRequest request,
+                                HttpServletResponse response,
+                                long start,
+                                int inFlight) {
+        if (response.getStatus() >= 500)
+            limit.onDropped();
+        else if (request.getAttribute(UNTIMED) != null)
+            limit.onIgnored();
+        else
+            limit.onSample(System.nanoTime()-start, inFlight);
+    }
+
+    /**
+     * Releases an asynchronous request once it completes, which happens after a timeout or error as well
+     */
+    @RequiredArgsConstructor
+    private static class ReleaseListener implements AsyncListener {
+        private final AdaptiveLimit LIMIT;
+        private final HttpServletRequest REQUEST;
+        private final HttpServletResponse RESPONSE;
+        private final long START;
+        private final int IN_FLIGHT;
+        private volatile boolean failed;
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            if (failed)
+                LIMIT.onDropped();
+            else
+                release(LIMIT, REQUEST, RESPONSE, START, IN_FLIGHT);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            failed = true;
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            failed = true;
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.portfolijo.schedjoeler.limit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Holds the {@link AdaptiveLimit} of each route group of the api. A request belongs to the group named by the
+ * first segment of its path after {@code /api/}, such as {@code appointments}, if that group is configured, or to
+ * the {@code other} group otherwise. Separate groups keep requests slowed down by one part of the database from
+ * taking the capacity of the rest. The groups are created on startup, so unknown paths cannot create more
+ */
+@Component
+public class ConcurrencyLimiter {
+    public static final String OTHER_GROUP = "other";
+
+    private final Map<String, AdaptiveLimit> LIMITS;
+
+    public ConcurrencyLimiter(
+            @Value("${schedjoeler.limit.groups:appointments,recurrences,slots,users}") List<String> groups,
+            @Value("${schedjoeler.limit.initial-limit:20}") int initialLimit,
+            @Value("${schedjoeler.limit.min-limit:4}") int minLimit,
+            @Value("${schedjoeler.limit.max-limit:200}") int maxLimit,
+            @Value("${schedjoeler.limit.tolerance:2.0}") double tolerance,
+            @Value("${schedjoeler.limit.backoff:0.9}") double backoff,
+            @Value("${schedjoeler.limit.smoothing:0.05}") double smoothing) {
+        LIMITS = Stream
+                .concat(groups.stream(), Stream.of(OTHER_GROUP))
+                .distinct()
+                .collect(Collectors.toUnmodifiableMap(Function.identity(), name -> new AdaptiveLimit(
+                        name, initialLimit, minLimit, maxLimit, tolerance, backoff, smoothing)));
+    }
+
+    /**
+     * Finds the limit of the route group the given request path belongs to
+     *
+     * @param path A request path, relative to the context path
+     * @return A limit
+     */
+    public AdaptiveLimit find(String path) {
+        return LIMITS.getOrDefault(Routes.groupOf(path), LIMITS.get(OTHER_GROUP));
+    }
+
+    /**
+     * Finds the limits of all route groups
+     *
+     * @return A list of limits, ordered by group name
+     */
+    public List<AdaptiveLimit> findAll() {
+        return LIMITS
+                .values()
+                .stream()
+                .sorted(Comparator.comparing(AdaptiveLimit::getName))
+                .toList();
+    }
+}
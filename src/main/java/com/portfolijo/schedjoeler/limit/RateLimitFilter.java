@@ -0,0 +1,53 @@
+package com.portfolijo.schedjoeler.limit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects requests of a user beyond the rate allowed for their route group by {@link RateLimiter} with
+ * 429 TOO MANY REQUESTS and a Retry-After header. Runs after authentication, since rates are kept per user, and
+ * lets unauthenticated requests pass to be rejected by authorization
+ */
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter {
+    private final RateLimiter LIMITER;
+    private final ObjectMapper MAPPER;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (authentication == null || !authentication.isAuthenticated()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String group = Routes.groupOf(request);
+        long wait = LIMITER.tryAcquire(authentication.getName(), group);
+
+        if (wait > 0) {
+            Routes.reject(
+                    response,
+                    HttpStatus.TOO_MANY_REQUESTS,
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait+999_999_999)),
+                    "Too many "+group+" requests, retry later.",
+                    MAPPER);
+            return;
+        }
+
+        chain.doFilter(request, response);
+    }
+}
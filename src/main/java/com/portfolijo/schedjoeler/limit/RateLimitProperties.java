@@ -0,0 +1,55 @@
+package com.portfolijo.schedjoeler.limit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configures the request rates each user is allowed, bound from the {@code schedjoeler.rate-limit} properties
+ */
+@Data
+@Component
+@ConfigurationProperties("schedjoeler.rate-limit")
+public class RateLimitProperties {
+    private boolean enabled = true;
+
+    /**
+     * The rate of every route group without a rate of its own
+     */
+    private Rate defaults = new Rate();
+
+    /**
+     * The rates of route groups, such as {@code appointments}, by group name
+     */
+    private Map<String, Rate> routes = new HashMap<>();
+
+    /**
+     * The maximum number of buckets held for each route group. When exceeded, the least recently or frequently
+     * used buckets are evicted, which lets their users start over with a full bucket
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * The time after which the bucket of a user without requests is evicted. A bucket refills completely within
+     * its burst divided by its rate, so an idle time at least that long evicts only full buckets
+     */
+    private Duration idleTimeout = Duration.ofMinutes(1);
+
+    /**
+     * A sustained request rate and the burst allowed on top of it
+     */
+    @Data
+    public static class Rate {
+        private double perSecond = 20;
+
+        /**
+         * The number of requests that can be made at once by a user who has not made any for a while, the size
+         * of the bucket
+         */
+        private int burst = 40;
+    }
+}
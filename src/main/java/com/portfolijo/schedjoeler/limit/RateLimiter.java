@@ -0,0 +1,109 @@
+package com.portfolijo.schedjoeler.limit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Limits the rate of requests of each user to each route group with token buckets. A bucket is stored as a single
+ * {@link AtomicLong}, a point in time from which tokens have accrued at the sustained rate: the bucket holds one
+ * token for each interval between that time and now, up to its burst. A request takes a token by moving the time
+ * forward by one interval, with one compare-and-set, and is rejected if that would move it past now. Tokens are
+ * never added by a timer, so an idle bucket costs nothing until its next request.
+ * <p>
+ * The buckets of each route group are held in a bounded Caffeine cache, a concurrent hash map whose reads do not
+ * lock. Buckets idle for longer than the idle timeout are evicted, and new ones start out full
+ */
+@Component
+public class RateLimiter {
+    private final boolean ENABLED;
+    private final Map<String, Buckets> ROUTES;
+    private final Buckets DEFAULTS;
+
+    public RateLimiter(RateLimitProperties properties) {
+        ENABLED = properties.isEnabled();
+        ROUTES = properties
+                .getRoutes()
+                .entrySet()
+                .stream()
+                .collect(Collectors.toUnmodifiableMap(
+                        Map.Entry::getKey,
+                        route -> new Buckets(route.getValue(), properties)));
+        DEFAULTS = new Buckets(properties.getDefaults(), properties);
+    }
+
+    /**
+     * Takes a token from the bucket of the given user and route group
+     *
+     * @param principal The name of the user
+     * @param group The route group of the request, for which the default rate applies unless it has its own
+     * @return 0 if the request is admitted, or the nanoseconds until it would be
+     */
+    public long tryAcquire(String principal, String group) {
+        if (!ENABLED)
+            return 0;
+
+        return ROUTES.getOrDefault(group, DEFAULTS).tryAcquire(principal, System.nanoTime());
+    }
+
+    /**
+     * Estimates the number of buckets held, including those expired but not yet evicted
+     *
+     * @return A number of buckets
+     */
+    public long estimatedSize() {
+        return DEFAULTS.CACHE.estimatedSize()
+                + ROUTES.values().stream().mapToLong(buckets -> buckets.CACHE.estimatedSize()).sum();
+    }
+
+    /**
+     * The buckets of all users at one rate
+     */
+    static class Buckets {
+        private final long INTERVAL;
+        private final long CAPACITY;
+        private final Cache<String, AtomicLong> CACHE;
+        private final Function<String, AtomicLong> CREATE;
+
+        Buckets(RateLimitProperties.Rate rate, RateLimitProperties properties) {
+            INTERVAL = Math.round(1_000_000_000 / rate.getPerSecond());
+            CAPACITY = INTERVAL*rate.getBurst();
+            CACHE = Caffeine
+                    .newBuilder()
+                    .maximumSize(properties.getMaximumSize())
+                    .expireAfterAccess(properties.getIdleTimeout())
+                    .build();
+            // a new bucket is full, its tokens having accrued since long before its capacity
+            CREATE = principal -> new AtomicLong(Long.MIN_VALUE);
+        }
+
+        /**
+         * Takes a token from the bucket of the given user
+         *
+         * @param principal The name of the user
+         * @param now The current value of {@link System#nanoTime()}
+         * @return 0 if the request is admitted, or the nanoseconds until it would be
+         */
+        long tryAcquire(String principal, long now) {
+            AtomicLong bucket = CACHE.get(principal, CREATE);
+
+            while (true) {
+                long accrued = bucket.get();
+                // tokens accrued before a burst of intervals ago overflow the bucket
+                long next = Math.max(accrued, now-CAPACITY)+INTERVAL;
+                long wait = next-now;
+
+                if (wait > 0)
+                    return wait;
+
+                if (bucket.compareAndSet(accrued, next))
+                    return 0;
+            }
+        }
+    }
+}
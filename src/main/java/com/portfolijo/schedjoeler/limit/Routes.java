@@ -0,0 +1,67 @@
+package com.portfolijo.schedjoeler.limit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.portfolijo.schedjoeler.controller.Response;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+
+/**
+ * Groups api requests by route for the limit filters, and writes the responses to the requests they reject
+ */
+final class Routes {
+    private static final String PREFIX = "/api/";
+
+    private Routes() {
+    }
+
+    /**
+     * Finds the route group of the given request, the first segment of its path after {@code /api/}. The group
+     * is taken from the request as sent, so callers must only look it up among groups they know
+     *
+     * @param request A request
+     * @return A route group, such as {@code appointments}, or an empty string outside the api
+     */
+    static String groupOf(HttpServletRequest request) {
+        return groupOf(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    /**
+     * Finds the route group of the given request path
+     *
+     * @param path A request path, relative to the context path
+     * @return A route group, or an empty string outside the api
+     */
+    static String groupOf(String path) {
+        if (!path.startsWith(PREFIX))
+            return "";
+
+        int end = path.indexOf('/', PREFIX.length());
+        return path.substring(PREFIX.length(), end < 0 ? path.length() : end);
+    }
+
+    /**
+     * Writes the response to a rejected request
+     *
+     * @param response A response
+     * @param status The rejection status
+     * @param retryAfterSeconds The seconds the client is asked to wait before retrying
+     * @param message An error message
+     * @param mapper The mapper writing the body
+     * @throws IOException If the response cannot be written
+     */
+    static void reject(HttpServletResponse response,
+                       HttpStatus status,
+                       long retryAfterSeconds,
+                       String message,
+                       ObjectMapper mapper) throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        mapper.writeValue(response.getOutputStream(), Response.builder().message(message).build());
+    }
+}
@@ -0,0 +1,142 @@
+package com.portfolijo.schedjoeler.pagination;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.projection.AppointmentView;
+import jakarta.validation.ValidationException;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Represents a position within a list of appointments ordered by date/time and id, followed at each date/time by
+ * the occurrences of recurrences that are not stored, ordered by recurrence uuid. A cursor is handed to the
+ * client as an opaque continuation token
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class AppointmentCursor {
+    private static final String SEPARATOR = "|";
+
+    @NonNull
+    private final LocalDateTime dateTime;
+
+    /**
+     * The id of the appointment, or null if the cursor is positioned at an occurrence that is not stored
+     */
+    private final Long id;
+
+    /**
+     * The uuid of the recurrence of the occurrence the cursor is positioned at, or null if it is positioned at a
+     * stored appointment
+     */
+    private final UUID recurrence;
+
+    /**
+     * Creates a cursor positioned at a stored appointment
+     *
+     * @param dateTime The appointment date/time
+     * @param id The appointment id
+     */
+    public AppointmentCursor(@NonNull LocalDateTime dateTime, @NonNull Long id) {
+        this(dateTime, id, null);
+    }
+
+    /**
+     * Creates a cursor positioned at an occurrence of a recurrence that is not stored
+     *
+     * @param dateTime The occurrence date/time
+     * @param recurrence The recurrence uuid
+     * @return A cursor
+     */
+    public static AppointmentCursor ofOccurrence(@NonNull LocalDateTime dateTime, @NonNull UUID recurrence) {
+        return new AppointmentCursor(dateTime, null, recurrence);
+    }
+
+    /**
+     * Creates a cursor positioned at the given appointment
+     *
+     * @param appointment A persisted appointment, or an occurrence expanded from a recurrence
+     * @return A cursor
+     */
+    public static AppointmentCursor of(Appointment appointment) {
+        return appointment.getId() != null
+                ? new AppointmentCursor(appointment.getDateTime(), appointment.getId())
+                : ofOccurrence(appointment.getDateTime(), appointment.getRecurrence().getUuid());
+    }
+
+    /**
+     * Creates a cursor positioned at the appointment of the given view
+     *
+     * @param view The view of a persisted appointment, or of an occurrence expanded from a recurrence
+     * @return A cursor
+     */
+    public static AppointmentCursor of(AppointmentView view) {
+        return view.getId() != null
+                ? new AppointmentCursor(view.getDateTime(), view.getId())
+                : ofOccurrence(view.getDateTime(), view.getRecurrence());
+    }
+
+    /**
+     * Checks if this cursor is positioned at an occurrence that is not stored
+     *
+     * @return True if the cursor is positioned at an occurrence, or false otherwise
+     */
+    public boolean isOccurrence() {
+        return id == null;
+    }
+
+    /**
+     * Encodes this cursor as an opaque continuation token
+     *
+     * @return A continuation token
+     */
+    public String encode() {
+        // a uuid never parses as an id, so the position needs no further marker
+        String raw = dateTime+SEPARATOR+(id != null ? id : recurrence);
+        return Base64
+                .getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes the given continuation token
+     *
+     * @param token A continuation token, can be null
+     * @return A cursor, or null if the token is null
+     * @throws ValidationException If the token is malformed
+     */
+    public static AppointmentCursor decode(String token) throws ValidationException {
+        if (token == null)
+            return null;
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int i = raw.lastIndexOf(SEPARATOR);
+
+            if (i < 0)
+                throw new ValidationException("Invalid cursor="+token+".");
+
+            LocalDateTime dateTime = LocalDateTime.parse(raw.substring(0, i));
+            String position = raw.substring(i+1);
+
+            return position.indexOf('-') > 0
+                    ? ofOccurrence(dateTime, UUID.fromString(position))
+                    : new AppointmentCursor(dateTime, Long.valueOf(position));
+
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ValidationException("Invalid cursor="+token+".");
+        }
+    }
+}
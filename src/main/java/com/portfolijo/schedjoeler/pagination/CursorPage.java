@@ -0,0 +1,36 @@
+package com.portfolijo.schedjoeler.pagination;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Represents one page of a keyset (cursor) paginated result
+ */
+@Getter
+@RequiredArgsConstructor
+public class CursorPage<T> {
+    private final List<T> content;
+
+    /**
+     * The continuation token of the following page, or null if this is the last page
+     */
+    private final String nextCursor;
+
+    /**
+     * Creates a page with the same continuation token, with each element converted by the given function
+     *
+     * @param mapper A conversion function
+     * @return A page
+     * @param <U> The type of the converted elements
+     */
+    public <U> CursorPage<U> map(Function<? super T, ? extends U> mapper) {
+        List<U> mapped = content
+                .stream()
+                .<U>map(mapper)
+                .toList();
+        return new CursorPage<>(mapped, nextCursor);
+    }
+}
@@ -0,0 +1,76 @@
+package com.portfolijo.schedjoeler.projection;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Represents the readable fields of an {@link Appointment} and its provider and client, selected as scalar
+ * columns rather than loaded as managed entities. Views are never tracked by the persistence context, so reading
+ * them costs no entity snapshots or flush checks
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@Builder
+public class AppointmentView {
+
+    /**
+     * The appointment id, or null for an occurrence of a recurrence that is not stored
+     */
+    private final Long id;
+
+    @NonNull
+    private final UUID uuid;
+
+    @NonNull
+    private final LocalDateTime dateTime;
+
+    private final LocalDateTime endDateTime;
+
+    @NonNull
+    private final UserView provider;
+
+    @NonNull
+    private final UserView client;
+
+    @NonNull
+    private final Appointment.Status status;
+
+    private final String location;
+
+    private final String description;
+
+    private final UUID recurrence;
+
+    private final LocalDateTime recurrenceDateTime;
+
+    /**
+     * Creates a view of the given appointment
+     *
+     * @param appointment An appointment
+     * @return An appointment view
+     */
+    public static AppointmentView of(Appointment appointment) {
+        return AppointmentView
+                .builder()
+                .id(appointment.getId())
+                .uuid(appointment.getUuid())
+                .dateTime(appointment.getDateTime())
+                .endDateTime(appointment.getEndDateTime())
+                .provider(UserView.of(appointment.getProvider()))
+                .client(UserView.of(appointment.getClient()))
+                .status(appointment.getStatus())
+                .location(appointment.getLocation())
+                .description(appointment.getDescription())
+                .recurrence(appointment.getRecurrence() != null ? appointment.getRecurrence().getUuid() : null)
+                .recurrenceDateTime(appointment.getRecurrenceDateTime())
+                .build();
+    }
+}
@@ -0,0 +1,50 @@
+package com.portfolijo.schedjoeler.projection;
+
+import com.portfolijo.schedjoeler.domain.User;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.UUID;
+
+/**
+ * Represents the readable fields of a {@link User}, selected as scalar columns rather than loaded as a managed
+ * entity
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@Builder
+public class UserView {
+    @NonNull
+    private final UUID uuid;
+
+    @NonNull
+    private final String firstName;
+
+    @NonNull
+    private final String lastName;
+
+    private final String email;
+
+    private final String phone;
+
+    /**
+     * Creates a view of the given user
+     *
+     * @param user A user
+     * @return A user view
+     */
+    public static UserView of(User user) {
+        return UserView
+                .builder()
+                .uuid(user.getUuid())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .email(user.getEmail())
+                .phone(user.getPhone())
+                .build();
+    }
+}
@@ -0,0 +1,121 @@
+package com.portfolijo.schedjoeler.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Represents the state of a set of rows as aggregated by the database, without reading the rows themselves.
+ * Inserting a row raises the latest modification date/time, updating one raises the sum of the versions and
+ * deleting one lowers the count, so any change to the set changes its watermark. The watermark of a single row
+ * also carries the version of the row itself, which conditional updates of the row are checked against
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@AllArgsConstructor
+public class Watermark {
+    public static final Watermark EMPTY = new Watermark(0, 0, null);
+
+    /**
+     * The number of rows
+     */
+    private final long count;
+
+    /**
+     * The sum of the versions of the rows
+     */
+    private final long versions;
+
+    /**
+     * The latest date/time any of the rows was modified, or null if there are no rows
+     */
+    private final Instant lastModified;
+
+    /**
+     * The version of the row itself, or null unless the watermark is that of a single row
+     */
+    private final Long version;
+
+    /**
+     * Creates the watermark of a set of rows
+     *
+     * @param count The number of rows
+     * @param versions The sum of the versions of the rows
+     * @param lastModified The latest date/time any of the rows was modified, can be null if there are no rows
+     */
+    public Watermark(long count, long versions, Instant lastModified) {
+        this(count, versions, lastModified, null);
+    }
+
+    /**
+     * Creates the watermark of a single row
+     *
+     * @param version The row version
+     * @param lastModified The date/time the row was last modified
+     * @return A watermark
+     */
+    public static Watermark of(long version, Instant lastModified) {
+        return new Watermark(1, version, lastModified, version);
+    }
+
+    /**
+     * Reads the version of the row itself back from the entity tag of a single row created by {@link #getETag()},
+     * such as the If-Match header of a conditional update. The versions of the rows the row references are tagged
+     * as well, but are left out, so that changes to them do not fail updates of the row
+     *
+     * @param eTag A quoted entity tag
+     * @return The row version, or -1 for weak, foreign or multiple row entity tags, which match no version
+     */
+    public static long versionOf(String eTag) {
+        String[] parts = eTag.split("-");
+
+        if (parts.length != 4 || !parts[0].equals("\"1") || !parts[3].endsWith("\""))
+            return -1;
+
+        try {
+            return Long.parseLong(parts[3].substring(0, parts[3].length()-1), 36);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Combines this watermark with that of another, disjoint set of rows
+     *
+     * @param other A watermark
+     * @return The watermark of both sets of rows
+     */
+    public Watermark plus(Watermark other) {
+        Instant latest = lastModified == null
+                || (other.lastModified != null && other.lastModified.isAfter(lastModified))
+                ? other.lastModified
+                : lastModified;
+        return new Watermark(count+other.count, versions+other.versions, latest);
+    }
+
+    /**
+     * Creates the strong entity tag of the representation built from the rows, followed by the version of the
+     * row itself if the watermark is that of a single row
+     *
+     * @return A quoted entity tag
+     */
+    public String getETag() {
+        long modified = lastModified == null ? 0 : ChronoUnit.MICROS.between(Instant.EPOCH, lastModified);
+        String own = version == null ? "" : "-"+Long.toString(version, 36);
+        return "\""+Long.toString(count, 36)+"-"+Long.toString(versions, 36)+"-"+Long.toString(modified, 36)+own+"\"";
+    }
+
+    /**
+     * Gets the latest modification date/time as an HTTP Last-Modified timestamp
+     *
+     * @return The milliseconds since the epoch, or -1 if there are no rows
+     */
+    public long getLastModifiedMillis() {
+        return lastModified == null ? -1 : lastModified.toEpochMilli();
+    }
+}
@@ -0,0 +1,39 @@
+package com.portfolijo.schedjoeler.recurrence;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Identifies one occurrence of a recurrence by the date/time the recurrence rule places it at, which stays the
+ * same when the occurrence is moved
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@RequiredArgsConstructor
+public class OccurrenceId {
+    @NonNull
+    private final Long recurrence;
+
+    @NonNull
+    private final LocalDateTime dateTime;
+
+    /**
+     * Derives the uuid of an occurrence, so that an occurrence keeps the same uuid whether it is expanded from
+     * its recurrence rule or stored as an exception
+     *
+     * @param recurrence A recurrence uuid
+     * @param dateTime The date/time the recurrence rule places the occurrence at
+     * @return An appointment uuid
+     */
+    public static UUID uuid(UUID recurrence, LocalDateTime dateTime) {
+        return UUID.nameUUIDFromBytes((recurrence+"/"+dateTime).getBytes(StandardCharsets.UTF_8));
+    }
+}
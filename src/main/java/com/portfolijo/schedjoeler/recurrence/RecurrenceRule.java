@@ -0,0 +1,353 @@
+package com.portfolijo.schedjoeler.recurrence;
+
+import jakarta.validation.ValidationException;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Represents a recurrence rule, supporting the subset of the iCalendar (RFC 5545) RRULE made up of the FREQ
+ * (DAILY, WEEKLY or MONTHLY), INTERVAL, BYDAY (weekly rules only), COUNT and UNTIL parts. Weeks start on Monday,
+ * and monthly occurrences on days a month does not have are skipped
+ */
+@Getter
+@EqualsAndHashCode
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class RecurrenceRule {
+    public static final int MAX_COUNT = 10_000;
+
+    /**
+     * The number of consecutive periods without an occurrence after which a monthly rule is considered exhausted
+     */
+    private static final int MAX_EMPTY_PERIODS = 48;
+    private static final DateTimeFormatter UNTIL_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final DateTimeFormatter UNTIL_DATE_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final Map<String, DayOfWeek> DAYS = Map.of(
+            "MO", DayOfWeek.MONDAY,
+            "TU", DayOfWeek.TUESDAY,
+            "WE", DayOfWeek.WEDNESDAY,
+            "TH", DayOfWeek.THURSDAY,
+            "FR", DayOfWeek.FRIDAY,
+            "SA", DayOfWeek.SATURDAY,
+            "SU", DayOfWeek.SUNDAY);
+
+    public enum Frequency {
+        DAILY,
+        WEEKLY,
+        MONTHLY
+    }
+
+    private final Frequency frequency;
+    private final int interval;
+
+    /**
+     * The days of the week a weekly rule occurs on, or an empty set to occur on the day of its first occurrence
+     */
+    private final Set<DayOfWeek> byDay;
+
+    /**
+     * The number of occurrences, or null if the rule is not limited by count
+     */
+    private final Integer count;
+
+    /**
+     * The latest date/time an occurrence can start (inclusive), or null if the rule is not limited by date/time
+     */
+    private final LocalDateTime until;
+
+    /**
+     * Parses the given recurrence rule, with or without an {@code RRULE:} prefix. An UNTIL date without a time
+     * includes the whole day, and an UNTIL date/time is read as local time
+     *
+     * @param rule A recurrence rule such as {@code FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,TH;COUNT=10}
+     * @return A recurrence rule
+     * @throws ValidationException If the rule is malformed or uses an unsupported part
+     */
+    public static RecurrenceRule parse(String rule) throws ValidationException {
+        if (rule == null || rule.isBlank())
+            throw new ValidationException("Recurrence rule must not be blank.");
+
+        String body = rule.strip();
+
+        if (body.regionMatches(true, 0, "RRULE:", 0, 6))
+            body = body.substring(6);
+
+        Frequency frequency = null;
+        int interval = 1;
+        Set<DayOfWeek> byDay = EnumSet.noneOf(DayOfWeek.class);
+        Integer count = null;
+        LocalDateTime until = null;
+
+        try {
+            for (String part : body.split(";")) {
+                String[] pair = part.split("=", 2);
+
+                if (pair.length != 2)
+                    throw new ValidationException("Malformed recurrence rule part "+part+".");
+
+                String value = pair[1].toUpperCase();
+
+                switch (pair[0].toUpperCase()) {
+                    case "FREQ" -> frequency = Frequency.valueOf(value);
+                    case "INTERVAL" -> interval = Integer.parseInt(value);
+                    case "COUNT" -> count = Integer.parseInt(value);
+                    case "UNTIL" -> until = parseUntil(value);
+                    case "BYDAY" -> {
+                        for (String day : value.split(",")) {
+                            if (!DAYS.containsKey(day))
+                                throw new ValidationException("Unsupported recurrence rule day "+day+".");
+                            byDay.add(DAYS.get(day));
+                        }
+                    }
+                    default -> throw new ValidationException("Unsupported recurrence rule part "+pair[0]+".");
+                }
+            }
+
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ValidationException("Malformed recurrence rule "+rule+".");
+        }
+
+        if (frequency == null)
+            throw new ValidationException("Recurrence rule must have a FREQ part.");
+
+        if (interval < 1)
+            throw new ValidationException("Recurrence rule INTERVAL must be positive.");
+
+        if (count != null && (count < 1 || count > MAX_COUNT))
+            throw new ValidationException("Recurrence rule COUNT must be between 1 and "+MAX_COUNT+".");
+
+        if (count != null && until != null)
+            throw new ValidationException("Recurrence rule must not have both COUNT and UNTIL parts.");
+
+        if (!byDay.isEmpty() && frequency != Frequency.WEEKLY)
+            throw new ValidationException("Recurrence rule BYDAY part is only supported for weekly rules.");
+
+        return new RecurrenceRule(frequency, interval, Collections.unmodifiableSet(byDay), count, until);
+    }
+
+    private static LocalDateTime parseUntil(String value) {
+        if (value.endsWith("Z"))
+            value = value.substring(0, value.length()-1);
+
+        return value.contains("T")
+                ? LocalDateTime.parse(value, UNTIL_FORMAT)
+                : LocalDate.parse(value, UNTIL_DATE_FORMAT).atTime(LocalTime.MAX).truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    /**
+     * Iterates over the occurrences of this rule, starting with the first occurrence at or after the given
+     * date/time. Occurrences are computed as they are iterated, and periods before the given date/time are
+     * skipped arithmetically where possible, so the cost does not depend on how long the rule has been running
+     *
+     * @param start The first occurrence of the rule (DTSTART)
+     * @param from The earliest occurrence to return (inclusive), or null to start from the first occurrence
+     * @return An iterator of occurrence date/times in ascending order, which does not end unless the rule has a
+     * COUNT or UNTIL part
+     */
+    public Iterator<LocalDateTime> occurrences(LocalDateTime start, LocalDateTime from) {
+        return new Occurrences(start, from == null || from.isBefore(start) ? start : from);
+    }
+
+    /**
+     * Checks if the given date/time is an occurrence of this rule
+     *
+     * @param start The first occurrence of the rule (DTSTART)
+     * @param dateTime A date/time
+     * @return True if the rule occurs at the given date/time, or false otherwise
+     */
+    public boolean occursAt(LocalDateTime start, LocalDateTime dateTime) {
+        Iterator<LocalDateTime> occurrences = occurrences(start, dateTime);
+        return occurrences.hasNext() && occurrences.next().equals(dateTime);
+    }
+
+    /**
+     * Finds the latest date/time an occurrence of this rule can start
+     *
+     * @param start The first occurrence of the rule (DTSTART)
+     * @return The last occurrence if the rule has a COUNT part, its UNTIL date/time if it has an UNTIL part, or
+     * null if the rule does not end
+     */
+    public LocalDateTime lastDateTime(LocalDateTime start) {
+        if (count == null)
+            return until;
+
+        LocalDateTime last = start;
+        Iterator<LocalDateTime> occurrences = occurrences(start, null);
+
+        while (occurrences.hasNext())
+            last = occurrences.next();
+
+        return last;
+    }
+
+    /**
+     * Formats this rule as an RRULE value without a prefix
+     *
+     * @return A recurrence rule
+     */
+    @Override
+    public String toString() {
+        StringBuilder rule = new StringBuilder("FREQ=").append(frequency);
+
+        if (interval != 1)
+            rule.append(";INTERVAL=").append(interval);
+
+        if (!byDay.isEmpty())
+            rule.append(";BYDAY=").append(byDay
+                    .stream()
+                    .sorted()
+                    .map(day -> day.name().substring(0, 2))
+                    .collect(Collectors.joining(",")));
+
+        if (count != null)
+            rule.append(";COUNT=").append(count);
+
+        if (until != null)
+            rule.append(";UNTIL=").append(UNTIL_FORMAT.format(until));
+
+        return rule.toString();
+    }
+
+    /**
+     * Iterates over the occurrences of a rule one period (day, week or month) at a time
+     */
+    private class Occurrences implements Iterator<LocalDateTime> {
+        private final LocalDateTime start;
+        private final LocalDateTime from;
+        private final DayOfWeek[] days;
+        private final Deque<LocalDateTime> pending = new ArrayDeque<>();
+        private long period;
+        private int emitted;
+        private boolean exhausted;
+
+        private Occurrences(LocalDateTime start, LocalDateTime from) {
+            this.start = start;
+            this.from = from;
+            this.days = byDay.isEmpty()
+                    ? new DayOfWeek[] {start.getDayOfWeek()}
+                    : byDay.stream().sorted().toArray(DayOfWeek[]::new);
+            skipTo(from);
+        }
+
+        /**
+         * Jumps to the period before the one containing the given date/time, counting the skipped occurrences
+         */
+        private void skipTo(LocalDateTime dateTime) {
+            long elapsed = switch (frequency) {
+                case DAILY -> ChronoUnit.DAYS.between(start.toLocalDate(), dateTime.toLocalDate());
+                case WEEKLY -> ChronoUnit.WEEKS.between(weekOf(start).toLocalDate(), dateTime.toLocalDate());
+                // months without the day of the first occurrence are skipped, so they cannot be counted
+                case MONTHLY -> start.getDayOfMonth() > 28 ? 0 : ChronoUnit.MONTHS.between(start, dateTime);
+            };
+            period = Math.max(0, elapsed/interval-1);
+
+            if (period == 0)
+                return;
+
+            emitted = switch (frequency) {
+                case DAILY, MONTHLY -> (int) Math.min(period, Integer.MAX_VALUE);
+                case WEEKLY -> (int) Math.min(Integer.MAX_VALUE,
+                        Arrays.stream(days).filter(day -> day.compareTo(start.getDayOfWeek()) >= 0).count()
+                                +(period-1)*days.length);
+            };
+        }
+
+        private LocalDateTime weekOf(LocalDateTime dateTime) {
+            return dateTime.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+
+        /**
+         * Fills the pending queue with the occurrences of the next period that has any, unless the rule has ended
+         */
+        private void fill() {
+            int empty = 0;
+
+            while (pending.isEmpty() && !exhausted) {
+                long offset = period++*interval;
+
+                switch (frequency) {
+                    case DAILY -> pending.add(start.plusDays(offset));
+                    case WEEKLY -> {
+                        LocalDateTime week = weekOf(start).plusWeeks(offset);
+
+                        for (DayOfWeek day : days) {
+                            LocalDateTime dateTime = week.plusDays(day.getValue()-1);
+
+                            if (!dateTime.isBefore(start))
+                                pending.add(dateTime);
+                        }
+                    }
+                    case MONTHLY -> {
+                        LocalDateTime dateTime = start.plusMonths(offset);
+
+                        if (dateTime.getDayOfMonth() == start.getDayOfMonth())
+                            pending.add(dateTime);
+                        else if (++empty > MAX_EMPTY_PERIODS)
+                            exhausted = true;
+                    }
+                }
+
+                // occurrences before the requested date/time still count towards COUNT
+                while (!pending.isEmpty() && pending.peekFirst().isBefore(from)) {
+                    pending.removeFirst();
+
+                    if (count != null && ++emitted >= count)
+                        exhausted = true;
+                }
+
+                if (!pending.isEmpty() && until != null && pending.peekFirst().isAfter(until))
+                    exhausted = true;
+            }
+
+            if (exhausted)
+                pending.clear();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pending.isEmpty())
+                fill();
+
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public LocalDateTime next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            LocalDateTime next = pending.removeFirst();
+            emitted++;
+
+            if ((count != null && emitted >= count) || (until != null && !pending.isEmpty()
+                    && pending.peekFirst().isAfter(until)))
+                exhausted = true;
+
+            // occurrences already queued for this period remain valid until the limit is reached
+            if (exhausted)
+                pending.clear();
+
+            return next;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.portfolijo.schedjoeler.recurrence;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stores {@link RecurrenceRule}s as RRULE values
+ */
+@Converter
+public class RecurrenceRuleConverter implements AttributeConverter<RecurrenceRule, String> {
+
+    @Override
+    public String convertToDatabaseColumn(RecurrenceRule rule) {
+        return rule == null ? null : rule.toString();
+    }
+
+    @Override
+    public RecurrenceRule convertToEntityAttribute(String rule) {
+        return rule == null ? null : RecurrenceRule.parse(rule);
+    }
+}
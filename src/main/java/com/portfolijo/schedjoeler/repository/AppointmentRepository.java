@@ -1,12 +1,20 @@
 package com.portfolijo.schedjoeler.repository;
 
 import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.recurrence.OccurrenceId;
+import com.portfolijo.schedjoeler.schedule.Booking;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -15,15 +23,7 @@ import java.util.UUID;
  */
 @Repository
 public interface AppointmentRepository extends
-        JpaRepository<Appointment, Long>, JpaSpecificationExecutor<Appointment> {
-
-    /**
-     * Checks if the given uuid identifies an existing appointment
-     *
-     * @param uuid An appointment uuid
-     * @return True if the appointment exists, or false otherwise
-     */
-    boolean existsByUuid(UUID uuid);
+        JpaRepository<Appointment, Long>, JpaSpecificationExecutor<Appointment>, AppointmentRepositoryCustom {
 
     /**
      * Finds the identified appointment
@@ -31,22 +31,75 @@ public interface AppointmentRepository extends
      * @param uuid An appointment uuid
      * @return An appointment
      */
+    @EntityGraph(Appointment.WITH_USERS)
     Appointment findByUuid(UUID uuid);
 
     /**
-     * Finds all appointments matching the given specification
+     * Finds all appointments matching the given specification, fetching their provider and client in the same
+     * statement
      *
      * @param spec A specification for an appointment, can be null
      * @param sort A sorting method, must not be null
      * @return A list of appointments
      */
+    @EntityGraph(Appointment.WITH_USERS)
     List<Appointment> findAll(Specification<Appointment> spec, Sort sort);
 
     /**
-     * Deletes the identified appointment
+     * Finds the bookings of all appointments with one of the given statuses, without loading the appointments
+     *
+     * @param statuses A collection of appointment statuses
+     * @return A list of bookings
+     */
+    @Query("select new com.portfolijo.schedjoeler.schedule.Booking(a.uuid, a.provider.id, a.dateTime, a.endDateTime)"
+            +" from Appointment a where a.status in :statuses")
+    List<Booking> findBookingsByStatusIn(@Param("statuses") Collection<Appointment.Status> statuses);
+
+    /**
+     * Finds the occurrences of the given recurrences, within the given period, that are stored as exceptions
+     *
+     * @param recurrences A collection of recurrence ids
+     * @param from The start of a period (inclusive)
+     * @param to The end of a period (inclusive)
+     * @return A list of occurrence ids
+     */
+    @Query("select new com.portfolijo.schedjoeler.recurrence.OccurrenceId(a.recurrence.id, a.recurrenceDateTime)"
+            +" from Appointment a where a.recurrence.id in :recurrences"
+            +" and a.recurrenceDateTime >= :from and a.recurrenceDateTime <= :to")
+    List<OccurrenceId> findOccurrenceIds(@Param("recurrences") Collection<Long> recurrences,
+                                         @Param("from") LocalDateTime from,
+                                         @Param("to") LocalDateTime to);
+
+    /**
+     * Finds the uuids of the stored exceptions to the identified recurrence, comparing the recurrence id with a
+     * subquery on the recurrence uuid so that the recurrence is not loaded
+     *
+     * @param recurrence A recurrence uuid
+     * @return A list of appointment uuids
+     */
+    @Query("select a.uuid from Appointment a"
+            +" where a.recurrence.id = (select r.id from Recurrence r where r.uuid = :recurrence)")
+    List<UUID> findUuidsByRecurrenceUuid(@Param("recurrence") UUID recurrence);
+
+    /**
+     * Deletes the stored exceptions to the identified recurrence with a single statement, without loading the
+     * recurrence or the exceptions first
+     *
+     * @param recurrence A recurrence uuid
+     * @return The number of deleted records
+     */
+    @Modifying
+    @Query("delete from Appointment a"
+            +" where a.recurrence.id = (select r.id from Recurrence r where r.uuid = :recurrence)")
+    int deleteByRecurrenceUuid(@Param("recurrence") UUID recurrence);
+
+    /**
+     * Deletes the identified appointment with a single statement, without loading it first
      *
      * @param uuid An appointment uuid
      * @return The number of deleted records
      */
-    int deleteByUuid(UUID uuid);
+    @Modifying
+    @Query("delete from Appointment a where a.uuid = :uuid")
+    int deleteByUuid(@Param("uuid") UUID uuid);
 }
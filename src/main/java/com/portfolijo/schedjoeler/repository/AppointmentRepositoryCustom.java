@@ -0,0 +1,137 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.calendar.CalendarCount;
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.projection.AppointmentView;
+import com.portfolijo.schedjoeler.projection.Watermark;
+import com.portfolijo.schedjoeler.recurrence.OccurrenceId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Provides {@link Appointment} queries not covered by derived or specification queries
+ */
+public interface AppointmentRepositoryCustom {
+
+    /**
+     * Finds at most the given number of appointments matching the given specification, fetching their provider
+     * and client in the same statement. Unlike a paged specification query, no count query is issued
+     *
+     * @param spec A specification for an appointment, can be null
+     * @param sort A sorting method, must not be null
+     * @param limit The maximum number of appointments to return
+     * @return A list of appointments
+     */
+    List<Appointment> findAll(Specification<Appointment> spec, Sort sort, int limit);
+
+    /**
+     * Finds the views of all appointments matching the given specification, selecting their columns and those
+     * of their provider and client directly rather than loading managed entities
+     *
+     * @param spec A specification for an appointment, can be null
+     * @param sort A sorting method, must not be null
+     * @return A list of appointment views
+     */
+    List<AppointmentView> findViews(Specification<Appointment> spec, Sort sort);
+
+    /**
+     * Finds the views of at most the given number of appointments matching the given specification
+     *
+     * @param spec A specification for an appointment, can be null
+     * @param sort A sorting method, must not be null
+     * @param limit The maximum number of appointments to return
+     * @return A list of appointment views
+     * @see #findViews(Specification, Sort)
+     */
+    List<AppointmentView> findViews(Specification<Appointment> spec, Sort sort, int limit);
+
+    /**
+     * Streams all appointments matching the given specification, with their provider and client, from a
+     * database cursor. The stream must be consumed within a transaction and closed afterwards
+     *
+     * @param spec A specification for an appointment, can be null
+     * @param sort A sorting method, must not be null
+     * @param fetchSize The number of rows the JDBC driver fetches per round trip
+     * @return A stream of read-only appointments
+     */
+    Stream<Appointment> stream(Specification<Appointment> spec, Sort sort, int fetchSize);
+
+    /**
+     * Finds the uuids of all appointments matching the given specification, without loading the appointments
+     *
+     * @param spec A specification for an appointment, can be null
+     * @return A list of appointment uuids
+     */
+    List<UUID> findUuids(Specification<Appointment> spec);
+
+    /**
+     * Finds at most the given number of the occurrences of the given recurrences that are stored as exceptions,
+     * positioned after the given occurrence in date/time and recurrence id order, so that the exceptions of a
+     * long period can be read a batch at a time
+     *
+     * @param recurrences A collection of recurrence ids
+     * @param after The position of the last exception of the previous batch, or of a recurrence id smaller than
+     *              any other to start the first batch at its date/time
+     * @param to A maximum bounding date/time (inclusive)
+     * @param limit The maximum number of exceptions to return
+     * @return A list of occurrence ids, ordered by date/time and recurrence id
+     */
+    List<OccurrenceId> findOccurrenceIds(Collection<Long> recurrences,
+                                         OccurrenceId after,
+                                         LocalDateTime to,
+                                         int limit);
+
+    /**
+     * Counts the appointments matching the given specification per day and status with a single grouped query,
+     * without loading the appointments
+     *
+     * @param spec A specification for an appointment, can be null
+     * @return A list of counts, ordered by day and status
+     */
+    List<CalendarCount> countByDayAndStatus(Specification<Appointment> spec);
+
+    /**
+     * Finds the watermark of all appointments matching the given specification and of their providers and
+     * clients, with a single aggregate query that loads no appointments
+     *
+     * @param spec A specification for an appointment, can be null
+     * @return A watermark
+     */
+    Watermark findWatermark(Specification<Appointment> spec);
+
+    /**
+     * Sets the status of all appointments matching the given specification with a single update statement.
+     * No appointments are loaded, so the specification must not use its query parameter. The version and update
+     * date/time of each appointment are set as an update of the loaded entity would set them
+     *
+     * @param spec A specification for an appointment, can be null
+     * @param status An appointment status
+     * @return The number of updated appointments
+     */
+    int updateStatus(Specification<Appointment> spec, Appointment.Status status);
+
+    /**
+     * Sets the given attributes of the identified appointment with a single update statement, without loading
+     * it. If a version is given, the appointment is only updated if it still has that version, which the
+     * statement compares as it updates. The version and update date/time are set as by
+     * {@link #updateStatus(Specification, Appointment.Status)}
+     *
+     * @param uuid An appointment uuid
+     * @param version An appointment version, or null to update the appointment regardless of its version
+     * @param changes A map of values by appointment attribute name
+     * @return The number of updated appointments
+     */
+    int update(UUID uuid, Long version, Map<String, Object> changes);
+
+    /**
+     * Detaches all managed entities from the persistence context, allowing them to be garbage collected
+     */
+    void clear();
+}
@@ -0,0 +1,311 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.calendar.CalendarCount;
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.Recurrence;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.projection.AppointmentView;
+import com.portfolijo.schedjoeler.projection.UserView;
+import com.portfolijo.schedjoeler.projection.Watermark;
+import com.portfolijo.schedjoeler.recurrence.OccurrenceId;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Implements {@link AppointmentRepositoryCustom} using the criteria API
+ */
+public class AppointmentRepositoryCustomImpl implements AppointmentRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public List<Appointment> findAll(Specification<Appointment> spec, Sort sort, int limit) {
+        return em
+                .createQuery(query(spec, sort))
+                .setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, em.getEntityGraph(Appointment.WITH_USERS))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<AppointmentView> findViews(Specification<Appointment> spec, Sort sort) {
+        return em
+                .createQuery(viewQuery(spec, sort))
+                .getResultList()
+                .stream()
+                .map(AppointmentRepositoryCustomImpl::toView)
+                .toList();
+    }
+
+    @Override
+    public List<AppointmentView> findViews(Specification<Appointment> spec, Sort sort, int limit) {
+        return em
+                .createQuery(viewQuery(spec, sort))
+                .setMaxResults(limit)
+                .getResultList()
+                .stream()
+                .map(AppointmentRepositoryCustomImpl::toView)
+                .toList();
+    }
+
+    @Override
+    public Stream<Appointment> stream(Specification<Appointment> spec, Sort sort, int fetchSize) {
+        return em
+                .createQuery(query(spec, sort))
+                .setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, em.getEntityGraph(Appointment.WITH_USERS))
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    @Override
+    public List<UUID> findUuids(Specification<Appointment> spec) {
+        CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+        CriteriaQuery<UUID> query = criteriaBuilder.createQuery(UUID.class);
+        Root<Appointment> root = query.from(Appointment.class);
+        where(spec, root, query, criteriaBuilder).ifPresent(query::where);
+        return em
+                .createQuery(query.select(root.get(Appointment.Fields.uuid)))
+                .getResultList();
+    }
+
+    @Override
+    public List<OccurrenceId> findOccurrenceIds(Collection<Long> recurrences,
+                                                OccurrenceId after,
+                                                LocalDateTime to,
+                                                int limit) {
+        CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+        CriteriaQuery<OccurrenceId> query = criteriaBuilder.createQuery(OccurrenceId.class);
+        Root<Appointment> root = query.from(Appointment.class);
+        Path<Long> recurrence = root.get(Appointment.Fields.recurrence).get(Recurrence.Fields.id);
+        Path<LocalDateTime> dateTime = root.get(Appointment.Fields.recurrenceDateTime);
+        return em
+                .createQuery(query
+                        .select(criteriaBuilder.construct(OccurrenceId.class, recurrence, dateTime))
+                        .where(
+                                recurrence.in(recurrences),
+                                criteriaBuilder.or(
+                                        criteriaBuilder.greaterThan(dateTime, after.getDateTime()),
+                                        criteriaBuilder.and(
+                                                criteriaBuilder.equal(dateTime, after.getDateTime()),
+                                                criteriaBuilder.greaterThan(recurrence, after.getRecurrence()))),
+                                criteriaBuilder.lessThanOrEqualTo(dateTime, to))
+                        .orderBy(criteriaBuilder.asc(dateTime), criteriaBuilder.asc(recurrence)))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<CalendarCount> countByDayAndStatus(Specification<Appointment> spec) {
+        CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+        CriteriaQuery<CalendarCount> query = criteriaBuilder.createQuery(CalendarCount.class);
+        Root<Appointment> root = query.from(Appointment.class);
+        Expression<LocalDate> day = root.get(Appointment.Fields.dateTime).as(LocalDate.class);
+        Path<Appointment.Status> status = root.get(Appointment.Fields.status);
+        where(spec, root, query, criteriaBuilder).ifPresent(query::where);
+        return em
+                .createQuery(query
+                        .select(criteriaBuilder.construct(CalendarCount.class, day, status, criteriaBuilder.count(root)))
+                        .groupBy(day, status)
+                        .orderBy(criteriaBuilder.asc(day), criteriaBuilder.asc(status)))
+                .getResultList();
+    }
+
+    @Override
+    public Watermark findWatermark(Specification<Appointment> spec) {
+        return Watermarks.find(em, Appointment.class, spec);
+    }
+
+    @Override
+    public int updateStatus(Specification<Appointment> spec, Appointment.Status status) {
+        CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+        CriteriaUpdate<Appointment> update = criteriaBuilder.createCriteriaUpdate(Appointment.class);
+        Root<Appointment> root = update.from(Appointment.class);
+        where(spec, root, null, criteriaBuilder).ifPresent(update::where);
+        return em
+                .createQuery(touch(update.set(root.get(Appointment.Fields.status), status), root, criteriaBuilder))
+                .executeUpdate();
+    }
+
+    @Override
+    public int update(UUID uuid, Long version, Map<String, Object> changes) {
+        CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+        CriteriaUpdate<Appointment> update = criteriaBuilder.createCriteriaUpdate(Appointment.class);
+        Root<Appointment> root = update.from(Appointment.class);
+        Predicate where = criteriaBuilder.equal(root.get(Appointment.Fields.uuid), uuid);
+
+        if (version != null)
+            where = criteriaBuilder.and(where, criteriaBuilder.equal(root.get(Appointment.Fields.version), version));
+
+        changes.forEach(update::set);
+        return em
+                .createQuery(touch(update.where(where), root, criteriaBuilder))
+                .executeUpdate();
+    }
+
+    @Override
+    public void clear() {
+        em.clear();
+    }
+
+    /**
+     * Creates a query for all appointments matching the given specification
+     *
+     * @param spec A specification for an appointment, can be null
+     * @param sort A sorting method, must not be null
+     * @return A criteria query
+     */
+    private CriteriaQuery<Appointment> query(Specification<Appointment> spec, Sort sort) {
+        CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+        CriteriaQuery<Appointment> query = criteriaBuilder.createQuery(Appointment.class);
+        Root<Appointment> root = query.from(Appointment.class);
+        where(spec, root, query, criteriaBuilder).ifPresent(query::where);
+        return query
+                .select(root)
+                .orderBy(QueryUtils.toOrders(sort, root, criteriaBuilder));
+    }
+
+    /**
+     * Creates a query selecting the columns of all appointments matching the given specification, along with
+     * those of their provider, client and recurrence, in the order read by {@link #toView(Tuple)}
+     *
+     * @param spec A specification for an appointment, can be null
+     * @param sort A sorting method, must not be null
+     * @return A criteria query
+     */
+    private CriteriaQuery<Tuple> viewQuery(Specification<Appointment> spec, Sort sort) {
+        CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<Appointment> root = query.from(Appointment.class);
+        Join<Appointment, User> provider = root.join(Appointment.Fields.provider);
+        Join<Appointment, User> client = root.join(Appointment.Fields.client);
+        Join<Appointment, Recurrence> recurrence = root.join(Appointment.Fields.recurrence, JoinType.LEFT);
+        where(spec, root, query, criteriaBuilder).ifPresent(query::where);
+        return query
+                .multiselect(
+                        root.get(Appointment.Fields.id),
+                        root.get(Appointment.Fields.uuid),
+                        root.get(Appointment.Fields.dateTime),
+                        root.get(Appointment.Fields.endDateTime),
+                        root.get(Appointment.Fields.status),
+                        root.get(Appointment.Fields.location),
+                        root.get(Appointment.Fields.description),
+                        recurrence.get(Recurrence.Fields.uuid),
+                        root.get(Appointment.Fields.recurrenceDateTime),
+                        provider.get(User.Fields.uuid),
+                        provider.get(User.Fields.firstName),
+                        provider.get(User.Fields.lastName),
+                        provider.get(User.Fields.email),
+                        provider.get(User.Fields.phone),
+                        client.get(User.Fields.uuid),
+                        client.get(User.Fields.firstName),
+                        client.get(User.Fields.lastName),
+                        client.get(User.Fields.email),
+                        client.get(User.Fields.phone))
+                .orderBy(QueryUtils.toOrders(sort, root, criteriaBuilder));
+    }
+
+    /**
+     * Creates an appointment view from a row of a {@link #viewQuery(Specification, Sort)}
+     *
+     * @param row A tuple
+     * @return An appointment view
+     */
+    private static AppointmentView toView(Tuple row) {
+        return AppointmentView
+                .builder()
+                .id(row.get(0, Long.class))
+                .uuid(row.get(1, UUID.class))
+                .dateTime(row.get(2, LocalDateTime.class))
+                .endDateTime(row.get(3, LocalDateTime.class))
+                .status(row.get(4, Appointment.Status.class))
+                .location(row.get(5, String.class))
+                .description(row.get(6, String.class))
+                .recurrence(row.get(7, UUID.class))
+                .recurrenceDateTime(row.get(8, LocalDateTime.class))
+                .provider(toView(row, 9))
+                .client(toView(row, 14))
+                .build();
+    }
+
+    /**
+     * Creates a user view from the columns of a {@link #viewQuery(Specification, Sort)} row starting at the
+     * given position
+     *
+     * @param row A tuple
+     * @param offset The position of the user uuid
+     * @return A user view
+     */
+    private static UserView toView(Tuple row, int offset) {
+        return UserView
+                .builder()
+                .uuid(row.get(offset, UUID.class))
+                .firstName(row.get(offset+1, String.class))
+                .lastName(row.get(offset+2, String.class))
+                .email(row.get(offset+3, String.class))
+                .phone(row.get(offset+4, String.class))
+                .build();
+    }
+
+    /**
+     * Adds the version increment and update date/time of the updated appointments to the given update statement,
+     * which the entity would otherwise add itself when flushed
+     *
+     * @param update An update statement
+     * @param root The appointment root
+     * @param criteriaBuilder A criteria builder
+     * @return The update statement
+     */
+    private static CriteriaUpdate<Appointment> touch(CriteriaUpdate<Appointment> update,
+                                                     Root<Appointment> root,
+                                                     CriteriaBuilder criteriaBuilder) {
+        Path<Long> version = root.get(Appointment.Fields.version);
+        return update
+                .set(version, criteriaBuilder.sum(version, 1L))
+                .set(root.get(Appointment.Fields.updatedAt), Instant.now());
+    }
+
+    /**
+     * Creates the predicate of the given specification
+     *
+     * @param spec A specification for an appointment, can be null
+     * @param root The appointment root
+     * @param query The query the predicate belongs to, or null for an update statement
+     * @param criteriaBuilder A criteria builder
+     * @return A predicate, or empty if the specification does not restrict the appointments
+     */
+    private static Optional<Predicate> where(Specification<Appointment> spec,
+                                             Root<Appointment> root,
+                                             CriteriaQuery<?> query,
+                                             CriteriaBuilder criteriaBuilder) {
+        return spec == null
+                ? Optional.empty()
+                : Optional.ofNullable(spec.toPredicate(root, query, criteriaBuilder));
+    }
+}
@@ -0,0 +1,59 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.domain.Recurrence;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Provides CRUD operations for {@link Recurrence} entities
+ */
+@Repository
+public interface RecurrenceRepository extends
+        JpaRepository<Recurrence, Long>, JpaSpecificationExecutor<Recurrence>, RecurrenceRepositoryCustom {
+
+    /**
+     * Checks if the given uuid identifies an existing recurrence
+     *
+     * @param uuid A recurrence uuid
+     * @return True if the recurrence exists, or false otherwise
+     */
+    boolean existsByUuid(UUID uuid);
+
+    /**
+     * Finds the identified recurrence
+     *
+     * @param uuid A recurrence uuid
+     * @return A recurrence
+     */
+    @EntityGraph(Recurrence.WITH_USERS)
+    Recurrence findByUuid(UUID uuid);
+
+    /**
+     * Finds all recurrences matching the given specification, fetching their provider and client in the same
+     * statement
+     *
+     * @param spec A specification for a recurrence, can be null
+     * @return A list of recurrences
+     */
+    @EntityGraph(Recurrence.WITH_USERS)
+    List<Recurrence> findAll(Specification<Recurrence> spec);
+
+    /**
+     * Deletes the identified recurrence with a single statement, without loading it first
+     *
+     * @param uuid A recurrence uuid
+     * @return The number of deleted records
+     */
+    @Modifying
+    @Query("delete from Recurrence r where r.uuid = :uuid")
+    int deleteByUuid(@Param("uuid") UUID uuid);
+}
@@ -0,0 +1,20 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.domain.Recurrence;
+import com.portfolijo.schedjoeler.projection.Watermark;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Provides {@link Recurrence} queries not covered by derived or specification queries
+ */
+public interface RecurrenceRepositoryCustom {
+
+    /**
+     * Finds the watermark of all recurrences matching the given specification and of their providers and
+     * clients, with a single aggregate query that loads no recurrences
+     *
+     * @param spec A specification for a recurrence, can be null
+     * @return A watermark
+     */
+    Watermark findWatermark(Specification<Recurrence> spec);
+}
@@ -0,0 +1,21 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.domain.Recurrence;
+import com.portfolijo.schedjoeler.projection.Watermark;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Implements {@link RecurrenceRepositoryCustom} using the criteria API
+ */
+public class RecurrenceRepositoryCustomImpl implements RecurrenceRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public Watermark findWatermark(Specification<Recurrence> spec) {
+        return Watermarks.find(em, Recurrence.class, spec);
+    }
+}
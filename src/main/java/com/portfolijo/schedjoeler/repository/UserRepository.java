@@ -2,37 +2,46 @@ package com.portfolijo.schedjoeler.repository;
 
 import com.portfolijo.schedjoeler.domain.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 /**
  * Provides CRUD operations for {@link User} entities
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
     /**
-     * Checks if the given uuid identifies an existing user
+     * Finds the identified users with a single query, which bypasses the second-level cache but stores the users
+     * it loads there
      *
-     * @param uuid A user uuid
-     * @return True if a user exists, or false otherwise
+     * @param uuids A collection of user uuids
+     * @return A list of users, excluding uuids that do not identify an existing user
      */
-    boolean existsByUuid(UUID uuid);
+    List<User> findAllByUuidIn(Collection<UUID> uuids);
 
     /**
-     * Finds the identified user
+     * Finds the user with the given email address through the unique email index. Like any query, this bypasses
+     * the second-level cache
      *
-     * @param uuid A user uuid
-     * @return A user
+     * @param email An email address
+     * @return A user, or null if no user has the email address
      */
-    User findByUuid(UUID uuid);
+    User findByEmail(String email);
 
     /**
-     * Deletes the identified user
+     * Deletes the identified user with a single statement, without loading it first
      *
      * @param uuid A user uuid
      * @return The number of deleted records
      */
-    int deleteByUuid(UUID uuid);
+    @Modifying
+    @Query("delete from User u where u.uuid = :uuid")
+    int deleteByUuid(@Param("uuid") UUID uuid);
 }
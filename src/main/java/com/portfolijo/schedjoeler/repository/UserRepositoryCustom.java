@@ -0,0 +1,27 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.domain.User;
+
+import java.util.UUID;
+
+/**
+ * Provides {@link User} lookups by natural id, which are served from the second-level cache when possible
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Finds the identified user
+     *
+     * @param uuid A user uuid
+     * @return A user, or null if the user does not exist
+     */
+    User findByUuid(UUID uuid);
+
+    /**
+     * Finds the id of the identified user, without loading the user
+     *
+     * @param uuid A user uuid
+     * @return A user id, or null if the user does not exist
+     */
+    Long findIdByUuid(UUID uuid);
+}
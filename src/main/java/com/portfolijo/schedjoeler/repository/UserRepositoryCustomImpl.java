@@ -0,0 +1,38 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.domain.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+
+import java.util.UUID;
+
+/**
+ * Implements {@link UserRepositoryCustom} with Hibernate's natural id loaders, which resolve the uuid through
+ * the natural id cache and the user through the entity cache before querying the database
+ */
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager em;
+
+    @Override
+    public User findByUuid(UUID uuid) {
+        return session()
+                .bySimpleNaturalId(User.class)
+                .load(uuid);
+    }
+
+    @Override
+    public Long findIdByUuid(UUID uuid) {
+        // a reference is resolved through the natural id cache alone, and reading its id does not initialize it
+        User user = session()
+                .bySimpleNaturalId(User.class)
+                .getReference(uuid);
+        return user != null ? user.getId() : null;
+    }
+
+    private Session session() {
+        return em.unwrap(Session.class);
+    }
+}
@@ -0,0 +1,80 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.projection.Watermark;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.Instant;
+import java.util.stream.Stream;
+
+/**
+ * Aggregates the watermarks of appointments and recurrences, which both reference a provider and client and
+ * carry a version and update date/time under the same attribute names
+ */
+final class Watermarks {
+
+    private Watermarks() {
+    }
+
+    /**
+     * Finds the watermark of all rows of the given type matching the given specification, including their
+     * provider and client since both are part of the representation of each row. The rows are aggregated by a
+     * single query joining the users by id, so none of them are loaded. If a single row matches, its own version is
+     * part of the watermark as well
+     *
+     * @param em An entity manager
+     * @param type An entity type with provider, client, version and updatedAt attributes
+     * @param spec A specification, can be null
+     * @return A watermark
+     * @param <T> The entity type
+     */
+    static <T> Watermark find(EntityManager em, Class<T> type, Specification<T> spec) {
+        CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = criteriaBuilder.createTupleQuery();
+        Root<T> root = query.from(type);
+        Join<T, User> provider = root.join(Appointment.Fields.provider);
+        Join<T, User> client = root.join(Appointment.Fields.client);
+
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(root, query, criteriaBuilder);
+
+            if (predicate != null)
+                query.where(predicate);
+        }
+
+        Expression<Long> versions = criteriaBuilder.sum(
+                criteriaBuilder.sum(root.get(Appointment.Fields.version), provider.get(User.Fields.version)),
+                client.get(User.Fields.version));
+        Tuple row = em
+                .createQuery(query.multiselect(
+                        criteriaBuilder.count(root),
+                        criteriaBuilder.sum(versions),
+                        criteriaBuilder.greatest(root.<Instant>get(Appointment.Fields.updatedAt)),
+                        criteriaBuilder.greatest(provider.<Instant>get(User.Fields.updatedAt)),
+                        criteriaBuilder.greatest(client.<Instant>get(User.Fields.updatedAt)),
+                        criteriaBuilder.max(root.<Long>get(Appointment.Fields.version))))
+                .getSingleResult();
+
+        long count = row.get(0, Long.class);
+
+        if (count == 0)
+            return Watermark.EMPTY;
+
+        Instant lastModified = Stream
+                .of(row.get(2, Instant.class), row.get(3, Instant.class), row.get(4, Instant.class))
+                .max(Instant::compareTo)
+                .orElseThrow();
+        // the greatest version of a single row is its own
+        Long version = count == 1 ? row.get(5, Long.class) : null;
+        return new Watermark(count, row.get(1, Long.class), lastModified, version);
+    }
+}
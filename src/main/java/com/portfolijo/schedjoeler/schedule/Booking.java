@@ -0,0 +1,58 @@
+package com.portfolijo.schedjoeler.schedule;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Represents the time an appointment occupies in its provider's schedule, from its date/time (inclusive) to its
+ * end date/time (exclusive)
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@RequiredArgsConstructor
+public class Booking {
+    @NonNull
+    private final UUID appointment;
+
+    @NonNull
+    private final Long provider;
+
+    @NonNull
+    private final LocalDateTime dateTime;
+
+    @NonNull
+    private final LocalDateTime endDateTime;
+
+    /**
+     * Creates a booking for the given appointment
+     *
+     * @param appointment An appointment with a uuid, persisted provider and end date/time
+     * @return A booking
+     */
+    public static Booking of(Appointment appointment) {
+        return new Booking(
+                appointment.getUuid(),
+                appointment.getProvider().getId(),
+                appointment.getDateTime(),
+                appointment.getEndDateTime());
+    }
+
+    /**
+     * Checks if this booking overlaps the given period
+     *
+     * @param dateTime The start of a period (inclusive)
+     * @param endDateTime The end of a period (exclusive)
+     * @return True if the booking and period overlap, or false otherwise
+     */
+    public boolean overlaps(LocalDateTime dateTime, LocalDateTime endDateTime) {
+        return this.dateTime.isBefore(endDateTime) && this.endDateTime.isAfter(dateTime);
+    }
+}
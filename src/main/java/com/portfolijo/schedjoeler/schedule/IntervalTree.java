@@ -0,0 +1,222 @@
+package com.portfolijo.schedjoeler.schedule;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A self-balancing (AVL) binary search tree of bookings ordered by date/time and appointment uuid, where each
+ * node also tracks the latest end date/time within its subtree. Overlap checks take O(log n) and listing the
+ * bookings overlapping a period takes O(log n + k). Not thread safe
+ */
+class IntervalTree {
+    private Node root;
+    private int size;
+
+    private static final class Node {
+        private Booking booking;
+        private Node left;
+        private Node right;
+        private int height = 1;
+        private LocalDateTime maxEndDateTime;
+
+        private Node(Booking booking) {
+            this.booking = booking;
+            this.maxEndDateTime = booking.getEndDateTime();
+        }
+    }
+
+    /**
+     * Gets the number of bookings in the tree
+     *
+     * @return The number of bookings
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds the given booking, replacing any booking with the same date/time and appointment
+     *
+     * @param booking A booking
+     */
+    void insert(Booking booking) {
+        root = insert(root, booking);
+    }
+
+    /**
+     * Removes the given booking
+     *
+     * @param booking A booking
+     */
+    void remove(Booking booking) {
+        root = remove(root, booking);
+    }
+
+    /**
+     * Finds any booking overlapping the given period
+     *
+     * @param dateTime The start of a period (inclusive)
+     * @param endDateTime The end of a period (exclusive)
+     * @return An overlapping booking, or null if there is none
+     */
+    Booking findAnyOverlapping(LocalDateTime dateTime, LocalDateTime endDateTime) {
+        Node node = root;
+
+        while (node != null) {
+            if (node.booking.overlaps(dateTime, endDateTime))
+                return node.booking;
+
+            // if the left subtree ends after the period starts but holds no overlap, its latest ending booking
+            // starts after the period ends, and so does everything to its right
+            node = node.left != null && node.left.maxEndDateTime.isAfter(dateTime) ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Finds all bookings overlapping the given period
+     *
+     * @param dateTime The start of a period (inclusive)
+     * @param endDateTime The end of a period (exclusive)
+     * @return A list of bookings ordered by date/time
+     */
+    List<Booking> findAllOverlapping(LocalDateTime dateTime, LocalDateTime endDateTime) {
+        List<Booking> bookings = new ArrayList<>();
+        collectOverlapping(root, dateTime, endDateTime, bookings);
+        return bookings;
+    }
+
+    private static void collectOverlapping(Node node,
+                                           LocalDateTime dateTime,
+                                           LocalDateTime endDateTime,
+                                           List<Booking> bookings) {
+        if (node == null || !node.maxEndDateTime.isAfter(dateTime))
+            return;
+
+        collectOverlapping(node.left, dateTime, endDateTime, bookings);
+
+        if (node.booking.getDateTime().isBefore(endDateTime)) {
+            if (node.booking.getEndDateTime().isAfter(dateTime))
+                bookings.add(node.booking);
+
+            collectOverlapping(node.right, dateTime, endDateTime, bookings);
+        }
+    }
+
+    private Node insert(Node node, Booking booking) {
+        if (node == null) {
+            size++;
+            return new Node(booking);
+        }
+
+        int c = compare(booking, node.booking);
+
+        if (c < 0)
+            node.left = insert(node.left, booking);
+        else if (c > 0)
+            node.right = insert(node.right, booking);
+        else
+            node.booking = booking;
+
+        return balance(node);
+    }
+
+    private Node remove(Node node, Booking booking) {
+        if (node == null)
+            return null;
+
+        int c = compare(booking, node.booking);
+
+        if (c < 0) {
+            node.left = remove(node.left, booking);
+        } else if (c > 0) {
+            node.right = remove(node.right, booking);
+        } else {
+            size--;
+
+            if (node.left == null)
+                return node.right;
+
+            if (node.right == null)
+                return node.left;
+
+            Node successor = node.right;
+            while (successor.left != null)
+                successor = successor.left;
+
+            node.booking = successor.booking;
+            node.right = removeFirst(node.right);
+        }
+        return balance(node);
+    }
+
+    private static Node removeFirst(Node node) {
+        if (node.left == null)
+            return node.right;
+
+        node.left = removeFirst(node.left);
+        return balance(node);
+    }
+
+    private static int compare(Booking a, Booking b) {
+        int c = a.getDateTime().compareTo(b.getDateTime());
+        return c != 0 ? c : a.getAppointment().compareTo(b.getAppointment());
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static void update(Node node) {
+        node.height = 1+Math.max(height(node.left), height(node.right));
+
+        LocalDateTime max = node.booking.getEndDateTime();
+
+        if (node.left != null && node.left.maxEndDateTime.isAfter(max))
+            max = node.left.maxEndDateTime;
+
+        if (node.right != null && node.right.maxEndDateTime.isAfter(max))
+            max = node.right.maxEndDateTime;
+
+        node.maxEndDateTime = max;
+    }
+
+    private static Node balance(Node node) {
+        update(node);
+        int factor = height(node.left)-height(node.right);
+
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right))
+                node.left = rotateLeft(node.left);
+
+            return rotateRight(node);
+        }
+
+        if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left))
+                node.right = rotateRight(node.right);
+
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+}
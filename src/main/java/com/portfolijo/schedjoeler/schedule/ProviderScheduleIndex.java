@@ -0,0 +1,357 @@
+package com.portfolijo.schedjoeler.schedule;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.repository.AppointmentRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Keeps an in-memory interval tree of the booked appointments of each provider, so that double bookings can be
+ * detected without querying the database. The index is rebuilt from the database at startup and must be kept
+ * up to date by routing every appointment write through it. It only sees writes made by this application
+ * instance. Occurrences of recurrences are not held, since they are expanded on demand, but can be checked
+ * against by passing them along with a booking
+ */
+@RequiredArgsConstructor
+@Component
+public class ProviderScheduleIndex implements SmartInitializingSingleton {
+    private final AppointmentRepository REPO;
+    private final ConcurrentMap<Long, IntervalTree> SCHEDULES = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Lock> LOCKS = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, Booking> BOOKINGS = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the bookings of all booked appointments, before the application starts accepting requests
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<Appointment.Status> statuses = Arrays
+                .stream(Appointment.Status.values())
+                .filter(Appointment.Status::isBooked)
+                .toList();
+
+        SCHEDULES.clear();
+        BOOKINGS.clear();
+
+        for (Booking booking : REPO.findBookingsByStatusIn(statuses)) {
+            schedule(booking.getProvider()).insert(booking);
+            BOOKINGS.put(booking.getAppointment(), booking);
+        }
+    }
+
+    /**
+     * Saves the given appointment with the given function, updating its provider's schedule. Bookings with
+     * the same provider are serialized, so two overlapping appointments cannot both be saved
+     *
+     * @param appointment An appointment with a uuid, persisted provider and end date/time
+     * @param occurrences A function finding the occurrences of the provider's recurrences overlapping a period,
+     *                    only called if the appointment is booked, while the provider is locked
+     * @param save A function that saves the appointment
+     * @return The result of the save function
+     * @param <T> The type of the result of the save function
+     * @throws ScheduleConflictException If the appointment is booked and overlaps another booked appointment or
+     * an occurrence
+     */
+    public <T> T book(Appointment appointment,
+                      BiFunction<LocalDateTime, LocalDateTime, List<Booking>> occurrences,
+                      Supplier<T> save) throws ScheduleConflictException {
+
+        if (!appointment.getStatus().isBooked()) {
+            T saved = save.get();
+            release(appointment.getUuid());
+            return saved;
+        }
+        return book(
+                Booking.of(appointment),
+                () -> occurrences.apply(appointment.getDateTime(), appointment.getEndDateTime()),
+                save);
+    }
+
+    /**
+     * Saves a booking with the given function, updating its provider's schedule. Bookings with the same
+     * provider are serialized, so two overlapping bookings cannot both be saved
+     *
+     * @param booking A booking
+     * @param save A function that saves the booked appointment
+     * @return The result of the save function
+     * @param <T> The type of the result of the save function
+     * @throws ScheduleConflictException If the booking overlaps another booking
+     */
+    public <T> T book(Booking booking, Supplier<T> save) throws ScheduleConflictException {
+        return book(booking, List::of, save);
+    }
+
+    /**
+     * Runs the given action while no booking of the identified provider can be saved, so that the action can
+     * check bookings that the index does not hold, such as the occurrences of a recurrence, against the
+     * provider's schedule and save them before another booking takes their place. The provider stays locked
+     * until the current transaction (if any) completes, since the bookings the action saves only become visible
+     * to other transactions once it commits
+     *
+     * @param provider A provider id
+     * @param action An action
+     * @return The result of the action
+     * @param <T> The type of the result of the action
+     */
+    public <T> T synchronize(Long provider, Supplier<T> action) {
+        return synchronize(List.of(provider), action);
+    }
+
+    /**
+     * Runs the given action while no booking of the identified providers can be saved, keeping them locked until
+     * the current transaction (if any) completes
+     *
+     * @param providers A collection of provider ids
+     * @param action An action
+     * @return The result of the action
+     * @param <T> The type of the result of the action
+     * @see #synchronize(Long, Supplier)
+     */
+    public <T> T synchronize(Collection<Long> providers, Supplier<T> action) {
+        // locking in id order, two actions locking some of the same providers cannot deadlock
+        List<Lock> locks = providers
+                .stream()
+                .distinct()
+                .sorted()
+                .map(this::lock)
+                .toList();
+
+        locks.forEach(Lock::lock);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // transactions complete on the thread that began them, which is the thread holding the locks
+            afterCompletion(() -> locks.forEach(Lock::unlock));
+            return action.get();
+        }
+
+        try {
+            return action.get();
+        } finally {
+            locks.forEach(Lock::unlock);
+        }
+    }
+
+    /**
+     * Saves a booking with the given function, updating its provider's schedule. Bookings with the same
+     * provider are serialized, so two overlapping bookings cannot both be saved. The given occurrences are
+     * checked as well, except for the occurrence the booked appointment is stored in place of
+     *
+     * @param booking A booking
+     * @param occurrences A function finding the occurrences of the provider's recurrences overlapping the
+     *                    booking, called while the provider is locked so that no recurrence can be saved
+     *                    between the lookup and the save
+     * @param save A function that saves the booked appointment
+     * @return The result of the save function
+     * @param <T> The type of the result of the save function
+     * @throws ScheduleConflictException If the booking overlaps another booking or an occurrence
+     */
+    public <T> T book(Booking booking, Supplier<List<Booking>> occurrences, Supplier<T> save)
+            throws ScheduleConflictException {
+
+        IntervalTree schedule = schedule(booking.getProvider());
+        Lock lock = lock(booking.getProvider());
+        Booking previous;
+        T saved;
+
+        lock.lock();
+
+        try {
+            previous = BOOKINGS.get(booking.getAppointment());
+            boolean sameProvider = previous != null && previous.getProvider().equals(booking.getProvider());
+
+            // an appointment cannot conflict with its own previous booking
+            if (sameProvider)
+                schedule.remove(previous);
+
+            try {
+                Booking conflict = schedule.findAnyOverlapping(booking.getDateTime(), booking.getEndDateTime());
+
+                // an exception shares the uuid of the occurrence it replaces
+                if (conflict == null)
+                    conflict = occurrences
+                            .get()
+                            .stream()
+                            .filter(occurrence -> !occurrence.getAppointment().equals(booking.getAppointment()))
+                            .filter(occurrence -> occurrence.overlaps(booking.getDateTime(), booking.getEndDateTime()))
+                            .findFirst()
+                            .orElse(null);
+
+                if (conflict != null)
+                    throw new ScheduleConflictException(
+                            "Appointment uuid="+booking.getAppointment()
+                                    +" overlaps appointment uuid="+conflict.getAppointment()+".");
+
+                saved = save.get();
+
+            } catch (RuntimeException e) {
+                if (sameProvider)
+                    schedule.insert(previous);
+                throw e;
+            }
+
+            schedule.insert(booking);
+            BOOKINGS.put(booking.getAppointment(), booking);
+        } finally {
+            lock.unlock();
+        }
+
+        if (previous != null && !previous.getProvider().equals(booking.getProvider()))
+            remove(previous);
+
+        afterRollback(() -> {
+            remove(booking);
+
+            if (previous != null) {
+                IntervalTree restored = schedule(previous.getProvider());
+                Lock restoredLock = lock(previous.getProvider());
+                restoredLock.lock();
+
+                try {
+                    restored.insert(previous);
+                    BOOKINGS.put(previous.getAppointment(), previous);
+                } finally {
+                    restoredLock.unlock();
+                }
+            }
+        });
+        return saved;
+    }
+
+    /**
+     * Removes the booking of the identified appointment, once the current transaction (if any) commits
+     *
+     * @param appointment An appointment uuid
+     */
+    public void release(UUID appointment) {
+        releaseAll(List.of(appointment));
+    }
+
+    /**
+     * Removes the bookings of the identified appointments, once the current transaction (if any) commits
+     *
+     * @param appointments A collection of appointment uuids
+     */
+    public void releaseAll(Collection<UUID> appointments) {
+        if (appointments.isEmpty())
+            return;
+
+        afterCommit(() -> {
+            for (UUID appointment : appointments) {
+                Booking booking = BOOKINGS.get(appointment);
+
+                if (booking != null)
+                    remove(booking);
+            }
+        });
+    }
+
+    /**
+     * Finds the bookings of the identified provider overlapping the given period
+     *
+     * @param provider A provider id
+     * @param dateTime The start of a period (inclusive)
+     * @param endDateTime The end of a period (exclusive)
+     * @return A list of bookings ordered by date/time
+     */
+    public List<Booking> findAll(Long provider, LocalDateTime dateTime, LocalDateTime endDateTime) {
+        IntervalTree schedule = SCHEDULES.get(provider);
+
+        if (schedule == null)
+            return List.of();
+
+        Lock lock = lock(provider);
+        lock.lock();
+
+        try {
+            return schedule.findAllOverlapping(dateTime, endDateTime);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private IntervalTree schedule(Long provider) {
+        return SCHEDULES.computeIfAbsent(provider, k -> new IntervalTree());
+    }
+
+    /**
+     * Gets the lock serializing the bookings of the identified provider. Bookings save appointments while holding
+     * it, so it is a lock rather than a monitor, which a virtual thread could not unmount from while waiting on
+     * the database
+     */
+    private Lock lock(Long provider) {
+        return LOCKS.computeIfAbsent(provider, k -> new ReentrantLock());
+    }
+
+    private void remove(Booking booking) {
+        IntervalTree schedule = schedule(booking.getProvider());
+        Lock lock = lock(booking.getProvider());
+        lock.lock();
+
+        try {
+            schedule.remove(booking);
+            BOOKINGS.remove(booking.getAppointment(), booking);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the given action after the current transaction commits, or immediately if there is no transaction
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Runs the given action once the current transaction completes, whether it commits or rolls back
+     */
+    private static void afterCompletion(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Runs the given action if the current transaction rolls back
+     */
+    private static void afterRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+            return;
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK)
+                    action.run();
+            }
+        });
+    }
+}
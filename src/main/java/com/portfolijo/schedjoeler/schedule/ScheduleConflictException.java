@@ -0,0 +1,10 @@
+package com.portfolijo.schedjoeler.schedule;
+
+/**
+ * Thrown when an appointment would overlap another appointment booked with the same provider
+ */
+public class ScheduleConflictException extends RuntimeException {
+    public ScheduleConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,25 @@
+package com.portfolijo.schedjoeler.schedule;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a period in a provider's schedule that is free to be booked, from its date/time (inclusive) to its
+ * end date/time (exclusive)
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@RequiredArgsConstructor
+public class Slot {
+    @NonNull
+    private final LocalDateTime dateTime;
+
+    @NonNull
+    private final LocalDateTime endDateTime;
+}
@@ -0,0 +1,40 @@
+package com.portfolijo.schedjoeler.security;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Represents a signed bearer token, which carries everything needed to authenticate its holder until it expires
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@RequiredArgsConstructor
+public class Token {
+
+    /**
+     * The name of the authenticated user
+     */
+    private final String subject;
+
+    /**
+     * The names of the authorities granted to the user
+     */
+    private final List<String> authorities;
+
+    /**
+     * The date/time after which the token is rejected
+     */
+    private final Instant expiresAt;
+
+    /**
+     * The encoded and signed token as sent in the Authorization header
+     */
+    @ToString.Exclude
+    private final String value;
+}
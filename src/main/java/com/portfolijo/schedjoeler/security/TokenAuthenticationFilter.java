@@ -0,0 +1,58 @@
+package com.portfolijo.schedjoeler.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Authenticates requests carrying an {@code Authorization: Bearer} header with a token issued by
+ * {@link TokenService}. Requests without one are passed on unchanged, so other authentication mechanisms further
+ * down the chain still apply. Requests with an invalid token are rejected with 401 UNAUTHORIZED rather than
+ * passed on as anonymous. The authentication is only held by the security context of the request, which is kept
+ * as a request attribute so that asynchronous dispatches of the same request, which skip this filter, see it too
+ */
+@RequiredArgsConstructor
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+    private static final String PREFIX = "Bearer ";
+
+    private final TokenService SVC;
+    private final SecurityContextRepository REPO = new RequestAttributeSecurityContextRepository();
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+
+        if (header == null || !header.regionMatches(true, 0, PREFIX, 0, PREFIX.length())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        try {
+            SecurityContext context = SecurityContextHolder.createEmptyContext();
+            context.setAuthentication(SVC.verify(header.substring(PREFIX.length()).trim()));
+            SecurityContextHolder.setContext(context);
+            REPO.saveContext(context, request, response);
+        } catch (AuthenticationException e) {
+            SecurityContextHolder.clearContext();
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+            response.sendError(HttpStatus.UNAUTHORIZED.value(), e.getMessage());
+            return;
+        }
+
+        chain.doFilter(request, response);
+    }
+}
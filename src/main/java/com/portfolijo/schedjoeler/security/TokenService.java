@@ -0,0 +1,145 @@
+package com.portfolijo.schedjoeler.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Issues and verifies self-contained bearer tokens signed with HMAC-SHA256. A token holds the user name, the
+ * granted authorities and the expiry date/time, so verifying one takes a single keyed hash and no lookup of the
+ * user or password. Tokens cannot be revoked before they expire, which bounds how long a disabled user or
+ * removed authority can go unnoticed to the time to live
+ */
+@Service
+public class TokenService {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final Mac MAC;
+    private final Duration TIME_TO_LIVE;
+
+    /**
+     * Creates a token service signing with the given secret
+     *
+     * @param secret A base64 encoded key of at least 32 bytes, or an empty string to sign with a random key, which
+     *               invalidates all tokens on restart and is not shared between instances
+     * @param timeToLive The time tokens are accepted for after they are issued
+     */
+    public TokenService(@Value("${schedjoeler.security.token.secret:}") String secret,
+                        @Value("${schedjoeler.security.token.time-to-live:PT1H}") Duration timeToLive) {
+        byte[] key;
+
+        if (secret.isBlank()) {
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+        } else {
+            key = Base64.getDecoder().decode(secret.trim());
+        }
+
+        if (key.length < 32)
+            throw new IllegalArgumentException("schedjoeler.security.token.secret must be at least 32 bytes.");
+
+        try {
+            MAC = Mac.getInstance(ALGORITHM);
+            MAC.init(new SecretKeySpec(key, ALGORITHM));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        TIME_TO_LIVE = timeToLive;
+    }
+
+    /**
+     * Issues a token for the given, already authenticated, user
+     *
+     * @param authentication An authentication
+     * @return A token
+     */
+    public Token issue(Authentication authentication) {
+        List<String> authorities = AuthorityUtils.authorityListToSet(authentication.getAuthorities())
+                .stream()
+                .sorted()
+                .toList();
+        Instant expiresAt = Instant.now().plus(TIME_TO_LIVE).truncatedTo(ChronoUnit.SECONDS);
+        String payload = expiresAt.getEpochSecond()+"\n"+String.join(",", authorities)+"\n"+authentication.getName();
+        String encoded = ENCODER.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        return new Token(authentication.getName(), authorities, expiresAt, encoded+"."+sign(encoded));
+    }
+
+    /**
+     * Verifies the signature and expiry of the given token
+     *
+     * @param value A token as sent in the Authorization header
+     * @return The authentication carried by the token
+     * @throws BadCredentialsException If the token is malformed, not signed with this service's key or expired
+     */
+    public Authentication verify(String value) throws BadCredentialsException {
+        int dot = value.lastIndexOf('.');
+
+        if (dot < 0)
+            throw new BadCredentialsException("Malformed token.");
+
+        String encoded = value.substring(0, dot);
+        byte[] signature = value.substring(dot+1).getBytes(StandardCharsets.US_ASCII);
+
+        // compares in constant time, so the response time does not reveal how much of a forged signature matched
+        if (!MessageDigest.isEqual(signature, sign(encoded).getBytes(StandardCharsets.US_ASCII)))
+            throw new BadCredentialsException("Invalid token signature.");
+
+        String[] parts;
+        long expiresAt;
+
+        try {
+            parts = new String(DECODER.decode(encoded), StandardCharsets.UTF_8).split("\n", 3);
+            expiresAt = Long.parseLong(parts[0]);
+        } catch (IllegalArgumentException e) {
+            throw new BadCredentialsException("Malformed token.");
+        }
+
+        if (parts.length != 3)
+            throw new BadCredentialsException("Malformed token.");
+
+        if (Instant.now().getEpochSecond() >= expiresAt)
+            throw new BadCredentialsException("Expired token.");
+
+        Collection<? extends GrantedAuthority> authorities = parts[1].isEmpty()
+                ? List.of()
+                : AuthorityUtils.createAuthorityList(parts[1].split(","));
+        return UsernamePasswordAuthenticationToken.authenticated(parts[2], null, authorities);
+    }
+
+    /**
+     * Signs the given encoded payload. The initialized prototype is cloned rather than shared, since a {@link Mac}
+     * is not thread-safe, and cloning skips the provider lookup and key setup of creating one
+     *
+     * @param encoded An encoded payload
+     * @return The encoded signature
+     */
+    private String sign(String encoded) {
+        Mac mac;
+
+        try {
+            mac = (Mac) MAC.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+        return ENCODER.encodeToString(mac.doFinal(encoded.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
@@ -0,0 +1,85 @@
+package com.portfolijo.schedjoeler.security;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.repository.UserRepository;
+import com.portfolijo.schedjoeler.service.UserChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+
+/**
+ * Loads the principals of users logging in by email address and password, through a read-through cache in front
+ * of {@link UserRepository#findByEmail}. Clients authenticating every request with basic credentials then cost
+ * a password check but no query. The cache is bounded, and entries are evicted when a {@link UserChangedEvent}
+ * commits, or expire after a time to live in case a user is changed without one. Users without a password hash
+ * are not found, so they cannot log in
+ */
+@Service
+public class UserDetailsCache implements UserDetailsService {
+    private final LoadingCache<String, UserPrincipal> CACHE;
+
+    public UserDetailsCache(UserRepository repo,
+                            @Value("${schedjoeler.cache.user-details.maximum-size:10000}") long maximumSize,
+                            @Value("${schedjoeler.cache.user-details.time-to-live:PT5M}") Duration timeToLive) {
+        CACHE = Caffeine
+                .newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .build(email -> toPrincipal(repo.findByEmail(email)));
+    }
+
+    /**
+     * Gets the principal of the user with the given email address, loading it if it is not cached. Unknown email
+     * addresses are not cached
+     *
+     * @param username An email address
+     * @return A user principal
+     * @throws UsernameNotFoundException If no user with a password hash has the email address
+     */
+    @Override
+    public UserPrincipal loadUserByUsername(String username) throws UsernameNotFoundException {
+        UserPrincipal principal = CACHE.get(username);
+
+        if (principal == null)
+            throw new UsernameNotFoundException("User email="+username+" not found.");
+
+        return principal;
+    }
+
+    /**
+     * Evicts the principal of the changed user once the change is committed, or immediately if it was made
+     * outside a transaction. The cache is keyed by email address, which the event does not carry and which may
+     * have been changed, so the principals are scanned for the user's uuid. Users change far less often than
+     * they log in, and the scan does not block concurrent logins
+     *
+     * @param event A user changed event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        CACHE.asMap().values().removeIf(principal -> principal.getUuid().equals(event.getUuid()));
+    }
+
+    /**
+     * Creates the principal of the given user
+     *
+     * @param user A user, can be null
+     * @return A user principal, or null if the user is null or has no password hash
+     */
+    private static UserPrincipal toPrincipal(User user) {
+        if (user == null || user.getPasswordHash() == null)
+            return null;
+
+        return new UserPrincipal(
+                user.getUuid(),
+                user.getEmail(),
+                user.getPasswordHash(),
+                user.isEnabled(),
+                user.isAdmin());
+    }
+}
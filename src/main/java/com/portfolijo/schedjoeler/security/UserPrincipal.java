@@ -0,0 +1,65 @@
+package com.portfolijo.schedjoeler.security;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Represents the credentials of a user logging in to the api. Principals are immutable and shared between
+ * requests by {@link UserDetailsCache}, which is why this class does not implement {@code CredentialsContainer}:
+ * the authentication manager would otherwise erase the password hash of the cached principal after its first
+ * successful login
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@RequiredArgsConstructor
+public class UserPrincipal implements UserDetails {
+    private static final List<GrantedAuthority> AUTHORITIES = AuthorityUtils.createAuthorityList("ROLE_USER");
+    private static final List<GrantedAuthority> ADMIN_AUTHORITIES =
+            AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN");
+
+    /**
+     * The uuid of the user, by which the principal is evicted when the user changes
+     */
+    private final UUID uuid;
+
+    private final String username;
+
+    @ToString.Exclude
+    private final String password;
+
+    private final boolean enabled;
+
+    /**
+     * Whether the user is granted the admin role in addition to the user role
+     */
+    private final boolean admin;
+
+    @Override
+    public List<GrantedAuthority> getAuthorities() {
+        return admin ? ADMIN_AUTHORITIES : AUTHORITIES;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+}
@@ -1,19 +1,52 @@
 package com.portfolijo.schedjoeler.service;
 
+import com.portfolijo.schedjoeler.batch.BatchItem;
+import com.portfolijo.schedjoeler.calendar.CalendarCount;
 import com.portfolijo.schedjoeler.domain.Appointment;
 import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.id.Uuids;
+import com.portfolijo.schedjoeler.pagination.AppointmentCursor;
+import com.portfolijo.schedjoeler.pagination.CursorPage;
+import com.portfolijo.schedjoeler.projection.AppointmentView;
+import com.portfolijo.schedjoeler.projection.Watermark;
 import com.portfolijo.schedjoeler.repository.AppointmentRepository;
+import com.portfolijo.schedjoeler.schedule.Booking;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
+import com.portfolijo.schedjoeler.schedule.ScheduleConflictException;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import jakarta.validation.ValidationException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Provides services for handling {@link Appointment} entities
@@ -21,39 +54,149 @@ import java.util.UUID;
 @RequiredArgsConstructor
 @Service
 public class AppointmentService {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 500;
+    public static final int EXPORT_BATCH_SIZE = 1000;
+    public static final int MAX_BULK_SIZE = 10_000;
+    public static final int BULK_CHUNK_SIZE = 500;
+    private static final Set<String> BOOKING_ATTRIBUTES = Set.of(
+            Appointment.Fields.dateTime, Appointment.Fields.endDateTime, Appointment.Fields.provider);
+    private static final Sort ORDER = Sort.by(Appointment.Fields.dateTime, Appointment.Fields.id).ascending();
+    private static final Comparator<Appointment> COMPARATOR = Comparator
+            .comparing(Appointment::getDateTime)
+            .thenComparing(Appointment::getId, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(
+                    appointment -> appointment.getRecurrence() != null ? appointment.getRecurrence().getUuid() : null,
+                    Comparator.nullsLast(Comparator.naturalOrder()));
+    private static final Comparator<AppointmentView> VIEW_COMPARATOR = Comparator
+            .comparing(AppointmentView::getDateTime)
+            .thenComparing(AppointmentView::getId, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(AppointmentView::getRecurrence, Comparator.nullsLast(Comparator.naturalOrder()));
+
     private final AppointmentRepository REPO;
     private final UserService U_SVC;
+    private final RecurrenceService REC_SVC;
+    private final ProviderScheduleIndex SCHEDULE;
+    private final TransactionTemplate TX;
 
     /**
-     * Verifies that the identified appointment exists
+     * Finds the identified appointment
      *
      * @param uuid An appointment uuid
+     * @return An appointment
      * @throws NoSuchElementException If the appointment does not exist
      */
-    public void assertAppointmentExists(UUID uuid) throws NoSuchElementException {
-        if (!REPO.existsByUuid(uuid))
+    public Appointment findOne(UUID uuid) throws NoSuchElementException {
+        Appointment appointment = REPO.findByUuid(uuid);
+
+        if (appointment == null)
             handleAppointmentNotFound(uuid);
+
+        return appointment;
     }
 
     /**
-     * Finds the identified appointment
+     * Finds the identified appointment for an update that only applies to the given version. The update checks
+     * the version of the appointment again when it is written
      *
      * @param uuid An appointment uuid
+     * @param version The version of the appointment the update applies to, or null if the update applies to any
+     *                version
      * @return An appointment
      * @throws NoSuchElementException If the appointment does not exist
+     * @throws OptimisticLockingFailureException If the appointment has another version
      */
-    public Appointment findOne(UUID uuid) throws NoSuchElementException {
-        Appointment appointment = REPO.findByUuid(uuid);
+    public Appointment findOne(UUID uuid, Long version)
+            throws NoSuchElementException, OptimisticLockingFailureException {
 
-        if (appointment == null)
-            handleAppointmentNotFound(uuid);
+        Appointment appointment = findOne(uuid);
+
+        if (version != null && !version.equals(appointment.getVersion()))
+            handleAppointmentModified(uuid);
 
         return appointment;
     }
 
     /**
-     * Finds all appointments matching the given criteria. Passing null to any parameter ignores that field
-     * from the search query
+     * Finds the view of the identified appointment, without loading it as a managed entity
+     *
+     * @param uuid An appointment uuid
+     * @return An appointment view
+     * @throws NoSuchElementException If the appointment does not exist
+     */
+    public AppointmentView findOneView(UUID uuid) throws NoSuchElementException {
+        List<AppointmentView> views = REPO.findViews(uuidEquals(uuid), ORDER, 1);
+
+        if (views.isEmpty())
+            handleAppointmentNotFound(uuid);
+
+        return views.get(0);
+    }
+
+    /**
+     * Finds the watermark of the identified appointment, which changes whenever the appointment or its provider
+     * or client changes
+     *
+     * @param uuid An appointment uuid
+     * @return A watermark
+     * @throws NoSuchElementException If the appointment does not exist
+     */
+    public Watermark findWatermark(UUID uuid) throws NoSuchElementException {
+        Watermark watermark = REPO.findWatermark(uuidEquals(uuid));
+
+        if (watermark.getCount() == 0)
+            handleAppointmentNotFound(uuid);
+
+        return watermark;
+    }
+
+    /**
+     * Finds the watermark of all appointments matching the given criteria, which changes whenever the results
+     * of {@link #findAll(UUID, LocalDateTime, LocalDateTime, Appointment.Status)} may change. It is aggregated
+     * over a superset of the results where they depend on more than the matched rows: stored exceptions are
+     * matched by the occurrence they replace as well as by their own date/time, and of any status, since an
+     * exception hides its occurrence even after being moved out of the period. Recurrences that can occur
+     * within the period are aggregated without being expanded
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null
+     * @param status An appointment status, can be null
+     * @return A watermark
+     * @throws NoSuchElementException If a user with the given uuid does not exist
+     */
+    public Watermark findWatermark(UUID user, LocalDateTime from, LocalDateTime to, Appointment.Status status)
+            throws NoSuchElementException {
+
+        boolean recurs = status == null || status == Appointment.Status.NEW;
+        Specification<Appointment> filters = recurs
+                ? Specification
+                        .where(occursOnOrAfter(from).and(occursOnOrBefore(to)))
+                        .or(recursOnOrAfter(from).and(recursOnOrBefore(to)))
+                : Specification
+                        .where(occursOnOrAfter(from))
+                        .and(occursOnOrBefore(to))
+                        .and(statusEquals(status));
+
+        Watermark watermark = user == null
+                ? REPO.findWatermark(filters)
+                : REPO
+                        .findWatermark(providedBy(user).and(filters))
+                        .plus(REPO.findWatermark(attendedBy(user).and(filters)));
+
+        if (recurs)
+            watermark = watermark.plus(REC_SVC.findWatermark(user, from, to));
+
+        if (user != null && watermark.getCount() == 0)
+            U_SVC.assertUserExists(user);
+
+        return watermark;
+    }
+
+    /**
+     * Finds all appointments matching the given criteria, ordered by date/time. Passing null to any parameter
+     * ignores that field from the search query. Occurrences of recurrences that are not stored as exceptions are
+     * expanded into the results with status {@link Appointment.Status#NEW}
      *
      * @param user A user uuid, can be null
      * @param from A minimum bounding date/time (inclusive), can be null
@@ -65,44 +208,589 @@ public class AppointmentService {
     public List<Appointment> findAll(UUID user, LocalDateTime from, LocalDateTime to, Appointment.Status status)
             throws NoSuchElementException {
 
-        if (user != null)
-            U_SVC.assertUserExists(user);
+        Specification<Appointment> filters = Specification
+                .where(occursOnOrAfter(from))
+                .and(occursOnOrBefore(to))
+                .and(statusEquals(status));
 
-        return REPO.findAll(
-                Specification
-                        .where(involvesUser(user))
-                        .and(occursOnOrAfter(from))
-                        .and(occursOnOrBefore(to))
-                        .and(statusEquals(status)),
-                Sort.by(Appointment.Fields.dateTime).ascending());
+        List<Appointment> appointments = findAll(user, filters, spec -> REPO.findAll(spec, ORDER), COMPARATOR);
+
+        if (status == null || status == Appointment.Status.NEW)
+            appointments = merge(appointments, REC_SVC.findOccurrences(user, from, to), COMPARATOR);
+
+        return checkUser(user, appointments);
+    }
+
+    /**
+     * Finds the views of all appointments matching the given criteria, ordered by date/time, without loading
+     * them as managed entities. Passing null to any parameter ignores that field from the search query
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null
+     * @param status An appointment status, can be null
+     * @return A list of appointment views
+     * @throws NoSuchElementException If a user with the given uuid does not exist
+     * @see #findAll(UUID, LocalDateTime, LocalDateTime, Appointment.Status)
+     */
+    public List<AppointmentView> findAllViews(UUID user,
+                                              LocalDateTime from,
+                                              LocalDateTime to,
+                                              Appointment.Status status) throws NoSuchElementException {
+
+        Specification<Appointment> filters = Specification
+                .where(occursOnOrAfter(from))
+                .and(occursOnOrBefore(to))
+                .and(statusEquals(status));
+
+        List<AppointmentView> views = findAll(user, filters, spec -> REPO.findViews(spec, ORDER), VIEW_COMPARATOR);
+
+        if (status == null || status == Appointment.Status.NEW) {
+            List<AppointmentView> occurrences = REC_SVC
+                    .findOccurrences(user, from, to)
+                    .stream()
+                    .map(AppointmentView::of)
+                    .toList();
+            views = merge(views, occurrences, VIEW_COMPARATOR);
+        }
+        return checkUser(user, views);
+    }
+
+    /**
+     * Counts the appointments matching the given criteria per day and status, ordered by day and status. Passing
+     * null to any parameter ignores that field from the search query. Stored appointments are counted by the
+     * database and occurrences of recurrences are counted as they are expanded, so no appointments are loaded
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null
+     * @param status An appointment status, can be null
+     * @return A list of counts, without days and statuses that have no appointments
+     * @throws NoSuchElementException If a user with the given uuid does not exist
+     */
+    public List<CalendarCount> countAll(UUID user, LocalDateTime from, LocalDateTime to, Appointment.Status status)
+            throws NoSuchElementException {
+
+        Specification<Appointment> filters = Specification
+                .where(occursOnOrAfter(from))
+                .and(occursOnOrBefore(to))
+                .and(statusEquals(status));
+
+        List<List<CalendarCount>> branches = new ArrayList<>();
+
+        if (user == null) {
+            branches.add(REPO.countByDayAndStatus(filters));
+        } else {
+            branches.add(REPO.countByDayAndStatus(providedBy(user).and(filters)));
+            branches.add(REPO.countByDayAndStatus(attendedBy(user).and(filters)));
+        }
+
+        if (status == null || status == Appointment.Status.NEW)
+            branches.add(REC_SVC
+                    .countOccurrences(user, from, to)
+                    .entrySet()
+                    .stream()
+                    .map(entry -> new CalendarCount(entry.getKey(), Appointment.Status.NEW, entry.getValue()))
+                    .toList());
+
+        if (branches.size() == 1)
+            return checkUser(user, branches.get(0));
+
+        SortedMap<LocalDate, Map<Appointment.Status, Long>> counts = new TreeMap<>();
+
+        for (List<CalendarCount> branch : branches) {
+            for (CalendarCount count : branch) {
+                counts
+                        .computeIfAbsent(count.getDay(), day -> new EnumMap<>(Appointment.Status.class))
+                        .merge(count.getStatus(), count.getCount(), Long::sum);
+            }
+        }
+
+        List<CalendarCount> merged = new ArrayList<>();
+        counts.forEach((day, statuses) -> statuses
+                .forEach((s, count) -> merged.add(new CalendarCount(day, s, count))));
+        return checkUser(user, merged);
+    }
+
+    /**
+     * Finds one page of appointments matching the given criteria, ordered by date/time and id. Passing null to
+     * any criteria parameter ignores that field from the search query. Pages are located by seeking past the
+     * cursor rather than by offset, so every page costs the same regardless of its depth. Occurrences of
+     * recurrences that are not stored as exceptions are expanded from the cursor and merged into the page with
+     * status {@link Appointment.Status#NEW}, after the stored appointments of the same date/time
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null
+     * @param status An appointment status, can be null
+     * @param cursor The position of the last appointment of the previous page, or null for the first page
+     * @param limit The maximum number of appointments in the page
+     * @return A page of appointments
+     * @throws NoSuchElementException If a user with the given uuid does not exist
+     * @throws ValidationException If the limit is out of range
+     */
+    public CursorPage<Appointment> findAll(UUID user,
+                                           LocalDateTime from,
+                                           LocalDateTime to,
+                                           Appointment.Status status,
+                                           AppointmentCursor cursor,
+                                           int limit)
+            throws NoSuchElementException, ValidationException {
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE)
+            throw new ValidationException("Limit must be between 1 and "+MAX_PAGE_SIZE+".");
+
+        Specification<Appointment> filters = Specification
+                .where(occursOnOrAfter(from))
+                .and(occursOnOrBefore(to))
+                .and(statusEquals(status))
+                .and(occursAfter(cursor));
+
+        // fetch one extra appointment to detect whether a following page exists
+        List<Appointment> appointments = findAll(
+                user, filters, spec -> REPO.findAll(spec, ORDER, limit+1), COMPARATOR);
+
+        if (status == null || status == Appointment.Status.NEW)
+            appointments = merge(
+                    appointments, REC_SVC.findOccurrences(user, from, to, cursor, limit+1), COMPARATOR);
+
+        return page(checkUser(user, appointments), limit, AppointmentCursor::of);
     }
 
     /**
-     * Saves the given appointment
+     * Finds the views of one page of appointments matching the given criteria, ordered by date/time and id,
+     * without loading them as managed entities
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null
+     * @param status An appointment status, can be null
+     * @param cursor The position of the last appointment of the previous page, or null for the first page
+     * @param limit The maximum number of appointments in the page
+     * @return A page of appointment views
+     * @throws NoSuchElementException If a user with the given uuid does not exist
+     * @throws ValidationException If the limit is out of range
+     * @see #findAll(UUID, LocalDateTime, LocalDateTime, Appointment.Status, AppointmentCursor, int)
+     */
+    public CursorPage<AppointmentView> findAllViews(UUID user,
+                                                    LocalDateTime from,
+                                                    LocalDateTime to,
+                                                    Appointment.Status status,
+                                                    AppointmentCursor cursor,
+                                                    int limit)
+            throws NoSuchElementException, ValidationException {
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE)
+            throw new ValidationException("Limit must be between 1 and "+MAX_PAGE_SIZE+".");
+
+        Specification<Appointment> filters = Specification
+                .where(occursOnOrAfter(from))
+                .and(occursOnOrBefore(to))
+                .and(statusEquals(status))
+                .and(occursAfter(cursor));
+
+        List<AppointmentView> views = findAll(
+                user, filters, spec -> REPO.findViews(spec, ORDER, limit+1), VIEW_COMPARATOR);
+
+        if (status == null || status == Appointment.Status.NEW) {
+            List<AppointmentView> occurrences = REC_SVC
+                    .findOccurrences(user, from, to, cursor, limit+1)
+                    .stream()
+                    .map(AppointmentView::of)
+                    .toList();
+            views = merge(views, occurrences, VIEW_COMPARATOR);
+        }
+        return page(checkUser(user, views), limit, AppointmentCursor::of);
+    }
+
+    /**
+     * Passes every appointment matching the given criteria to the given action, ordered by date/time. Passing
+     * null to any criteria parameter ignores that field from the search query. Appointments are read from a
+     * database cursor and detached in batches, and occurrences of recurrences that are not stored as exceptions
+     * are expanded lazily and interleaved with status {@link Appointment.Status#NEW}, so the export holds the same
+     * appointments as {@link #findAll(UUID, LocalDateTime, LocalDateTime, Appointment.Status)} while memory use
+     * does not grow with the number of appointments
+     *
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null
+     * @param status An appointment status, can be null
+     * @param action An action to perform on each appointment; the appointment must not be retained
+     */
+    @Transactional(readOnly = true)
+    public void export(LocalDateTime from,
+                       LocalDateTime to,
+                       Appointment.Status status,
+                       Consumer<Appointment> action) {
+
+        Specification<Appointment> filters = Specification
+                .where(occursOnOrAfter(from))
+                .and(occursOnOrBefore(to))
+                .and(statusEquals(status));
+
+        Iterator<Appointment> occurrences = status == null || status == Appointment.Status.NEW
+                ? REC_SVC.iterateOccurrences(null, from, to)
+                : Collections.emptyIterator();
+
+        try (Stream<Appointment> appointments = REPO.stream(filters, ORDER, EXPORT_BATCH_SIZE)) {
+            Iterator<Appointment> iterator = appointments.iterator();
+            Appointment appointment = iterator.hasNext() ? iterator.next() : null;
+            Appointment occurrence = occurrences.hasNext() ? occurrences.next() : null;
+
+            for (int i = 1; appointment != null || occurrence != null; i++) {
+                if (occurrence == null || (appointment != null && COMPARATOR.compare(appointment, occurrence) <= 0)) {
+                    action.accept(appointment);
+                    appointment = iterator.hasNext() ? iterator.next() : null;
+                } else {
+                    action.accept(occurrence);
+                    occurrence = occurrences.hasNext() ? occurrences.next() : null;
+                }
+
+                // the appointment read ahead is detached as well, but was read with its provider and client
+                if (i % EXPORT_BATCH_SIZE == 0)
+                    REPO.clear();
+            }
+        }
+    }
+
+    /**
+     * Saves the given appointment. An appointment without an end date/time is given the default duration
      *
      * @param appointment An appointment
      * @return The saved appointment
+     * @throws ValidationException If the appointment does not end after it starts
+     * @throws ScheduleConflictException If the appointment is booked and overlaps another appointment booked
+     * with the same provider
      */
     @Transactional
     @Modifying
-    public Appointment saveOne(Appointment appointment) {
-        return REPO.save(appointment);
+    public Appointment saveOne(Appointment appointment) throws ValidationException, ScheduleConflictException {
+        return book(appointment);
     }
 
     /**
-     * Deletes the identified appointment
+     * Saves the given appointments in chunks of {@link #BULK_CHUNK_SIZE}, each committed in its own transaction.
+     * Appointments that fail validation or conflict with a booking are reported without affecting the rest of
+     * their chunk. If a chunk fails to commit, its appointments are retried one at a time so that only the
+     * failing appointments are reported
+     *
+     * @param items A list of batch items of appointments, each at the position given by its index
+     * @return A list of batch items of saved appointments, in the same order
+     */
+    public List<BatchItem<Appointment>> saveAll(List<BatchItem<Appointment>> items) {
+        List<BatchItem<Appointment>> results = new ArrayList<>(items);
+        List<BatchItem<Appointment>> pending = items
+                .stream()
+                .filter(BatchItem::isSuccess)
+                .toList();
+
+        for (int i = 0; i < pending.size(); i += BULK_CHUNK_SIZE) {
+            List<BatchItem<Appointment>> chunk = pending.subList(i, Math.min(i+BULK_CHUNK_SIZE, pending.size()));
+
+            for (BatchItem<Appointment> result : saveChunk(chunk))
+                results.set(result.getIndex(), result);
+        }
+        return results;
+    }
+
+    /**
+     * Sets the status of all appointments matching the given criteria, without loading them. Passing null to any
+     * criteria parameter ignores that field from the search query. Appointments can only be moved to a booked
+     * status from another booked status, since a set-based update cannot check the moved appointments for
+     * double bookings. The matching occurrences of recurrences, which are not stored, are stored as exceptions
+     * with the new status in the same transaction. They are found by expanding their recurrences, so the period
+     * must be bounded if a recurrence without an end matches
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null
+     * @param status The current appointment status, can be null
+     * @param newStatus The new appointment status
+     * @return The number of updated appointments, including the occurrences stored as exceptions
+     * @throws NoSuchElementException If a user with the given uuid does not exist
+     * @throws ValidationException If the new status is booked and the current status is not, or if no maximum
+     * date/time is given and a recurrence without an end has a matching occurrence
+     */
+    @Transactional
+    @Modifying
+    public int updateAll(UUID user,
+                         LocalDateTime from,
+                         LocalDateTime to,
+                         Appointment.Status status,
+                         Appointment.Status newStatus) throws NoSuchElementException, ValidationException {
+
+        if (newStatus.isBooked() && (status == null || !status.isBooked()))
+            throw new ValidationException(
+                    "Appointments can only be bulk updated to status="+newStatus+" from another booked status.");
+
+        Specification<Appointment> filters = Specification
+                .where(occursOnOrAfter(from))
+                .and(occursOnOrBefore(to))
+                .and(statusEquals(status));
+
+        // update the provider and client index branches separately, as the reads do. An update statement cannot
+        // hold the user id subquery of the reads, so the id is looked up first
+        List<Specification<Appointment>> branches;
+
+        if (user == null) {
+            branches = List.of(filters);
+        } else {
+            Long id = U_SVC.findId(user);
+            branches = List.of(providedBy(id).and(filters), attendedBy(id).and(filters));
+        }
+
+        // occurrences are expanded with the new status, so they only match that status and need no update to it
+        List<Appointment> occurrences = (status == null || status == Appointment.Status.NEW)
+                && newStatus != Appointment.Status.NEW
+                ? REC_SVC.findOccurrences(user, from, to)
+                : List.of();
+
+        if (to == null && occurrences
+                .stream()
+                .anyMatch(occurrence -> occurrence.getRecurrence().getLastDateTime() == null))
+            throw new ValidationException(
+                    "Appointments of recurrences without an end can only be bulk updated up to a date/time.");
+
+        int updated = 0;
+
+        for (Specification<Appointment> branch : branches) {
+            if (!newStatus.isBooked())
+                SCHEDULE.releaseAll(REPO.findUuids(branch.and(isBooked())));
+
+            updated += REPO.updateStatus(branch, newStatus);
+        }
+
+        // an exception takes the place of its own occurrence, which was checked against every other booking of
+        // the provider when its recurrence was saved
+        for (Appointment occurrence : occurrences) {
+            occurrence.setStatus(newStatus);
+            book(occurrence, (dateTime, endDateTime) -> List.of());
+        }
+        return updated+occurrences.size();
+    }
+
+    /**
+     * Checks whether the given changes to an appointment change its booking, in which case they must be checked for
+     * conflicts against the current appointment rather than written by {@link #updateOne(UUID, Long, Map)}
+     *
+     * @param changes A map of values by appointment attribute name
+     * @return True if the changes move the appointment, change its provider or book it, or false otherwise
+     */
+    public static boolean changesBooking(Map<String, Object> changes) {
+        Appointment.Status status = (Appointment.Status) changes.get(Appointment.Fields.status);
+        return (status != null && status.isBooked())
+                || changes.keySet().stream().anyMatch(BOOKING_ATTRIBUTES::contains);
+    }
+
+    /**
+     * Sets the given attributes of the identified appointment with a single update statement that writes only
+     * those columns, without reading the appointment first
      *
      * @param uuid An appointment uuid
+     * @param version The version of the appointment the update applies to, or null if the update applies to any
+     *                version
+     * @param changes A map of values by appointment attribute name
      * @throws NoSuchElementException If the appointment does not exist
-     * @throws Exception If the deletion was unsuccessful
+     * @throws OptimisticLockingFailureException If the appointment has another version
+     * @throws ValidationException If the changes change the booking of the appointment
+     * @see #changesBooking(Map)
      */
     @Transactional
     @Modifying
-    public void deleteOne(UUID uuid) throws Exception {
-        assertAppointmentExists(uuid);
+    public void updateOne(UUID uuid, Long version, Map<String, Object> changes)
+            throws NoSuchElementException, OptimisticLockingFailureException, ValidationException {
+
+        if (changesBooking(changes))
+            throw new ValidationException("Appointment uuid="+uuid+" cannot be rebooked without being read.");
 
+        if (REPO.update(uuid, version, changes) == 0) {
+            // the missed update tells no more, so the appointment is only looked up to report why
+            if (REPO.findWatermark(uuidEquals(uuid)).getCount() == 0)
+                handleAppointmentNotFound(uuid);
+
+            handleAppointmentModified(uuid);
+        }
+
+        // the new status is not booked, so any booking the appointment had is released
+        if (changes.containsKey(Appointment.Fields.status))
+            SCHEDULE.release(uuid);
+    }
+
+    /**
+     * Deletes the identified appointment
+     *
+     * @param uuid An appointment uuid
+     * @throws NoSuchElementException If the appointment does not exist
+     */
+    @Transactional
+    @Modifying
+    public void deleteOne(UUID uuid) throws NoSuchElementException {
+        // the deleted row count doubles as the existence check
         if (REPO.deleteByUuid(uuid) == 0)
-            throw new Exception("Unable to delete appointment uuid="+uuid+".");
+            handleAppointmentNotFound(uuid);
+
+        SCHEDULE.release(uuid);
+    }
+
+    /**
+     * Saves a chunk of appointments in a single transaction, falling back to one transaction per appointment if
+     * the chunk fails to commit
+     *
+     * @param chunk A list of batch items of appointments
+     * @return A list of batch items of saved appointments
+     */
+    private List<BatchItem<Appointment>> saveChunk(List<BatchItem<Appointment>> chunk) {
+        try {
+            // the providers stay locked until the chunk commits, so no recurrence is saved between the lookup
+            // of the occurrences and the bookings
+            return TX.execute(status -> SCHEDULE.synchronize(findProviders(chunk), () -> {
+                List<Booking> occurrences = findOccurrences(chunk);
+                List<BatchItem<Appointment>> saved = chunk
+                        .stream()
+                        .map(item -> book(item, occurrences))
+                        .toList();
+
+                // inserts are sent as JDBC batches on flush, then the chunk is detached to bound memory
+                REPO.flush();
+                REPO.clear();
+                return saved;
+            }));
+
+        } catch (RuntimeException e) {
+            return chunk
+                    .stream()
+                    .map(item -> {
+                        // the rolled back insert assigned an id that no longer exists
+                        item.getValue().setId(null);
+
+                        try {
+                            return TX.execute(status -> book(item));
+                        } catch (RuntimeException ex) {
+                            return BatchItem.<Appointment>failure(
+                                    item.getIndex(),
+                                    "Unable to save appointment uuid="+item.getValue().getUuid()+".");
+                        }
+                    })
+                    .toList();
+        }
+    }
+
+    /**
+     * Finds the occurrences of the recurrences of the providers of the given chunk that overlap the period the
+     * chunk spans, with a single lookup for the whole chunk
+     *
+     * @param chunk A list of batch items of appointments
+     * @return A list of bookings ordered by date/time
+     */
+    private List<Booking> findOccurrences(List<BatchItem<Appointment>> chunk) {
+        List<Appointment> appointments = chunk
+                .stream()
+                .map(BatchItem::getValue)
+                .toList();
+        LocalDateTime from = appointments
+                .stream()
+                .map(Appointment::getDateTime)
+                .min(Comparator.naturalOrder())
+                .orElseThrow();
+        LocalDateTime to = appointments
+                .stream()
+                .map(appointment -> appointment.getEndDateTime() != null
+                        ? appointment.getEndDateTime()
+                        : appointment.getDateTime().plus(Appointment.DEFAULT_DURATION))
+                .max(Comparator.naturalOrder())
+                .orElseThrow();
+        return REC_SVC.findBookings(findProviders(chunk), from, to);
+    }
+
+    /**
+     * Finds the ids of the providers of the given chunk
+     *
+     * @param chunk A list of batch items of appointments
+     * @return A set of provider ids
+     */
+    private Set<Long> findProviders(List<BatchItem<Appointment>> chunk) {
+        return chunk
+                .stream()
+                .map(item -> item.getValue().getProvider().getId())
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Books the appointment of the given batch item, reporting validation errors and booking conflicts on the
+     * item rather than throwing them
+     *
+     * @param item A batch item of an appointment
+     * @return A batch item of the saved appointment
+     */
+    private BatchItem<Appointment> book(BatchItem<Appointment> item) {
+        try {
+            return BatchItem.success(item.getIndex(), book(item.getValue()));
+        } catch (ValidationException | ScheduleConflictException e) {
+            return BatchItem.failure(item.getIndex(), e.getMessage());
+        }
+    }
+
+    /**
+     * Books the appointment of the given batch item against the given occurrences, which were looked up for its
+     * whole chunk, reporting validation errors and booking conflicts on the item rather than throwing them
+     *
+     * @param item A batch item of an appointment
+     * @param occurrences The occurrences overlapping the chunk of the item
+     * @return A batch item of the saved appointment
+     */
+    private BatchItem<Appointment> book(BatchItem<Appointment> item, List<Booking> occurrences) {
+        Long provider = item.getValue().getProvider().getId();
+
+        try {
+            return BatchItem.success(item.getIndex(), book(item.getValue(), (dateTime, endDateTime) -> occurrences
+                    .stream()
+                    .filter(occurrence -> occurrence.getProvider().equals(provider))
+                    .filter(occurrence -> occurrence.overlaps(dateTime, endDateTime))
+                    .toList()));
+        } catch (ValidationException | ScheduleConflictException e) {
+            return BatchItem.failure(item.getIndex(), e.getMessage());
+        }
+    }
+
+    /**
+     * Saves the given appointment, if it is valid and does not conflict with another booking of its provider,
+     * including the occurrences of the provider's recurrences
+     *
+     * @param appointment An appointment
+     * @return The saved appointment
+     * @throws ValidationException If the appointment does not end after it starts
+     * @throws ScheduleConflictException If the appointment is booked and overlaps another appointment booked
+     * with the same provider
+     */
+    private Appointment book(Appointment appointment) throws ValidationException, ScheduleConflictException {
+        return book(appointment, (dateTime, endDateTime) -> REC_SVC.findBookings(
+                appointment.getProvider().getId(), dateTime, endDateTime));
+    }
+
+    /**
+     * Saves the given appointment, if it is valid and does not conflict with another booking of its provider or
+     * any of the occurrences found by the given function
+     *
+     * @param appointment An appointment
+     * @param occurrences A function finding the occurrences of the provider's recurrences overlapping a period
+     * @return The saved appointment
+     * @throws ValidationException If the appointment does not end after it starts
+     * @throws ScheduleConflictException If the appointment is booked and overlaps another appointment booked
+     * with the same provider or an occurrence
+     */
+    private Appointment book(Appointment appointment,
+                             BiFunction<LocalDateTime, LocalDateTime, List<Booking>> occurrences)
+            throws ValidationException, ScheduleConflictException {
+
+        if (appointment.getUuid() == null)
+            appointment.setUuid(Uuids.generate());
+
+        if (appointment.getEndDateTime() == null)
+            appointment.setEndDateTime(appointment.getDateTime().plus(Appointment.DEFAULT_DURATION));
+
+        if (!appointment.getEndDateTime().isAfter(appointment.getDateTime()))
+            throw new ValidationException("Appointment uuid="+appointment.getUuid()+" must end after it starts.");
+
+        return SCHEDULE.book(appointment, occurrences, () -> REPO.save(appointment));
     }
 
     /**
@@ -116,22 +804,168 @@ public class AppointmentService {
     }
 
     /**
-     * Creates a specification for an appointment involving the identified user
+     * Throws an exception indicating that the identified appointment has another version than an update applies to
      *
-     * @param uuid A user uuid
+     * @param uuid An appointment uuid
+     * @throws OptimisticLockingFailureException Unconditionally
+     */
+    private void handleAppointmentModified(UUID uuid) throws OptimisticLockingFailureException {
+        throw new OptimisticLockingFailureException("Appointment uuid="+uuid+" has been modified.");
+    }
+
+    /**
+     * Runs the given query for all appointments matching the given filters that involve the identified user.
+     * The user is matched by a subquery within each statement, so a user that does not exist yields no results
+     * rather than an exception
+     *
+     * @param user A user uuid, can be null
+     * @param filters A specification for an appointment
+     * @param query A query for the appointments matching a specification, ordered by date/time and id
+     * @param comparator The order of the query results
+     * @return An ordered list of query results
+     * @param <T> The type of the query results
+     */
+    private <T> List<T> findAll(UUID user,
+                                Specification<Appointment> filters,
+                                Function<Specification<Appointment>, List<T>> query,
+                                Comparator<? super T> comparator) {
+        if (user == null)
+            return query.apply(filters);
+
+        // scan the provider and client indexes separately rather than OR-ing both columns, which defeats them
+        return merge(
+                query.apply(providedBy(user).and(filters)),
+                query.apply(attendedBy(user).and(filters)),
+                comparator);
+    }
+
+    /**
+     * Verifies that the identified user exists if the given results of a search for its appointments are empty,
+     * since the search cannot tell a user without appointments from a user that does not exist. Searches that
+     * find appointments need no further statement
+     *
+     * @param user A user uuid, can be null
+     * @param results The results of a search filtered by the user
+     * @return The results
+     * @param <T> The type of the results
+     * @throws NoSuchElementException If the results are empty and the user does not exist
+     */
+    private <T> List<T> checkUser(UUID user, List<T> results) throws NoSuchElementException {
+        if (user != null && results.isEmpty())
+            U_SVC.assertUserExists(user);
+
+        return results;
+    }
+
+    /**
+     * Creates a page from the given results, which hold one more element than the limit if a following page
+     * exists
+     *
+     * @param results An ordered list of at most limit+1 results
+     * @param limit The maximum number of results in the page
+     * @param cursor A function positioning a cursor at a result
+     * @return A page of results
+     * @param <T> The type of the results
+     */
+    private static <T> CursorPage<T> page(List<T> results, int limit, Function<T, AppointmentCursor> cursor) {
+        if (results.size() <= limit)
+            return new CursorPage<>(results, null);
+
+        List<T> content = results.subList(0, limit);
+        return new CursorPage<>(content, cursor.apply(content.get(limit-1)).encode());
+    }
+
+    /**
+     * Merges two ordered lists into a single ordered list
+     *
+     * @param a An ordered list
+     * @param b An ordered list
+     * @param comparator The order of both lists
+     * @return An ordered list
+     * @param <T> The type of the list elements
+     */
+    private static <T> List<T> merge(List<T> a, List<T> b, Comparator<? super T> comparator) {
+        List<T> merged = new ArrayList<>(a.size()+b.size());
+        int i = 0;
+        int j = 0;
+
+        while (i < a.size() && j < b.size())
+            merged.add(comparator.compare(a.get(i), b.get(j)) <= 0 ? a.get(i++) : b.get(j++));
+
+        merged.addAll(a.subList(i, a.size()));
+        merged.addAll(b.subList(j, b.size()));
+        return merged;
+    }
+
+    /**
+     * Creates a specification for an appointment provided by the identified user
+     *
+     * @param id A user id
      * @return A specification
      */
-    private Specification<Appointment> involvesUser(UUID uuid) {
-        return ((root, query, criteriaBuilder) -> {
-            if (uuid == null)
-                return criteriaBuilder.conjunction();
+    private Specification<Appointment> providedBy(Long id) {
+        return ((root, query, criteriaBuilder) ->
+                criteriaBuilder.equal(root.get(Appointment.Fields.provider).get(User.Fields.id), id));
+    }
 
-            return criteriaBuilder.or(
-                    criteriaBuilder.equal(root.get(Appointment.Fields.provider).get(User.Fields.uuid), uuid),
-                    criteriaBuilder.equal(root.get(Appointment.Fields.client).get(User.Fields.uuid), uuid));
+    /**
+     * Creates a specification for an appointment attended by the identified user as a client, excluding those
+     * the user also provides so that they are not matched twice alongside {@link #providedBy(Long)}
+     *
+     * @param id A user id
+     * @return A specification
+     */
+    private Specification<Appointment> attendedBy(Long id) {
+        return ((root, query, criteriaBuilder) -> criteriaBuilder.and(
+                criteriaBuilder.equal(root.get(Appointment.Fields.client).get(User.Fields.id), id),
+                criteriaBuilder.notEqual(root.get(Appointment.Fields.provider).get(User.Fields.id), id)));
+    }
+
+    /**
+     * Creates a specification for an appointment provided by the identified user, comparing the provider id
+     * with a subquery on the user uuid so that the provider index is still used
+     *
+     * @param user A user uuid
+     * @return A specification
+     */
+    private Specification<Appointment> providedBy(UUID user) {
+        return ((root, query, criteriaBuilder) -> criteriaBuilder.equal(
+                root.get(Appointment.Fields.provider).get(User.Fields.id),
+                userId(user, query, criteriaBuilder)));
+    }
+
+    /**
+     * Creates a specification for an appointment attended by the identified user as a client, excluding those
+     * the user also provides so that they are not matched twice alongside {@link #providedBy(UUID)}
+     *
+     * @param user A user uuid
+     * @return A specification
+     */
+    private Specification<Appointment> attendedBy(UUID user) {
+        return ((root, query, criteriaBuilder) -> {
+            Subquery<Long> id = userId(user, query, criteriaBuilder);
+            return criteriaBuilder.and(
+                    criteriaBuilder.equal(root.get(Appointment.Fields.client).get(User.Fields.id), id),
+                    criteriaBuilder.notEqual(root.get(Appointment.Fields.provider).get(User.Fields.id), id));
         });
     }
 
+    /**
+     * Creates a subquery for the id of the identified user
+     *
+     * @param user A user uuid
+     * @param query The query the subquery belongs to
+     * @param criteriaBuilder A criteria builder
+     * @return A subquery selecting at most one user id
+     */
+    private static Subquery<Long> userId(UUID user, CriteriaQuery<?> query, CriteriaBuilder criteriaBuilder) {
+        Subquery<Long> subquery = query.subquery(Long.class);
+        Root<User> root = subquery.from(User.class);
+        return subquery
+                .select(root.get(User.Fields.id))
+                .where(criteriaBuilder.equal(root.get(User.Fields.uuid), user));
+    }
+
     /**
      * Creates a specification for an appointment occurring on or after the given date/time
      *
@@ -158,6 +992,81 @@ public class AppointmentService {
                         : criteriaBuilder.lessThanOrEqualTo(root.get(Appointment.Fields.dateTime), dateTime));
     }
 
+    /**
+     * Creates a specification for an exception to an occurrence that the recurrence rule places on or after the
+     * given date/time
+     *
+     * @param dateTime A minimum bounding date/time (inclusive)
+     * @return A specification
+     */
+    private Specification<Appointment> recursOnOrAfter(LocalDateTime dateTime) {
+        return ((root, query, criteriaBuilder) ->
+                dateTime == null
+                        ? criteriaBuilder.isNotNull(root.get(Appointment.Fields.recurrenceDateTime))
+                        : criteriaBuilder.greaterThanOrEqualTo(
+                                root.get(Appointment.Fields.recurrenceDateTime), dateTime));
+    }
+
+    /**
+     * Creates a specification for an exception to an occurrence that the recurrence rule places on or before the
+     * given date/time
+     *
+     * @param dateTime A maximum bounding date/time (inclusive)
+     * @return A specification
+     */
+    private Specification<Appointment> recursOnOrBefore(LocalDateTime dateTime) {
+        return ((root, query, criteriaBuilder) ->
+                dateTime == null
+                        ? criteriaBuilder.conjunction()
+                        : criteriaBuilder.lessThanOrEqualTo(root.get(Appointment.Fields.recurrenceDateTime), dateTime));
+    }
+
+    /**
+     * Creates a specification for an appointment positioned after the given cursor. Stored appointments precede
+     * the occurrences of the same date/time, so none of them follow a cursor positioned at an occurrence
+     *
+     * @param cursor A cursor
+     * @return A specification
+     */
+    private Specification<Appointment> occursAfter(AppointmentCursor cursor) {
+        return ((root, query, criteriaBuilder) -> {
+            if (cursor == null)
+                return criteriaBuilder.conjunction();
+
+            if (cursor.isOccurrence())
+                return criteriaBuilder.greaterThan(root.get(Appointment.Fields.dateTime), cursor.getDateTime());
+
+            // the redundant lower bound on date/time lets the database seek the index to the cursor position
+            return criteriaBuilder.and(
+                    criteriaBuilder.greaterThanOrEqualTo(root.get(Appointment.Fields.dateTime), cursor.getDateTime()),
+                    criteriaBuilder.or(
+                            criteriaBuilder.greaterThan(root.get(Appointment.Fields.dateTime), cursor.getDateTime()),
+                            criteriaBuilder.greaterThan(root.get(Appointment.Fields.id), cursor.getId())));
+        });
+    }
+
+    /**
+     * Creates a specification for an appointment with a booked status
+     *
+     * @return A specification
+     */
+    private Specification<Appointment> isBooked() {
+        return ((root, query, criteriaBuilder) -> root
+                .get(Appointment.Fields.status)
+                .in(Arrays.stream(Appointment.Status.values()).filter(Appointment.Status::isBooked).toList()));
+    }
+
+    /**
+     * Creates a specification for the identified appointment
+     *
+     * @param uuid An appointment uuid
+     * @return A specification
+     */
+    private Specification<Appointment> uuidEquals(UUID uuid) {
+        return ((root, query, criteriaBuilder) ->
+                criteriaBuilder.equal(root.get(Appointment.Fields.uuid), uuid));
+    }
+
     /**
      * Creates a specification for an appointment with the given status
      *
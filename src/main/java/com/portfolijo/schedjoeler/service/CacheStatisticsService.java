@@ -0,0 +1,39 @@
+package com.portfolijo.schedjoeler.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Provides the statistics Hibernate collects for its second-level cache regions
+ */
+@RequiredArgsConstructor
+@Service
+public class CacheStatisticsService {
+    private final EntityManagerFactory EMF;
+
+    /**
+     * Finds the statistics of every second-level cache region holding entities or natural ids
+     *
+     * @return A list of region statistics, ordered by region name
+     */
+    public List<CacheRegionStatistics> findAll() {
+        Statistics statistics = EMF
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+
+        return Arrays
+                .stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(statistics::getDomainDataRegionStatistics)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+}
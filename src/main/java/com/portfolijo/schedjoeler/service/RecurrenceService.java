@@ -0,0 +1,701 @@
+package com.portfolijo.schedjoeler.service;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.Recurrence;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.pagination.AppointmentCursor;
+import com.portfolijo.schedjoeler.projection.Watermark;
+import com.portfolijo.schedjoeler.recurrence.OccurrenceId;
+import com.portfolijo.schedjoeler.repository.AppointmentRepository;
+import com.portfolijo.schedjoeler.repository.RecurrenceRepository;
+import com.portfolijo.schedjoeler.schedule.Booking;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
+import com.portfolijo.schedjoeler.schedule.ScheduleConflictException;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import jakarta.validation.ValidationException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.BiPredicate;
+
+/**
+ * Provides services for handling {@link Recurrence} entities and expanding their occurrences
+ */
+@RequiredArgsConstructor
+@Service
+public class RecurrenceService {
+
+    /**
+     * The number of occurrences of a recurrence, counted from its first, that a search without an end date/time
+     * expands it up to, wherever the search starts
+     */
+    public static final int MAX_OCCURRENCES = 1000;
+    private static final LocalDateTime END_OF_TIME = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    /**
+     * The number of stored exceptions read per statement while merging expansions
+     */
+    private static final int EXCEPTION_BATCH = 500;
+
+    private final RecurrenceRepository REPO;
+    private final AppointmentRepository A_REPO;
+    private final ProviderScheduleIndex SCHEDULE;
+
+    /**
+     * Verifies that the identified recurrence exists
+     *
+     * @param uuid A recurrence uuid
+     * @throws NoSuchElementException If the recurrence does not exist
+     */
+    public void assertRecurrenceExists(UUID uuid) throws NoSuchElementException {
+        if (!REPO.existsByUuid(uuid))
+            handleRecurrenceNotFound(uuid);
+    }
+
+    /**
+     * Finds the identified recurrence
+     *
+     * @param uuid A recurrence uuid
+     * @return A recurrence
+     * @throws NoSuchElementException If the recurrence does not exist
+     */
+    public Recurrence findOne(UUID uuid) throws NoSuchElementException {
+        Recurrence recurrence = REPO.findByUuid(uuid);
+
+        if (recurrence == null)
+            handleRecurrenceNotFound(uuid);
+
+        return recurrence;
+    }
+
+    /**
+     * Finds the identified occurrence of a recurrence, either as its stored exception or expanded from the
+     * recurrence rule
+     *
+     * @param uuid A recurrence uuid
+     * @param dateTime The date/time the recurrence rule places the occurrence at
+     * @return An appointment, which is not persisted unless the occurrence is stored as an exception
+     * @throws NoSuchElementException If the recurrence does not exist or does not occur at the given date/time
+     */
+    public Appointment findOccurrence(UUID uuid, LocalDateTime dateTime) throws NoSuchElementException {
+        Recurrence recurrence = findOne(uuid);
+
+        if (!recurrence.getRule().occursAt(recurrence.getDateTime(), dateTime))
+            throw new NoSuchElementException(
+                    "Recurrence uuid="+uuid+" has no occurrence at date/time="+dateTime+".");
+
+        Appointment exception = A_REPO.findByUuid(OccurrenceId.uuid(uuid, dateTime));
+        return exception != null ? exception : occurrence(recurrence, dateTime);
+    }
+
+    /**
+     * Finds the occurrences of all recurrences involving the given user that start within the given period,
+     * excluding those stored as exceptions. Each recurrence is expanded lazily from the start of the period, and
+     * the expansions are merged as they are computed
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null to expand each recurrence no further than
+     *           its first {@link #MAX_OCCURRENCES} occurrences
+     * @return A list of unpersisted appointments, ordered by date/time
+     */
+    public List<Appointment> findOccurrences(UUID user, LocalDateTime from, LocalDateTime to) {
+        List<Appointment> occurrences = new ArrayList<>();
+        expand(user, from, to, (recurrence, dateTime) -> occurrences.add(occurrence(recurrence, dateTime)));
+        return occurrences;
+    }
+
+    /**
+     * Finds at most the given number of occurrences of all recurrences involving the given user that start within
+     * the given period and are positioned after the given cursor, excluding those stored as exceptions. The
+     * recurrences are expanded from the cursor date/time rather than from the start of the period, and the
+     * expansion stops once enough occurrences are found
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null
+     * @param cursor The position of the last appointment of the previous page, or null for the first page
+     * @param limit The maximum number of occurrences
+     * @return A list of unpersisted appointments, ordered by date/time and recurrence uuid
+     */
+    public List<Appointment> findOccurrences(UUID user,
+                                             LocalDateTime from,
+                                             LocalDateTime to,
+                                             AppointmentCursor cursor,
+                                             int limit) {
+        LocalDateTime lower = cursor == null || (from != null && from.isAfter(cursor.getDateTime()))
+                ? from
+                : cursor.getDateTime();
+        List<Appointment> occurrences = new ArrayList<>();
+        expand(user, lower, to, (recurrence, dateTime) -> {
+            if (isAfter(cursor, recurrence, dateTime))
+                occurrences.add(occurrence(recurrence, dateTime));
+
+            return occurrences.size() < limit;
+        });
+        return occurrences;
+    }
+
+    /**
+     * Iterates over the occurrences of all recurrences involving the given user that start within the given
+     * period, excluding those stored as exceptions, in date/time and recurrence uuid order. Each recurrence is
+     * expanded only as far as the iteration has reached, so memory use does not grow with the number of
+     * occurrences
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null to expand each recurrence no further than
+     *           its first {@link #MAX_OCCURRENCES} occurrences
+     * @return An iterator of unpersisted appointments
+     */
+    public Iterator<Appointment> iterateOccurrences(UUID user, LocalDateTime from, LocalDateTime to) {
+        Merge merge = new Merge(user, from, to);
+
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return merge.hasNext();
+            }
+
+            @Override
+            public Appointment next() {
+                if (!merge.hasNext())
+                    throw new NoSuchElementException();
+
+                Appointment occurrence = occurrence(merge.recurrence, merge.dateTime);
+                merge.advance();
+                return occurrence;
+            }
+        };
+    }
+
+    /**
+     * Counts the occurrences of all recurrences involving the given user that start within the given period, per
+     * day, excluding those stored as exceptions. No appointments are created for the occurrences
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null to expand each recurrence no further than
+     *           its first {@link #MAX_OCCURRENCES} occurrences
+     * @return A map of the number of occurrences by day, ordered by day
+     */
+    public SortedMap<LocalDate, Long> countOccurrences(UUID user, LocalDateTime from, LocalDateTime to) {
+        SortedMap<LocalDate, Long> counts = new TreeMap<>();
+        expand(user, from, to, (recurrence, dateTime) -> {
+            counts.merge(dateTime.toLocalDate(), 1L, Long::sum);
+            return true;
+        });
+        return counts;
+    }
+
+    /**
+     * Finds the bookings of the occurrences of all recurrences provided by the identified provider that overlap
+     * the given period, excluding those stored as exceptions, which are booked as appointments
+     *
+     * @param provider A provider id
+     * @param dateTime The start of a period (inclusive)
+     * @param endDateTime The end of a period (exclusive)
+     * @return A list of bookings ordered by date/time
+     */
+    public List<Booking> findBookings(Long provider, LocalDateTime dateTime, LocalDateTime endDateTime) {
+        return findBookings(List.of(provider), dateTime, endDateTime);
+    }
+
+    /**
+     * Finds the bookings of the occurrences of all recurrences provided by any of the identified providers that
+     * overlap the given period, excluding those stored as exceptions, which are booked as appointments. Each
+     * recurrence is expanded from the last date/time an occurrence of its duration can start without ending
+     * before the period
+     *
+     * @param providers A collection of provider ids
+     * @param dateTime The start of a period (inclusive)
+     * @param endDateTime The end of a period (exclusive)
+     * @return A list of bookings ordered by date/time
+     */
+    public List<Booking> findBookings(Collection<Long> providers,
+                                      LocalDateTime dateTime,
+                                      LocalDateTime endDateTime) {
+        List<Recurrence> recurrences = REPO
+                .findAll(Specification
+                        .where(providedByAny(providers))
+                        .and(startsOnOrBefore(endDateTime)))
+                .stream()
+                .filter(recurrence -> recurrence.getLastDateTime() == null
+                        || recurrence.getLastDateTime().plus(duration(recurrence)).isAfter(dateTime))
+                .toList();
+
+        if (recurrences.isEmpty())
+            return List.of();
+
+        LocalDateTime lower = recurrences
+                .stream()
+                .map(recurrence -> dateTime.minus(duration(recurrence)))
+                .min(Comparator.naturalOrder())
+                .orElseThrow();
+
+        Set<OccurrenceId> exceptions = new HashSet<>(A_REPO.findOccurrenceIds(
+                recurrences.stream().map(Recurrence::getId).toList(), lower, endDateTime));
+
+        List<Booking> bookings = new ArrayList<>();
+
+        for (Recurrence recurrence : recurrences) {
+            for (LocalDateTime occurrence : overlapping(recurrence, dateTime, endDateTime)) {
+                if (!exceptions.contains(new OccurrenceId(recurrence.getId(), occurrence)))
+                    bookings.add(new Booking(
+                            OccurrenceId.uuid(recurrence.getUuid(), occurrence),
+                            recurrence.getProvider().getId(),
+                            occurrence,
+                            occurrence.plus(duration(recurrence))));
+            }
+        }
+
+        bookings.sort(Comparator.comparing(Booking::getDateTime));
+        return bookings;
+    }
+
+    /**
+     * Finds the watermark of all recurrences involving the given user that can occur within the given period,
+     * without expanding them
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null
+     * @return A watermark
+     */
+    public Watermark findWatermark(UUID user, LocalDateTime from, LocalDateTime to) {
+        return REPO.findWatermark(Specification
+                .where(startsOnOrBefore(to))
+                .and(endsOnOrAfter(from))
+                .and(involves(user)));
+    }
+
+    /**
+     * Saves the given recurrence. A recurrence without an end date/time is given the default appointment
+     * duration. The occurrences are checked against every appointment booked with the provider, and against the
+     * occurrences of the provider's other recurrences as far as the first {@link #MAX_OCCURRENCES} occurrences,
+     * while no other booking of the provider can be saved until it commits
+     *
+     * @param recurrence A recurrence with a persisted provider
+     * @return The saved recurrence
+     * @throws ValidationException If the first occurrence does not end after it starts
+     * @throws ScheduleConflictException If an occurrence overlaps an appointment booked with the same provider
+     * or an occurrence of another recurrence of the same provider
+     */
+    @Transactional
+    @Modifying
+    public Recurrence saveOne(Recurrence recurrence) throws ValidationException, ScheduleConflictException {
+        if (recurrence.getEndDateTime() == null)
+            recurrence.setEndDateTime(recurrence.getDateTime().plus(Appointment.DEFAULT_DURATION));
+
+        if (!recurrence.getEndDateTime().isAfter(recurrence.getDateTime()))
+            throw new ValidationException("Recurrence must end after it starts.");
+
+        recurrence.setLastDateTime(recurrence.getRule().lastDateTime(recurrence.getDateTime()));
+
+        Long provider = recurrence.getProvider().getId();
+        return SCHEDULE.synchronize(provider, () -> {
+            LocalDateTime horizon = horizon(recurrence);
+            LocalDateTime end = recurrence.getLastDateTime() != null
+                    ? recurrence.getLastDateTime().plus(duration(recurrence))
+                    : END_OF_TIME;
+
+            // the appointments are all checked since they are few, the other occurrences only up to the horizon
+            checkConflicts(recurrence, SCHEDULE.findAll(provider, recurrence.getDateTime(), end));
+            checkConflicts(recurrence, findBookings(
+                    provider, recurrence.getDateTime(), horizon.plus(duration(recurrence))));
+            return REPO.save(recurrence);
+        });
+    }
+
+    /**
+     * Deletes the identified recurrence along with its stored exceptions, without loading the recurrence
+     *
+     * @param uuid A recurrence uuid
+     * @throws NoSuchElementException If the recurrence does not exist
+     */
+    @Transactional
+    @Modifying
+    public void deleteOne(UUID uuid) throws NoSuchElementException {
+        SCHEDULE.releaseAll(A_REPO.findUuidsByRecurrenceUuid(uuid));
+        A_REPO.deleteByRecurrenceUuid(uuid);
+
+        // the deleted row count doubles as the existence check, so a concurrent delete is not found either
+        if (REPO.deleteByUuid(uuid) == 0)
+            handleRecurrenceNotFound(uuid);
+    }
+
+    /**
+     * Passes every occurrence of the recurrences involving the given user that starts within the given period to
+     * the given action, in date/time and recurrence uuid order, skipping those stored as exceptions, until the
+     * action asks to stop
+     *
+     * @param user A user uuid, can be null
+     * @param from A minimum bounding date/time (inclusive), can be null
+     * @param to A maximum bounding date/time (inclusive), can be null
+     * @param action An action to perform on each recurrence and occurrence date/time, returning false to stop
+     */
+    private void expand(UUID user,
+                        LocalDateTime from,
+                        LocalDateTime to,
+                        BiPredicate<Recurrence, LocalDateTime> action) {
+
+        for (Merge merge = new Merge(user, from, to); merge.hasNext(); merge.advance()) {
+            if (!action.test(merge.recurrence, merge.dateTime))
+                return;
+        }
+    }
+
+    /**
+     * Throws an exception if an occurrence of the given recurrence overlaps any of the given bookings
+     *
+     * @param recurrence A recurrence
+     * @param bookings A list of bookings of the recurrence's provider
+     * @throws ScheduleConflictException If an occurrence overlaps a booking
+     */
+    private static void checkConflicts(Recurrence recurrence, List<Booking> bookings)
+            throws ScheduleConflictException {
+
+        for (Booking booking : bookings) {
+            if (!overlapping(recurrence, booking.getDateTime(), booking.getEndDateTime()).isEmpty())
+                throw new ScheduleConflictException(
+                        "Recurrence overlaps appointment uuid="+booking.getAppointment()+".");
+        }
+    }
+
+    /**
+     * Finds the occurrences of the given recurrence that overlap the given period, skipping to the period
+     * rather than expanding the recurrence from its start
+     *
+     * @param recurrence A recurrence
+     * @param dateTime The start of a period (inclusive)
+     * @param endDateTime The end of a period (exclusive)
+     * @return A list of occurrence date/times in ascending order
+     */
+    private static List<LocalDateTime> overlapping(Recurrence recurrence,
+                                                   LocalDateTime dateTime,
+                                                   LocalDateTime endDateTime) {
+        Duration duration = duration(recurrence);
+        Iterator<LocalDateTime> occurrences = recurrence.getRule().occurrences(
+                recurrence.getDateTime(), dateTime.minus(duration));
+        List<LocalDateTime> overlapping = new ArrayList<>();
+
+        while (occurrences.hasNext()) {
+            LocalDateTime occurrence = occurrences.next();
+
+            if (!occurrence.isBefore(endDateTime))
+                break;
+
+            // an occurrence ending as the period starts only touches it
+            if (occurrence.plus(duration).isAfter(dateTime))
+                overlapping.add(occurrence);
+        }
+        return overlapping;
+    }
+
+    /**
+     * Finds the date/time of the last of the first {@link #MAX_OCCURRENCES} occurrences of the given recurrence,
+     * which searches without an end date/time expand the recurrence up to
+     *
+     * @param recurrence A recurrence
+     * @return An occurrence date/time
+     */
+    private static LocalDateTime horizon(Recurrence recurrence) {
+        LocalDateTime horizon = recurrence.getDateTime();
+        Iterator<LocalDateTime> occurrences = recurrence.getRule().occurrences(recurrence.getDateTime(), null);
+
+        for (int i = 0; i < MAX_OCCURRENCES && occurrences.hasNext(); i++)
+            horizon = occurrences.next();
+
+        return horizon;
+    }
+
+    /**
+     * Gets the duration of every occurrence of the given recurrence
+     *
+     * @param recurrence A recurrence
+     * @return A duration
+     */
+    private static Duration duration(Recurrence recurrence) {
+        return Duration.between(recurrence.getDateTime(), recurrence.getEndDateTime());
+    }
+
+    /**
+     * Creates the occurrence of the given recurrence at the given date/time
+     *
+     * @param recurrence A recurrence
+     * @param dateTime An occurrence date/time
+     * @return An unpersisted appointment
+     */
+    private static Appointment occurrence(Recurrence recurrence, LocalDateTime dateTime) {
+        Duration duration = duration(recurrence);
+
+        return Appointment
+                .builder()
+                .uuid(OccurrenceId.uuid(recurrence.getUuid(), dateTime))
+                .dateTime(dateTime)
+                .endDateTime(dateTime.plus(duration))
+                .provider(recurrence.getProvider())
+                .client(recurrence.getClient())
+                .status(Appointment.Status.NEW)
+                .location(recurrence.getLocation())
+                .description(recurrence.getDescription())
+                .recurrence(recurrence)
+                .recurrenceDateTime(dateTime)
+                .build();
+    }
+
+    /**
+     * Checks if the occurrence of the given recurrence at the given date/time is positioned after the given
+     * cursor. Occurrences that are not stored follow the stored appointments of the same date/time
+     *
+     * @param cursor A cursor, can be null
+     * @param recurrence A recurrence
+     * @param dateTime An occurrence date/time
+     * @return True if the occurrence follows the cursor, or false otherwise
+     */
+    private static boolean isAfter(AppointmentCursor cursor, Recurrence recurrence, LocalDateTime dateTime) {
+        if (cursor == null || dateTime.isAfter(cursor.getDateTime()))
+            return true;
+
+        return dateTime.equals(cursor.getDateTime())
+                && (!cursor.isOccurrence() || recurrence.getUuid().compareTo(cursor.getRecurrence()) > 0);
+    }
+
+    /**
+     * Throws an exception indicating that no recurrence was found with the given uuid
+     *
+     * @param uuid A recurrence uuid
+     * @throws NoSuchElementException Unconditionally
+     */
+    private void handleRecurrenceNotFound(UUID uuid) throws NoSuchElementException {
+        throw new NoSuchElementException("Recurrence uuid="+uuid+" not found.");
+    }
+
+    /**
+     * Creates a specification for a recurrence whose first occurrence starts on or before the given date/time
+     *
+     * @param dateTime A maximum bounding date/time (inclusive), can be null
+     * @return A specification
+     */
+    private Specification<Recurrence> startsOnOrBefore(LocalDateTime dateTime) {
+        return ((root, query, criteriaBuilder) ->
+                dateTime == null
+                        ? criteriaBuilder.conjunction()
+                        : criteriaBuilder.lessThanOrEqualTo(root.get(Recurrence.Fields.dateTime), dateTime));
+    }
+
+    /**
+     * Creates a specification for a recurrence that can occur on or after the given date/time
+     *
+     * @param dateTime A minimum bounding date/time (inclusive), can be null
+     * @return A specification
+     */
+    private Specification<Recurrence> endsOnOrAfter(LocalDateTime dateTime) {
+        return ((root, query, criteriaBuilder) ->
+                dateTime == null
+                        ? criteriaBuilder.conjunction()
+                        : criteriaBuilder.or(
+                                criteriaBuilder.isNull(root.get(Recurrence.Fields.lastDateTime)),
+                                criteriaBuilder.greaterThanOrEqualTo(
+                                        root.get(Recurrence.Fields.lastDateTime), dateTime)));
+    }
+
+    /**
+     * Creates a specification for a recurrence provided by any of the identified users
+     *
+     * @param providers A collection of user ids
+     * @return A specification
+     */
+    private Specification<Recurrence> providedByAny(Collection<Long> providers) {
+        return ((root, query, criteriaBuilder) -> root
+                .get(Recurrence.Fields.provider)
+                .get(User.Fields.id)
+                .in(providers));
+    }
+
+    /**
+     * Creates a specification for a recurrence provided or attended by the identified user, comparing both user
+     * ids with a subquery on the user uuid so that no separate statement looks up the user
+     *
+     * @param user A user uuid, can be null
+     * @return A specification
+     */
+    private Specification<Recurrence> involves(UUID user) {
+        return ((root, query, criteriaBuilder) -> {
+            if (user == null)
+                return criteriaBuilder.conjunction();
+
+            Subquery<Long> id = query.subquery(Long.class);
+            Root<User> u = id.from(User.class);
+            id.select(u.get(User.Fields.id)).where(criteriaBuilder.equal(u.get(User.Fields.uuid), user));
+
+            return criteriaBuilder.or(
+                    criteriaBuilder.equal(root.get(Recurrence.Fields.provider).get(User.Fields.id), id),
+                    criteriaBuilder.equal(root.get(Recurrence.Fields.client).get(User.Fields.id), id));
+        });
+    }
+
+    /**
+     * Merges the expansions of all recurrences involving a user within a period in date/time and recurrence uuid
+     * order, skipping the occurrences stored as exceptions. The next occurrence is exposed until the merge is
+     * advanced past it. The exceptions are read a batch at a time as the merge reaches them, and dropped once it
+     * has passed them, so memory use does not grow with the length of the period
+     */
+    private class Merge {
+        // occurrences at the same date/time are ordered by recurrence uuid, which pages are positioned by
+        private final PriorityQueue<Expansion> expansions = new PriorityQueue<>(Comparator
+                .comparing(Expansion::peek)
+                .thenComparing(expansion -> expansion.recurrence.getUuid()));
+        private final Deque<OccurrenceId> loaded = new ArrayDeque<>();
+        private final Set<OccurrenceId> exceptions = new HashSet<>();
+        private final List<Long> ids;
+        private final LocalDateTime to;
+        private OccurrenceId position;
+        private boolean exhausted;
+        private Recurrence recurrence;
+        private LocalDateTime dateTime;
+
+        private Merge(UUID user, LocalDateTime from, LocalDateTime to) {
+            List<Recurrence> recurrences = REPO.findAll(Specification
+                    .where(startsOnOrBefore(to))
+                    .and(endsOnOrAfter(from))
+                    .and(involves(user)));
+
+            for (Recurrence recurrence : recurrences) {
+                Expansion expansion = new Expansion(recurrence, from, to);
+
+                if (expansion.hasNext())
+                    expansions.add(expansion);
+            }
+
+            this.ids = recurrences.stream().map(Recurrence::getId).toList();
+            this.to = to != null ? to : END_OF_TIME;
+            this.exhausted = expansions.isEmpty();
+
+            // ids start at 1, so the first batch starts with the exceptions at the first occurrence
+            if (!exhausted)
+                this.position = new OccurrenceId(0L, expansions.peek().peek());
+
+            advance();
+        }
+
+        private boolean hasNext() {
+            return dateTime != null;
+        }
+
+        private void advance() {
+            recurrence = null;
+            dateTime = null;
+
+            while (!expansions.isEmpty() && dateTime == null) {
+                Expansion expansion = expansions.poll();
+                LocalDateTime next = expansion.next();
+
+                if (!isException(expansion.recurrence, next)) {
+                    recurrence = expansion.recurrence;
+                    dateTime = next;
+                }
+
+                if (expansion.hasNext())
+                    expansions.add(expansion);
+            }
+        }
+
+        /**
+         * Checks if the occurrence of the given recurrence at the given date/time is stored as an exception. The
+         * merge never moves back, so the exceptions before the occurrence are dropped, and the exceptions are
+         * read until they are complete up to the occurrence
+         */
+        private boolean isException(Recurrence recurrence, LocalDateTime dateTime) {
+            drop(dateTime);
+
+            // every exception before the last one read has been read, but more may share its date/time
+            while (!exhausted && !dateTime.isBefore(position.getDateTime())) {
+                List<OccurrenceId> batch = A_REPO.findOccurrenceIds(ids, position, to, EXCEPTION_BATCH);
+                loaded.addAll(batch);
+                exceptions.addAll(batch);
+                exhausted = batch.size() < EXCEPTION_BATCH;
+
+                if (!batch.isEmpty())
+                    position = batch.get(batch.size()-1);
+
+                drop(dateTime);
+            }
+            return exceptions.contains(new OccurrenceId(recurrence.getId(), dateTime));
+        }
+
+        /**
+         * Drops the exceptions read before the given date/time
+         */
+        private void drop(LocalDateTime dateTime) {
+            while (!loaded.isEmpty() && loaded.peekFirst().getDateTime().isBefore(dateTime))
+                exceptions.remove(loaded.pollFirst());
+        }
+    }
+
+    /**
+     * Iterates over the occurrences of one recurrence within a period, exposing the next occurrence so that
+     * expansions can be merged in date/time order. A period without an end ends at the horizon of the
+     * recurrence, wherever the period starts
+     */
+    private static class Expansion {
+        private final Recurrence recurrence;
+        private final Iterator<LocalDateTime> occurrences;
+        private final LocalDateTime to;
+        private LocalDateTime next;
+
+        private Expansion(Recurrence recurrence, LocalDateTime from, LocalDateTime to) {
+            this.recurrence = recurrence;
+            this.occurrences = recurrence.getRule().occurrences(recurrence.getDateTime(), from);
+            this.to = to != null ? to : horizon(recurrence);
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+
+            if (!occurrences.hasNext())
+                return;
+
+            LocalDateTime dateTime = occurrences.next();
+
+            if (!dateTime.isAfter(to))
+                next = dateTime;
+        }
+
+        private boolean hasNext() {
+            return next != null;
+        }
+
+        private LocalDateTime peek() {
+            return next;
+        }
+
+        private LocalDateTime next() {
+            LocalDateTime current = next;
+            advance();
+            return current;
+        }
+    }
+}
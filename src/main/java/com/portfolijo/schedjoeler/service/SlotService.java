@@ -0,0 +1,124 @@
+package com.portfolijo.schedjoeler.service;
+
+import com.portfolijo.schedjoeler.schedule.Booking;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
+import com.portfolijo.schedjoeler.schedule.Slot;
+import jakarta.validation.ValidationException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Provides services for finding free {@link Slot}s in provider schedules
+ */
+@RequiredArgsConstructor
+@Service
+public class SlotService {
+    public static final Duration MAX_WINDOW = Duration.ofDays(92);
+
+    private final UserService U_SVC;
+    private final RecurrenceService REC_SVC;
+    private final ProviderScheduleIndex SCHEDULE;
+
+    /**
+     * Finds the free slots of the given length in the identified provider's schedule. Slots fall within the
+     * given window and the working hours of each day in it, and start either at the opening time or as soon as
+     * the previous slot or booked appointment ends. The provider's bookings are read in date/time order from
+     * the schedule index, merged with the occurrences of its recurrences expanded within the window, and swept
+     * once, so the cost is linear in the size of the window
+     *
+     * @param provider A provider uuid
+     * @param from The start of the window (inclusive)
+     * @param to The end of the window (exclusive)
+     * @param length The length of each slot
+     * @param open The daily opening time (inclusive)
+     * @param close The daily closing time (exclusive)
+     * @return A list of slots ordered by date/time
+     * @throws NoSuchElementException If the provider does not exist
+     * @throws ValidationException If the window, length or working hours are empty or the window is too long
+     */
+    public List<Slot> findAll(UUID provider,
+                              LocalDateTime from,
+                              LocalDateTime to,
+                              Duration length,
+                              LocalTime open,
+                              LocalTime close) throws NoSuchElementException, ValidationException {
+
+        if (!from.isBefore(to))
+            throw new ValidationException("Slot window must end after it starts.");
+
+        if (Duration.between(from, to).compareTo(MAX_WINDOW) > 0)
+            throw new ValidationException("Slot window must not exceed "+MAX_WINDOW.toDays()+" days.");
+
+        if (length.isNegative() || length.isZero())
+            throw new ValidationException("Slot length must be positive.");
+
+        if (!open.isBefore(close))
+            throw new ValidationException("Working hours must close after they open.");
+
+        Long id = U_SVC.findId(provider);
+        List<Booking> bookings = merge(SCHEDULE.findAll(id, from, to), REC_SVC.findBookings(id, from, to));
+        List<Slot> slots = new ArrayList<>();
+        LocalDateTime busyUntil = from;
+        int next = 0;
+
+        for (LocalDate day = from.toLocalDate(); day.atTime(open).isBefore(to); day = day.plusDays(1)) {
+            LocalDateTime end = min(day.atTime(close), to);
+            LocalDateTime dateTime = max(max(day.atTime(open), from), busyUntil);
+
+            while (!dateTime.plus(length).isAfter(end)) {
+                LocalDateTime endDateTime = dateTime.plus(length);
+
+                // a booking starting before the slot would end pushes the slot back to the end of the booking
+                if (next < bookings.size() && bookings.get(next).getDateTime().isBefore(endDateTime)) {
+                    busyUntil = max(busyUntil, bookings.get(next++).getEndDateTime());
+                    dateTime = max(dateTime, busyUntil);
+                    continue;
+                }
+
+                slots.add(new Slot(dateTime, endDateTime));
+                dateTime = endDateTime;
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Merges two lists of bookings ordered by date/time into a single list ordered by date/time
+     *
+     * @param a A list of bookings ordered by date/time
+     * @param b A list of bookings ordered by date/time
+     * @return A list of bookings ordered by date/time
+     */
+    private static List<Booking> merge(List<Booking> a, List<Booking> b) {
+        if (b.isEmpty())
+            return a;
+
+        List<Booking> merged = new ArrayList<>(a.size()+b.size());
+        int i = 0;
+        int j = 0;
+
+        while (i < a.size() && j < b.size())
+            merged.add(a.get(i).getDateTime().isAfter(b.get(j).getDateTime()) ? b.get(j++) : a.get(i++));
+
+        merged.addAll(a.subList(i, a.size()));
+        merged.addAll(b.subList(j, b.size()));
+        return merged;
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
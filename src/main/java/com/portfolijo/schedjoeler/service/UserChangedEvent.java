@@ -0,0 +1,20 @@
+package com.portfolijo.schedjoeler.service;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.util.UUID;
+
+/**
+ * Published when a user is saved or deleted, so that copies of the user held outside the persistence context
+ * can be discarded
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class UserChangedEvent {
+    @NonNull
+    private final UUID uuid;
+}
@@ -3,13 +3,20 @@ package com.portfolijo.schedjoeler.service;
 import com.portfolijo.schedjoeler.domain.User;
 import com.portfolijo.schedjoeler.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Provides services for handling {@link User} entities
@@ -18,6 +25,8 @@ import java.util.UUID;
 @Service
 public class UserService {
     private final UserRepository REPO;
+    private final ApplicationEventPublisher PUBLISHER;
+    private final PasswordEncoder ENCODER;
 
     /**
      * Verifies that the identified user exists
@@ -26,7 +35,7 @@ public class UserService {
      * @throws NoSuchElementException If the user does not exist
      */
     public void assertUserExists(UUID uuid) throws NoSuchElementException {
-        if (!REPO.existsByUuid(uuid))
+        if (REPO.findIdByUuid(uuid) == null)
             handleUserNotFound(uuid);
     }
 
@@ -46,6 +55,57 @@ public class UserService {
         return user;
     }
 
+    /**
+     * Finds the identified user for an update that only applies to the given version. The user is read from the
+     * second-level cache when possible, and the update checks the version again when it is written
+     *
+     * @param uuid A user uuid
+     * @param version The version the update applies to, or null if the update applies to any version
+     * @return A user
+     * @throws NoSuchElementException If the user does not exist
+     * @throws OptimisticLockingFailureException If the user has another version
+     */
+    public User findOne(UUID uuid, Long version) throws NoSuchElementException, OptimisticLockingFailureException {
+        User user = findOne(uuid);
+
+        if (version != null && !version.equals(user.getVersion()))
+            throw new OptimisticLockingFailureException("User uuid="+uuid+" has been modified.");
+
+        return user;
+    }
+
+    /**
+     * Finds the identified users with a single query
+     *
+     * @param uuids A collection of user uuids
+     * @return A map of users by uuid, excluding uuids that do not identify an existing user
+     */
+    public Map<UUID, User> findAll(Collection<UUID> uuids) {
+        if (uuids.isEmpty())
+            return Map.of();
+
+        return REPO
+                .findAllByUuidIn(uuids)
+                .stream()
+                .collect(Collectors.toMap(User::getUuid, Function.identity()));
+    }
+
+    /**
+     * Finds the id of the identified user
+     *
+     * @param uuid A user uuid
+     * @return A user id
+     * @throws NoSuchElementException If the user does not exist
+     */
+    public Long findId(UUID uuid) throws NoSuchElementException {
+        Long id = REPO.findIdByUuid(uuid);
+
+        if (id == null)
+            handleUserNotFound(uuid);
+
+        return id;
+    }
+
     /**
      * Finds all users
      *
@@ -64,7 +124,26 @@ public class UserService {
     @Transactional
     @Modifying
     public User saveOne(User user) {
-        return REPO.save(user);
+        return saveOne(user, null);
+    }
+
+    /**
+     * Saves the given user, setting their password if one is given. Only the hash of the password is stored, so
+     * the user can log in with it once the cached login details of the user are evicted on save
+     *
+     * @param user A user
+     * @param password A password, or null to keep the current password (if any)
+     * @return The saved user
+     */
+    @Transactional
+    @Modifying
+    public User saveOne(User user, String password) {
+        if (password != null)
+            user.setPasswordHash(ENCODER.encode(password));
+
+        User saved = REPO.save(user);
+        PUBLISHER.publishEvent(new UserChangedEvent(saved.getUuid()));
+        return saved;
     }
 
     /**
@@ -72,15 +151,15 @@ public class UserService {
      *
      * @param uuid A user uuid
      * @throws NoSuchElementException If the user does not exist
-     * @throws Exception If the deletion was unsuccessful
      */
     @Transactional
     @Modifying
-    public void deleteOne(UUID uuid) throws Exception {
-        assertUserExists(uuid);
-
+    public void deleteOne(UUID uuid) throws NoSuchElementException {
+        // the deleted row count doubles as the existence check
         if (REPO.deleteByUuid(uuid) == 0)
-            throw new Exception("Unable to delete user uuid="+uuid+".");
+            handleUserNotFound(uuid);
+
+        PUBLISHER.publishEvent(new UserChangedEvent(uuid));
     }
 
     /**
@@ -0,0 +1,169 @@
+package com.portfolijo.schedjoeler.thread;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Reports virtual threads pinned to their carrier thread, as recorded by the {@code jdk.VirtualThreadPinned}
+ * flight recorder event. A virtual thread blocking inside a synchronized block or a native frame cannot unmount,
+ * so it holds one of the few carrier threads until it unblocks. Pins are counted by site, which is the first
+ * frame of the stack in the watched JDBC and Hibernate packages, or the first frame outside the JDK if there is
+ * none. The first pin at each site is logged with its stack. The flight recorder stream only runs while enabled,
+ * which it is by default in virtual thread mode
+ */
+@Slf4j
+@Component
+public class PinningMonitor implements DisposableBean {
+    static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final List<String> JDK_PACKAGES = List.of("java.", "javax.", "jdk.", "sun.");
+    private static final String OTHER_SITE = "other";
+
+    private final List<String> PACKAGES;
+    private final ConcurrentMap<String, PinningSite> SITES = new ConcurrentHashMap<>();
+    private final RecordingStream STREAM;
+
+    /**
+     * Creates a monitor, starting the flight recorder stream if enabled
+     *
+     * @param enabled Whether to record pins
+     * @param threshold The time a thread must be pinned for to be recorded
+     * @param packages The package prefixes of the JDBC and Hibernate path
+     */
+    public PinningMonitor(
+            @Value("${schedjoeler.threads.pinning.enabled:${schedjoeler.threads.virtual.enabled:false}}")
+            boolean enabled,
+            @Value("${schedjoeler.threads.pinning.threshold:PT0.02S}") Duration threshold,
+            @Value("${schedjoeler.threads.pinning.packages:org.h2.,com.zaxxer.hikari.,org.hibernate.,java.sql.}")
+            List<String> packages) {
+        PACKAGES = packages;
+
+        if (!enabled) {
+            STREAM = null;
+            return;
+        }
+
+        STREAM = new RecordingStream();
+        STREAM.enable(EVENT).withThreshold(threshold).withStackTrace();
+        STREAM.onEvent(EVENT, this::record);
+        STREAM.startAsync();
+    }
+
+    /**
+     * Finds the sites threads have been pinned at, the JDBC and Hibernate sites first, then by the total time
+     * pinned
+     *
+     * @return A list of sites
+     */
+    public List<PinningSite> findAll() {
+        return SITES
+                .values()
+                .stream()
+                .sorted(Comparator
+                        .comparing(PinningSite::isJdbc).reversed()
+                        .thenComparing(Comparator.comparingLong(PinningSite::getTotalNanos).reversed()))
+                .toList();
+    }
+
+    /**
+     * Checks whether the flight recorder stream is running
+     *
+     * @return True if pins are recorded
+     */
+    public boolean isEnabled() {
+        return STREAM != null;
+    }
+
+    /**
+     * Stops the flight recorder stream
+     */
+    @Override
+    public void destroy() {
+        if (STREAM != null)
+            STREAM.close();
+    }
+
+    /**
+     * Counts a pin recorded by the flight recorder
+     *
+     * @param event A {@code jdk.VirtualThreadPinned} event
+     */
+    private void record(RecordedEvent event) {
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        List<String> frames = stackTrace == null
+                ? List.of()
+                : stackTrace.getFrames().stream().map(PinningMonitor::nameOf).toList();
+        record(frames, event.getDuration());
+    }
+
+    /**
+     * Counts a pin at the site of the given stack, logging the stack if it is the first pin at that site
+     *
+     * @param frames The frames of the pinned thread as {@code class.method}, innermost first
+     * @param duration The time the thread was pinned for
+     */
+    void record(List<String> frames, Duration duration) {
+        String site = frames.stream().filter(this::isJdbc).findFirst()
+                .or(() -> frames.stream().filter(frame -> !startsWithAny(frame, JDK_PACKAGES)).findFirst())
+                .orElse(OTHER_SITE);
+        PinningSite pins = SITES.get(site);
+        boolean first = false;
+
+        if (pins == null) {
+            PinningSite created = new PinningSite(site, isJdbc(site));
+            pins = SITES.putIfAbsent(site, created);
+            first = pins == null;
+            pins = first ? created : pins;
+        }
+        pins.add(duration.toNanos());
+
+        if (first)
+            log.warn("Virtual thread pinned to its carrier for {} ms at {}{}:\n\tat {}",
+                    duration.toMillis(),
+                    site,
+                    pins.isJdbc() ? " on the JDBC path" : "",
+                    String.join("\n\tat ", frames));
+    }
+
+    /**
+     * Checks whether the given frame is in one of the watched packages
+     *
+     * @param frame A frame as {@code class.method}
+     * @return True if the frame is on the JDBC or Hibernate path
+     */
+    private boolean isJdbc(String frame) {
+        return startsWithAny(frame, PACKAGES);
+    }
+
+    /**
+     * Checks whether the given frame starts with any of the given package prefixes
+     *
+     * @param frame A frame as {@code class.method}
+     * @param prefixes A list of package prefixes
+     * @return True if the frame is in one of the packages
+     */
+    private static boolean startsWithAny(String frame, List<String> prefixes) {
+        return prefixes.stream().anyMatch(frame::startsWith);
+    }
+
+    /**
+     * Names the method of the given frame
+     *
+     * @param frame A recorded frame
+     * @return The frame as {@code class.method}
+     */
+    private static String nameOf(RecordedFrame frame) {
+        return frame.getMethod().getType().getName()+"."+frame.getMethod().getName();
+    }
+}
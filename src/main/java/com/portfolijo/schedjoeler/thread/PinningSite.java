@@ -0,0 +1,78 @@
+package com.portfolijo.schedjoeler.thread;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the times virtual threads were pinned to their carrier thread at one place in the code
+ */
+public class PinningSite {
+
+    /**
+     * The method the threads were pinned in, as {@code class.method}
+     */
+    @Getter
+    private final String site;
+
+    /**
+     * Whether the method is on the JDBC or Hibernate path, where pinning holds a carrier thread for the duration
+     * of a database round trip
+     */
+    @Getter
+    private final boolean jdbc;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Creates a site without any pins
+     *
+     * @param site The method the threads were pinned in
+     * @param jdbc Whether the method is on the JDBC or Hibernate path
+     */
+    public PinningSite(String site, boolean jdbc) {
+        this.site = site;
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Counts a pin
+     *
+     * @param nanos The time the thread was pinned for
+     */
+    void add(long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Gets the number of pins since startup
+     *
+     * @return A number of pins
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the total time threads were pinned for
+     *
+     * @return A duration in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * Gets the longest time a thread was pinned for
+     *
+     * @return A duration in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+}
@@ -0,0 +1,121 @@
+package com.portfolijo.schedjoeler.thread;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads where the running JDK supports them. The application is compiled for Java 17, which has
+ * no virtual threads, so the Java 21 API is looked up reflectively once and fails with a clear message elsewhere
+ */
+public final class VirtualThreads {
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method FACTORY;
+    private static final Method IS_VIRTUAL;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+    private static final boolean SUPPORTED;
+
+    static {
+        Method ofVirtual = null, name = null, factory = null, isVirtual = null, newExecutor = null;
+        boolean supported;
+
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            isVirtual = Thread.class.getMethod("isVirtual");
+            newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            // on Java 19 and 20 virtual threads are a preview, which throws unless enabled
+            factory.invoke(ofVirtual.invoke(null));
+            supported = true;
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            supported = false;
+        }
+
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        IS_VIRTUAL = isVirtual;
+        NEW_THREAD_PER_TASK_EXECUTOR = newExecutor;
+        SUPPORTED = supported;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Checks whether the running JDK supports virtual threads
+     *
+     * @return True if virtual threads can be created
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * Fails unless the running JDK supports virtual threads
+     *
+     * @param property The property that asked for virtual threads, named in the message
+     * @throws IllegalStateException If virtual threads cannot be created
+     */
+    public static void checkSupported(String property) throws IllegalStateException {
+        if (!SUPPORTED)
+            throw new IllegalStateException(property+" requires virtual threads, which Java "+Runtime.version()
+                    +" does not support. Run on Java 21 or later, or disable "+property+".");
+    }
+
+    /**
+     * Creates a factory of virtual threads
+     *
+     * @param prefix The prefix of the thread names, which are numbered from 0
+     * @return A thread factory
+     * @throws IllegalStateException If virtual threads are not supported
+     */
+    public static ThreadFactory factory(String prefix) throws IllegalStateException {
+        checkSupported("Virtual thread factory "+prefix);
+        return (ThreadFactory) invoke(FACTORY, invoke(NAME, invoke(OF_VIRTUAL, null), prefix, 0L));
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread for each task
+     *
+     * @param prefix The prefix of the thread names, which are numbered from 0
+     * @return An executor service
+     * @throws IllegalStateException If virtual threads are not supported
+     */
+    public static ExecutorService newExecutor(String prefix) throws IllegalStateException {
+        return (ExecutorService) invoke(NEW_THREAD_PER_TASK_EXECUTOR, null, factory(prefix));
+    }
+
+    /**
+     * Checks whether the given thread is a virtual thread
+     *
+     * @param thread A thread
+     * @return True if the thread is virtual, always false if virtual threads are not supported
+     */
+    public static boolean isVirtual(Thread thread) {
+        return SUPPORTED && (boolean) invoke(IS_VIRTUAL, thread);
+    }
+
+    /**
+     * Invokes the given method, rethrowing what it throws unchecked
+     *
+     * @param method A method of the virtual thread API
+     * @param target The object to invoke the method on, or null for a static method
+     * @param args The arguments
+     * @return The result of the method
+     */
+    private static Object invoke(Method method, Object target, Object... args) {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
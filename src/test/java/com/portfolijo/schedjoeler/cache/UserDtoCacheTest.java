@@ -0,0 +1,122 @@
+package com.portfolijo.schedjoeler.cache;
+
+import com.portfolijo.schedjoeler.converter.UserConverter;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.dto.UserDto;
+import com.portfolijo.schedjoeler.service.UserChangedEvent;
+import com.portfolijo.schedjoeler.service.UserService;
+import org.junit.jupiter.api.*;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class UserDtoCacheTest {
+    UserService svc;
+    UserConverter con;
+    UserDtoCache cache;
+    UUID uuid;
+    User user;
+
+    @BeforeEach
+    void setup() {
+        svc = mock(UserService.class);
+        con = new UserConverter(svc);
+        cache = new UserDtoCache(svc, con, 100, Duration.ofMinutes(10));
+        uuid = UUID.randomUUID();
+        user = User.builder().id(1L).uuid(uuid).firstName("a").lastName("b").build();
+    }
+
+    @Test
+    void loads_user_once_and_shares_dto() {
+        when(svc.findOne(uuid)).thenReturn(user);
+
+        UserDto first = cache.get(uuid);
+        UserDto second = cache.get(uuid);
+
+        assertSame(first, second);
+        assertEquals("a", first.getFirstName());
+        verify(svc, times(1)).findOne(uuid);
+    }
+
+    @Test
+    void does_not_cache_missing_users() {
+        when(svc.findOne(uuid)).thenThrow(new NoSuchElementException("not found")).thenReturn(user);
+
+        assertThrows(NoSuchElementException.class, () -> cache.get(uuid));
+        assertEquals("a", cache.get(uuid).getFirstName());
+    }
+
+    @Test
+    void reloads_user_after_change() {
+        User renamed = User.builder().id(1L).uuid(uuid).firstName("z").lastName("b").build();
+        when(svc.findOne(uuid)).thenReturn(user, renamed);
+
+        cache.get(uuid);
+        cache.onUserChanged(new UserChangedEvent(uuid));
+
+        assertEquals("z", cache.get(uuid).getFirstName());
+    }
+
+    @Test
+    void collapses_concurrent_misses_into_one_load() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(svc.findOne(uuid)).thenAnswer(invocation -> {
+            loading.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return user;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<UserDto>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> cache.get(uuid)));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            for (int i = 0; i < 7; i++)
+                futures.add(executor.submit(() -> cache.get(uuid)));
+
+            // give the waiting threads time to reach the cache before the load completes
+            Thread.sleep(100);
+            release.countDown();
+
+            UserDto expected = futures.get(0).get();
+            for (Future<UserDto> future : futures)
+                assertSame(expected, future.get());
+        } finally {
+            executor.shutdown();
+        }
+        verify(svc, times(1)).findOne(uuid);
+    }
+
+    @Test
+    void does_not_allocate_on_hit() {
+        when(svc.findOne(uuid)).thenReturn(user);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        for (int i = 0; i < 100_000; i++)
+            cache.get(uuid);
+
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++)
+            cache.get(uuid);
+        long allocated = threads.getCurrentThreadAllocatedBytes()-bytes;
+
+        // allow for the measurement itself, but not for an allocation per hit
+        assertTrue(allocated < 100_000, allocated+" bytes allocated by 100000 hits");
+    }
+}
@@ -0,0 +1,484 @@
+package com.portfolijo.schedjoeler.controller;
+
+import com.portfolijo.schedjoeler.batch.BatchItem;
+import com.portfolijo.schedjoeler.calendar.CalendarCount;
+import com.portfolijo.schedjoeler.converter.AppointmentConverter;
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.dto.AppointmentCreateDto;
+import com.portfolijo.schedjoeler.dto.AppointmentDayCountDto;
+import com.portfolijo.schedjoeler.dto.AppointmentDto;
+import com.portfolijo.schedjoeler.dto.AppointmentNormalizedDto;
+import com.portfolijo.schedjoeler.dto.AppointmentUpdateDto;
+import com.portfolijo.schedjoeler.dto.UserDto;
+import com.portfolijo.schedjoeler.pagination.CursorPage;
+import com.portfolijo.schedjoeler.projection.AppointmentView;
+import com.portfolijo.schedjoeler.projection.Watermark;
+import com.portfolijo.schedjoeler.schedule.ScheduleConflictException;
+import com.portfolijo.schedjoeler.service.AppointmentService;
+import com.portfolijo.schedjoeler.service.RecurrenceService;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@WebMvcTest(AppointmentController.class)
+@AutoConfigureMockMvc(addFilters = false)
+class AppointmentControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    AppointmentService svc;
+
+    @MockBean
+    RecurrenceService recSvc;
+
+    @MockBean
+    AppointmentConverter con;
+
+    final String BASE_URL = "/api/appointments";
+
+    final Watermark WATERMARK = new Watermark(2, 3, Instant.parse("2023-01-01T09:00:00Z"));
+
+    @BeforeEach
+    void setup() {
+        when(svc.findWatermark(any(UUID.class))).thenReturn(WATERMARK);
+        when(svc.findWatermark(any(), any(), any(), any())).thenReturn(WATERMARK);
+    }
+
+    /**
+     * Performs the given request, dispatching its result if the handler completed it asynchronously on a bulkhead
+     *
+     * @param request A request
+     * @return The actions on the result of the request
+     * @throws Exception If the request fails
+     */
+    ResultActions perform(RequestBuilder request) throws Exception {
+        ResultActions actions = mvc.perform(request);
+        MvcResult result = actions.andReturn();
+        return result.getRequest().isAsyncStarted() ? mvc.perform(asyncDispatch(result)) : actions;
+    }
+
+    /**
+     * Creates an appointment DTO with the given uuid
+     *
+     * @param uuid An appointment uuid
+     * @return An appointment DTO
+     */
+    AppointmentDto appointmentDto(UUID uuid) {
+        UserDto user = UserDto
+                .builder()
+                .uuid(UUID.randomUUID())
+                .firstName("a")
+                .lastName("b")
+                .build();
+
+        return AppointmentDto
+                .builder()
+                .uuid(uuid)
+                .dateTime(LocalDateTime.of(2023, 1, 1, 9, 0))
+                .provider(user)
+                .client(user)
+                .status(Appointment.Status.NEW)
+                .build();
+    }
+
+    @Nested
+    class GetOne {
+        @Test
+        void returns_status_ok_on_success() throws Exception {
+            UUID uuid = UUID.randomUUID();
+            AppointmentView view = mock(AppointmentView.class);
+            when(svc.findOneView(uuid)).thenReturn(view);
+            when(con.toDto(view)).thenReturn(appointmentDto(uuid));
+
+            perform(get(BASE_URL+"/"+uuid))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data[0].uuid").value(uuid.toString()));
+        }
+
+        @Test
+        void returns_etag_and_last_modified_headers() throws Exception {
+            UUID uuid = UUID.randomUUID();
+            AppointmentView view = mock(AppointmentView.class);
+            when(svc.findOneView(uuid)).thenReturn(view);
+            when(con.toDto(view)).thenReturn(appointmentDto(uuid));
+
+            perform(get(BASE_URL+"/"+uuid))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", WATERMARK.getETag()))
+                    .andExpect(header().dateValue("Last-Modified", WATERMARK.getLastModifiedMillis()));
+        }
+
+        @Test
+        void returns_status_not_modified_without_reading_appointment_if_etag_matches() throws Exception {
+            UUID uuid = UUID.randomUUID();
+
+            perform(get(BASE_URL+"/"+uuid).header("If-None-Match", WATERMARK.getETag()))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+
+            verify(svc, never()).findOneView(any());
+        }
+
+        @Test
+        void returns_status_ok_if_etag_does_not_match() throws Exception {
+            UUID uuid = UUID.randomUUID();
+            AppointmentView view = mock(AppointmentView.class);
+            when(svc.findOneView(uuid)).thenReturn(view);
+            when(con.toDto(view)).thenReturn(appointmentDto(uuid));
+
+            perform(get(BASE_URL+"/"+uuid).header("If-None-Match", "\"0-0-0\""))
+                    .andExpect(status().isOk());
+        }
+
+        @Test
+        void returns_status_not_found_if_appointment_does_not_exist() throws Exception {
+            when(svc.findWatermark(any(UUID.class))).thenThrow(NoSuchElementException.class);
+            perform(get(BASE_URL+"/"+UUID.randomUUID())).andExpect(status().isNotFound());
+        }
+    }
+
+    @Nested
+    class GetAll {
+        @Test
+        void returns_page_with_next_cursor_if_limit_given() throws Exception {
+            UUID uuid = UUID.randomUUID();
+            AppointmentView view = mock(AppointmentView.class);
+            when(svc.findAllViews(null, null, null, null, null, 1)).thenReturn(new CursorPage<>(List.of(view), "a"));
+            when(con.toDto(view)).thenReturn(appointmentDto(uuid));
+
+            perform(get(BASE_URL).param("limit", "1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data[0].uuid").value(uuid.toString()))
+                    .andExpect(jsonPath("$.nextCursor").value("a"));
+        }
+
+        @Test
+        void returns_status_not_modified_without_reading_appointments_if_etag_matches() throws Exception {
+            UUID user = UUID.randomUUID();
+
+            perform(get(BASE_URL)
+                            .param("user", user.toString())
+                            .param("limit", "1")
+                            .header("If-None-Match", WATERMARK.getETag()))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string("ETag", WATERMARK.getETag()));
+
+            verify(svc).findWatermark(user, null, null, null);
+            verify(svc, never()).findAllViews(any(), any(), any(), any(), any(), anyInt());
+        }
+    }
+
+    @Nested
+    class GetAllIncludingUsers {
+        @Test
+        @SuppressWarnings("unchecked")
+        void returns_appointments_referencing_included_users() throws Exception {
+            UUID user = UUID.randomUUID();
+            UUID uuid = UUID.randomUUID();
+            UserDto userDto = UserDto.builder().uuid(user).firstName("a").lastName("b").build();
+            AppointmentView view = mock(AppointmentView.class);
+            when(svc.findAllViews(null, null, null, null)).thenReturn(List.of(view, view));
+            when(con.toNormalizedDto(eq(view), any(Map.class))).thenAnswer(invocation -> {
+                invocation.<Map<UUID, UserDto>>getArgument(1).put(user, userDto);
+                return AppointmentNormalizedDto
+                        .builder()
+                        .uuid(uuid)
+                        .dateTime(LocalDateTime.of(2023, 1, 1, 9, 0))
+                        .provider(user)
+                        .client(user)
+                        .status(Appointment.Status.NEW)
+                        .build();
+            });
+
+            perform(get(BASE_URL).param("include", "users"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data.length()").value(2))
+                    .andExpect(jsonPath("$.data[0].provider").value(user.toString()))
+                    .andExpect(jsonPath("$.included.users.length()").value(1))
+                    .andExpect(jsonPath("$.included.users['"+user+"'].firstName").value("a"));
+        }
+
+        @Test
+        void returns_status_bad_request_if_include_is_unsupported() throws Exception {
+            perform(get(BASE_URL).param("include", "recurrences")).andExpect(status().isBadRequest());
+        }
+    }
+
+    @Nested
+    class SaveOne {
+        final String BODY = "{\"dateTime\":\"2023-01-01T09:00:00\","
+                + "\"provider\":\""+UUID.randomUUID()+"\","
+                + "\"client\":\""+UUID.randomUUID()+"\"}";
+
+        @Test
+        void returns_status_created_on_success() throws Exception {
+            Appointment appointment = mock(Appointment.class);
+            when(con.toAppointment(any(AppointmentCreateDto.class))).thenReturn(appointment);
+            when(svc.saveOne(appointment)).thenReturn(appointment);
+            when(con.toDto(appointment)).thenReturn(appointmentDto(UUID.randomUUID()));
+
+            perform(post(BASE_URL)
+                    .content(BODY)
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isCreated());
+        }
+
+        @Test
+        void returns_status_conflict_if_provider_double_booked() throws Exception {
+            Appointment appointment = mock(Appointment.class);
+            when(con.toAppointment(any(AppointmentCreateDto.class))).thenReturn(appointment);
+            when(svc.saveOne(appointment)).thenThrow(new ScheduleConflictException("conflict"));
+
+            perform(post(BASE_URL)
+                    .content(BODY)
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isConflict())
+                    .andExpect(jsonPath("$.message").value("conflict"));
+        }
+
+        @Test
+        void returns_status_service_unavailable_if_rejected() throws Exception {
+            Appointment appointment = mock(Appointment.class);
+            when(con.toAppointment(any(AppointmentCreateDto.class))).thenReturn(appointment);
+            when(svc.saveOne(appointment)).thenThrow(new RejectedExecutionException("Too many concurrent writes."));
+
+            perform(post(BASE_URL)
+                    .content(BODY)
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string("Retry-After", "1"))
+                    .andExpect(jsonPath("$.message").value("Too many concurrent writes."));
+        }
+    }
+
+    @Nested
+    class SaveAll {
+        @Test
+        void returns_result_for_each_appointment() throws Exception {
+            Appointment appointment = mock(Appointment.class);
+            List<BatchItem<Appointment>> items = List.of(
+                    BatchItem.success(0, appointment),
+                    BatchItem.failure(1, "User uuid=x not found."));
+            when(con.toAppointments(any())).thenReturn(items);
+            when(svc.saveAll(items)).thenReturn(items);
+            when(con.toBulkResultDto(any())).thenCallRealMethod();
+            when(con.toDto(appointment)).thenReturn(appointmentDto(UUID.randomUUID()));
+
+            perform(post(BASE_URL+"/bulk")
+                    .content("[]")
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data[0].appointment.uuid").exists())
+                    .andExpect(jsonPath("$.data[1].index").value(1))
+                    .andExpect(jsonPath("$.data[1].error").value("User uuid=x not found."));
+        }
+    }
+
+    @Nested
+    class UpdateOne {
+        @Test
+        void updates_supplied_columns_without_reading_appointment() throws Exception {
+            UUID uuid = UUID.randomUUID();
+            AppointmentView view = mock(AppointmentView.class);
+            Map<String, Object> changes = Map.of(Appointment.Fields.location, "a");
+            when(con.toChanges(any(AppointmentUpdateDto.class))).thenReturn(changes);
+            when(svc.findOneView(uuid)).thenReturn(view);
+            when(con.toDto(view)).thenReturn(appointmentDto(uuid));
+
+            perform(patch(BASE_URL+"/"+uuid)
+                            .header("If-Match", new Watermark(1, 5, WATERMARK.getLastModified(), 3L).getETag())
+                            .content("{\"location\":\"a\"}")
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data[0].uuid").value(uuid.toString()));
+
+            verify(svc).updateOne(uuid, 3L, changes);
+            verify(svc, never()).findOne(any(UUID.class), any());
+        }
+
+        @Test
+        void checks_rebooked_appointment_for_conflicts() throws Exception {
+            UUID uuid = UUID.randomUUID();
+            Appointment appointment = mock(Appointment.class);
+            when(con.toChanges(any(AppointmentUpdateDto.class)))
+                    .thenReturn(Map.of(Appointment.Fields.dateTime, LocalDateTime.of(2023, 1, 1, 10, 0)));
+            when(svc.findOne(uuid, null)).thenReturn(appointment);
+            when(con.toAppointment(eq(appointment), any(AppointmentUpdateDto.class))).thenReturn(appointment);
+            when(svc.saveOne(appointment)).thenReturn(appointment);
+            when(con.toDto(appointment)).thenReturn(appointmentDto(uuid));
+
+            perform(patch(BASE_URL+"/"+uuid)
+                            .content("{\"dateTime\":\"2023-01-01T10:00:00\"}")
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk());
+
+            verify(svc).saveOne(appointment);
+            verify(svc, never()).updateOne(any(), any(), any());
+        }
+
+        @Test
+        void returns_status_precondition_failed_if_appointment_was_modified() throws Exception {
+            UUID uuid = UUID.randomUUID();
+            when(con.toChanges(any(AppointmentUpdateDto.class))).thenReturn(Map.of());
+            doThrow(new OptimisticLockingFailureException("modified")).when(svc).updateOne(eq(uuid), any(), any());
+
+            perform(patch(BASE_URL+"/"+uuid)
+                            .header("If-Match", "\"1-0-0-0\"")
+                            .content("{}")
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isPreconditionFailed());
+        }
+    }
+
+    @Nested
+    class UpdateAll {
+        @Test
+        void returns_number_of_updated_appointments() throws Exception {
+            UUID user = UUID.randomUUID();
+            when(svc.updateAll(user, null, null, Appointment.Status.NEW, Appointment.Status.CANCELLED))
+                    .thenReturn(3);
+
+            perform(patch(BASE_URL)
+                    .param("user", user.toString())
+                    .param("status", "NEW")
+                    .content("{\"status\":\"CANCELLED\"}")
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data[0].count").value(3));
+        }
+
+        @Test
+        void returns_status_bad_request_if_status_missing() throws Exception {
+            perform(patch(BASE_URL)
+                    .content("{}")
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Nested
+    class GetCalendar {
+        @Test
+        void returns_counts_per_day_and_status() throws Exception {
+            CalendarCount count = new CalendarCount(LocalDate.of(2023, 1, 2), Appointment.Status.NEW, 3);
+            when(svc.countAll(null, null, null, null)).thenReturn(List.of(count));
+            when(con.toDto(count)).thenReturn(AppointmentDayCountDto
+                    .builder()
+                    .day(count.getDay())
+                    .status(count.getStatus())
+                    .count(count.getCount())
+                    .build());
+
+            perform(get(BASE_URL+"/calendar"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data[0].day").value("2023-01-02"))
+                    .andExpect(jsonPath("$.data[0].status").value("NEW"))
+                    .andExpect(jsonPath("$.data[0].count").value(3));
+        }
+    }
+
+    @Nested
+    class UpdateOccurrence {
+        final String URL = BASE_URL+"/occurrences/{recurrence}/2023-01-02T09:00:00";
+
+        @Test
+        void saves_occurrence_of_recurrence() throws Exception {
+            UUID recurrence = UUID.randomUUID();
+            UUID uuid = UUID.randomUUID();
+            Appointment occurrence = mock(Appointment.class);
+            when(recSvc.findOccurrence(recurrence, LocalDateTime.of(2023, 1, 2, 9, 0))).thenReturn(occurrence);
+            when(con.toAppointment(eq(occurrence), any(AppointmentUpdateDto.class))).thenReturn(occurrence);
+            when(svc.saveOne(occurrence)).thenReturn(occurrence);
+            when(con.toDto(occurrence)).thenReturn(appointmentDto(uuid));
+
+            perform(patch(URL, recurrence)
+                    .content("{\"location\":\"a\"}")
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data[0].uuid").value(uuid.toString()));
+        }
+
+        @Test
+        void returns_status_not_found_if_recurrence_does_not_occur_at_date_time() throws Exception {
+            when(recSvc.findOccurrence(any(UUID.class), any(LocalDateTime.class)))
+                    .thenThrow(NoSuchElementException.class);
+
+            perform(patch(URL, UUID.randomUUID())
+                    .content("{}")
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isNotFound());
+        }
+    }
+
+    @Nested
+    class Export {
+        @Test
+        @SuppressWarnings("unchecked")
+        void streams_one_appointment_per_line() throws Exception {
+            Appointment a = mock(Appointment.class);
+            Appointment b = mock(Appointment.class);
+            UUID aUuid = UUID.randomUUID();
+            UUID bUuid = UUID.randomUUID();
+
+            doAnswer(invocation -> {
+                Consumer<Appointment> action = invocation.getArgument(3);
+                action.accept(a);
+                action.accept(b);
+                return null;
+            }).when(svc).export(any(), any(), any(), any(Consumer.class));
+            when(con.toDto(a)).thenReturn(appointmentDto(aUuid));
+            when(con.toDto(b)).thenReturn(appointmentDto(bUuid));
+
+            MvcResult result = mvc
+                    .perform(get(BASE_URL+"/export"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            MvcResult dispatched = mvc
+                    .perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                    .andReturn();
+
+            List<String> lines = dispatched.getResponse().getContentAsString().lines().toList();
+            assertEquals(2, lines.size());
+            assertTrue(lines.get(0).startsWith("{\"uuid\":\""+aUuid+"\""));
+            assertTrue(lines.get(1).startsWith("{\"uuid\":\""+bUuid+"\""));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.portfolijo.schedjoeler.controller;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.repository.AppointmentRepository;
+import com.portfolijo.schedjoeler.repository.UserRepository;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Verifies that conditional updates of stored appointments succeed with the entity tag the client last read,
+ * whatever the version of the appointment
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+class ConditionalUpdateTest {
+    static final LocalDateTime DAY = LocalDateTime.of(2031, 1, 2, 0, 0);
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    UserRepository uRepo;
+
+    @Autowired
+    AppointmentRepository repo;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    final String EMAIL = UUID.randomUUID()+"@example.com";
+
+    Appointment appointment;
+
+    @BeforeEach
+    void setup() {
+        User provider = uRepo.save(User
+                .builder()
+                .firstName("a")
+                .lastName("b")
+                .email(EMAIL)
+                .passwordHash("{noop}password")
+                .build());
+        User client = uRepo.save(User.builder().firstName("c").lastName("d").build());
+        appointment = repo.save(Appointment
+                .builder()
+                .uuid(UUID.randomUUID())
+                .dateTime(DAY.plusHours(9))
+                .endDateTime(DAY.plusHours(10))
+                .provider(provider)
+                .client(client)
+                .status(Appointment.Status.CANCELLED)
+                .build());
+    }
+
+    @Test
+    void rebooks_appointment_with_version_above_the_boxing_cache() throws Exception {
+        // Long values above 127 are not cached, so they are only equal, never identical
+        jdbc.update("update sj_appointment set version = 200 where id = ?", appointment.getId());
+
+        String eTag = mvc
+                .perform(get("/api/appointments/"+appointment.getUuid()).with(httpBasic(EMAIL, "password")))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+
+        MvcResult result = mvc.perform(patch("/api/appointments/"+appointment.getUuid())
+                        .with(httpBasic(EMAIL, "password"))
+                        .header("If-Match", eTag)
+                        .content("{\"dateTime\":\""+DAY.plusHours(11)+"\","
+                                +"\"endDateTime\":\""+DAY.plusHours(12)+"\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].dateTime").value("2031-01-02T11:00:00"));
+    }
+}
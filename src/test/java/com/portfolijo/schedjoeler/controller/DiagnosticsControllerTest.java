@@ -0,0 +1,97 @@
+package com.portfolijo.schedjoeler.controller;
+
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.repository.UserRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.UUID;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Verifies that every diagnostics endpoint returns a list of its DTOs to admins, and to no one else
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+class DiagnosticsControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    UserRepository uRepo;
+
+    final String BASE_URL = "/api/diagnostics";
+    final String ADMIN_EMAIL = UUID.randomUUID()+"@example.com";
+    final String USER_EMAIL = UUID.randomUUID()+"@example.com";
+
+    @BeforeEach
+    void setup() {
+        uRepo.save(user(ADMIN_EMAIL, true));
+        uRepo.save(user(USER_EMAIL, false));
+    }
+
+    static User user(String email, boolean admin) {
+        return User
+                .builder()
+                .firstName("a")
+                .lastName("b")
+                .email(email)
+                .passwordHash("{noop}password")
+                .admin(admin)
+                .build();
+    }
+
+    ResultActions perform(String path, String email) throws Exception {
+        return mvc.perform(get(BASE_URL+path).with(httpBasic(email, "password")));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "/cache, region, hitCount, size",
+            "/limits, group, limit, baselineLatency",
+            "/bulkheads, name, threads, queueCapacity",
+    })
+    void returns_dtos_to_admins(String path, String first, String second, String third) throws Exception {
+        perform(path, ADMIN_EMAIL)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0]."+first).exists())
+                .andExpect(jsonPath("$.data[0]."+second).exists())
+                .andExpect(jsonPath("$.data[0]."+third).exists());
+    }
+
+    @Test
+    void returns_pinning_sites_to_admins() throws Exception {
+        // no thread is pinned for long enough to be recorded in tests, so only the list itself is checked
+        perform("/pinning", ADMIN_EMAIL)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data").isArray());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/cache", "/limits", "/bulkheads", "/pinning"})
+    void forbids_users_who_are_not_admins(String path) throws Exception {
+        perform(path, USER_EMAIL)
+                .andExpect(status().isForbidden());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/cache", "/limits", "/bulkheads", "/pinning"})
+    void rejects_anonymous_requests(String path) throws Exception {
+        mvc.perform(get(BASE_URL+path))
+                .andExpect(status().isUnauthorized());
+    }
+}
@@ -0,0 +1,124 @@
+package com.portfolijo.schedjoeler.controller;
+
+import com.portfolijo.schedjoeler.converter.RecurrenceConverter;
+import com.portfolijo.schedjoeler.domain.Recurrence;
+import com.portfolijo.schedjoeler.dto.RecurrenceCreateDto;
+import com.portfolijo.schedjoeler.dto.RecurrenceDto;
+import com.portfolijo.schedjoeler.dto.UserDto;
+import com.portfolijo.schedjoeler.service.RecurrenceService;
+import jakarta.validation.ValidationException;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@WebMvcTest(RecurrenceController.class)
+@AutoConfigureMockMvc(addFilters = false)
+class RecurrenceControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    RecurrenceService svc;
+
+    @MockBean
+    RecurrenceConverter con;
+
+    final String BASE_URL = "/api/recurrences";
+
+    /**
+     * Creates a recurrence DTO with the given uuid
+     *
+     * @param uuid A recurrence uuid
+     * @return A recurrence DTO
+     */
+    RecurrenceDto recurrenceDto(UUID uuid) {
+        UserDto user = UserDto
+                .builder()
+                .uuid(UUID.randomUUID())
+                .firstName("a")
+                .lastName("b")
+                .build();
+
+        return RecurrenceDto
+                .builder()
+                .uuid(uuid)
+                .dateTime(LocalDateTime.of(2023, 1, 2, 9, 0))
+                .endDateTime(LocalDateTime.of(2023, 1, 2, 10, 0))
+                .rule("FREQ=WEEKLY")
+                .provider(user)
+                .client(user)
+                .build();
+    }
+
+    @Nested
+    class GetOne {
+        @Test
+        void returns_status_not_found_if_recurrence_does_not_exist() throws Exception {
+            when(svc.findOne(any(UUID.class))).thenThrow(NoSuchElementException.class);
+            mvc.perform(get(BASE_URL+"/"+UUID.randomUUID())).andExpect(status().isNotFound());
+        }
+    }
+
+    @Nested
+    class SaveOne {
+        final String BODY = "{\"dateTime\":\"2023-01-02T09:00:00\",\"rule\":\"FREQ=WEEKLY\","
+                +"\"provider\":\""+UUID.randomUUID()+"\",\"client\":\""+UUID.randomUUID()+"\"}";
+
+        @Test
+        void returns_status_created_on_success() throws Exception {
+            UUID uuid = UUID.randomUUID();
+            Recurrence recurrence = mock(Recurrence.class);
+            when(con.toRecurrence(any(RecurrenceCreateDto.class))).thenReturn(recurrence);
+            when(svc.saveOne(recurrence)).thenReturn(recurrence);
+            when(con.toDto(recurrence)).thenReturn(recurrenceDto(uuid));
+
+            mvc.perform(post(BASE_URL)
+                    .content(BODY)
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.data[0].uuid").value(uuid.toString()))
+                    .andExpect(jsonPath("$.data[0].rule").value("FREQ=WEEKLY"));
+        }
+
+        @Test
+        void returns_status_bad_request_if_rule_is_invalid() throws Exception {
+            when(con.toRecurrence(any(RecurrenceCreateDto.class))).thenThrow(ValidationException.class);
+
+            mvc.perform(post(BASE_URL)
+                    .content(BODY)
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Nested
+    class DeleteOne {
+        @Test
+        void returns_status_no_content_on_success() throws Exception {
+            mvc.perform(delete(BASE_URL+"/"+UUID.randomUUID())).andExpect(status().isNoContent());
+        }
+
+        @Test
+        void returns_status_not_found_if_recurrence_does_not_exist() throws Exception {
+            doThrow(NoSuchElementException.class).when(svc).deleteOne(any(UUID.class));
+            mvc.perform(delete(BASE_URL+"/"+UUID.randomUUID())).andExpect(status().isNotFound());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.portfolijo.schedjoeler.controller;
+
+import com.portfolijo.schedjoeler.converter.SlotConverter;
+import com.portfolijo.schedjoeler.schedule.Slot;
+import com.portfolijo.schedjoeler.service.SlotService;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@WebMvcTest(SlotController.class)
+@AutoConfigureMockMvc(addFilters = false)
+@Import(SlotConverter.class)
+class SlotControllerTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @MockBean
+    SlotService svc;
+
+    final String BASE_URL = "/api/slots";
+    final UUID PROVIDER = UUID.randomUUID();
+    final LocalDateTime FROM = LocalDateTime.of(2023, 1, 2, 0, 0);
+
+    @Nested
+    class GetAll {
+        @Test
+        void returns_slots_on_success() throws Exception {
+            when(svc.findAll(PROVIDER, FROM, FROM.plusDays(1), Duration.ofMinutes(30),
+                    LocalTime.of(9, 0), LocalTime.of(17, 0)))
+                    .thenReturn(List.of(new Slot(FROM.plusHours(9), FROM.plusHours(9).plusMinutes(30))));
+
+            mvc.perform(get(BASE_URL)
+                    .param("provider", PROVIDER.toString())
+                    .param("from", "2023-01-02T00:00:00")
+                    .param("to", "2023-01-03T00:00:00")
+                    .param("length", "PT30M")
+                    .param("open", "09:00")
+                    .param("close", "17:00"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.data[0].dateTime").value("2023-01-02T09:00:00"))
+                    .andExpect(jsonPath("$.data[0].endDateTime").value("2023-01-02T09:30:00"));
+        }
+
+        @Test
+        void returns_status_not_found_if_provider_does_not_exist() throws Exception {
+            when(svc.findAll(PROVIDER, FROM, FROM.plusDays(1), Duration.ofMinutes(30),
+                    LocalTime.of(9, 0), LocalTime.of(17, 0)))
+                    .thenThrow(new NoSuchElementException("not found"));
+
+            mvc.perform(get(BASE_URL)
+                    .param("provider", PROVIDER.toString())
+                    .param("from", "2023-01-02T00:00:00")
+                    .param("to", "2023-01-03T00:00:00")
+                    .param("length", "PT30M")
+                    .param("open", "09:00")
+                    .param("close", "17:00"))
+                    .andExpect(status().isNotFound());
+        }
+    }
+}
@@ -1,22 +1,28 @@
 package com.portfolijo.schedjoeler.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.portfolijo.schedjoeler.cache.UserDtoCache;
 import com.portfolijo.schedjoeler.converter.UserConverter;
 import com.portfolijo.schedjoeler.domain.User;
 import com.portfolijo.schedjoeler.dto.UserCreateDto;
 import com.portfolijo.schedjoeler.dto.UserDto;
 import com.portfolijo.schedjoeler.dto.UserUpdateDto;
+import com.portfolijo.schedjoeler.projection.Watermark;
 import com.portfolijo.schedjoeler.service.UserService;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -26,12 +32,13 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ActiveProfiles("test")
 @DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
 @WebMvcTest(UserController.class)
 @AutoConfigureMockMvc(addFilters = false)
+@Import(UserDtoCache.class)
 class UserControllerTest {
 
     @Autowired
@@ -48,6 +55,8 @@ class UserControllerTest {
 
     final String BASE_URL = "/api/users";
 
+    final Instant UPDATED_AT = Instant.parse("2023-01-01T09:00:00Z");
+
     /**
      * Converts the given user DTO to a string comparable to the response content of an MvcResult
      *
@@ -90,6 +99,8 @@ class UserControllerTest {
                     .lastName("b")
                     .email("c")
                     .phone("d")
+                    .version(0L)
+                    .updatedAt(UPDATED_AT)
                     .build();
 
             when(svc.findOne(uuid)).thenReturn(user);
@@ -119,6 +130,8 @@ class UserControllerTest {
                     .lastName("b")
                     .email("c")
                     .phone("d")
+                    .version(0L)
+                    .updatedAt(UPDATED_AT)
                     .build();
 
             when(svc.findOne(uuid)).thenReturn(user);
@@ -132,6 +145,52 @@ class UserControllerTest {
             String expected = convertUserDtoToString(expectedDto);
             assertEquals(expected, actual);
         }
+
+        @Test
+        void returns_etag_and_last_modified_headers() throws Exception {
+            UUID uuid = UUID.randomUUID();
+            User user = User.builder().id(1L).uuid(uuid).firstName("a").lastName("b").build();
+            UserDto dto = UserDto
+                    .builder()
+                    .uuid(uuid)
+                    .firstName("a")
+                    .lastName("b")
+                    .version(4L)
+                    .updatedAt(UPDATED_AT)
+                    .build();
+
+            when(svc.findOne(uuid)).thenReturn(user);
+            when(con.toDto(user)).thenReturn(dto);
+
+            mvc.perform(get(BASE_URL+"/"+uuid))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("ETag", Watermark.of(4, UPDATED_AT).getETag()))
+                    .andExpect(header().dateValue("Last-Modified", UPDATED_AT.toEpochMilli()))
+                    .andExpect(jsonPath("$.data[0].version").doesNotExist());
+        }
+
+        @Test
+        void returns_status_not_modified_if_etag_matches() throws Exception {
+            UUID uuid = UUID.randomUUID();
+            User user = User.builder().id(1L).uuid(uuid).firstName("a").lastName("b").build();
+            UserDto dto = UserDto
+                    .builder()
+                    .uuid(uuid)
+                    .firstName("a")
+                    .lastName("b")
+                    .version(4L)
+                    .updatedAt(UPDATED_AT)
+                    .build();
+
+            when(svc.findOne(uuid)).thenReturn(user);
+            when(con.toDto(user)).thenReturn(dto);
+
+            mvc.perform(get(BASE_URL+"/"+uuid).header("If-None-Match", Watermark.of(4, UPDATED_AT).getETag()))
+                    .andExpect(status().isNotModified())
+                    .andExpect(content().string(""));
+            mvc.perform(get(BASE_URL+"/"+uuid).header("If-None-Match", Watermark.of(3, UPDATED_AT).getETag()))
+                    .andExpect(status().isOk());
+        }
     }
 
     @Nested
@@ -230,7 +289,7 @@ class UserControllerTest {
                     .build();
 
             when(con.toUser(any(UserCreateDto.class))).thenReturn(user);
-            when(svc.saveOne(user)).thenReturn(user);
+            when(svc.saveOne(user, null)).thenReturn(user);
             when(con.toDto(user)).thenReturn(expectedDto);
 
             String requestBody = mapper.writeValueAsString(user);
@@ -260,7 +319,7 @@ class UserControllerTest {
                     .build();
 
             when(con.toUser(any(UserCreateDto.class))).thenReturn(user);
-            when(svc.saveOne(user)).thenReturn(user);
+            when(svc.saveOne(user, null)).thenReturn(user);
             when(con.toDto(user)).thenReturn(expectedDto);
 
             String requestBody = mapper.writeValueAsString(user);
@@ -298,7 +357,7 @@ class UserControllerTest {
                     .build();
 
             when(con.toUser(any(UserCreateDto.class))).thenReturn(user);
-            when(svc.saveOne(user)).thenReturn(user);
+            when(svc.saveOne(user, null)).thenReturn(user);
             when(con.toDto(user)).thenReturn(expectedDto);
 
             String requestBody = mapper.writeValueAsString(user);
@@ -312,6 +371,26 @@ class UserControllerTest {
             String actual = (String) result.getResponse().getHeaderValue("Location");
             assertEquals(expected, actual);
         }
+
+        @Test
+        void returns_status_conflict_if_email_is_taken() throws Exception {
+            User user = User
+                    .builder()
+                    .firstName("a")
+                    .lastName("b")
+                    .email("c")
+                    .build();
+
+            when(con.toUser(any(UserCreateDto.class))).thenReturn(user);
+            when(svc.saveOne(user, null))
+                    .thenThrow(new DataIntegrityViolationException("unique index ux__user__email"));
+
+            mvc.perform(post(BASE_URL)
+                    .content(mapper.writeValueAsString(user))
+                    .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isConflict())
+                    .andExpect(jsonPath("$.message").value("The request conflicts with existing data."));
+        }
     }
 
     @Nested
@@ -338,8 +417,9 @@ class UserControllerTest {
                     .phone("d")
                     .build();
 
-            when(con.toUser(eq(uuid), any(UserUpdateDto.class))).thenReturn(user);
-            when(svc.saveOne(user)).thenReturn(user);
+            when(svc.findOne(uuid, null)).thenReturn(user);
+            when(con.toUser(eq(user), any(UserUpdateDto.class))).thenReturn(user);
+            when(svc.saveOne(user, null)).thenReturn(user);
             when(con.toDto(user)).thenReturn(expectedDto);
 
             String requestBody = mapper.writeValueAsString(user);
@@ -372,8 +452,9 @@ class UserControllerTest {
                     .phone("d")
                     .build();
 
-            when(con.toUser(eq(uuid), any(UserUpdateDto.class))).thenReturn(user);
-            when(svc.saveOne(user)).thenReturn(user);
+            when(svc.findOne(uuid, null)).thenReturn(user);
+            when(con.toUser(eq(user), any(UserUpdateDto.class))).thenReturn(user);
+            when(svc.saveOne(user, null)).thenReturn(user);
             when(con.toDto(user)).thenReturn(expectedDto);
 
             String requestBody = mapper.writeValueAsString(user);
@@ -390,6 +471,49 @@ class UserControllerTest {
             String expected = convertUserDtoToString(expectedDto);
             assertEquals(expected, actual);
         }
+
+        @Test
+        void updates_only_the_version_tagged_by_if_match() throws Exception {
+            UUID uuid = UUID.randomUUID();
+            User user = User.builder().id(1L).uuid(uuid).firstName("a").lastName("b").version(4L).build();
+            UserDto dto = UserDto.builder().uuid(uuid).firstName("a").lastName("b").build();
+
+            when(svc.findOne(uuid, 4L)).thenReturn(user);
+            when(con.toUser(eq(user), any(UserUpdateDto.class))).thenReturn(user);
+            when(svc.saveOne(user, null)).thenReturn(user);
+            when(con.toDto(user)).thenReturn(dto);
+
+            mvc.perform(patch(BASE_URL+"/"+uuid)
+                            .header("If-Match", Watermark.of(4, UPDATED_AT).getETag())
+                            .content("{\"firstName\":\"a\"}")
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk());
+        }
+
+        @Test
+        void returns_status_precondition_failed_if_user_was_modified() throws Exception {
+            UUID uuid = UUID.randomUUID();
+            when(svc.findOne(uuid, 3L)).thenThrow(new OptimisticLockingFailureException("modified"));
+
+            mvc.perform(patch(BASE_URL+"/"+uuid)
+                            .header("If-Match", Watermark.of(3, UPDATED_AT).getETag())
+                            .content("{\"firstName\":\"a\"}")
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isPreconditionFailed())
+                    .andExpect(jsonPath("$.message").value("modified"));
+        }
+
+        @Test
+        void returns_status_precondition_failed_if_if_match_is_weak() throws Exception {
+            UUID uuid = UUID.randomUUID();
+            when(svc.findOne(uuid, -1L)).thenThrow(new OptimisticLockingFailureException("modified"));
+
+            mvc.perform(patch(BASE_URL+"/"+uuid)
+                            .header("If-Match", "W/"+Watermark.of(3, UPDATED_AT).getETag())
+                            .content("{\"firstName\":\"a\"}")
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isPreconditionFailed());
+        }
     }
 
     @Nested
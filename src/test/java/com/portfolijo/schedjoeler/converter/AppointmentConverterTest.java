@@ -1,13 +1,19 @@
 package com.portfolijo.schedjoeler.converter;
 
+import com.portfolijo.schedjoeler.batch.BatchItem;
 import com.portfolijo.schedjoeler.domain.Appointment;
 import com.portfolijo.schedjoeler.domain.User;
 import com.portfolijo.schedjoeler.dto.AppointmentCreateDto;
 import com.portfolijo.schedjoeler.dto.AppointmentDto;
+import com.portfolijo.schedjoeler.dto.AppointmentNormalizedDto;
 import com.portfolijo.schedjoeler.dto.AppointmentUpdateDto;
 import com.portfolijo.schedjoeler.dto.UserDto;
+import com.portfolijo.schedjoeler.projection.AppointmentView;
+import com.portfolijo.schedjoeler.projection.UserView;
 import com.portfolijo.schedjoeler.repository.AppointmentRepository;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
 import com.portfolijo.schedjoeler.service.AppointmentService;
+import com.portfolijo.schedjoeler.service.RecurrenceService;
 import com.portfolijo.schedjoeler.service.UserService;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -17,13 +23,21 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.Mockito.*;
 
 @SpringBootTest
@@ -41,7 +55,12 @@ class AppointmentConverterTest {
     void setup() {
         repo = mock(AppointmentRepository.class);
         uSvc = mock(UserService.class);
-        svc = new AppointmentService(repo, uSvc);
+        svc = new AppointmentService(
+                repo,
+                uSvc,
+                mock(RecurrenceService.class),
+                new ProviderScheduleIndex(repo),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
         uCon = mock(UserConverter.class);
         con = new AppointmentConverter(svc, uSvc, uCon);
     }
@@ -88,6 +107,40 @@ class AppointmentConverterTest {
         }
     }
 
+    @Nested
+    class ToNormalizedDto {
+        @Test
+        void converts_each_distinct_user_once() {
+            UserView provider = UserView.builder().uuid(UUID.randomUUID()).firstName("a").lastName("b").build();
+            UserView client = UserView.builder().uuid(UUID.randomUUID()).firstName("c").lastName("d").build();
+            UserDto providerDto = mock(UserDto.class);
+            UserDto clientDto = mock(UserDto.class);
+            when(uCon.toDto(provider)).thenReturn(providerDto);
+            when(uCon.toDto(client)).thenReturn(clientDto);
+
+            Map<UUID, UserDto> users = new HashMap<>();
+            List<AppointmentNormalizedDto> actual = new ArrayList<>();
+
+            for (int i = 0; i < 3; i++) {
+                AppointmentView view = AppointmentView
+                        .builder()
+                        .uuid(UUID.randomUUID())
+                        .dateTime(LocalDateTime.now())
+                        .provider(provider)
+                        .client(client)
+                        .status(Appointment.Status.NEW)
+                        .build();
+                actual.add(con.toNormalizedDto(view, users));
+            }
+
+            verify(uCon, times(1)).toDto(provider);
+            verify(uCon, times(1)).toDto(client);
+            assertEquals(Map.of(provider.getUuid(), providerDto, client.getUuid(), clientDto), users);
+            assertTrue(actual.stream().allMatch(dto -> dto.getProvider().equals(provider.getUuid())
+                    && dto.getClient().equals(client.getUuid())));
+        }
+    }
+
     @Nested
     class ToAppointmentFromCreate {
         @Test
@@ -135,6 +188,54 @@ class AppointmentConverterTest {
         }
     }
 
+    @Nested
+    class ToAppointments {
+        @Test
+        void finds_all_users_with_one_lookup() {
+            User provider = User.builder().id(1L).uuid(UUID.randomUUID()).firstName("a").lastName("b").build();
+            User client = User.builder().id(2L).uuid(UUID.randomUUID()).firstName("c").lastName("d").build();
+            when(uSvc.findAll(anyCollection()))
+                    .thenReturn(Map.of(provider.getUuid(), provider, client.getUuid(), client));
+
+            List<AppointmentCreateDto> dtos = List.of(
+                    AppointmentCreateDto
+                            .builder()
+                            .dateTime(LocalDateTime.now())
+                            .provider(provider.getUuid())
+                            .client(client.getUuid())
+                            .build(),
+                    AppointmentCreateDto
+                            .builder()
+                            .dateTime(LocalDateTime.now())
+                            .provider(client.getUuid())
+                            .client(provider.getUuid())
+                            .build());
+
+            List<BatchItem<Appointment>> actual = con.toAppointments(dtos);
+            assertEquals(2, actual.size());
+            assertTrue(actual.get(0).isSuccess());
+            assertEquals(provider, actual.get(0).getValue().getProvider());
+            assertEquals(provider, actual.get(1).getValue().getClient());
+            verify(uSvc, times(1)).findAll(anyCollection());
+            verify(uSvc, never()).findOne(any(UUID.class));
+        }
+
+        @Test
+        void fails_item_if_user_does_not_exist() {
+            User provider = User.builder().id(1L).uuid(UUID.randomUUID()).firstName("a").lastName("b").build();
+            UUID missing = UUID.randomUUID();
+            when(uSvc.findAll(anyCollection())).thenReturn(Map.of(provider.getUuid(), provider));
+
+            List<BatchItem<Appointment>> actual = con.toAppointments(List.of(AppointmentCreateDto
+                    .builder()
+                    .dateTime(LocalDateTime.now())
+                    .provider(provider.getUuid())
+                    .client(missing)
+                    .build()));
+            assertEquals(BatchItem.failure(0, "User uuid="+missing+" not found."), actual.get(0));
+        }
+    }
+
     @Nested
     class ToAppointmentFromUpdate {
         @Test
@@ -13,6 +13,7 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.util.UUID;
@@ -34,7 +35,7 @@ class UserConverterTest {
     @BeforeEach
     void setup() {
         repo = mock(UserRepository.class);
-        svc = new UserService(repo);
+        svc = new UserService(repo, event -> {}, PasswordEncoderFactories.createDelegatingPasswordEncoder());
         con = new UserConverter(svc);
     }
 
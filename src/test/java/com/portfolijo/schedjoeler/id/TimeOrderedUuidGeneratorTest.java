@@ -0,0 +1,129 @@
+package com.portfolijo.schedjoeler.id;
+
+import org.junit.jupiter.api.*;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class TimeOrderedUuidGeneratorTest {
+    static final Instant NOW = Instant.parse("2023-01-02T09:00:00Z");
+
+    /**
+     * Orders uuids by their unsigned bytes, as a database orders uuid columns
+     */
+    static final Comparator<UUID> UNSIGNED = Comparator
+            .<UUID>comparingLong(uuid -> uuid.getMostSignificantBits() ^ Long.MIN_VALUE)
+            .thenComparingLong(uuid -> uuid.getLeastSignificantBits() ^ Long.MIN_VALUE);
+
+    static TimeOrderedUuidGenerator fixed(Instant instant) {
+        return new TimeOrderedUuidGenerator(Clock.fixed(instant, ZoneOffset.UTC));
+    }
+
+    @Test
+    void sets_version_and_variant() {
+        UUID actual = new TimeOrderedUuidGenerator().generate();
+        assertEquals(7, actual.version());
+        assertEquals(2, actual.variant());
+    }
+
+    @Test
+    void begins_with_unix_timestamp_in_milliseconds() {
+        UUID actual = fixed(NOW).generate();
+        assertEquals(NOW.toEpochMilli(), actual.getMostSignificantBits() >>> 16);
+    }
+
+    @Test
+    void increases_strictly_within_one_millisecond() {
+        TimeOrderedUuidGenerator generator = fixed(NOW);
+        UUID previous = generator.generate();
+
+        for (int i = 0; i < 10_000; i++) {
+            UUID next = generator.generate();
+            assertTrue(UNSIGNED.compare(previous, next) < 0, previous+" >= "+next);
+            previous = next;
+        }
+    }
+
+    @Test
+    void carries_counter_overflow_into_timestamp() {
+        TimeOrderedUuidGenerator generator = fixed(NOW);
+        UUID last = null;
+
+        for (int i = 0; i < 4096; i++)
+            last = generator.generate();
+
+        assertEquals(NOW.toEpochMilli()+1, last.getMostSignificantBits() >>> 16);
+        assertEquals(7, last.version());
+    }
+
+    @Test
+    void does_not_go_backwards_with_the_clock() {
+        Clock[] clock = {Clock.fixed(NOW, ZoneOffset.UTC)};
+        TimeOrderedUuidGenerator generator = new TimeOrderedUuidGenerator(new Clock() {
+            @Override
+            public ZoneOffset getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Instant instant() {
+                return clock[0].instant();
+            }
+        });
+
+        UUID before = generator.generate();
+        clock[0] = Clock.fixed(NOW.minusSeconds(1), ZoneOffset.UTC);
+        UUID after = generator.generate();
+
+        assertTrue(UNSIGNED.compare(before, after) < 0, before+" >= "+after);
+    }
+
+    @Test
+    void generates_unique_increasing_uuids_per_thread_under_contention() throws Exception {
+        TimeOrderedUuidGenerator generator = new TimeOrderedUuidGenerator();
+        Set<UUID> all = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<List<UUID>>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    List<UUID> uuids = new ArrayList<>();
+                    for (int i = 0; i < 50_000; i++)
+                        uuids.add(generator.generate());
+                    return uuids;
+                }));
+            }
+
+            for (Future<List<UUID>> future : futures) {
+                List<UUID> uuids = future.get();
+                all.addAll(uuids);
+                for (int i = 1; i < uuids.size(); i++)
+                    assertTrue(UNSIGNED.compare(uuids.get(i-1), uuids.get(i)) < 0);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(8*50_000, all.size());
+    }
+}
@@ -0,0 +1,126 @@
+package com.portfolijo.schedjoeler.limit;
+
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class AdaptiveLimitTest {
+    static final long MILLI = 1_000_000;
+
+    AdaptiveLimit limit;
+
+    @BeforeEach
+    void setup() {
+        limit = new AdaptiveLimit("appointments", 4, 2, 8, 2.0, 0.5, 0.05);
+    }
+
+    void acquireAll() {
+        while (limit.getInFlight() < limit.getLimit())
+            assertTrue(limit.tryAcquire() > 0);
+    }
+
+    @Test
+    void rejects_requests_over_the_limit() {
+        assertEquals(1, limit.tryAcquire());
+        acquireAll();
+
+        assertEquals(0, limit.tryAcquire());
+        assertEquals(4, limit.getInFlight());
+        assertEquals(1, limit.getRejected());
+    }
+
+    @Test
+    void admits_requests_again_once_released() {
+        acquireAll();
+        limit.onIgnored();
+
+        assertTrue(limit.tryAcquire() > 0);
+    }
+
+    @Test
+    void raises_limit_while_saturated_requests_are_fast() {
+        for (int i = 0; i < 20; i++) {
+            int inFlight = limit.tryAcquire();
+            limit.onSample(10*MILLI, limit.getLimit());
+            assertTrue(inFlight > 0);
+        }
+
+        assertTrue(limit.getLimit() > 4, String.valueOf(limit.getLimit()));
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void does_not_raise_limit_while_idle() {
+        for (int i = 0; i < 20; i++)
+            limit.onSample(10*MILLI, limit.tryAcquire());
+
+        assertEquals(4, limit.getLimit());
+    }
+
+    @Test
+    void cuts_limit_when_requests_slow_down() {
+        limit.tryAcquire();
+        limit.onSample(10*MILLI, 1);
+        limit.tryAcquire();
+        limit.onSample(100*MILLI, 1);
+
+        assertEquals(2, limit.getLimit());
+        assertTrue(limit.getBaselineNanos() > 10*MILLI);
+    }
+
+    @Test
+    void cuts_limit_when_requests_fail() {
+        limit.tryAcquire();
+        limit.onDropped();
+
+        assertEquals(2, limit.getLimit());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void keeps_limit_within_bounds() {
+        for (int i = 0; i < 10; i++) {
+            limit.tryAcquire();
+            limit.onDropped();
+        }
+        assertEquals(2, limit.getLimit());
+
+        for (int i = 0; i < 1000; i++) {
+            limit.tryAcquire();
+            limit.onSample(MILLI, limit.getLimit());
+        }
+        assertEquals(8, limit.getLimit());
+    }
+
+    @Test
+    void never_admits_more_than_the_limit_concurrently() throws Exception {
+        limit = new AdaptiveLimit("appointments", 4, 4, 4, 2.0, 0.5, 0.05);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        int[] maximum = new int[8];
+
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    int inFlight = limit.tryAcquire();
+
+                    if (inFlight > 0) {
+                        maximum[thread] = Math.max(maximum[thread], inFlight);
+                        limit.onIgnored();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        for (int m : maximum)
+            assertTrue(m <= 4, String.valueOf(m));
+        assertEquals(0, limit.getInFlight());
+    }
+}
@@ -0,0 +1,70 @@
+package com.portfolijo.schedjoeler.limit;
+
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class BulkheadTest {
+    Bulkhead bulkhead;
+    CountDownLatch release;
+
+    @BeforeEach
+    void setup() {
+        bulkhead = new Bulkhead("reads", 1, 2, null, null);
+        release = new CountDownLatch(1);
+    }
+
+    @AfterEach
+    void teardown() {
+        release.countDown();
+        bulkhead.shutdown();
+    }
+
+    CompletableFuture<Boolean> block() {
+        return bulkhead.supply(() -> {
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Test
+    void runs_work_on_its_own_threads() throws Exception {
+        String thread = bulkhead.supply(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+
+        assertTrue(thread.startsWith("reads-"));
+    }
+
+    @Test
+    void queues_work_while_all_threads_are_busy() {
+        block();
+        block();
+        block();
+
+        assertEquals(2, bulkhead.getQueueDepth());
+        assertEquals(2, bulkhead.getQueueLimit());
+        assertEquals(0, bulkhead.getRejected());
+    }
+
+    @Test
+    void rejects_and_counts_work_beyond_the_queue() throws Exception {
+        CompletableFuture<Boolean> running = block();
+        block();
+        block();
+
+        RejectedExecutionException e = assertThrows(RejectedExecutionException.class, this::block);
+        assertEquals("Too many concurrent reads, retry later.", e.getCause().getMessage());
+        assertEquals(1, bulkhead.getRejected());
+
+        release.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+    }
+}
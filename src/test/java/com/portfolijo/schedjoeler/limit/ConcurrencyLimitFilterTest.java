@@ -0,0 +1,145 @@
+package com.portfolijo.schedjoeler.limit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class ConcurrencyLimitFilterTest {
+    ConcurrencyLimiter limiter;
+    ConcurrencyLimitFilter filter;
+
+    @BeforeEach
+    void setup() {
+        limiter = new ConcurrencyLimiter(List.of("appointments", "users"), 4, 2, 8, 2.0, 0.5, 0.05);
+        filter = new ConcurrencyLimitFilter(limiter, new ObjectMapper().registerModule(new JavaTimeModule()), 1);
+    }
+
+    MockHttpServletResponse perform(String path, MockFilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", path), response, chain);
+        return response;
+    }
+
+    void saturate(AdaptiveLimit limit) {
+        while (limit.getInFlight() < limit.getLimit())
+            limit.tryAcquire();
+    }
+
+    @Test
+    void groups_requests_by_first_path_segment() {
+        assertEquals("appointments", limiter.find("/api/appointments").getName());
+        assertEquals("appointments", limiter.find("/api/appointments/a/b").getName());
+        assertEquals("users", limiter.find("/api/users/a").getName());
+        assertEquals(ConcurrencyLimiter.OTHER_GROUP, limiter.find("/api/unknown").getName());
+        assertEquals(ConcurrencyLimiter.OTHER_GROUP, limiter.find("/api/usersx").getName());
+    }
+
+    @Test
+    void passes_requests_within_the_limit_and_releases_them() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+
+        MockHttpServletResponse response = perform("/api/appointments", chain);
+
+        assertEquals(200, response.getStatus());
+        assertNotNull(chain.getRequest());
+        assertEquals(0, limiter.find("/api/appointments").getInFlight());
+        assertTrue(limiter.find("/api/appointments").getBaselineNanos() > 0);
+    }
+
+    @Test
+    void returns_503_with_retry_after_header_over_the_limit() throws Exception {
+        saturate(limiter.find("/api/appointments"));
+        MockFilterChain chain = new MockFilterChain();
+
+        MockHttpServletResponse response = perform("/api/appointments", chain);
+
+        assertEquals(503, response.getStatus());
+        assertEquals("1", response.getHeader("Retry-After"));
+        assertTrue(response.getContentAsString().contains("Too many concurrent appointments requests"));
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    void does_not_limit_other_groups_when_one_is_saturated() throws Exception {
+        saturate(limiter.find("/api/appointments"));
+
+        assertEquals(200, perform("/api/users", new MockFilterChain()).getStatus());
+    }
+
+    @Test
+    void cuts_limit_when_request_throws() {
+        MockFilterChain chain = new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                throw new IllegalStateException();
+            }
+        };
+
+        assertThrows(IllegalStateException.class, () -> perform("/api/appointments", chain));
+        assertEquals(2, limiter.find("/api/appointments").getLimit());
+        assertEquals(0, limiter.find("/api/appointments").getInFlight());
+    }
+
+    @Test
+    void cuts_limit_on_server_error() throws Exception {
+        MockFilterChain chain = new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                ((HttpServletResponse) response).setStatus(500);
+            }
+        };
+
+        perform("/api/appointments", chain);
+
+        assertEquals(2, limiter.find("/api/appointments").getLimit());
+    }
+
+    MockHttpServletRequest performAsync(String path, boolean untimed) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setAsyncSupported(true);
+        MockFilterChain chain = new MockFilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                if (untimed)
+                    request.setAttribute(ConcurrencyLimitFilter.UNTIMED, true);
+
+                request.startAsync();
+            }
+        };
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        return request;
+    }
+
+    @Test
+    void holds_asynchronous_requests_until_they_complete() throws Exception {
+        MockHttpServletRequest request = performAsync("/api/appointments", false);
+        assertEquals(1, limiter.find("/api/appointments").getInFlight());
+
+        request.getAsyncContext().complete();
+        assertEquals(0, limiter.find("/api/appointments").getInFlight());
+        assertEquals(4, limiter.find("/api/appointments").getLimit());
+        assertTrue(limiter.find("/api/appointments").getBaselineNanos() > 0);
+    }
+
+    @Test
+    void releases_untimed_requests_without_sampling_their_latency() throws Exception {
+        MockHttpServletRequest request = performAsync("/api/appointments/export", true);
+        assertEquals(1, limiter.find("/api/appointments").getInFlight());
+
+        request.getAsyncContext().complete();
+        assertEquals(0, limiter.find("/api/appointments").getInFlight());
+        assertEquals(0, limiter.find("/api/appointments").getBaselineNanos());
+    }
+}
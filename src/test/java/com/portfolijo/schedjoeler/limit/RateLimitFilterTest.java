@@ -0,0 +1,81 @@
+package com.portfolijo.schedjoeler.limit;
+
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.repository.UserRepository;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Verifies that the api chain limits the request rate of each authenticated user
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@SpringBootTest(properties = {
+        "schedjoeler.rate-limit.routes.slots.per-second=0.01",
+        "schedjoeler.rate-limit.routes.slots.burst=2"})
+@AutoConfigureMockMvc
+class RateLimitFilterTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    UserRepository repo;
+
+    final String URL = "/api/slots/"+UUID.randomUUID();
+
+    String user() {
+        return repo.save(User
+                .builder()
+                .firstName("a")
+                .lastName("b")
+                .email(UUID.randomUUID()+"@example.com")
+                .passwordHash("{noop}password")
+                .build())
+                .getEmail();
+    }
+
+    @Test
+    void returns_429_with_retry_after_header_beyond_the_burst() throws Exception {
+        String user = user();
+
+        for (int i = 0; i < 2; i++)
+            mvc.perform(get(URL).with(httpBasic(user, "password")))
+                    .andExpect(status().is(org.hamcrest.Matchers.not(429)));
+
+        mvc.perform(get(URL).with(httpBasic(user, "password")))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "100"))
+                .andExpect(jsonPath("$.message").value("Too many slots requests, retry later."));
+    }
+
+    @Test
+    void does_not_limit_other_users_or_route_groups() throws Exception {
+        String user = user();
+
+        for (int i = 0; i < 3; i++)
+            mvc.perform(get(URL).with(httpBasic(user, "password")));
+
+        mvc.perform(get("/api/users/"+UUID.randomUUID()).with(httpBasic(user, "password")))
+                .andExpect(status().isNotFound());
+        mvc.perform(get(URL).with(httpBasic(user(), "password")))
+                .andExpect(status().is(org.hamcrest.Matchers.not(429)));
+    }
+
+    @Test
+    void does_not_limit_unauthenticated_requests() throws Exception {
+        for (int i = 0; i < 3; i++)
+            mvc.perform(get(URL))
+                    .andExpect(status().isUnauthorized());
+    }
+}
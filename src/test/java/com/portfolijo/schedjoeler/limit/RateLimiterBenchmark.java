@@ -0,0 +1,88 @@
+package com.portfolijo.schedjoeler.limit;
+
+import org.junit.jupiter.api.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the throughput of {@link RateLimiter} under contention from many threads, and the heap its buckets
+ * take, for increasing numbers of distinct users. Run with {@code mvn test -Pbenchmark}
+ */
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class RateLimiterBenchmark {
+    static final int THREADS = Runtime.getRuntime().availableProcessors()*2;
+    static final int REQUESTS = 2_000_000;
+
+    /**
+     * Runs the given number of requests spread over the given number of users, with every thread picking users at
+     * random, so that threads contend on the same buckets as well as on the map
+     */
+    void measure(int users) throws Exception {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setMaximumSize(users);
+        properties.setIdleTimeout(Duration.ofMinutes(10));
+        RateLimiter limiter = new RateLimiter(properties);
+        String[] principals = new String[users];
+
+        for (int i = 0; i < users; i++)
+            principals[i] = "user"+i+"@example.com";
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heap = memory.getHeapMemoryUsage().getUsed();
+
+        // creates every bucket, which also warms up the code
+        for (String principal : principals)
+            limiter.tryAcquire(principal, "appointments");
+
+        System.gc();
+        double bytes = (double) (memory.getHeapMemoryUsage().getUsed()-heap) / users;
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        LongAdder rejected = new LongAdder();
+        long start = System.nanoTime();
+        Future<?>[] futures = new Future<?>[THREADS];
+
+        for (int t = 0; t < THREADS; t++) {
+            futures[t] = executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+
+                for (int i = 0; i < REQUESTS / THREADS; i++) {
+                    if (limiter.tryAcquire(principals[random.nextInt(users)], "appointments") > 0)
+                        rejected.increment();
+                }
+            });
+        }
+        for (Future<?> future : futures)
+            future.get();
+
+        double seconds = (System.nanoTime()-start) / 1e9;
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        System.out.printf("%,10d users %,14.0f requests/s %8.1f ns/op %8.1f%% rejected %8.0f bytes/user%n",
+                users,
+                REQUESTS / seconds,
+                seconds*1e9*THREADS / REQUESTS,
+                100.0*rejected.sum() / REQUESTS,
+                bytes);
+    }
+
+    @Test
+    void measure_distinct_users() throws Exception {
+        System.out.printf("%d threads%n", THREADS);
+
+        for (int users : new int[] {10_000, 100_000, 1_000_000})
+            measure(users);
+    }
+}
@@ -0,0 +1,89 @@
+package com.portfolijo.schedjoeler.limit;
+
+import org.junit.jupiter.api.*;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class RateLimiterTest {
+    static final long SECOND = 1_000_000_000;
+
+    RateLimitProperties properties;
+
+    @BeforeEach
+    void setup() {
+        properties = new RateLimitProperties();
+        properties.getDefaults().setPerSecond(10);
+        properties.getDefaults().setBurst(3);
+        properties.setIdleTimeout(Duration.ofMinutes(1));
+    }
+
+    static RateLimitProperties.Rate rate(double perSecond, int burst) {
+        RateLimitProperties.Rate rate = new RateLimitProperties.Rate();
+        rate.setPerSecond(perSecond);
+        rate.setBurst(burst);
+        return rate;
+    }
+
+    @Test
+    void admits_a_burst_then_rejects_until_a_token_accrues() {
+        RateLimiter.Buckets buckets = new RateLimiter.Buckets(properties.getDefaults(), properties);
+        long now = System.nanoTime();
+
+        assertEquals(0, buckets.tryAcquire("a", now));
+        assertEquals(0, buckets.tryAcquire("a", now));
+        assertEquals(0, buckets.tryAcquire("a", now));
+        long wait = buckets.tryAcquire("a", now);
+
+        assertTrue(wait > 0 && wait <= SECOND/10, String.valueOf(wait));
+        assertEquals(wait, buckets.tryAcquire("a", now), "a rejected request takes no token");
+        assertEquals(0, buckets.tryAcquire("a", now+wait));
+    }
+
+    @Test
+    void refills_no_more_than_the_burst() {
+        RateLimiter.Buckets buckets = new RateLimiter.Buckets(properties.getDefaults(), properties);
+        long later = System.nanoTime()+60*SECOND;
+
+        for (int i = 0; i < 3; i++)
+            assertEquals(0, buckets.tryAcquire("a", later));
+
+        assertTrue(buckets.tryAcquire("a", later) > 0);
+    }
+
+    @Test
+    void keeps_separate_buckets_for_each_user() {
+        RateLimiter.Buckets buckets = new RateLimiter.Buckets(properties.getDefaults(), properties);
+        long now = System.nanoTime();
+
+        for (int i = 0; i < 3; i++)
+            buckets.tryAcquire("a", now);
+
+        assertTrue(buckets.tryAcquire("a", now) > 0);
+        assertEquals(0, buckets.tryAcquire("b", now));
+    }
+
+    @Test
+    void applies_the_rate_of_the_route_group() {
+        properties.setRoutes(Map.of("appointments", rate(1, 1)));
+        RateLimiter limiter = new RateLimiter(properties);
+
+        assertEquals(0, limiter.tryAcquire("a", "appointments"));
+        assertTrue(limiter.tryAcquire("a", "appointments") > 0);
+        assertEquals(0, limiter.tryAcquire("a", "users"));
+        assertEquals(0, limiter.tryAcquire("a", "slots"));
+    }
+
+    @Test
+    void admits_every_request_if_disabled() {
+        properties.setEnabled(false);
+        RateLimiter limiter = new RateLimiter(properties);
+
+        for (int i = 0; i < 10; i++)
+            assertEquals(0, limiter.tryAcquire("a", "users"));
+        assertEquals(0, limiter.estimatedSize());
+    }
+}
@@ -0,0 +1,43 @@
+package com.portfolijo.schedjoeler.pagination;
+
+import jakarta.validation.ValidationException;
+import org.junit.jupiter.api.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class AppointmentCursorTest {
+
+    @Nested
+    class Decode {
+        @Test
+        void decodes_encoded_cursor() {
+            AppointmentCursor expected = new AppointmentCursor(LocalDateTime.of(2023, 1, 1, 9, 30), 42L);
+            AppointmentCursor actual = AppointmentCursor.decode(expected.encode());
+            assertEquals(expected, actual);
+        }
+
+        @Test
+        void decodes_encoded_occurrence_cursor() {
+            AppointmentCursor expected = AppointmentCursor.ofOccurrence(
+                    LocalDateTime.of(2023, 1, 1, 9, 30), UUID.randomUUID());
+            AppointmentCursor actual = AppointmentCursor.decode(expected.encode());
+            assertEquals(expected, actual);
+            assertTrue(actual.isOccurrence());
+        }
+
+        @Test
+        void returns_null_if_token_is_null() {
+            assertNull(AppointmentCursor.decode(null));
+        }
+
+        @Test
+        void throws_ValidationException_if_token_is_malformed() {
+            assertThrows(ValidationException.class, () -> AppointmentCursor.decode("not a cursor"));
+            assertThrows(ValidationException.class, () -> AppointmentCursor.decode("MjAyMy0wMS0wMQ"));
+        }
+    }
+}
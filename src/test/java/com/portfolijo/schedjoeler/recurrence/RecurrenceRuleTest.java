@@ -0,0 +1,158 @@
+package com.portfolijo.schedjoeler.recurrence;
+
+import jakarta.validation.ValidationException;
+import org.junit.jupiter.api.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class RecurrenceRuleTest {
+    // a Monday
+    static final LocalDateTime START = LocalDateTime.of(2023, 1, 2, 9, 0);
+
+    /**
+     * Collects at most the given number of occurrences of a rule
+     *
+     * @param rule A recurrence rule
+     * @param from The earliest occurrence to collect, can be null
+     * @param limit The maximum number of occurrences
+     * @return A list of occurrence date/times
+     */
+    static List<LocalDateTime> take(RecurrenceRule rule, LocalDateTime from, int limit) {
+        List<LocalDateTime> occurrences = new ArrayList<>();
+        Iterator<LocalDateTime> iterator = rule.occurrences(START, from);
+
+        while (iterator.hasNext() && occurrences.size() < limit)
+            occurrences.add(iterator.next());
+
+        return occurrences;
+    }
+
+    @Nested
+    class Parse {
+        @Test
+        void accepts_prefixed_rule_and_formats_it_canonically() {
+            RecurrenceRule rule = RecurrenceRule.parse("RRULE:freq=weekly;byday=th,mo;interval=2;count=4");
+            assertEquals("FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,TH;COUNT=4", rule.toString());
+            assertEquals(rule, RecurrenceRule.parse(rule.toString()));
+        }
+
+        @Test
+        void reads_until_date_as_whole_day() {
+            RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY;UNTIL=20230105");
+            assertEquals(LocalDateTime.of(2023, 1, 5, 23, 59, 59), rule.getUntil());
+        }
+
+        @Test
+        void throws_ValidationException_if_rule_is_invalid() {
+            assertThrows(ValidationException.class, () -> RecurrenceRule.parse(""));
+            assertThrows(ValidationException.class, () -> RecurrenceRule.parse("INTERVAL=2"));
+            assertThrows(ValidationException.class, () -> RecurrenceRule.parse("FREQ=YEARLY"));
+            assertThrows(ValidationException.class, () -> RecurrenceRule.parse("FREQ=DAILY;INTERVAL=0"));
+            assertThrows(ValidationException.class, () -> RecurrenceRule.parse("FREQ=DAILY;COUNT=2;UNTIL=20230105"));
+            assertThrows(ValidationException.class, () -> RecurrenceRule.parse("FREQ=DAILY;BYDAY=MO"));
+            assertThrows(ValidationException.class, () -> RecurrenceRule.parse("FREQ=WEEKLY;BYDAY=XX"));
+            assertThrows(ValidationException.class, () -> RecurrenceRule.parse("FREQ=DAILY;BYMONTH=1"));
+        }
+    }
+
+    @Nested
+    class Occurrences {
+        @Test
+        void expands_weekly_rule_on_given_days() {
+            RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;INTERVAL=2;BYDAY=MO,WE;COUNT=4");
+            assertEquals(
+                    List.of(START, START.plusDays(2), START.plusWeeks(2), START.plusWeeks(2).plusDays(2)),
+                    take(rule, null, 10));
+        }
+
+        @Test
+        void skips_months_without_day_of_first_occurrence() {
+            LocalDateTime start = LocalDateTime.of(2023, 1, 31, 9, 0);
+            RecurrenceRule rule = RecurrenceRule.parse("FREQ=MONTHLY;COUNT=3");
+            List<LocalDateTime> occurrences = new ArrayList<>();
+            rule.occurrences(start, null).forEachRemaining(occurrences::add);
+            assertEquals(List.of(start, start.withMonth(3), start.withMonth(5)), occurrences);
+        }
+
+        @Test
+        void stops_at_until() {
+            RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY;UNTIL=20230104T090000");
+            assertEquals(List.of(START, START.plusDays(1), START.plusDays(2)), take(rule, null, 10));
+        }
+
+        @Test
+        void counts_occurrences_before_from_towards_count() {
+            RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY;COUNT=5");
+            assertEquals(List.of(START.plusDays(3), START.plusDays(4)), take(rule, START.plusDays(3), 10));
+        }
+
+        @Test
+        void starts_late_windows_without_expanding_earlier_occurrences() {
+            RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY");
+            LocalDateTime from = START.plusYears(1000);
+            assertEquals(List.of(from, from.plusDays(1)), take(rule, from, 2));
+        }
+
+        @Test
+        void returns_same_occurrences_as_expanding_from_first_occurrence() {
+            Random random = new Random(42);
+            String[] rules = {
+                    "FREQ=DAILY;INTERVAL=3;COUNT=40",
+                    "FREQ=WEEKLY;BYDAY=MO,WE,SU;COUNT=50",
+                    "FREQ=WEEKLY;INTERVAL=2;BYDAY=TU,SA;UNTIL=20231231",
+                    "FREQ=MONTHLY;INTERVAL=2;COUNT=20",
+                    "FREQ=WEEKLY;INTERVAL=3"
+            };
+
+            for (String value : rules) {
+                RecurrenceRule rule = RecurrenceRule.parse(value);
+                List<LocalDateTime> all = take(rule, null, 200);
+
+                for (int i = 0; i < 50; i++) {
+                    LocalDateTime from = START.plusHours(random.nextInt(24*500));
+                    List<LocalDateTime> expected = all.stream().filter(dateTime -> !dateTime.isBefore(from)).toList();
+                    List<LocalDateTime> actual = take(rule, from, expected.size()+1);
+
+                    // the reference expansion is truncated for rules without an end
+                    if (rule.getCount() == null && rule.getUntil() == null)
+                        actual = actual.subList(0, Math.min(actual.size(), expected.size()));
+
+                    assertEquals(expected, actual, value+" from "+from);
+                }
+            }
+        }
+    }
+
+    @Nested
+    class OccursAt {
+        @Test
+        void returns_true_only_for_occurrences() {
+            RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;BYDAY=MO,FR");
+            assertTrue(rule.occursAt(START, START.plusDays(4)));
+            assertFalse(rule.occursAt(START, START.plusDays(3)));
+            assertFalse(rule.occursAt(START, START.plusDays(4).plusMinutes(1)));
+            assertFalse(rule.occursAt(START, START.minusDays(3)));
+        }
+    }
+
+    @Nested
+    class LastDateTime {
+        @Test
+        void returns_last_occurrence_if_rule_has_count() {
+            RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;BYDAY=MO,WE;COUNT=3");
+            assertEquals(START.plusWeeks(1), rule.lastDateTime(START));
+        }
+
+        @Test
+        void returns_null_if_rule_does_not_end() {
+            assertNull(RecurrenceRule.parse("FREQ=DAILY").lastDateTime(START));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.batch.BatchItem;
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.service.AppointmentService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that bulk appointment creation is sent to the database as JDBC batches, rather than one statement
+ * per appointment
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class AppointmentBatchInsertTest {
+    static final int APPOINTMENTS = 200;
+    static final LocalDateTime EPOCH = LocalDateTime.of(2030, 1, 1, 0, 0);
+
+    @Autowired
+    AppointmentService svc;
+
+    @Autowired
+    AppointmentRepository repo;
+
+    @Autowired
+    UserRepository uRepo;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    Statistics statistics;
+    User provider;
+    User client;
+
+    @BeforeEach
+    void setup() {
+        provider = uRepo.save(User.builder().firstName("a").lastName("b").build());
+        client = uRepo.save(User.builder().firstName("c").lastName("d").build());
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void batches_inserts() {
+        List<BatchItem<Appointment>> items = new ArrayList<>();
+
+        for (int i = 0; i < APPOINTMENTS; i++)
+            items.add(BatchItem.success(i, Appointment
+                    .builder()
+                    .dateTime(EPOCH.plusHours(i))
+                    .provider(provider)
+                    .client(client)
+                    .status(Appointment.Status.NEW)
+                    .build()));
+
+        List<BatchItem<Appointment>> actual = svc.saveAll(items);
+
+        assertTrue(actual.stream().allMatch(BatchItem::isSuccess));
+        assertEquals(APPOINTMENTS, statistics.getEntityInsertCount());
+
+        // one statement per batch of 50 inserts, plus one sequence call per 50 ids
+        assertTrue(statistics.getPrepareStatementCount() <= 2L*APPOINTMENTS/50,
+                "prepared "+statistics.getPrepareStatementCount()+" statements");
+        assertEquals(APPOINTMENTS, repo.count());
+    }
+}
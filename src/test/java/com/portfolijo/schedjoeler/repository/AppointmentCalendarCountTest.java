@@ -0,0 +1,133 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.calendar.CalendarCount;
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.Recurrence;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.recurrence.RecurrenceRule;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
+import com.portfolijo.schedjoeler.service.AppointmentService;
+import com.portfolijo.schedjoeler.service.RecurrenceService;
+import com.portfolijo.schedjoeler.service.UserService;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that calendar counts are aggregated by the database with a grouped query
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@DataJpaTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                +"com.portfolijo.schedjoeler.repository.StatementCapture")
+class AppointmentCalendarCountTest {
+    static final LocalDateTime DAY = LocalDateTime.of(2023, 1, 2, 0, 0);
+
+    @Autowired
+    AppointmentRepository repo;
+
+    @Autowired
+    UserRepository uRepo;
+
+    @Autowired
+    RecurrenceRepository recRepo;
+
+    @Autowired
+    TestEntityManager em;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    AppointmentService svc;
+    User provider;
+    User client;
+    User other;
+
+    @BeforeEach
+    void setup() {
+        ProviderScheduleIndex schedule = new ProviderScheduleIndex(repo);
+        svc = new AppointmentService(
+                repo,
+                new UserService(uRepo, event -> {}, PasswordEncoderFactories.createDelegatingPasswordEncoder()),
+                new RecurrenceService(recRepo, repo, schedule),
+                schedule,
+                tx);
+        provider = uRepo.save(User.builder().firstName("a").lastName("b").build());
+        client = uRepo.save(User.builder().firstName("c").lastName("d").build());
+        other = uRepo.save(User.builder().firstName("e").lastName("f").build());
+
+        save(provider, client, DAY.plusHours(9), Appointment.Status.NEW);
+        save(provider, client, DAY.plusHours(10), Appointment.Status.NEW);
+        save(provider, client, DAY.plusHours(23), Appointment.Status.CANCELLED);
+        save(other, provider, DAY.plusDays(1).plusHours(9), Appointment.Status.NEW);
+        save(other, client, DAY.plusDays(1).plusHours(10), Appointment.Status.NEW);
+
+        em.flush();
+        em.clear();
+        StatementCapture.clear();
+    }
+
+    void save(User provider, User client, LocalDateTime dateTime, Appointment.Status status) {
+        repo.save(Appointment
+                .builder()
+                .dateTime(dateTime)
+                .endDateTime(dateTime.plusHours(1))
+                .provider(provider)
+                .client(client)
+                .status(status)
+                .build());
+    }
+
+    @Test
+    void counts_appointments_per_day_and_status() {
+        List<CalendarCount> actual = svc.countAll(provider.getUuid(), DAY, DAY.plusDays(7), null);
+
+        assertEquals(List.of(
+                new CalendarCount(DAY.toLocalDate(), Appointment.Status.NEW, 2),
+                new CalendarCount(DAY.toLocalDate(), Appointment.Status.CANCELLED, 1),
+                new CalendarCount(DAY.toLocalDate().plusDays(1), Appointment.Status.NEW, 1)), actual);
+    }
+
+    @Test
+    void counts_with_grouped_query_without_loading_appointments() {
+        svc.countAll(null, DAY, DAY.plusDays(7), Appointment.Status.NEW);
+
+        List<String> statements = StatementCapture
+                .statements()
+                .stream()
+                .filter(sql -> sql.contains("sj_appointment"))
+                .toList();
+
+        assertEquals(1, statements.size(), statements.toString());
+        assertTrue(statements.get(0).contains("group by"), statements.get(0));
+        assertFalse(statements.get(0).contains("sj_user"), statements.get(0));
+    }
+
+    @Test
+    void counts_occurrences_of_recurrences_as_new() {
+        new RecurrenceService(recRepo, repo, new ProviderScheduleIndex(repo)).saveOne(Recurrence
+                .builder()
+                .dateTime(DAY.plusHours(12))
+                .rule(RecurrenceRule.parse("FREQ=DAILY;COUNT=3"))
+                .provider(other)
+                .client(client)
+                .build());
+
+        List<CalendarCount> actual = svc.countAll(client.getUuid(), DAY, DAY.plusDays(7), Appointment.Status.NEW);
+
+        assertEquals(List.of(
+                new CalendarCount(DAY.toLocalDate(), Appointment.Status.NEW, 3),
+                new CalendarCount(DAY.toLocalDate().plusDays(1), Appointment.Status.NEW, 2),
+                new CalendarCount(DAY.toLocalDate().plusDays(2), Appointment.Status.NEW, 1)), actual);
+    }
+}
@@ -0,0 +1,158 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.Recurrence;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.recurrence.RecurrenceRule;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
+import com.portfolijo.schedjoeler.service.AppointmentService;
+import com.portfolijo.schedjoeler.service.RecurrenceService;
+import com.portfolijo.schedjoeler.service.UserService;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that appointments are loaded with their provider and client in the same statement, so the number of
+ * statements per request does not grow with the number of appointments
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@DataJpaTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                +"com.portfolijo.schedjoeler.repository.StatementCapture")
+class AppointmentFetchTest {
+    static final LocalDateTime DAY = LocalDateTime.of(2023, 1, 2, 0, 0);
+
+    @Autowired
+    AppointmentRepository repo;
+
+    @Autowired
+    UserRepository uRepo;
+
+    @Autowired
+    RecurrenceRepository recRepo;
+
+    @Autowired
+    TestEntityManager em;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    AppointmentService svc;
+    RecurrenceService recSvc;
+    List<UUID> appointments;
+
+    @BeforeEach
+    void setup() {
+        ProviderScheduleIndex schedule = new ProviderScheduleIndex(repo);
+        recSvc = new RecurrenceService(recRepo, repo, schedule);
+        svc = new AppointmentService(
+                repo,
+                new UserService(uRepo, event -> {}, PasswordEncoderFactories.createDelegatingPasswordEncoder()),
+                recSvc,
+                schedule,
+                tx);
+        appointments = new ArrayList<>();
+    }
+
+    /**
+     * Saves the given number of appointments and recurrences, each between its own provider and client, then
+     * clears the persistence context so that no user is already loaded
+     */
+    void save(int count) {
+        for (int i = 0; i < count; i++) {
+            User provider = uRepo.save(User.builder().firstName("p"+i).lastName("p").build());
+            User client = uRepo.save(User.builder().firstName("c"+i).lastName("c").build());
+
+            appointments.add(repo.save(Appointment
+                    .builder()
+                    .dateTime(DAY.plusMinutes(i))
+                    .endDateTime(DAY.plusMinutes(i+1))
+                    .provider(provider)
+                    .client(client)
+                    .status(Appointment.Status.NEW)
+                    .build()).getUuid());
+
+            recRepo.save(Recurrence
+                    .builder()
+                    .dateTime(DAY.plusHours(1).plusMinutes(i))
+                    .endDateTime(DAY.plusHours(1).plusMinutes(i+1))
+                    .rule(RecurrenceRule.parse("FREQ=DAILY;COUNT=2"))
+                    .provider(provider)
+                    .client(client)
+                    .build());
+        }
+
+        em.flush();
+        em.clear();
+        StatementCapture.clear();
+    }
+
+    /**
+     * Counts the statements prepared by the given request, reading every provider and client it returns
+     */
+    int statements(Runnable request) {
+        StatementCapture.clear();
+        request.run();
+        em.clear();
+        return StatementCapture.statements().size();
+    }
+
+    static void touch(Appointment appointment) {
+        appointment.getProvider().getFirstName();
+        appointment.getClient().getFirstName();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 25})
+    void lists_appointments_with_constant_statements(int count) {
+        save(count);
+        List<Appointment> found = new ArrayList<>();
+
+        int statements = statements(() -> svc.findAll(null, DAY, null, null).forEach(a -> {
+            touch(a);
+            found.add(a);
+        }));
+
+        assertEquals(count*3, found.size());
+        // appointments, recurrences, stored occurrences
+        assertEquals(3, statements, StatementCapture.statements().toString());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 25})
+    void pages_appointments_with_constant_statements(int count) {
+        save(count);
+        // appointments, recurrences, stored occurrences
+        assertEquals(3, statements(() -> svc.findAll(null, DAY, null, null, null, 100).getContent()
+                .forEach(AppointmentFetchTest::touch)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 25})
+    void exports_appointments_with_constant_statements(int count) {
+        save(count);
+        // appointments, recurrences, stored occurrences
+        assertEquals(3, statements(() -> svc.export(DAY, null, null, AppointmentFetchTest::touch)));
+    }
+
+    @Test
+    void finds_one_appointment_with_one_statement() {
+        save(1);
+        assertEquals(1, statements(() -> touch(svc.findOne(appointments.get(0)))));
+    }
+}
@@ -0,0 +1,219 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.pagination.AppointmentCursor;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
+import com.portfolijo.schedjoeler.service.AppointmentService;
+import com.portfolijo.schedjoeler.service.RecurrenceService;
+import com.portfolijo.schedjoeler.service.UserService;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs EXPLAIN against H2 for the SQL generated by every appointment filter combination, and fails if any of
+ * them is planned as a table scan
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@DataJpaTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                +"com.portfolijo.schedjoeler.repository.StatementCapture")
+class AppointmentQueryPlanTest {
+
+    @Autowired
+    AppointmentRepository repo;
+
+    @Autowired
+    UserRepository uRepo;
+
+    @Autowired
+    RecurrenceRepository recRepo;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    AppointmentService svc;
+    User user;
+
+    static final LocalDateTime FROM = LocalDateTime.of(2023, 1, 1, 0, 0);
+    static final LocalDateTime TO = LocalDateTime.of(2023, 2, 1, 0, 0);
+    static final Appointment.Status STATUS = Appointment.Status.NEW;
+    static final AppointmentCursor CURSOR = new AppointmentCursor(FROM, 1L);
+
+    @BeforeEach
+    void setup() {
+        ProviderScheduleIndex schedule = new ProviderScheduleIndex(repo);
+        svc = new AppointmentService(
+                repo,
+                new UserService(uRepo, event -> {}, PasswordEncoderFactories.createDelegatingPasswordEncoder()),
+                new RecurrenceService(recRepo, repo, schedule),
+                schedule,
+                tx);
+        user = uRepo.save(User.builder().firstName("a").lastName("b").build());
+        StatementCapture.clear();
+    }
+
+    /**
+     * Gets the plans of the last queries against the appointment table
+     *
+     * @param params The parameters of each query in the order they are bound; any unlisted trailing
+     *               parameters (such as row limits) are bound to 1
+     * @return A list of query plans, in the same order as the given parameters
+     */
+    List<String> explainLastAppointmentQueries(List<List<Object>> params) {
+        List<String> statements = StatementCapture
+                .statements()
+                .stream()
+                .filter(sql -> sql.startsWith("select") && sql.contains("sj_appointment"))
+                .toList();
+        assertTrue(statements.size() >= params.size(), "Expected "+params.size()+" appointment queries");
+
+        List<String> plans = new ArrayList<>();
+        List<String> last = statements.subList(statements.size()-params.size(), statements.size());
+
+        for (int i = 0; i < last.size(); i++) {
+            String sql = last.get(i);
+            List<Object> args = new ArrayList<>(params.get(i));
+
+            while (args.size() < sql.chars().filter(c -> c == '?').count())
+                args.add(1);
+
+            plans.add(jdbc.queryForObject("EXPLAIN "+sql, String.class, args.toArray()));
+        }
+        return plans;
+    }
+
+    /**
+     * Gets the plan of the last query against the appointment table
+     *
+     * @param params The query parameters in the order they are bound
+     * @return A query plan
+     */
+    String explainLastAppointmentQuery(List<Object> params) {
+        return explainLastAppointmentQueries(List.of(params)).get(0);
+    }
+
+    /**
+     * Gets the plans of the provider and client queries of the last user filtered search
+     *
+     * @param params The parameters bound after the user id
+     * @return A list of query plans
+     */
+    List<String> explainLastUserQueries(List<Object> params) {
+        List<Object> provided = new ArrayList<>(List.of(user.getId()));
+        provided.addAll(params);
+
+        List<Object> attended = new ArrayList<>(List.of(user.getId(), user.getId()));
+        attended.addAll(params);
+
+        return explainLastAppointmentQueries(List.of(provided, attended));
+    }
+
+    static Stream<Arguments> g_filter_combinations() {
+        List<Arguments> combinations = new ArrayList<>();
+
+        for (int mask = 1; mask < 8; mask++) {
+            combinations.add(Arguments.of(
+                    (mask & 1) == 0 ? null : FROM,
+                    (mask & 2) == 0 ? null : TO,
+                    (mask & 4) == 0 ? null : STATUS));
+        }
+        return combinations.stream();
+    }
+
+    /**
+     * Lists the bound values of the given filters in the order the service applies them
+     */
+    static List<Object> params(LocalDateTime from, LocalDateTime to, Appointment.Status status) {
+        List<Object> params = new ArrayList<>();
+
+        if (from != null)
+            params.add(from);
+
+        if (to != null)
+            params.add(to);
+
+        if (status != null)
+            params.add(status.ordinal());
+
+        return params;
+    }
+
+    @ParameterizedTest
+    @MethodSource("g_filter_combinations")
+    void list_query_uses_an_index(LocalDateTime from, LocalDateTime to, Appointment.Status status) {
+        svc.findAll(null, from, to, status);
+
+        String plan = explainLastAppointmentQuery(params(from, to, status));
+        assertFalse(plan.contains("tableScan"), plan);
+    }
+
+    @ParameterizedTest
+    @MethodSource("g_filter_combinations")
+    void page_query_uses_an_index(LocalDateTime from, LocalDateTime to, Appointment.Status status) {
+        svc.findAll(null, from, to, status, CURSOR, 10);
+
+        List<Object> params = params(from, to, status);
+        params.addAll(List.of(CURSOR.getDateTime(), CURSOR.getDateTime(), CURSOR.getId()));
+
+        String plan = explainLastAppointmentQuery(params);
+        assertFalse(plan.contains("tableScan"), plan);
+    }
+
+    @ParameterizedTest
+    @MethodSource("g_filter_combinations")
+    void user_list_queries_use_an_index(LocalDateTime from, LocalDateTime to, Appointment.Status status) {
+        svc.findAll(user.getUuid(), from, to, status);
+
+        for (String plan : explainLastUserQueries(params(from, to, status)))
+            assertFalse(plan.contains("tableScan"), plan);
+    }
+
+    @ParameterizedTest
+    @MethodSource("g_filter_combinations")
+    void user_page_queries_use_an_index(LocalDateTime from, LocalDateTime to, Appointment.Status status) {
+        svc.findAll(user.getUuid(), from, to, status, CURSOR, 10);
+
+        List<Object> params = params(from, to, status);
+        params.addAll(List.of(CURSOR.getDateTime(), CURSOR.getDateTime(), CURSOR.getId()));
+
+        for (String plan : explainLastUserQueries(params))
+            assertFalse(plan.contains("tableScan"), plan);
+    }
+
+    @Test
+    void user_queries_without_filters_use_an_index() {
+        svc.findAll(user.getUuid(), null, null, null);
+
+        for (String plan : explainLastUserQueries(List.of()))
+            assertFalse(plan.contains("tableScan"), plan);
+    }
+
+    @Test
+    void page_query_without_filters_seeks_the_cursor_with_an_index() {
+        svc.findAll(null, null, null, null, CURSOR, 10);
+
+        String plan = explainLastAppointmentQuery(
+                List.of(CURSOR.getDateTime(), CURSOR.getDateTime(), CURSOR.getId()));
+        assertFalse(plan.contains("tableScan"), plan);
+    }
+}
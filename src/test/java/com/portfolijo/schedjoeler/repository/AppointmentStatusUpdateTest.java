@@ -0,0 +1,188 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.Recurrence;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.recurrence.RecurrenceRule;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
+import com.portfolijo.schedjoeler.service.AppointmentService;
+import com.portfolijo.schedjoeler.service.RecurrenceService;
+import com.portfolijo.schedjoeler.service.UserService;
+import jakarta.validation.ValidationException;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that bulk status updates run as set-based update statements, without loading any appointments
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@DataJpaTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                +"com.portfolijo.schedjoeler.repository.StatementCapture")
+class AppointmentStatusUpdateTest {
+    static final LocalDateTime DAY = LocalDateTime.of(2023, 1, 2, 0, 0);
+
+    @Autowired
+    AppointmentRepository repo;
+
+    @Autowired
+    UserRepository uRepo;
+
+    @Autowired
+    RecurrenceRepository recRepo;
+
+    @Autowired
+    TestEntityManager em;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    RecurrenceService recSvc;
+    AppointmentService svc;
+    User provider;
+    User client;
+    User other;
+
+    @BeforeEach
+    void setup() {
+        ProviderScheduleIndex schedule = new ProviderScheduleIndex(repo);
+        recSvc = new RecurrenceService(recRepo, repo, schedule);
+        svc = new AppointmentService(
+                repo,
+                new UserService(uRepo, event -> {}, PasswordEncoderFactories.createDelegatingPasswordEncoder()),
+                recSvc,
+                schedule,
+                tx);
+        provider = uRepo.save(User.builder().firstName("a").lastName("b").build());
+        client = uRepo.save(User.builder().firstName("c").lastName("d").build());
+        other = uRepo.save(User.builder().firstName("e").lastName("f").build());
+
+        for (int i = 0; i < 8; i++)
+            save(provider, client, DAY.plusHours(9+i));
+
+        save(other, provider, DAY.plusHours(9));
+        save(other, client, DAY.plusHours(10));
+        save(provider, client, DAY.plusDays(1).plusHours(9));
+
+        em.flush();
+        em.clear();
+        StatementCapture.clear();
+    }
+
+    void save(User provider, User client, LocalDateTime dateTime) {
+        repo.save(Appointment
+                .builder()
+                .dateTime(dateTime)
+                .endDateTime(dateTime.plusHours(1))
+                .provider(provider)
+                .client(client)
+                .status(Appointment.Status.NEW)
+                .build());
+    }
+
+    void saveRecurrence(LocalDateTime dateTime, String rule) {
+        recSvc.saveOne(Recurrence
+                .builder()
+                .dateTime(dateTime)
+                .rule(RecurrenceRule.parse(rule))
+                .provider(provider)
+                .client(client)
+                .build());
+    }
+
+    int countByStatus(Appointment.Status status) {
+        return jdbc.queryForObject(
+                "select count(*) from sj_appointment where status = ?", Integer.class, status.ordinal());
+    }
+
+    @Test
+    void cancels_appointments_matching_criteria() {
+        int actual = svc.updateAll(
+                provider.getUuid(), DAY, DAY.plusDays(1).minusSeconds(1), null, Appointment.Status.CANCELLED);
+
+        assertEquals(9, actual);
+        assertEquals(9, countByStatus(Appointment.Status.CANCELLED));
+        assertEquals(2, countByStatus(Appointment.Status.NEW));
+    }
+
+    @Test
+    void does_not_load_appointments() {
+        svc.updateAll(null, DAY, null, Appointment.Status.NEW, Appointment.Status.COMPLETE);
+
+        List<String> statements = StatementCapture
+                .statements()
+                .stream()
+                .filter(sql -> sql.contains("sj_appointment"))
+                .toList();
+
+        assertEquals(2, statements.size(), statements.toString());
+        assertTrue(statements.get(0).matches("(?s)select a1_0\\.uuid from sj_appointment.*"), statements.get(0));
+        assertTrue(statements.get(1).startsWith("update sj_appointment"), statements.get(1));
+    }
+
+    @Test
+    void moves_appointments_between_booked_statuses() {
+        int actual = svc.updateAll(null, null, null, Appointment.Status.NEW, Appointment.Status.RESCHEDULED);
+        assertEquals(11, actual);
+        assertEquals(11, countByStatus(Appointment.Status.RESCHEDULED));
+    }
+
+    @Test
+    void stores_matching_occurrences_as_exceptions() {
+        saveRecurrence(DAY.plusHours(18), "FREQ=DAILY;COUNT=3");
+
+        int actual = svc.updateAll(
+                provider.getUuid(), DAY, DAY.plusDays(1).minusSeconds(1), null, Appointment.Status.CANCELLED);
+        em.flush();
+
+        assertEquals(10, actual);
+        assertEquals(10, countByStatus(Appointment.Status.CANCELLED));
+        assertEquals(List.of(), recSvc.findOccurrences(provider.getUuid(), DAY, DAY.plusDays(1).minusSeconds(1)));
+        assertEquals(2, recSvc.findOccurrences(provider.getUuid(), DAY, null).size());
+    }
+
+    @Test
+    void stores_occurrences_moved_between_booked_statuses_as_exceptions() {
+        saveRecurrence(DAY.plusHours(18), "FREQ=DAILY;COUNT=3");
+
+        int actual = svc.updateAll(null, null, null, Appointment.Status.NEW, Appointment.Status.RESCHEDULED);
+        em.flush();
+
+        assertEquals(14, actual);
+        assertEquals(14, countByStatus(Appointment.Status.RESCHEDULED));
+    }
+
+    @Test
+    void throws_ValidationException_if_recurrence_without_end_matches_unbounded_period() {
+        saveRecurrence(DAY.plusHours(18), "FREQ=DAILY");
+
+        assertThrows(ValidationException.class,
+                () -> svc.updateAll(null, DAY, null, null, Appointment.Status.CANCELLED));
+        assertEquals(0, countByStatus(Appointment.Status.CANCELLED));
+        assertEquals(1, svc.updateAll(
+                null, DAY.plusHours(17), DAY.plusHours(18), null, Appointment.Status.CANCELLED));
+    }
+
+    @Test
+    void throws_ValidationException_if_unbooked_appointments_would_be_booked() {
+        assertThrows(ValidationException.class,
+                () -> svc.updateAll(null, null, null, Appointment.Status.CANCELLED, Appointment.Status.NEW));
+        assertThrows(ValidationException.class,
+                () -> svc.updateAll(null, null, null, null, Appointment.Status.NEW));
+    }
+}
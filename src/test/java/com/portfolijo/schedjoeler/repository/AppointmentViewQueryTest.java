@@ -0,0 +1,137 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.pagination.AppointmentCursor;
+import com.portfolijo.schedjoeler.pagination.CursorPage;
+import com.portfolijo.schedjoeler.projection.AppointmentView;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
+import com.portfolijo.schedjoeler.service.AppointmentService;
+import com.portfolijo.schedjoeler.service.RecurrenceService;
+import com.portfolijo.schedjoeler.service.UserService;
+import org.hibernate.Session;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that appointment views are read with a single query, without loading any managed entities
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@DataJpaTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                +"com.portfolijo.schedjoeler.repository.StatementCapture")
+class AppointmentViewQueryTest {
+    static final LocalDateTime DAY = LocalDateTime.of(2023, 1, 2, 0, 0);
+
+    @Autowired
+    AppointmentRepository repo;
+
+    @Autowired
+    UserRepository uRepo;
+
+    @Autowired
+    RecurrenceRepository recRepo;
+
+    @Autowired
+    TestEntityManager em;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    AppointmentService svc;
+    User provider;
+    User client;
+
+    @BeforeEach
+    void setup() {
+        ProviderScheduleIndex schedule = new ProviderScheduleIndex(repo);
+        svc = new AppointmentService(
+                repo,
+                new UserService(uRepo, event -> {}, PasswordEncoderFactories.createDelegatingPasswordEncoder()),
+                new RecurrenceService(recRepo, repo, schedule),
+                schedule,
+                tx);
+        provider = uRepo.save(User.builder().firstName("a").lastName("b").email("c").build());
+        client = uRepo.save(User.builder().firstName("d").lastName("e").phone("f").build());
+
+        for (int i = 0; i < 5; i++) {
+            repo.save(Appointment
+                    .builder()
+                    .dateTime(DAY.plusHours(9+i))
+                    .endDateTime(DAY.plusHours(10+i))
+                    .provider(i % 2 == 0 ? provider : client)
+                    .client(i % 2 == 0 ? client : provider)
+                    .status(Appointment.Status.NEW)
+                    .location("g"+i)
+                    .build());
+        }
+
+        em.flush();
+        em.clear();
+        StatementCapture.clear();
+    }
+
+    int managedEntities() {
+        return em.getEntityManager().unwrap(Session.class).getStatistics().getEntityCount();
+    }
+
+    @Test
+    void reads_same_fields_as_entities() {
+        List<AppointmentView> expected = svc
+                .findAll(provider.getUuid(), DAY, null, null)
+                .stream()
+                .map(AppointmentView::of)
+                .toList();
+        em.clear();
+
+        assertEquals(expected, svc.findAllViews(provider.getUuid(), DAY, null, null));
+    }
+
+    @Test
+    void reads_views_with_one_query_without_managed_entities() {
+        svc.findAllViews(null, DAY, null, null);
+
+        List<String> statements = StatementCapture
+                .statements()
+                .stream()
+                .filter(sql -> sql.contains("sj_appointment"))
+                .toList();
+
+        assertEquals(1, statements.size(), statements.toString());
+        assertEquals(0, managedEntities());
+    }
+
+    @Test
+    void pages_views_with_same_cursors_as_entities() {
+        CursorPage<Appointment> expected = svc.findAll(client.getUuid(), null, null, null, null, 2);
+        CursorPage<AppointmentView> actual = svc.findAllViews(client.getUuid(), null, null, null, null, 2);
+        assertEquals(expected.getNextCursor(), actual.getNextCursor());
+
+        CursorPage<AppointmentView> last = svc.findAllViews(
+                client.getUuid(), null, null, null, AppointmentCursor.decode(actual.getNextCursor()), 10);
+        assertEquals(3, last.getContent().size());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void finds_one_view() {
+        AppointmentView expected = AppointmentView.of(repo.findAll().get(0));
+        em.clear();
+
+        assertEquals(expected, svc.findOneView(expected.getUuid()));
+        assertThrows(NoSuchElementException.class, () -> svc.findOneView(UUID.randomUUID()));
+    }
+}
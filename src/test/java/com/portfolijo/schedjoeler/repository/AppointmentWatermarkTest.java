@@ -0,0 +1,202 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.Recurrence;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.projection.Watermark;
+import com.portfolijo.schedjoeler.recurrence.RecurrenceRule;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
+import com.portfolijo.schedjoeler.service.AppointmentService;
+import com.portfolijo.schedjoeler.service.RecurrenceService;
+import com.portfolijo.schedjoeler.service.UserService;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that appointment watermarks are aggregated without loading any appointments, and change whenever the
+ * appointments found with the same criteria change
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@DataJpaTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                +"com.portfolijo.schedjoeler.repository.StatementCapture")
+class AppointmentWatermarkTest {
+    // a Monday
+    static final LocalDateTime DAY = LocalDateTime.of(2023, 1, 2, 0, 0);
+
+    @Autowired
+    AppointmentRepository repo;
+
+    @Autowired
+    UserRepository uRepo;
+
+    @Autowired
+    RecurrenceRepository recRepo;
+
+    @Autowired
+    TestEntityManager em;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    AppointmentService svc;
+    User provider;
+    User client;
+    Appointment appointment;
+
+    @BeforeEach
+    void setup() {
+        ProviderScheduleIndex schedule = new ProviderScheduleIndex(repo);
+        svc = new AppointmentService(
+                repo,
+                new UserService(uRepo, event -> {}, PasswordEncoderFactories.createDelegatingPasswordEncoder()),
+                new RecurrenceService(recRepo, repo, schedule),
+                schedule,
+                tx);
+        provider = uRepo.save(User.builder().firstName("a").lastName("b").build());
+        client = uRepo.save(User.builder().firstName("c").lastName("d").build());
+        appointment = save(DAY.plusHours(9));
+        save(DAY.plusDays(7).plusHours(9));
+        em.flush();
+    }
+
+    Appointment save(LocalDateTime dateTime) {
+        return repo.save(Appointment
+                .builder()
+                .dateTime(dateTime)
+                .endDateTime(dateTime.plusHours(1))
+                .provider(provider)
+                .client(client)
+                .status(Appointment.Status.NEW)
+                .build());
+    }
+
+    Watermark watermark() {
+        return svc.findWatermark(provider.getUuid(), DAY, DAY.plusDays(1), null);
+    }
+
+    @Test
+    void aggregates_matching_appointments_and_their_users() {
+        Watermark actual = watermark();
+        // the update date/time is read back as rounded by the column
+        em.refresh(appointment);
+
+        assertEquals(1, actual.getCount());
+        assertEquals(0, actual.getVersions());
+        assertEquals(appointment.getUpdatedAt(), actual.getLastModified());
+    }
+
+    @Test
+    void does_not_load_appointments() {
+        StatementCapture.clear();
+        watermark();
+
+        List<String> statements = StatementCapture.statements();
+
+        // one aggregate for each of the provider and client branches, and one for the recurrences
+        assertEquals(3, statements.size(), statements.toString());
+        statements.forEach(sql -> assertTrue(sql.startsWith("select count("), sql));
+    }
+
+    @Test
+    void changes_when_an_appointment_is_updated() {
+        Watermark before = watermark();
+
+        appointment.setLocation("a");
+        em.flush();
+
+        assertNotEquals(before.getETag(), watermark().getETag());
+    }
+
+    @Test
+    void changes_when_appointment_statuses_are_bulk_updated() {
+        Watermark before = watermark();
+
+        svc.updateAll(null, DAY, DAY.plusDays(1), null, Appointment.Status.CANCELLED);
+
+        assertNotEquals(before.getETag(), watermark().getETag());
+    }
+
+    @Test
+    void changes_when_a_user_is_updated() {
+        Watermark before = watermark();
+
+        client.setFirstName("e");
+        em.flush();
+
+        assertNotEquals(before.getETag(), watermark().getETag());
+    }
+
+    @Test
+    void changes_when_an_appointment_is_inserted_or_deleted() {
+        Watermark before = watermark();
+
+        save(DAY.plusHours(12));
+        em.flush();
+        Watermark inserted = watermark();
+
+        svc.deleteOne(appointment.getUuid());
+        Watermark deleted = watermark();
+
+        assertNotEquals(before.getETag(), inserted.getETag());
+        assertNotEquals(inserted.getETag(), deleted.getETag());
+    }
+
+    @Test
+    void changes_when_an_occurrence_is_moved_out_of_the_period() {
+        Recurrence weekly = recRepo.save(Recurrence
+                .builder()
+                .dateTime(DAY.plusHours(14))
+                .endDateTime(DAY.plusHours(15))
+                .rule(RecurrenceRule.parse("FREQ=WEEKLY"))
+                .provider(provider)
+                .client(client)
+                .build());
+        em.flush();
+        Watermark before = watermark();
+
+        repo.save(Appointment
+                .builder()
+                .dateTime(DAY.plusDays(30).plusHours(14))
+                .endDateTime(DAY.plusDays(30).plusHours(15))
+                .provider(provider)
+                .client(client)
+                .status(Appointment.Status.RESCHEDULED)
+                .recurrence(weekly)
+                .recurrenceDateTime(weekly.getDateTime())
+                .build());
+        em.flush();
+
+        assertNotEquals(before.getETag(), watermark().getETag());
+    }
+
+    @Test
+    void does_not_change_when_appointments_outside_the_period_change() {
+        Watermark before = watermark();
+
+        save(DAY.plusDays(3));
+        em.flush();
+
+        assertEquals(before, watermark());
+    }
+
+    @Test
+    void throws_NoSuchElementException_if_user_does_not_exist() {
+        assertThrows(NoSuchElementException.class,
+                () -> svc.findWatermark(UUID.randomUUID(), null, null, null));
+        assertThrows(NoSuchElementException.class, () -> svc.findWatermark(UUID.randomUUID()));
+    }
+}
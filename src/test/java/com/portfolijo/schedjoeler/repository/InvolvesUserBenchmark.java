@@ -0,0 +1,163 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
+import com.portfolijo.schedjoeler.service.AppointmentService;
+import com.portfolijo.schedjoeler.service.RecurrenceService;
+import com.portfolijo.schedjoeler.service.UserService;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the provider-OR-client specification with the split provider/client index scans used by
+ * {@link AppointmentService#findAll}. Run with {@code mvn test -Pbenchmark}
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@DataJpaTest
+class InvolvesUserBenchmark {
+    static final int USERS = 500;
+    static final int APPOINTMENTS = 200_000;
+    static final int WARMUP = 50;
+    static final int ITERATIONS = 500;
+    static final LocalDateTime EPOCH = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    @Autowired
+    AppointmentRepository repo;
+
+    @Autowired
+    UserRepository uRepo;
+
+    @Autowired
+    RecurrenceRepository recRepo;
+
+    @Autowired
+    TestEntityManager em;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    AppointmentService svc;
+    List<UUID> users;
+
+    @BeforeEach
+    void setup() {
+        ProviderScheduleIndex schedule = new ProviderScheduleIndex(repo);
+        svc = new AppointmentService(
+                repo,
+                new UserService(uRepo, event -> {}, PasswordEncoderFactories.createDelegatingPasswordEncoder()),
+                new RecurrenceService(recRepo, repo, schedule),
+                schedule,
+                tx);
+        users = new ArrayList<>();
+
+        List<Object[]> userRows = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            UUID uuid = UUID.randomUUID();
+            users.add(uuid);
+            userRows.add(new Object[] {uuid, "first"+i, "last"+i});
+        }
+        jdbc.batchUpdate("insert into sj_user (uuid, first_name, last_name) values (?, ?, ?)", userRows);
+
+        List<Long> ids = jdbc.queryForList("select id from sj_user order by id", Long.class);
+        Random random = new Random(0);
+        List<Object[]> appointmentRows = new ArrayList<>();
+
+        for (int i = 0; i < APPOINTMENTS; i++) {
+            appointmentRows.add(new Object[] {
+                    UUID.randomUUID(),
+                    EPOCH.plusMinutes(30L*i),
+                    EPOCH.plusMinutes(30L*i+30),
+                    ids.get(random.nextInt(USERS)),
+                    ids.get(random.nextInt(USERS)),
+                    Appointment.Status.NEW.ordinal()});
+        }
+        jdbc.batchUpdate(
+                "insert into sj_appointment (id, uuid, date_time, end_date_time, provider_id, client_id, status)"
+                        + " values (next value for sj_appointment_seq, ?, ?, ?, ?, ?, ?)",
+                appointmentRows);
+    }
+
+    /**
+     * The user predicate used before the split index scans
+     */
+    static Specification<Appointment> involvesUser(UUID uuid) {
+        return ((root, query, criteriaBuilder) -> criteriaBuilder.or(
+                criteriaBuilder.equal(root.get(Appointment.Fields.provider).get(User.Fields.uuid), uuid),
+                criteriaBuilder.equal(root.get(Appointment.Fields.client).get(User.Fields.uuid), uuid)));
+    }
+
+    static Specification<Appointment> between(LocalDateTime from, LocalDateTime to) {
+        return ((root, query, criteriaBuilder) ->
+                criteriaBuilder.between(root.get(Appointment.Fields.dateTime), from, to));
+    }
+
+    /**
+     * Measures the mean latency of the given search over a rotating set of users and one month windows
+     *
+     * @return The mean latency in microseconds
+     */
+    double measure(String name, SearchFunction search) {
+        Random random = new Random(1);
+
+        for (int i = 0; i < WARMUP; i++)
+            run(search, random);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            run(search, random);
+        double micros = (System.nanoTime()-start) / 1_000.0 / ITERATIONS;
+
+        System.out.printf("%-28s %10.1f us/op%n", name, micros);
+        return micros;
+    }
+
+    void run(SearchFunction search, Random random) {
+        UUID user = users.get(random.nextInt(USERS));
+        LocalDateTime from = EPOCH.plusDays(random.nextInt(APPOINTMENTS / 48 - 31));
+        search.find(user, from, from.plusMonths(1)).get();
+        em.clear();
+    }
+
+    @Test
+    void compare_or_specification_with_split_index_scans() {
+        LocalDateTime from = EPOCH;
+        LocalDateTime to = EPOCH.plusYears(1);
+        UUID user = users.get(0);
+        Sort sort = Sort.by(Appointment.Fields.dateTime, Appointment.Fields.id);
+
+        assertEquals(
+                repo.findAll(involvesUser(user).and(between(from, to)), sort),
+                svc.findAll(user, from, to, null));
+
+        System.out.printf("%d users, %d appointments%n", USERS, APPOINTMENTS);
+        measure("or specification", (u, f, t) -> () -> repo.findAll(involvesUser(u).and(between(f, t)), sort));
+        measure("split index scans", (u, f, t) -> () -> svc.findAll(u, f, t, null));
+    }
+
+    @FunctionalInterface
+    interface SearchFunction {
+        Supplier<List<Appointment>> find(UUID user, LocalDateTime from, LocalDateTime to);
+    }
+}
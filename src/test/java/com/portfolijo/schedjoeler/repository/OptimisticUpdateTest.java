@@ -0,0 +1,198 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.projection.Watermark;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
+import com.portfolijo.schedjoeler.service.AppointmentService;
+import com.portfolijo.schedjoeler.service.RecurrenceService;
+import com.portfolijo.schedjoeler.service.UserService;
+import jakarta.validation.ValidationException;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that updates write only the changed columns, guarded by the version the client last read
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@DataJpaTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                +"com.portfolijo.schedjoeler.repository.StatementCapture")
+class OptimisticUpdateTest {
+    static final LocalDateTime DAY = LocalDateTime.of(2023, 1, 2, 0, 0);
+
+    @Autowired
+    AppointmentRepository repo;
+
+    @Autowired
+    UserRepository uRepo;
+
+    @Autowired
+    RecurrenceRepository recRepo;
+
+    @Autowired
+    TestEntityManager em;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    AppointmentService svc;
+    UserService uSvc;
+    User provider;
+    User client;
+    Appointment appointment;
+
+    @BeforeEach
+    void setup() {
+        ProviderScheduleIndex schedule = new ProviderScheduleIndex(repo);
+        uSvc = new UserService(uRepo, event -> {}, PasswordEncoderFactories.createDelegatingPasswordEncoder());
+        svc = new AppointmentService(repo, uSvc, new RecurrenceService(recRepo, repo, schedule), schedule, tx);
+        provider = uRepo.save(User.builder().firstName("a").lastName("b").build());
+        client = uRepo.save(User.builder().firstName("c").lastName("d").build());
+        appointment = repo.save(Appointment
+                .builder()
+                .dateTime(DAY.plusHours(9))
+                .endDateTime(DAY.plusHours(10))
+                .provider(provider)
+                .client(client)
+                .status(Appointment.Status.NEW)
+                .build());
+        em.flush();
+        em.clear();
+        StatementCapture.clear();
+    }
+
+    List<String> statements(String table) {
+        return StatementCapture
+                .statements()
+                .stream()
+                .filter(sql -> sql.contains(table))
+                .toList();
+    }
+
+    String location() {
+        return jdbc.queryForObject(
+                "select location from sj_appointment where id = ?", String.class, appointment.getId());
+    }
+
+    @Test
+    void writes_supplied_appointment_columns_with_one_statement() {
+        svc.updateOne(appointment.getUuid(), 0L, Map.of(Appointment.Fields.location, "x"));
+
+        List<String> statements = statements("sj_appointment");
+
+        assertEquals(1, statements.size(), statements.toString());
+        assertTrue(statements.get(0).startsWith("update sj_appointment set location=?,"), statements.get(0));
+        assertFalse(statements.get(0).contains("description"), statements.get(0));
+        assertEquals("x", location());
+    }
+
+    @Test
+    void increments_version() {
+        svc.updateOne(appointment.getUuid(), null, Map.of(Appointment.Fields.location, "x"));
+        svc.updateOne(appointment.getUuid(), 1L, Map.of(Appointment.Fields.location, "y"));
+
+        assertEquals(2, svc.findWatermark(appointment.getUuid()).getVersions());
+        assertEquals("y", location());
+    }
+
+    @Test
+    void throws_OptimisticLockingFailureException_if_versions_do_not_match() {
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> svc.updateOne(appointment.getUuid(), 1L, Map.of(Appointment.Fields.location, "x")));
+        assertNull(location());
+    }
+
+    @Test
+    void updates_appointment_if_user_was_modified() {
+        jdbc.update("update sj_user set version = version+1 where id = ?", client.getId());
+
+        svc.updateOne(appointment.getUuid(), 0L, Map.of(Appointment.Fields.location, "x"));
+
+        assertEquals("x", location());
+    }
+
+    @Test
+    void throws_OptimisticLockingFailureException_if_client_was_swapped() {
+        User other = uRepo.save(User.builder().firstName("e").lastName("f").build());
+        jdbc.update("update sj_user set version = version+1 where id = ?", client.getId());
+        em.flush();
+        Watermark stale = svc.findWatermark(appointment.getUuid());
+
+        svc.updateOne(appointment.getUuid(), null, Map.of(Appointment.Fields.client, other));
+
+        // the swap to a client one version behind leaves the sum of the versions as it was
+        assertEquals(stale.getVersions(), svc.findWatermark(appointment.getUuid()).getVersions());
+        assertThrows(OptimisticLockingFailureException.class, () -> svc.updateOne(
+                appointment.getUuid(), Watermark.versionOf(stale.getETag()), Map.of(Appointment.Fields.location, "x")));
+        assertNull(location());
+    }
+
+    @Test
+    void throws_NoSuchElementException_if_appointment_does_not_exist() {
+        assertThrows(NoSuchElementException.class,
+                () -> svc.updateOne(UUID.randomUUID(), 0L, Map.of(Appointment.Fields.location, "x")));
+    }
+
+    @Test
+    void throws_ValidationException_if_changes_rebook_appointment() {
+        assertThrows(ValidationException.class,
+                () -> svc.updateOne(
+                        appointment.getUuid(), null, Map.of(Appointment.Fields.status, Appointment.Status.NEW)));
+        assertThrows(ValidationException.class,
+                () -> svc.updateOne(appointment.getUuid(), null, Map.of(Appointment.Fields.dateTime, DAY)));
+    }
+
+    @Test
+    void throws_OptimisticLockingFailureException_if_rebooked_appointment_was_modified() {
+        assertThrows(OptimisticLockingFailureException.class, () -> svc.findOne(appointment.getUuid(), 1L));
+        assertNotNull(svc.findOne(appointment.getUuid(), 0L));
+    }
+
+    @Test
+    void writes_changed_user_columns_guarded_by_version() {
+        User user = uSvc.findOne(provider.getUuid(), 0L);
+        user.setEmail("e");
+        uRepo.saveAndFlush(user);
+
+        List<String> statements = statements("sj_user");
+        String update = statements.get(statements.size()-1);
+
+        assertTrue(update.startsWith("update sj_user set email=?,"), update);
+        assertFalse(update.contains("first_name"), update);
+        assertTrue(update.endsWith("where id=? and version=?"), update);
+    }
+
+    @Test
+    void throws_OptimisticLockingFailureException_if_user_version_does_not_match() {
+        assertThrows(OptimisticLockingFailureException.class, () -> uSvc.findOne(provider.getUuid(), 1L));
+    }
+
+    @Test
+    void throws_OptimisticLockingFailureException_if_user_is_modified_before_it_is_written() {
+        User user = uSvc.findOne(provider.getUuid(), 0L);
+        jdbc.update("update sj_user set version = version+1 where id = ?", provider.getId());
+        user.setEmail("e");
+
+        assertThrows(OptimisticLockingFailureException.class, () -> uRepo.saveAndFlush(user));
+    }
+}
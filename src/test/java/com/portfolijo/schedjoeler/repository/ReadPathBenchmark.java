@@ -0,0 +1,162 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.converter.AppointmentConverter;
+import com.portfolijo.schedjoeler.converter.UserConverter;
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.dto.AppointmentDto;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
+import com.portfolijo.schedjoeler.service.AppointmentService;
+import com.portfolijo.schedjoeler.service.RecurrenceService;
+import com.portfolijo.schedjoeler.service.UserService;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares reading appointment DTOs through managed entities with reading them through
+ * {@link AppointmentService#findAllViews} projections, by latency and by bytes allocated per request. Run with
+ * {@code mvn test -Pbenchmark}
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@DataJpaTest
+class ReadPathBenchmark {
+    static final int USERS = 500;
+    static final int APPOINTMENTS = 200_000;
+    static final int WARMUP = 200;
+    static final int ITERATIONS = 1000;
+    static final LocalDateTime EPOCH = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    @Autowired
+    AppointmentRepository repo;
+
+    @Autowired
+    UserRepository uRepo;
+
+    @Autowired
+    RecurrenceRepository recRepo;
+
+    @Autowired
+    TestEntityManager em;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    AppointmentService svc;
+    AppointmentConverter con;
+    List<UUID> users;
+
+    @BeforeEach
+    void setup() {
+        ProviderScheduleIndex schedule = new ProviderScheduleIndex(repo);
+        UserService uSvc = new UserService(
+                uRepo, event -> {}, PasswordEncoderFactories.createDelegatingPasswordEncoder());
+        svc = new AppointmentService(repo, uSvc, new RecurrenceService(recRepo, repo, schedule), schedule, tx);
+        con = new AppointmentConverter(svc, uSvc, new UserConverter(uSvc));
+        users = new ArrayList<>();
+
+        List<Object[]> userRows = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            UUID uuid = UUID.randomUUID();
+            users.add(uuid);
+            userRows.add(new Object[] {uuid, "first"+i, "last"+i, "user"+i+"@example.com"});
+        }
+        jdbc.batchUpdate("insert into sj_user (uuid, first_name, last_name, email) values (?, ?, ?, ?)", userRows);
+
+        List<Long> ids = jdbc.queryForList("select id from sj_user order by id", Long.class);
+        Random random = new Random(0);
+        List<Object[]> appointmentRows = new ArrayList<>();
+
+        for (int i = 0; i < APPOINTMENTS; i++) {
+            appointmentRows.add(new Object[] {
+                    UUID.randomUUID(),
+                    EPOCH.plusMinutes(30L*i),
+                    EPOCH.plusMinutes(30L*i+30),
+                    ids.get(random.nextInt(USERS)),
+                    ids.get(random.nextInt(USERS)),
+                    Appointment.Status.NEW.ordinal(),
+                    "room "+i % 20});
+        }
+        jdbc.batchUpdate(
+                "insert into sj_appointment"
+                        +" (id, uuid, date_time, end_date_time, provider_id, client_id, status, location)"
+                        +" values (next value for sj_appointment_seq, ?, ?, ?, ?, ?, ?, ?)",
+                appointmentRows);
+    }
+
+    /**
+     * Measures the mean latency and allocation of the given read over a rotating set of users and one month
+     * windows. Each read ends by clearing the persistence context, as the end of a request would
+     */
+    void measure(String name, ReadFunction read) {
+        Random random = new Random(1);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        for (int i = 0; i < WARMUP; i++)
+            run(read, random);
+
+        long bytes = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        int dtos = 0;
+        for (int i = 0; i < ITERATIONS; i++)
+            dtos += run(read, random);
+        double micros = (System.nanoTime()-start) / 1_000.0 / ITERATIONS;
+        double kilobytes = (threads.getCurrentThreadAllocatedBytes()-bytes) / 1_024.0 / ITERATIONS;
+
+        System.out.printf("%-20s %10.1f us/op %10.1f KiB/op %8.1f dtos/op%n",
+                name, micros, kilobytes, (double) dtos / ITERATIONS);
+    }
+
+    int run(ReadFunction read, Random random) {
+        UUID user = users.get(random.nextInt(USERS));
+        LocalDateTime from = EPOCH.plusDays(random.nextInt(APPOINTMENTS / 48 - 31));
+        int size = read.find(user, from, from.plusMonths(1)).get().size();
+        em.clear();
+        return size;
+    }
+
+    @Test
+    void compare_entity_and_projection_read_paths() {
+        LocalDateTime from = EPOCH;
+        LocalDateTime to = EPOCH.plusMonths(3);
+        UUID user = users.get(0);
+
+        List<AppointmentDto> expected = svc.findAll(user, from, to, null).stream().map(con::toDto).toList();
+        em.clear();
+        assertEquals(expected, svc.findAllViews(user, from, to, null).stream().map(con::toDto).toList());
+
+        System.out.printf("%d users, %d appointments%n", USERS, APPOINTMENTS);
+        measure("user, entities", (u, f, t) -> () -> svc.findAll(u, f, t, null)
+                .stream().map(con::toDto).toList());
+        measure("user, projections", (u, f, t) -> () -> svc.findAllViews(u, f, t, null)
+                .stream().map(con::toDto).toList());
+        measure("2 days, entities", (u, f, t) -> () -> svc.findAll(null, f, f.plusDays(2), null)
+                .stream().map(con::toDto).toList());
+        measure("2 days, projections", (u, f, t) -> () -> svc.findAllViews(null, f, f.plusDays(2), null)
+                .stream().map(con::toDto).toList());
+    }
+
+    @FunctionalInterface
+    interface ReadFunction {
+        Supplier<List<AppointmentDto>> find(UUID user, LocalDateTime from, LocalDateTime to);
+    }
+}
@@ -0,0 +1,321 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.Recurrence;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.pagination.AppointmentCursor;
+import com.portfolijo.schedjoeler.pagination.CursorPage;
+import com.portfolijo.schedjoeler.projection.AppointmentView;
+import com.portfolijo.schedjoeler.recurrence.OccurrenceId;
+import com.portfolijo.schedjoeler.recurrence.RecurrenceRule;
+import com.portfolijo.schedjoeler.schedule.Booking;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
+import com.portfolijo.schedjoeler.schedule.ScheduleConflictException;
+import com.portfolijo.schedjoeler.service.AppointmentService;
+import com.portfolijo.schedjoeler.service.RecurrenceService;
+import com.portfolijo.schedjoeler.service.UserService;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that recurrences are expanded into appointment searches, with stored occurrences replacing the
+ * occurrences expanded from the recurrence rule
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@DataJpaTest
+class RecurrenceExpansionTest {
+    // a Monday
+    static final LocalDateTime START = LocalDateTime.of(2023, 1, 2, 9, 0);
+
+    @Autowired
+    AppointmentRepository repo;
+
+    @Autowired
+    UserRepository uRepo;
+
+    @Autowired
+    RecurrenceRepository recRepo;
+
+    @Autowired
+    TestEntityManager em;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    RecurrenceService recSvc;
+    AppointmentService svc;
+    User provider;
+    User client;
+    Recurrence weekly;
+
+    @BeforeEach
+    void setup() {
+        ProviderScheduleIndex schedule = new ProviderScheduleIndex(repo);
+        recSvc = new RecurrenceService(recRepo, repo, schedule);
+        svc = new AppointmentService(
+                repo,
+                new UserService(uRepo, event -> {}, PasswordEncoderFactories.createDelegatingPasswordEncoder()),
+                recSvc,
+                schedule,
+                tx);
+        provider = uRepo.save(User.builder().firstName("a").lastName("b").build());
+        client = uRepo.save(User.builder().firstName("c").lastName("d").build());
+        weekly = recSvc.saveOne(recurrence(START, "FREQ=WEEKLY;BYDAY=MO,WE"));
+    }
+
+    Recurrence recurrence(LocalDateTime dateTime, String rule) {
+        return Recurrence
+                .builder()
+                .dateTime(dateTime)
+                .rule(RecurrenceRule.parse(rule))
+                .provider(provider)
+                .client(client)
+                .build();
+    }
+
+    @Test
+    void saves_recurrence_with_last_date_time() {
+        Recurrence saved = recSvc.saveOne(recurrence(START.plusHours(1), "FREQ=DAILY;COUNT=3"));
+        assertEquals(START.plusDays(2).plusHours(1), saved.getLastDateTime());
+        assertEquals(START.plusHours(1).plus(Appointment.DEFAULT_DURATION), saved.getEndDateTime());
+    }
+
+    @Test
+    void expands_occurrences_within_period_in_date_time_order() {
+        recSvc.saveOne(recurrence(START.plusHours(1), "FREQ=DAILY;COUNT=2"));
+
+        List<LocalDateTime> actual = recSvc
+                .findOccurrences(provider.getUuid(), START, START.plusDays(3))
+                .stream()
+                .map(Appointment::getDateTime)
+                .toList();
+
+        assertEquals(List.of(START, START.plusHours(1), START.plusDays(1).plusHours(1), START.plusDays(2)), actual);
+    }
+
+    @Test
+    void ignores_recurrences_of_other_users() {
+        User other = uRepo.save(User.builder().firstName("e").lastName("f").build());
+        assertTrue(recSvc.findOccurrences(other.getUuid(), START, START.plusWeeks(1)).isEmpty());
+    }
+
+    @Test
+    void caps_occurrences_of_unbounded_search() {
+        assertEquals(RecurrenceService.MAX_OCCURRENCES, recSvc.findOccurrences(null, START, null).size());
+    }
+
+    @Test
+    void caps_unbounded_search_at_the_same_occurrence_wherever_it_starts() {
+        List<LocalDateTime> all = recSvc
+                .findOccurrences(null, START, null)
+                .stream()
+                .map(Appointment::getDateTime)
+                .toList();
+
+        List<LocalDateTime> unpaged = recSvc
+                .findOccurrences(null, all.get(995), null)
+                .stream()
+                .map(Appointment::getDateTime)
+                .toList();
+        AppointmentCursor cursor = AppointmentCursor.ofOccurrence(all.get(994), weekly.getUuid());
+        List<LocalDateTime> paged = recSvc
+                .findOccurrences(null, null, null, cursor, 10)
+                .stream()
+                .map(Appointment::getDateTime)
+                .toList();
+
+        assertEquals(all.subList(995, 1000), unpaged);
+        assertEquals(all.subList(995, 1000), paged);
+        assertTrue(recSvc.findOccurrences(null, all.get(999).plusDays(1), null).isEmpty());
+    }
+
+    @Test
+    void skips_stored_occurrences_read_in_several_batches() {
+        Recurrence daily = recSvc.saveOne(recurrence(START.plusHours(2), "FREQ=DAILY;COUNT=600"));
+
+        for (int i = 0; i < 550; i++) {
+            LocalDateTime dateTime = START.plusHours(2).plusDays(i);
+            repo.save(Appointment
+                    .builder()
+                    .uuid(OccurrenceId.uuid(daily.getUuid(), dateTime))
+                    .dateTime(dateTime)
+                    .endDateTime(dateTime.plusHours(1))
+                    .provider(provider)
+                    .client(client)
+                    .status(Appointment.Status.CANCELLED)
+                    .recurrence(daily)
+                    .recurrenceDateTime(dateTime)
+                    .build());
+        }
+        em.flush();
+        em.clear();
+
+        List<Appointment> actual = new ArrayList<>();
+        recSvc.iterateOccurrences(provider.getUuid(), START, START.plusDays(600)).forEachRemaining(occurrence -> {
+            if (occurrence.getRecurrence().getUuid().equals(daily.getUuid()))
+                actual.add(occurrence);
+        });
+
+        assertEquals(50, actual.size());
+        assertEquals(START.plusHours(2).plusDays(550), actual.get(0).getDateTime());
+    }
+
+    @Test
+    void replaces_expanded_occurrence_with_stored_occurrence() {
+        LocalDateTime wednesday = START.plusDays(2);
+        Appointment occurrence = recSvc.findOccurrence(weekly.getUuid(), wednesday);
+        assertNull(occurrence.getId());
+
+        occurrence.setDateTime(wednesday.plusHours(3));
+        occurrence.setEndDateTime(null);
+        occurrence.setStatus(Appointment.Status.RESCHEDULED);
+        svc.saveOne(occurrence);
+        em.flush();
+        em.clear();
+
+        List<Appointment> actual = svc.findAll(provider.getUuid(), START, START.plusWeeks(1), null);
+
+        assertEquals(3, actual.size());
+        assertEquals(START, actual.get(0).getDateTime());
+        assertEquals(wednesday.plusHours(3), actual.get(1).getDateTime());
+        assertEquals(Appointment.Status.RESCHEDULED, actual.get(1).getStatus());
+        assertEquals(OccurrenceId.uuid(weekly.getUuid(), wednesday), actual.get(1).getUuid());
+        assertEquals(START.plusWeeks(1), actual.get(2).getDateTime());
+        assertNotNull(recSvc.findOccurrence(weekly.getUuid(), wednesday).getId());
+    }
+
+    @Test
+    void pages_through_stored_appointments_and_occurrences_in_the_order_of_the_full_search() {
+        User other = uRepo.save(User.builder().firstName("e").lastName("f").build());
+        User third = uRepo.save(User.builder().firstName("g").lastName("h").build());
+        Recurrence daily = recurrence(START, "FREQ=DAILY;COUNT=3");
+        daily.setProvider(other);
+        recSvc.saveOne(daily);
+        svc.saveOne(Appointment
+                .builder()
+                .dateTime(START)
+                .provider(third)
+                .client(client)
+                .status(Appointment.Status.NEW)
+                .build());
+        em.flush();
+
+        List<UUID> expected = svc
+                .findAll(null, START, START.plusWeeks(1), null)
+                .stream()
+                .map(Appointment::getUuid)
+                .toList();
+        List<UUID> actual = new ArrayList<>();
+        List<UUID> views = new ArrayList<>();
+        AppointmentCursor cursor = null;
+
+        do {
+            CursorPage<Appointment> page = svc.findAll(null, START, START.plusWeeks(1), null, cursor, 2);
+            page.getContent().forEach(appointment -> actual.add(appointment.getUuid()));
+            cursor = AppointmentCursor.decode(page.getNextCursor());
+        } while (cursor != null);
+
+        do {
+            CursorPage<AppointmentView> page = svc.findAllViews(null, START, START.plusWeeks(1), null, cursor, 2);
+            page.getContent().forEach(view -> views.add(view.getUuid()));
+            cursor = AppointmentCursor.decode(page.getNextCursor());
+        } while (cursor != null);
+
+        assertEquals(7, expected.size());
+        assertEquals(expected, actual);
+        assertEquals(expected, views);
+    }
+
+    @Test
+    void throws_ScheduleConflictException_if_appointment_overlaps_occurrence() {
+        Appointment appointment = Appointment
+                .builder()
+                .dateTime(START.plusDays(2).plusMinutes(30))
+                .provider(provider)
+                .client(client)
+                .status(Appointment.Status.NEW)
+                .build();
+
+        assertThrows(ScheduleConflictException.class, () -> svc.saveOne(appointment));
+    }
+
+    @Test
+    void reschedules_occurrence_over_its_own_date_time() {
+        Appointment occurrence = recSvc.findOccurrence(weekly.getUuid(), START.plusDays(2));
+        occurrence.setEndDateTime(occurrence.getEndDateTime().plusMinutes(30));
+
+        assertDoesNotThrow(() -> svc.saveOne(occurrence));
+    }
+
+    @Test
+    void throws_ScheduleConflictException_if_recurrence_overlaps_appointment() {
+        svc.saveOne(Appointment
+                .builder()
+                .dateTime(START.plusWeeks(50).plusDays(1).plusMinutes(30))
+                .provider(provider)
+                .client(client)
+                .status(Appointment.Status.NEW)
+                .build());
+
+        assertThrows(ScheduleConflictException.class,
+                () -> recSvc.saveOne(recurrence(START.plusDays(1), "FREQ=WEEKLY")));
+        assertDoesNotThrow(() -> recSvc.saveOne(recurrence(START.plusDays(1).plusHours(2), "FREQ=WEEKLY")));
+    }
+
+    @Test
+    void throws_ScheduleConflictException_if_recurrence_overlaps_other_recurrence() {
+        assertThrows(ScheduleConflictException.class,
+                () -> recSvc.saveOne(recurrence(START.plusWeeks(3).plusMinutes(30), "FREQ=MONTHLY")));
+    }
+
+    @Test
+    void finds_bookings_of_occurrences_overlapping_period() {
+        List<LocalDateTime> actual = recSvc
+                .findBookings(provider.getId(), START.plusMinutes(30), START.plusDays(3))
+                .stream()
+                .map(Booking::getDateTime)
+                .toList();
+
+        assertEquals(List.of(START, START.plusDays(2)), actual);
+    }
+
+    @Test
+    void does_not_expand_occurrences_when_searching_other_statuses() {
+        assertTrue(svc.findAll(null, START, START.plusWeeks(1), Appointment.Status.RESCHEDULED).isEmpty());
+        assertEquals(3, svc.findAll(null, START, START.plusWeeks(1), Appointment.Status.NEW).size());
+    }
+
+    @Test
+    void deletes_recurrence_with_stored_occurrences() {
+        svc.saveOne(recSvc.findOccurrence(weekly.getUuid(), START));
+        em.flush();
+
+        recSvc.deleteOne(weekly.getUuid());
+        em.flush();
+
+        assertEquals(0, repo.count());
+        assertFalse(recRepo.existsByUuid(weekly.getUuid()));
+    }
+
+    @Test
+    void throws_NoSuchElementException_if_deleted_recurrence_does_not_exist() {
+        assertThrows(NoSuchElementException.class, () -> recSvc.deleteOne(UUID.randomUUID()));
+
+        recSvc.deleteOne(weekly.getUuid());
+        assertThrows(NoSuchElementException.class, () -> recSvc.deleteOne(weekly.getUuid()));
+    }
+}
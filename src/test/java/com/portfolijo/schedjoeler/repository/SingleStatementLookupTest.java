@@ -0,0 +1,133 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
+import com.portfolijo.schedjoeler.service.AppointmentService;
+import com.portfolijo.schedjoeler.service.RecurrenceService;
+import com.portfolijo.schedjoeler.service.UserService;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that deletes and user filtered searches check existence within their own statements, rather than in
+ * a preceding lookup
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@DataJpaTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                +"com.portfolijo.schedjoeler.repository.StatementCapture")
+class SingleStatementLookupTest {
+    static final LocalDateTime DAY = LocalDateTime.of(2023, 1, 2, 0, 0);
+
+    @Autowired
+    AppointmentRepository repo;
+
+    @Autowired
+    UserRepository uRepo;
+
+    @Autowired
+    RecurrenceRepository recRepo;
+
+    @Autowired
+    TestEntityManager em;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    UserService uSvc;
+    AppointmentService svc;
+    User provider;
+    User client;
+    Appointment appointment;
+
+    @BeforeEach
+    void setup() {
+        ProviderScheduleIndex schedule = new ProviderScheduleIndex(repo);
+        uSvc = new UserService(uRepo, event -> {}, PasswordEncoderFactories.createDelegatingPasswordEncoder());
+        svc = new AppointmentService(repo, uSvc, new RecurrenceService(recRepo, repo, schedule), schedule, tx);
+        provider = uRepo.save(User.builder().firstName("a").lastName("b").build());
+        client = uRepo.save(User.builder().firstName("c").lastName("d").build());
+        appointment = repo.save(Appointment
+                .builder()
+                .dateTime(DAY.plusHours(9))
+                .endDateTime(DAY.plusHours(10))
+                .provider(provider)
+                .client(client)
+                .status(Appointment.Status.COMPLETE)
+                .build());
+
+        em.flush();
+        em.clear();
+        StatementCapture.clear();
+    }
+
+    @Test
+    void stores_uuids_as_sixteen_bytes() {
+        Object uuid = em
+                .getEntityManager()
+                .createNativeQuery("select uuid from sj_user where id = :id")
+                .setParameter("id", provider.getId())
+                .getSingleResult();
+
+        assertEquals(16, ((byte[]) uuid).length);
+    }
+
+    @Test
+    void deletes_appointment_with_one_statement() {
+        svc.deleteOne(appointment.getUuid());
+
+        assertEquals(1, StatementCapture.statements().size(), StatementCapture.statements().toString());
+        assertTrue(StatementCapture.statements().get(0).startsWith("delete from sj_appointment"));
+        assertNull(repo.findByUuid(appointment.getUuid()));
+    }
+
+    @Test
+    void deletes_user_with_one_statement() {
+        User other = uRepo.save(User.builder().firstName("e").lastName("f").build());
+        em.flush();
+        StatementCapture.clear();
+
+        uSvc.deleteOne(other.getUuid());
+
+        assertEquals(1, StatementCapture.statements().size(), StatementCapture.statements().toString());
+        assertTrue(StatementCapture.statements().get(0).startsWith("delete from sj_user"));
+    }
+
+    @Test
+    void throws_NoSuchElementException_when_deleting_missing_appointment_with_one_statement() {
+        assertThrows(NoSuchElementException.class, () -> svc.deleteOne(UUID.randomUUID()));
+        assertEquals(1, StatementCapture.statements().size(), StatementCapture.statements().toString());
+    }
+
+    @Test
+    void finds_appointments_of_user_without_separate_user_lookup() {
+        List<Appointment> actual = svc.findAll(client.getUuid(), null, null, Appointment.Status.COMPLETE);
+
+        assertEquals(List.of(appointment.getUuid()), actual.stream().map(Appointment::getUuid).toList());
+        assertTrue(StatementCapture
+                        .statements()
+                        .stream()
+                        .noneMatch(sql -> sql.matches("(?s)select \\w+\\.id from sj_user.*")),
+                StatementCapture.statements().toString());
+    }
+
+    @Test
+    void throws_NoSuchElementException_if_user_does_not_exist() {
+        assertThrows(NoSuchElementException.class,
+                () -> svc.findAll(UUID.randomUUID(), null, null, Appointment.Status.COMPLETE));
+    }
+}
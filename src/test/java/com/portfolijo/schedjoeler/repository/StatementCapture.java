@@ -0,0 +1,36 @@
+package com.portfolijo.schedjoeler.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records every SQL statement prepared by Hibernate. Register with the
+ * {@code hibernate.session_factory.statement_inspector} property
+ */
+public class StatementCapture implements StatementInspector {
+    private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.add(sql);
+        return sql;
+    }
+
+    /**
+     * Discards all recorded statements
+     */
+    public static void clear() {
+        STATEMENTS.clear();
+    }
+
+    /**
+     * Gets the recorded statements in the order they were prepared
+     *
+     * @return A list of SQL statements
+     */
+    public static List<String> statements() {
+        return List.copyOf(STATEMENTS);
+    }
+}
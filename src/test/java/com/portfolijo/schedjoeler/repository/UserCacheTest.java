@@ -0,0 +1,138 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.service.CacheStatisticsService;
+import com.portfolijo.schedjoeler.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that users are served from the second-level cache by uuid, and that the cache follows updates and
+ * deletes. Each step commits its own transaction, as requests do
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@DataJpaTest(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                +"com.portfolijo.schedjoeler.repository.StatementCapture")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserCacheTest {
+
+    @Autowired
+    UserRepository repo;
+
+    @Autowired
+    EntityManagerFactory emf;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    UserService svc;
+    User user;
+
+    @BeforeEach
+    void setup() {
+        svc = new UserService(repo, event -> {}, PasswordEncoderFactories.createDelegatingPasswordEncoder());
+        emf.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        user = tx.execute(status -> repo.save(User.builder().firstName("a").lastName("b").build()));
+        StatementCapture.clear();
+    }
+
+    @AfterEach
+    void cleanup() {
+        jdbc.update("delete from sj_user");
+    }
+
+    List<String> userSelects() {
+        return StatementCapture
+                .statements()
+                .stream()
+                .filter(sql -> sql.startsWith("select") && sql.contains("sj_user"))
+                .toList();
+    }
+
+    @Test
+    void finds_user_by_uuid_from_cache() {
+        User first = tx.execute(status -> svc.findOne(user.getUuid()));
+        StatementCapture.clear();
+        User second = tx.execute(status -> svc.findOne(user.getUuid()));
+
+        assertEquals(first, second);
+        assertTrue(userSelects().isEmpty(), userSelects().toString());
+    }
+
+    @Test
+    void resolves_user_id_without_loading_user() {
+        assertEquals(user.getId(), tx.execute(status -> svc.findId(user.getUuid())));
+        assertTrue(userSelects().isEmpty(), userSelects().toString());
+    }
+
+    @Test
+    void caches_users_found_by_uuids() {
+        User other = tx.execute(status -> repo.save(User.builder().firstName("c").lastName("d").build()));
+
+        var actual = tx.execute(status -> svc.findAll(Set.of(user.getUuid(), other.getUuid(), UUID.randomUUID())));
+        assertEquals(Set.of(user.getUuid(), other.getUuid()), actual.keySet());
+
+        StatementCapture.clear();
+        tx.executeWithoutResult(status -> svc.findOne(other.getUuid()));
+        assertTrue(userSelects().isEmpty(), userSelects().toString());
+    }
+
+    @Test
+    void reflects_saved_changes() {
+        User updated = tx.execute(status -> svc.findOne(user.getUuid()));
+        updated.setFirstName("z");
+        tx.executeWithoutResult(status -> svc.saveOne(updated));
+
+        assertEquals("z", tx.execute(status -> svc.findOne(user.getUuid())).getFirstName());
+    }
+
+    @Test
+    void forgets_deleted_users() {
+        tx.executeWithoutResult(status -> svc.findOne(user.getUuid()));
+        tx.executeWithoutResult(status -> svc.deleteOne(user.getUuid()));
+
+        assertThrows(NoSuchElementException.class,
+                () -> tx.executeWithoutResult(status -> svc.findOne(user.getUuid())));
+        assertThrows(NoSuchElementException.class,
+                () -> tx.executeWithoutResult(status -> svc.assertUserExists(user.getUuid())));
+    }
+
+    @Test
+    void reports_hits_and_misses_per_region() {
+        emf.unwrap(SessionFactory.class).getStatistics().clear();
+        emf.unwrap(SessionFactory.class).getCache().evictAllRegions();
+
+        tx.executeWithoutResult(status -> svc.findOne(user.getUuid()));
+        tx.executeWithoutResult(status -> svc.findOne(user.getUuid()));
+
+        List<CacheRegionStatistics> actual = new CacheStatisticsService(emf).findAll();
+
+        assertEquals(List.of(User.CACHE_REGION, User.NATURAL_ID_CACHE_REGION),
+                actual.stream().map(CacheRegionStatistics::getRegionName).toList());
+        assertEquals(1, actual.get(0).getHitCount());
+        assertEquals(1, actual.get(1).getHitCount());
+        assertEquals(1, actual.get(1).getMissCount());
+    }
+}
@@ -0,0 +1,84 @@
+package com.portfolijo.schedjoeler.repository;
+
+import com.portfolijo.schedjoeler.id.RandomUuidGenerator;
+import com.portfolijo.schedjoeler.id.TimeOrderedUuidGenerator;
+import com.portfolijo.schedjoeler.id.UuidGenerator;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the insert throughput of users keyed by random (version 4) and time-ordered (version 7) uuids, which
+ * differ in where each insert lands in the unique uuid index. Run with {@code mvn test -Pbenchmark}
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UuidInsertBenchmark {
+    static final int ROWS = 1_200_000;
+    static final int BATCH = 1_000;
+    static final int WARMUP = 100_000;
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @AfterEach
+    void cleanup() {
+        jdbc.update("delete from sj_user");
+    }
+
+    /**
+     * Inserts the given number of users in committed batches, returning the elapsed nanoseconds of each batch
+     */
+    long[] insert(UuidGenerator generator, int rows) {
+        long[] elapsed = new long[rows / BATCH];
+        List<Object[]> batch = new ArrayList<>(BATCH);
+
+        for (int b = 0; b < elapsed.length; b++) {
+            batch.clear();
+            for (int i = 0; i < BATCH; i++)
+                batch.add(new Object[] {generator.generate(), "first", "last"});
+
+            long start = System.nanoTime();
+            jdbc.batchUpdate("insert into sj_user (uuid, first_name, last_name) values (?, ?, ?)", batch);
+            elapsed[b] = System.nanoTime()-start;
+        }
+        return elapsed;
+    }
+
+    void measure(String name, UuidGenerator generator) {
+        insert(generator, WARMUP);
+        jdbc.update("delete from sj_user");
+
+        long[] elapsed = insert(generator, ROWS);
+        assertEquals(ROWS, jdbc.queryForObject("select count(*) from sj_user", Integer.class));
+
+        long total = 0;
+        long tail = 0;
+        for (int b = 0; b < elapsed.length; b++) {
+            total += elapsed[b];
+            if (b >= elapsed.length*9/10)
+                tail += elapsed[b];
+        }
+
+        System.out.printf("%-12s %,10.0f rows/s overall %,10.0f rows/s over the last 10%%%n",
+                name, ROWS / (total / 1e9), ROWS / 10.0 / (tail / 1e9));
+    }
+
+    @Test
+    void compare_random_and_time_ordered_uuid_inserts() {
+        measure("uuid v4", new RandomUuidGenerator());
+        jdbc.update("delete from sj_user");
+        measure("uuid v7", new TimeOrderedUuidGenerator());
+    }
+}
@@ -0,0 +1,90 @@
+package com.portfolijo.schedjoeler.schedule;
+
+import org.junit.jupiter.api.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class IntervalTreeTest {
+    static final LocalDateTime EPOCH = LocalDateTime.of(2023, 1, 1, 0, 0);
+
+    IntervalTree tree;
+
+    @BeforeEach
+    void setup() {
+        tree = new IntervalTree();
+    }
+
+    static Booking booking(long start, long end) {
+        return new Booking(UUID.randomUUID(), 1L, EPOCH.plusMinutes(start), EPOCH.plusMinutes(end));
+    }
+
+    @Nested
+    class FindAnyOverlapping {
+        @Test
+        void returns_overlapping_booking() {
+            Booking expected = booking(60, 120);
+            tree.insert(booking(0, 30));
+            tree.insert(expected);
+            tree.insert(booking(180, 240));
+            assertEquals(expected, tree.findAnyOverlapping(EPOCH.plusMinutes(90), EPOCH.plusMinutes(150)));
+        }
+
+        @Test
+        void returns_null_if_bookings_only_touch() {
+            tree.insert(booking(0, 60));
+            tree.insert(booking(120, 180));
+            assertNull(tree.findAnyOverlapping(EPOCH.plusMinutes(60), EPOCH.plusMinutes(120)));
+        }
+
+        @Test
+        void returns_null_after_booking_removed() {
+            Booking booking = booking(0, 60);
+            tree.insert(booking);
+            tree.remove(booking);
+            assertNull(tree.findAnyOverlapping(EPOCH, EPOCH.plusMinutes(60)));
+            assertEquals(0, tree.size());
+        }
+    }
+
+    @Nested
+    class FindAllOverlapping {
+        @Test
+        void returns_same_bookings_as_linear_scan() {
+            Random random = new Random(0);
+            List<Booking> bookings = new ArrayList<>();
+
+            for (int i = 0; i < 1000; i++) {
+                long start = random.nextInt(100_000);
+                Booking booking = booking(start, start+1+random.nextInt(500));
+                bookings.add(booking);
+                tree.insert(booking);
+            }
+
+            for (int i = 0; i < 500; i++)
+                tree.remove(bookings.remove(random.nextInt(bookings.size())));
+
+            assertEquals(bookings.size(), tree.size());
+
+            for (int i = 0; i < 100; i++) {
+                LocalDateTime start = EPOCH.plusMinutes(random.nextInt(100_000));
+                LocalDateTime end = start.plusMinutes(1+random.nextInt(2000));
+                List<Booking> expected = bookings
+                        .stream()
+                        .filter(b -> b.overlaps(start, end))
+                        .sorted(Comparator.comparing(Booking::getDateTime))
+                        .toList();
+                List<Booking> actual = tree.findAllOverlapping(start, end);
+                assertEquals(expected.size(), actual.size());
+                assertTrue(actual.containsAll(expected));
+            }
+        }
+    }
+}
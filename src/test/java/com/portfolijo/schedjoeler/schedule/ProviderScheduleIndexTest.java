@@ -0,0 +1,98 @@
+package com.portfolijo.schedjoeler.schedule;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.repository.AppointmentRepository;
+import org.junit.jupiter.api.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class ProviderScheduleIndexTest {
+    static final LocalDateTime EPOCH = LocalDateTime.of(2023, 1, 1, 9, 0);
+
+    AppointmentRepository repo;
+    ProviderScheduleIndex index;
+
+    @BeforeEach
+    void setup() {
+        repo = mock(AppointmentRepository.class);
+        index = new ProviderScheduleIndex(repo);
+    }
+
+    static Booking booking(UUID appointment, long provider, long start, long end) {
+        return new Booking(appointment, provider, EPOCH.plusMinutes(start), EPOCH.plusMinutes(end));
+    }
+
+    @Nested
+    class AfterSingletonsInstantiated {
+        @Test
+        void loads_booked_appointments() {
+            Booking booking = booking(UUID.randomUUID(), 1L, 0, 60);
+            when(repo.findBookingsByStatusIn(anyCollection())).thenReturn(List.of(booking));
+            index.afterSingletonsInstantiated();
+            assertEquals(List.of(booking), index.findAll(1L, EPOCH, EPOCH.plusHours(1)));
+            verify(repo).findBookingsByStatusIn(List.of(Appointment.Status.NEW, Appointment.Status.RESCHEDULED));
+        }
+    }
+
+    @Nested
+    class Book {
+        @Test
+        void throws_ScheduleConflictException_if_booking_overlaps() {
+            index.book(booking(UUID.randomUUID(), 1L, 0, 60), () -> null);
+            assertThrows(ScheduleConflictException.class,
+                    () -> index.book(booking(UUID.randomUUID(), 1L, 30, 90), () -> fail("saved")));
+        }
+
+        @Test
+        void allows_overlapping_bookings_with_different_providers() {
+            index.book(booking(UUID.randomUUID(), 1L, 0, 60), () -> null);
+            assertDoesNotThrow(() -> index.book(booking(UUID.randomUUID(), 2L, 0, 60), () -> null));
+        }
+
+        @Test
+        void allows_appointment_to_overlap_its_previous_booking() {
+            UUID uuid = UUID.randomUUID();
+            index.book(booking(uuid, 1L, 0, 60), () -> null);
+            index.book(booking(uuid, 1L, 30, 90), () -> null);
+            assertEquals(List.of(booking(uuid, 1L, 30, 90)), index.findAll(1L, EPOCH, EPOCH.plusHours(2)));
+        }
+
+        @Test
+        void moves_booking_between_providers() {
+            UUID uuid = UUID.randomUUID();
+            index.book(booking(uuid, 1L, 0, 60), () -> null);
+            index.book(booking(uuid, 2L, 0, 60), () -> null);
+            assertTrue(index.findAll(1L, EPOCH, EPOCH.plusHours(1)).isEmpty());
+            assertEquals(1, index.findAll(2L, EPOCH, EPOCH.plusHours(1)).size());
+        }
+
+        @Test
+        void keeps_previous_booking_if_save_fails() {
+            UUID uuid = UUID.randomUUID();
+            Booking previous = booking(uuid, 1L, 0, 60);
+            index.book(previous, () -> null);
+            assertThrows(IllegalStateException.class, () -> index.book(booking(uuid, 1L, 120, 180), () -> {
+                throw new IllegalStateException();
+            }));
+            assertEquals(List.of(previous), index.findAll(1L, EPOCH, EPOCH.plusHours(3)));
+        }
+    }
+
+    @Nested
+    class Release {
+        @Test
+        void removes_booking() {
+            UUID uuid = UUID.randomUUID();
+            index.book(booking(uuid, 1L, 0, 60), () -> null);
+            index.release(uuid);
+            assertTrue(index.findAll(1L, EPOCH, EPOCH.plusHours(1)).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.portfolijo.schedjoeler.security;
+
+import com.jayway.jsonpath.JsonPath;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.repository.UserRepository;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.util.UUID;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Compares the throughput of requests authenticated with basic credentials, which hash the password on every
+ * request, with that of requests authenticated with a bearer token. The password is stored as a bcrypt hash, as
+ * the default password encoder would. Run with {@code mvn test -Pbenchmark}
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@SpringBootTest(properties = "schedjoeler.rate-limit.enabled=false")
+@AutoConfigureMockMvc
+class TokenAuthenticationBenchmark {
+    static final int WARMUP = 50;
+    static final int ITERATIONS = 200;
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    UserRepository repo;
+
+    final String USER_URL = "/api/users/"+UUID.randomUUID();
+    final String EMAIL = UUID.randomUUID()+"@example.com";
+
+    /**
+     * Measures the mean latency of the given request, which looks up a user that does not exist so that the
+     * authentication dominates the time spent
+     */
+    void measure(String name, RequestBuilder request) throws Exception {
+        for (int i = 0; i < WARMUP; i++)
+            mvc.perform(request).andExpect(status().isNotFound());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++)
+            mvc.perform(request).andExpect(status().isNotFound());
+        double micros = (System.nanoTime()-start) / 1_000.0 / ITERATIONS;
+
+        System.out.printf("%-10s %10.1f us/op %10.1f requests/s%n", name, micros, 1_000_000 / micros);
+    }
+
+    @Test
+    void compare_basic_and_token_authentication() throws Exception {
+        repo.save(User
+                .builder()
+                .firstName("a")
+                .lastName("b")
+                .email(EMAIL)
+                .passwordHash(PasswordEncoderFactories.createDelegatingPasswordEncoder().encode("password"))
+                .build());
+        String body = mvc.perform(post("/api/token").with(httpBasic(EMAIL, "password")))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        String token = JsonPath.read(body, "$.data[0].token");
+
+        measure("basic", get(USER_URL).with(httpBasic(EMAIL, "password")));
+        measure("token", get(USER_URL).header("Authorization", "Bearer "+token));
+    }
+}
@@ -0,0 +1,180 @@
+package com.portfolijo.schedjoeler.security;
+
+import com.jayway.jsonpath.JsonPath;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.repository.UserRepository;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Verifies that the api authenticates users by their email address and password, accepts bearer tokens issued
+ * for those credentials and never creates a session
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+class TokenAuthenticationTest {
+
+    @Autowired
+    MockMvc mvc;
+
+    @Autowired
+    UserRepository repo;
+
+    final String USER_URL = "/api/users/"+UUID.randomUUID();
+    final String EMAIL = UUID.randomUUID()+"@example.com";
+
+    @BeforeEach
+    void setup() {
+        repo.save(User
+                .builder()
+                .firstName("a")
+                .lastName("b")
+                .email(EMAIL)
+                .passwordHash("{noop}password")
+                .build());
+    }
+
+    String token() throws Exception {
+        String body = mvc.perform(post("/api/token").with(httpBasic(EMAIL, "password")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].tokenType").value("Bearer"))
+                .andExpect(jsonPath("$.data[0].expiresAt").exists())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return JsonPath.read(body, "$.data[0].token");
+    }
+
+    @Test
+    void authenticates_requests_with_issued_token() throws Exception {
+        mvc.perform(get(USER_URL).header("Authorization", "Bearer "+token()))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void authenticates_asynchronous_requests_when_they_are_dispatched_again() throws Exception {
+        MvcResult result = mvc.perform(get("/api/appointments").header("Authorization", "Bearer "+token()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data").isArray());
+    }
+
+    @Test
+    void authenticates_requests_with_basic_credentials() throws Exception {
+        mvc.perform(get(USER_URL).with(httpBasic(EMAIL, "password")))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void returns_401_if_token_is_invalid() throws Exception {
+        mvc.perform(get(USER_URL).header("Authorization", "Bearer "+token()+"x"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().string("WWW-Authenticate", "Bearer error=\"invalid_token\""));
+    }
+
+    @Test
+    void returns_401_if_request_is_not_authenticated() throws Exception {
+        mvc.perform(get(USER_URL))
+                .andExpect(status().isUnauthorized());
+        mvc.perform(post("/api/token"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void returns_401_if_password_is_wrong() throws Exception {
+        mvc.perform(get(USER_URL).with(httpBasic(EMAIL, "wrong")))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void returns_401_if_user_is_disabled() throws Exception {
+        User user = repo.findByEmail(EMAIL);
+        user.setEnabled(false);
+        repo.save(user);
+
+        mvc.perform(get(USER_URL).with(httpBasic(EMAIL, "password")))
+                .andExpect(status().isUnauthorized());
+    }
+
+    /**
+     * Creates a user with the given email address and password through the api
+     *
+     * @return The uuid of the user
+     */
+    String createUser(String email, String password) throws Exception {
+        String body = mvc.perform(post("/api/users")
+                        .with(httpBasic(EMAIL, "password"))
+                        .content("{\"firstName\":\"c\",\"lastName\":\"d\",\"email\":\""+email+"\","
+                                +"\"password\":\""+password+"\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.data[0].password").doesNotExist())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return JsonPath.read(body, "$.data[0].uuid");
+    }
+
+    @Test
+    void authenticates_user_created_with_password() throws Exception {
+        String email = UUID.randomUUID()+"@example.com";
+        createUser(email, "first password");
+
+        mvc.perform(get(USER_URL).with(httpBasic(email, "first password")))
+                .andExpect(status().isNotFound());
+        mvc.perform(post("/api/token").with(httpBasic(email, "first password")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].token").isString());
+    }
+
+    @Test
+    void authenticates_user_with_changed_password() throws Exception {
+        String email = UUID.randomUUID()+"@example.com";
+        String uuid = createUser(email, "first password");
+
+        // caches the login details of the user
+        mvc.perform(get(USER_URL).with(httpBasic(email, "first password")))
+                .andExpect(status().isNotFound());
+
+        mvc.perform(patch("/api/users/"+uuid)
+                        .with(httpBasic(email, "first password"))
+                        .content("{\"password\":\"second password\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mvc.perform(get(USER_URL).with(httpBasic(email, "first password")))
+                .andExpect(status().isUnauthorized());
+        mvc.perform(post("/api/token").with(httpBasic(email, "second password")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].token").isString());
+    }
+
+    @Test
+    void does_not_create_a_session() throws Exception {
+        assertNull(mvc.perform(post("/api/token").with(httpBasic(EMAIL, "password")))
+                .andReturn()
+                .getRequest()
+                .getSession(false));
+    }
+}
@@ -0,0 +1,85 @@
+package com.portfolijo.schedjoeler.security;
+
+import org.junit.jupiter.api.*;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class TokenServiceTest {
+    static final String SECRET = Base64.getEncoder().encodeToString(new byte[32]);
+
+    TokenService svc;
+    Authentication user;
+
+    @BeforeEach
+    void setup() {
+        svc = new TokenService(SECRET, Duration.ofHours(1));
+        user = UsernamePasswordAuthenticationToken.authenticated(
+                "user", "password", AuthorityUtils.createAuthorityList("ROLE_USER", "ROLE_ADMIN"));
+    }
+
+    @Test
+    void verifies_issued_token() {
+        Token token = svc.issue(user);
+
+        Authentication actual = svc.verify(token.getValue());
+
+        assertEquals("user", actual.getName());
+        assertNull(actual.getCredentials());
+        assertTrue(actual.isAuthenticated());
+        assertEquals(List.of("ROLE_ADMIN", "ROLE_USER"), token.getAuthorities());
+        assertEquals(AuthorityUtils.createAuthorityList("ROLE_ADMIN", "ROLE_USER"), actual.getAuthorities());
+    }
+
+    @Test
+    void verifies_token_issued_by_another_instance_with_the_same_secret() {
+        Token token = svc.issue(user);
+
+        assertEquals("user", new TokenService(SECRET, Duration.ofHours(1)).verify(token.getValue()).getName());
+    }
+
+    @Test
+    void rejects_token_signed_with_another_secret() {
+        Token token = new TokenService("", Duration.ofHours(1)).issue(user);
+
+        assertThrows(BadCredentialsException.class, () -> svc.verify(token.getValue()));
+    }
+
+    @Test
+    void rejects_tampered_token() {
+        String value = svc.issue(user).getValue();
+        String payload = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                ("4102444800\nROLE_ADMIN\nadmin").getBytes());
+
+        assertThrows(BadCredentialsException.class,
+                () -> svc.verify(payload+value.substring(value.lastIndexOf('.'))));
+        assertThrows(BadCredentialsException.class, () -> svc.verify(value.substring(0, value.length()-1)));
+    }
+
+    @Test
+    void rejects_expired_token() {
+        Token token = new TokenService(SECRET, Duration.ofSeconds(-1)).issue(user);
+
+        assertThrows(BadCredentialsException.class, () -> svc.verify(token.getValue()));
+    }
+
+    @Test
+    void rejects_malformed_token() {
+        assertThrows(BadCredentialsException.class, () -> svc.verify("token"));
+        assertThrows(BadCredentialsException.class, () -> svc.verify("."));
+    }
+
+    @Test
+    void throws_IllegalArgumentException_if_secret_is_too_short() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TokenService(Base64.getEncoder().encodeToString(new byte[16]), Duration.ofHours(1)));
+    }
+}
@@ -0,0 +1,105 @@
+package com.portfolijo.schedjoeler.security;
+
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.repository.UserRepository;
+import com.portfolijo.schedjoeler.service.UserChangedEvent;
+import org.junit.jupiter.api.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class UserDetailsCacheTest {
+    static final String EMAIL = "a@example.com";
+
+    UserRepository repo;
+    UserDetailsCache cache;
+    UUID uuid;
+    User user;
+
+    @BeforeEach
+    void setup() {
+        repo = mock(UserRepository.class);
+        cache = new UserDetailsCache(repo, 100, Duration.ofMinutes(5));
+        uuid = UUID.randomUUID();
+        user = User
+                .builder()
+                .id(1L)
+                .uuid(uuid)
+                .firstName("a")
+                .lastName("b")
+                .email(EMAIL)
+                .passwordHash("{noop}password")
+                .build();
+    }
+
+    @Test
+    void loads_user_once() {
+        when(repo.findByEmail(EMAIL)).thenReturn(user);
+
+        UserPrincipal first = cache.loadUserByUsername(EMAIL);
+        UserPrincipal second = cache.loadUserByUsername(EMAIL);
+
+        assertSame(first, second);
+        assertEquals(uuid, first.getUuid());
+        assertEquals("{noop}password", first.getPassword());
+        assertTrue(first.isEnabled());
+        verify(repo, times(1)).findByEmail(EMAIL);
+    }
+
+    @Test
+    void evicts_principal_when_user_changes() {
+        when(repo.findByEmail(EMAIL)).thenReturn(user);
+        cache.loadUserByUsername(EMAIL);
+
+        cache.onUserChanged(new UserChangedEvent(uuid));
+        cache.loadUserByUsername(EMAIL);
+
+        verify(repo, times(2)).findByEmail(EMAIL);
+    }
+
+    @Test
+    void keeps_principals_of_other_users_when_a_user_changes() {
+        when(repo.findByEmail(EMAIL)).thenReturn(user);
+        cache.loadUserByUsername(EMAIL);
+
+        cache.onUserChanged(new UserChangedEvent(UUID.randomUUID()));
+        cache.loadUserByUsername(EMAIL);
+
+        verify(repo, times(1)).findByEmail(EMAIL);
+    }
+
+    @Test
+    void keeps_password_of_cached_principal_after_authentication() {
+        when(repo.findByEmail(EMAIL)).thenReturn(user);
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(cache);
+        Authentication authentication = provider.authenticate(
+                UsernamePasswordAuthenticationToken.unauthenticated(EMAIL, "password"));
+
+        // the provider manager erases the credentials of every successful authentication
+        ((UsernamePasswordAuthenticationToken) authentication).eraseCredentials();
+
+        assertEquals("{noop}password", cache.loadUserByUsername(EMAIL).getPassword());
+    }
+
+    @Test
+    void throws_UsernameNotFoundException_if_user_does_not_exist() {
+        assertThrows(UsernameNotFoundException.class, () -> cache.loadUserByUsername(EMAIL));
+    }
+
+    @Test
+    void throws_UsernameNotFoundException_if_user_has_no_password() {
+        user.setPasswordHash(null);
+        when(repo.findByEmail(EMAIL)).thenReturn(user);
+
+        assertThrows(UsernameNotFoundException.class, () -> cache.loadUserByUsername(EMAIL));
+    }
+}
@@ -1,8 +1,14 @@
 package com.portfolijo.schedjoeler.service;
 
+import com.portfolijo.schedjoeler.batch.BatchItem;
 import com.portfolijo.schedjoeler.domain.Appointment;
 import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.pagination.AppointmentCursor;
+import com.portfolijo.schedjoeler.pagination.CursorPage;
 import com.portfolijo.schedjoeler.repository.AppointmentRepository;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
+import com.portfolijo.schedjoeler.schedule.ScheduleConflictException;
+import jakarta.validation.ValidationException;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -10,18 +16,23 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 @SpringBootTest
 @ActiveProfiles("test")
@@ -30,6 +41,7 @@ import static org.mockito.Mockito.when;
 class AppointmentServiceTest {
     AppointmentRepository repo;
     UserService uSvc;
+    RecurrenceService recSvc;
     AppointmentService svc;
     User provider;
     User client;
@@ -38,27 +50,17 @@ class AppointmentServiceTest {
     void setup() {
         repo = mock(AppointmentRepository.class);
         uSvc = mock(UserService.class);
-        svc = new AppointmentService(repo, uSvc);
+        recSvc = mock(RecurrenceService.class);
+        svc = new AppointmentService(
+                repo,
+                uSvc,
+                recSvc,
+                new ProviderScheduleIndex(repo),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
         provider = mock(User.class);
         client = mock(User.class);
     }
 
-    @Nested
-    class AssertAppointmentExists {
-        @Test
-        void does_not_throw_exception_if_appointment_exists() {
-            UUID uuid = UUID.randomUUID();
-            when(repo.existsByUuid(uuid)).thenReturn(true);
-            assertDoesNotThrow(() -> svc.assertAppointmentExists(uuid));
-        }
-
-        @Test
-        void throws_NoSuchElementException_if_appointment_does_not_exist() {
-            when(repo.existsByUuid(any(UUID.class))).thenReturn(false);
-            assertThrows(NoSuchElementException.class, () -> svc.assertAppointmentExists((UUID.randomUUID())));
-        }
-    }
-
     @Nested
     class FindOne {
         @Test
@@ -114,6 +116,91 @@ class AppointmentServiceTest {
 
         // TODO: create tests using specifications
 
+        @Test
+        void merges_provided_and_attended_appointments_by_date_time_when_user_given() {
+            UUID user = UUID.randomUUID();
+            LocalDateTime now = LocalDateTime.now();
+            List<Appointment> provided = new ArrayList<>();
+            List<Appointment> attended = new ArrayList<>();
+
+            for (int i = 0; i < 4; i++) {
+                Appointment appointment = Appointment
+                        .builder()
+                        .id((long) i)
+                        .uuid(UUID.randomUUID())
+                        .dateTime(now.plusHours(i))
+                        .provider(provider)
+                        .client(client)
+                        .status(Appointment.Status.NEW)
+                        .build();
+                (i % 2 == 0 ? provided : attended).add(appointment);
+            }
+
+            when(repo.findAll(any(Specification.class), any(Sort.class))).thenReturn(provided, attended);
+
+            List<Appointment> actual = svc.findAll(user, null, null, null);
+
+            assertEquals(
+                    List.of(provided.get(0), attended.get(0), provided.get(1), attended.get(1)),
+                    actual);
+            verifyNoInteractions(uSvc);
+        }
+
+        @Test
+        void merges_expanded_occurrences_by_date_time() {
+            LocalDateTime now = LocalDateTime.now();
+            Appointment stored = Appointment
+                    .builder()
+                    .id(1L)
+                    .uuid(UUID.randomUUID())
+                    .dateTime(now.plusHours(1))
+                    .provider(provider)
+                    .client(client)
+                    .status(Appointment.Status.NEW)
+                    .build();
+            List<Appointment> occurrences = new ArrayList<>();
+
+            for (int i = 0; i < 3; i += 2) {
+                occurrences.add(Appointment
+                        .builder()
+                        .uuid(UUID.randomUUID())
+                        .dateTime(now.plusHours(i))
+                        .provider(provider)
+                        .client(client)
+                        .status(Appointment.Status.NEW)
+                        .build());
+            }
+
+            when(repo.findAll(any(Specification.class), any(Sort.class))).thenReturn(List.of(stored));
+            when(recSvc.findOccurrences(null, now, null)).thenReturn(occurrences);
+
+            List<Appointment> actual = svc.findAll(null, now, null, null);
+
+            assertEquals(List.of(occurrences.get(0), stored, occurrences.get(1)), actual);
+        }
+
+        @Test
+        void does_not_expand_occurrences_when_searching_other_statuses() {
+            when(repo.findAll(any(Specification.class), any(Sort.class))).thenReturn(List.of());
+            svc.findAll(null, null, null, Appointment.Status.COMPLETE);
+            verifyNoInteractions(recSvc);
+        }
+
+        @Test
+        void throws_NoSuchElementException_if_user_does_not_exist() {
+            when(repo.findAll(any(Specification.class), any(Sort.class))).thenReturn(List.of());
+            doThrow(NoSuchElementException.class).when(uSvc).assertUserExists(any(UUID.class));
+            assertThrows(NoSuchElementException.class, () -> svc.findAll(UUID.randomUUID(), null, null, null));
+        }
+
+        @Test
+        void returns_empty_list_if_user_exists_without_appointments() {
+            UUID user = UUID.randomUUID();
+            when(repo.findAll(any(Specification.class), any(Sort.class))).thenReturn(List.of());
+            assertEquals(List.of(), svc.findAll(user, null, null, null));
+            verify(uSvc).assertUserExists(user);
+        }
+
         @Test
         void returns_empty_list_when_none_found() {
             List<Appointment> expected = List.of();
@@ -123,6 +210,109 @@ class AppointmentServiceTest {
         }
     }
 
+    @Nested
+    class FindPage {
+        List<Appointment> appointments(int n) {
+            List<Appointment> appointments = new ArrayList<>();
+            LocalDateTime now = LocalDateTime.now();
+
+            for (int i = 0; i < n; i++) {
+                appointments.add(Appointment
+                        .builder()
+                        .id((long) i)
+                        .uuid(UUID.randomUUID())
+                        .dateTime(now.plusHours(i))
+                        .provider(provider)
+                        .client(client)
+                        .status(Appointment.Status.NEW)
+                        .build());
+            }
+            return appointments;
+        }
+
+        @Test
+        void returns_cursor_of_last_appointment_when_more_remain() {
+            List<Appointment> found = appointments(3);
+            when(repo.findAll(any(Specification.class), any(Sort.class), anyInt())).thenReturn(found);
+
+            CursorPage<Appointment> actual = svc.findAll(null, null, null, null, null, 2);
+
+            assertEquals(found.subList(0, 2), actual.getContent());
+            assertEquals(AppointmentCursor.of(found.get(1)).encode(), actual.getNextCursor());
+        }
+
+        @Test
+        void returns_no_cursor_on_last_page() {
+            List<Appointment> found = appointments(2);
+            when(repo.findAll(any(Specification.class), any(Sort.class), anyInt())).thenReturn(found);
+
+            CursorPage<Appointment> actual = svc.findAll(null, null, null, null, null, 2);
+
+            assertEquals(found, actual.getContent());
+            assertNull(actual.getNextCursor());
+        }
+
+        @Test
+        void throws_ValidationException_if_limit_out_of_range() {
+            assertThrows(ValidationException.class, () -> svc.findAll(null, null, null, null, null, 0));
+            assertThrows(ValidationException.class,
+                    () -> svc.findAll(null, null, null, null, null, AppointmentService.MAX_PAGE_SIZE+1));
+        }
+    }
+
+    @Nested
+    class Export {
+        @Test
+        void passes_every_appointment_to_action_and_detaches_them_in_batches() {
+            int n = AppointmentService.EXPORT_BATCH_SIZE*2+1;
+            Stream<Appointment> appointments = Stream.generate(() -> mock(Appointment.class)).limit(n);
+            when(repo.stream(any(Specification.class), any(Sort.class), anyInt())).thenReturn(appointments);
+            when(recSvc.iterateOccurrences(null, null, null)).thenReturn(Collections.emptyIterator());
+
+            List<Appointment> actual = new ArrayList<>();
+            svc.export(null, null, null, actual::add);
+
+            assertEquals(n, actual.size());
+            verify(repo, times(2)).clear();
+        }
+
+        Appointment appointment(Long id, LocalDateTime dateTime) {
+            return Appointment
+                    .builder()
+                    .id(id)
+                    .dateTime(dateTime)
+                    .provider(provider)
+                    .client(client)
+                    .status(Appointment.Status.NEW)
+                    .build();
+        }
+
+        @Test
+        void interleaves_occurrences_of_recurrences_in_date_time_order() {
+            LocalDateTime now = LocalDateTime.now();
+            Appointment first = appointment(1L, now);
+            Appointment second = appointment(2L, now.plusHours(2));
+            Appointment tied = appointment(null, now);
+            Appointment last = appointment(null, now.plusHours(3));
+            when(repo.stream(any(Specification.class), any(Sort.class), anyInt())).thenReturn(Stream.of(first, second));
+            when(recSvc.iterateOccurrences(null, null, null)).thenReturn(List.of(tied, last).iterator());
+
+            List<Appointment> actual = new ArrayList<>();
+            svc.export(null, null, null, actual::add);
+
+            assertEquals(List.of(first, tied, second, last), actual);
+        }
+
+        @Test
+        void does_not_expand_occurrences_when_exporting_other_statuses() {
+            when(repo.stream(any(Specification.class), any(Sort.class), anyInt())).thenReturn(Stream.of());
+
+            svc.export(null, null, Appointment.Status.CANCELLED, appointment -> {});
+
+            verifyNoInteractions(recSvc);
+        }
+    }
+
     @Nested
     class SaveOne {
         @Test
@@ -142,30 +332,192 @@ class AppointmentServiceTest {
             Appointment actual = svc.saveOne(expected);
             assertEquals(expected, actual);
         }
+
+        @Test
+        void gives_appointment_default_duration_if_end_date_time_missing() {
+            LocalDateTime now = LocalDateTime.now();
+            Appointment appointment = Appointment
+                    .builder()
+                    .dateTime(now)
+                    .provider(provider)
+                    .client(client)
+                    .status(Appointment.Status.NEW)
+                    .build();
+            when(repo.save(appointment)).thenReturn(appointment);
+            svc.saveOne(appointment);
+            assertEquals(now.plus(Appointment.DEFAULT_DURATION), appointment.getEndDateTime());
+            assertNotNull(appointment.getUuid());
+        }
+
+        @Test
+        void throws_ValidationException_if_appointment_does_not_end_after_it_starts() {
+            LocalDateTime now = LocalDateTime.now();
+            Appointment appointment = Appointment
+                    .builder()
+                    .dateTime(now)
+                    .endDateTime(now)
+                    .provider(provider)
+                    .client(client)
+                    .status(Appointment.Status.NEW)
+                    .build();
+            assertThrows(ValidationException.class, () -> svc.saveOne(appointment));
+            verify(repo, never()).save(any());
+        }
+
+        @Test
+        void throws_ScheduleConflictException_if_provider_double_booked() {
+            LocalDateTime now = LocalDateTime.now();
+            when(provider.getId()).thenReturn(1L);
+            Appointment booked = Appointment
+                    .builder()
+                    .dateTime(now)
+                    .provider(provider)
+                    .client(client)
+                    .status(Appointment.Status.NEW)
+                    .build();
+            Appointment overlapping = Appointment
+                    .builder()
+                    .dateTime(now.plusMinutes(30))
+                    .provider(provider)
+                    .client(client)
+                    .status(Appointment.Status.NEW)
+                    .build();
+            svc.saveOne(booked);
+            assertThrows(ScheduleConflictException.class, () -> svc.saveOne(overlapping));
+            verify(repo, times(1)).save(any());
+        }
+
+        @Test
+        void allows_overlap_if_appointment_not_booked() {
+            LocalDateTime now = LocalDateTime.now();
+            when(provider.getId()).thenReturn(1L);
+            Appointment booked = Appointment
+                    .builder()
+                    .dateTime(now)
+                    .provider(provider)
+                    .client(client)
+                    .status(Appointment.Status.NEW)
+                    .build();
+            Appointment cancelled = Appointment
+                    .builder()
+                    .dateTime(now.plusMinutes(30))
+                    .provider(provider)
+                    .client(client)
+                    .status(Appointment.Status.CANCELLED)
+                    .build();
+            svc.saveOne(booked);
+            assertDoesNotThrow(() -> svc.saveOne(cancelled));
+        }
+    }
+
+    @Nested
+    class SaveAll {
+        Appointment appointment(LocalDateTime dateTime, LocalDateTime endDateTime) {
+            return Appointment
+                    .builder()
+                    .dateTime(dateTime)
+                    .endDateTime(endDateTime)
+                    .provider(provider)
+                    .client(client)
+                    .status(Appointment.Status.NEW)
+                    .build();
+        }
+
+        @Test
+        void reports_invalid_appointments_without_aborting_batch() {
+            LocalDateTime now = LocalDateTime.now();
+            List<BatchItem<Appointment>> items = List.of(
+                    BatchItem.success(0, appointment(now, now.plusHours(1))),
+                    BatchItem.success(1, appointment(now, now)),
+                    BatchItem.failure(2, "User uuid=x not found."),
+                    BatchItem.success(3, appointment(now.plusMinutes(30), null)),
+                    BatchItem.success(4, appointment(now.plusHours(2), null)));
+
+            List<BatchItem<Appointment>> actual = svc.saveAll(items);
+
+            assertEquals(5, actual.size());
+            assertTrue(actual.get(0).isSuccess());
+            assertFalse(actual.get(1).isSuccess());
+            assertEquals(items.get(2), actual.get(2));
+            assertFalse(actual.get(3).isSuccess());
+            assertTrue(actual.get(4).isSuccess());
+            verify(repo, times(2)).save(any());
+            verify(repo, times(1)).flush();
+            verify(repo, times(1)).clear();
+        }
+
+        @Test
+        void commits_in_chunks() {
+            LocalDateTime now = LocalDateTime.now();
+            List<BatchItem<Appointment>> items = new ArrayList<>();
+
+            for (int i = 0; i < AppointmentService.BULK_CHUNK_SIZE*2+1; i++)
+                items.add(BatchItem.success(i, appointment(now.plusHours(i), null)));
+
+            svc.saveAll(items);
+            verify(repo, times(3)).flush();
+        }
+
+        @Test
+        void retries_appointments_one_at_a_time_if_chunk_fails() {
+            LocalDateTime now = LocalDateTime.now();
+            List<BatchItem<Appointment>> items = List.of(
+                    BatchItem.success(0, appointment(now, null)),
+                    BatchItem.success(1, appointment(now.plusHours(1), null)));
+            doThrow(new IllegalStateException()).when(repo).flush();
+            when(repo.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+            List<BatchItem<Appointment>> actual = svc.saveAll(items);
+
+            assertTrue(actual.get(0).isSuccess());
+            assertTrue(actual.get(1).isSuccess());
+            verify(repo, times(4)).save(any());
+        }
+    }
+
+    @Nested
+    class UpdateAll {
+        @Test
+        @SuppressWarnings("unchecked")
+        void updates_provider_and_client_branches_of_user() {
+            UUID uuid = UUID.randomUUID();
+            when(uSvc.findId(uuid)).thenReturn(1L);
+            when(repo.updateStatus(any(Specification.class), eq(Appointment.Status.CANCELLED))).thenReturn(2, 3);
+            int actual = svc.updateAll(uuid, null, null, null, Appointment.Status.CANCELLED);
+            assertEquals(5, actual);
+            verify(repo, times(2)).findUuids(any(Specification.class));
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        void does_not_release_bookings_if_new_status_booked() {
+            svc.updateAll(null, null, null, Appointment.Status.NEW, Appointment.Status.RESCHEDULED);
+            verify(repo, never()).findUuids(any(Specification.class));
+            verify(repo).updateStatus(any(Specification.class), eq(Appointment.Status.RESCHEDULED));
+        }
+
+        @Test
+        void throws_ValidationException_if_unbooked_appointments_would_be_booked() {
+            assertThrows(ValidationException.class,
+                    () -> svc.updateAll(null, null, null, Appointment.Status.COMPLETE, Appointment.Status.NEW));
+        }
     }
 
     @Nested
     class DeleteOne {
         @Test
-        void does_not_throw_exception_if_deletion_successful() {
+        void deletes_with_single_statement() {
             UUID uuid = UUID.randomUUID();
-            when(repo.existsByUuid(uuid)).thenReturn(true);
             when(repo.deleteByUuid(uuid)).thenReturn(1);
             assertDoesNotThrow(() -> svc.deleteOne(uuid));
+            verify(repo).deleteByUuid(uuid);
+            verifyNoMoreInteractions(repo);
         }
 
         @Test
         void throws_NoSuchElementException_if_appointment_does_not_exist() {
-            when(repo.existsByUuid(any(UUID.class))).thenReturn(false);
+            when(repo.deleteByUuid(any(UUID.class))).thenReturn(0);
             assertThrows(NoSuchElementException.class, () -> svc.deleteOne(UUID.randomUUID()));
         }
-
-        @Test
-        void throws_Exception_if_deletion_unsuccessful() {
-            UUID uuid = UUID.randomUUID();
-            when(repo.existsByUuid(uuid)).thenReturn(true);
-            when(repo.deleteByUuid(uuid)).thenReturn(0);
-            assertThrows(Exception.class, () -> svc.deleteOne(uuid));
-        }
     }
-}
\ No newline at end of file
+}
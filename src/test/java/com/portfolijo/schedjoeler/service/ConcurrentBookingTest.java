@@ -0,0 +1,131 @@
+package com.portfolijo.schedjoeler.service;
+
+import com.portfolijo.schedjoeler.domain.Appointment;
+import com.portfolijo.schedjoeler.domain.Recurrence;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.recurrence.RecurrenceRule;
+import com.portfolijo.schedjoeler.repository.UserRepository;
+import com.portfolijo.schedjoeler.schedule.ScheduleConflictException;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Verifies that a recurrence and a booking overlapping one of its occurrences, saved concurrently by two threads,
+ * cannot both be saved, even though the occurrences only become visible to other transactions once the
+ * recurrence commits
+ */
+@ActiveProfiles("test")
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@SpringBootTest
+class ConcurrentBookingTest {
+    static final LocalDateTime START = LocalDateTime.of(2032, 3, 1, 9, 0);
+    static final long COMMIT_DELAY_MILLIS = 300;
+
+    @Autowired
+    AppointmentService svc;
+
+    @Autowired
+    RecurrenceService recSvc;
+
+    @Autowired
+    UserRepository uRepo;
+
+    @Autowired
+    TransactionTemplate tx;
+
+    User provider;
+    User client;
+
+    @BeforeEach
+    void setup() {
+        provider = uRepo.save(User.builder().firstName("a").lastName("b").build());
+        client = uRepo.save(User.builder().firstName("c").lastName("d").build());
+    }
+
+    Recurrence recurrence(LocalDateTime dateTime, String rule) {
+        return Recurrence
+                .builder()
+                .dateTime(dateTime)
+                .endDateTime(dateTime.plusHours(1))
+                .rule(RecurrenceRule.parse(rule))
+                .provider(provider)
+                .client(client)
+                .build();
+    }
+
+    /**
+     * Saves a daily recurrence starting at the start on one thread, and runs the given save on another thread
+     * once the recurrence is saved but before its transaction commits
+     *
+     * @return The failures of the recurrence save and of the given save, null for a success
+     */
+    Throwable[] race(Runnable save) throws Exception {
+        CountDownLatch saved = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<?> first = executor.submit(() -> tx.executeWithoutResult(status -> {
+                recSvc.saveOne(recurrence(START, "FREQ=DAILY;COUNT=5"));
+                saved.countDown();
+
+                // gives the other save time to look for the occurrences before they are committed
+                try {
+                    Thread.sleep(COMMIT_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+            saved.await();
+            Future<?> second = executor.submit(save);
+            return new Throwable[]{failure(first), failure(second)};
+
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    static Throwable failure(Future<?> future) throws InterruptedException {
+        try {
+            future.get();
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    @Test
+    void appointment_overlapping_an_uncommitted_occurrence_is_not_saved() throws Exception {
+        Throwable[] failures = race(() -> svc.saveOne(Appointment
+                .builder()
+                .dateTime(START.plusDays(2).plusMinutes(30))
+                .endDateTime(START.plusDays(2).plusMinutes(90))
+                .provider(provider)
+                .client(client)
+                .status(Appointment.Status.NEW)
+                .build()));
+
+        assertNull(failures[0]);
+        assertInstanceOf(ScheduleConflictException.class, failures[1]);
+    }
+
+    @Test
+    void recurrence_overlapping_an_uncommitted_occurrence_is_not_saved() throws Exception {
+        Throwable[] failures = race(() -> recSvc.saveOne(
+                recurrence(START.plusDays(3).plusMinutes(30), "FREQ=DAILY;COUNT=1")));
+
+        assertNull(failures[0]);
+        assertInstanceOf(ScheduleConflictException.class, failures[1]);
+    }
+}
@@ -0,0 +1,133 @@
+package com.portfolijo.schedjoeler.service;
+
+import com.portfolijo.schedjoeler.repository.AppointmentRepository;
+import com.portfolijo.schedjoeler.schedule.Booking;
+import com.portfolijo.schedjoeler.schedule.ProviderScheduleIndex;
+import com.portfolijo.schedjoeler.schedule.Slot;
+import jakarta.validation.ValidationException;
+import org.junit.jupiter.api.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class SlotServiceTest {
+    static final LocalDateTime MONDAY = LocalDateTime.of(2023, 1, 2, 0, 0);
+    static final LocalTime OPEN = LocalTime.of(9, 0);
+    static final LocalTime CLOSE = LocalTime.of(12, 0);
+    static final Duration HOUR = Duration.ofHours(1);
+
+    AppointmentRepository repo;
+    UserService uSvc;
+    RecurrenceService recSvc;
+    ProviderScheduleIndex schedule;
+    SlotService svc;
+    UUID provider;
+
+    @BeforeEach
+    void setup() {
+        uSvc = mock(UserService.class);
+        recSvc = mock(RecurrenceService.class);
+        repo = mock(AppointmentRepository.class);
+        schedule = new ProviderScheduleIndex(repo);
+        svc = new SlotService(uSvc, recSvc, schedule);
+        provider = UUID.randomUUID();
+        when(uSvc.findId(provider)).thenReturn(1L);
+    }
+
+    void book(LocalDateTime dateTime, LocalDateTime endDateTime) {
+        schedule.book(new Booking(UUID.randomUUID(), 1L, dateTime, endDateTime), () -> null);
+    }
+
+    static Slot slot(LocalDateTime dateTime, LocalDateTime endDateTime) {
+        return new Slot(dateTime, endDateTime);
+    }
+
+    @Nested
+    class FindAll {
+        @Test
+        void returns_working_hours_of_each_day_if_schedule_empty() {
+            List<Slot> actual = svc.findAll(provider, MONDAY, MONDAY.plusDays(2), HOUR, OPEN, CLOSE);
+            assertEquals(6, actual.size());
+            assertEquals(slot(MONDAY.plusHours(9), MONDAY.plusHours(10)), actual.get(0));
+            assertEquals(slot(MONDAY.plusDays(1).plusHours(11), MONDAY.plusDays(1).plusHours(12)), actual.get(5));
+        }
+
+        @Test
+        void starts_slots_after_booked_appointments() {
+            book(MONDAY.plusHours(9).plusMinutes(30), MONDAY.plusHours(10));
+            List<Slot> actual = svc.findAll(provider, MONDAY, MONDAY.plusDays(1), HOUR, OPEN, CLOSE);
+            assertEquals(List.of(
+                    slot(MONDAY.plusHours(10), MONDAY.plusHours(11)),
+                    slot(MONDAY.plusHours(11), MONDAY.plusHours(12))), actual);
+        }
+
+        @Test
+        void skips_overlapping_and_nested_appointments() {
+            // appointments booked before double bookings were detected may still overlap
+            when(repo.findBookingsByStatusIn(anyCollection())).thenReturn(List.of(
+                    new Booking(UUID.randomUUID(), 1L, MONDAY.plusHours(8), MONDAY.plusHours(11)),
+                    new Booking(UUID.randomUUID(), 1L, MONDAY.plusHours(9), MONDAY.plusHours(10))));
+            schedule.afterSingletonsInstantiated();
+            List<Slot> actual = svc.findAll(provider, MONDAY, MONDAY.plusDays(1), HOUR, OPEN, CLOSE);
+            assertEquals(List.of(slot(MONDAY.plusHours(11), MONDAY.plusHours(12))), actual);
+        }
+
+        @Test
+        void starts_slots_after_occurrences_of_recurrences() {
+            book(MONDAY.plusHours(11), MONDAY.plusHours(12));
+            when(recSvc.findBookings(1L, MONDAY, MONDAY.plusDays(1))).thenReturn(List.of(
+                    new Booking(UUID.randomUUID(), 1L, MONDAY.plusHours(9), MONDAY.plusHours(10))));
+            List<Slot> actual = svc.findAll(provider, MONDAY, MONDAY.plusDays(1), HOUR, OPEN, CLOSE);
+            assertEquals(List.of(slot(MONDAY.plusHours(10), MONDAY.plusHours(11))), actual);
+        }
+
+        @Test
+        void carries_appointments_over_midnight() {
+            book(MONDAY.plusHours(11), MONDAY.plusDays(1).plusHours(10));
+            List<Slot> actual = svc.findAll(provider, MONDAY, MONDAY.plusDays(2), HOUR, OPEN, CLOSE);
+            assertEquals(List.of(
+                    slot(MONDAY.plusHours(9), MONDAY.plusHours(10)),
+                    slot(MONDAY.plusHours(10), MONDAY.plusHours(11)),
+                    slot(MONDAY.plusDays(1).plusHours(10), MONDAY.plusDays(1).plusHours(11)),
+                    slot(MONDAY.plusDays(1).plusHours(11), MONDAY.plusDays(1).plusHours(12))), actual);
+        }
+
+        @Test
+        void clips_slots_to_window() {
+            List<Slot> actual = svc.findAll(
+                    provider, MONDAY.plusHours(9).plusMinutes(15), MONDAY.plusHours(11).plusMinutes(30), HOUR, OPEN, CLOSE);
+            assertEquals(List.of(
+                    slot(MONDAY.plusHours(9).plusMinutes(15), MONDAY.plusHours(10).plusMinutes(15)),
+                    slot(MONDAY.plusHours(10).plusMinutes(15), MONDAY.plusHours(11).plusMinutes(15))), actual);
+        }
+
+        @Test
+        void throws_ValidationException_if_criteria_empty() {
+            assertThrows(ValidationException.class,
+                    () -> svc.findAll(provider, MONDAY, MONDAY, HOUR, OPEN, CLOSE));
+            assertThrows(ValidationException.class,
+                    () -> svc.findAll(provider, MONDAY, MONDAY.plusDays(1), Duration.ZERO, OPEN, CLOSE));
+            assertThrows(ValidationException.class,
+                    () -> svc.findAll(provider, MONDAY, MONDAY.plusDays(1), HOUR, CLOSE, OPEN));
+            assertThrows(ValidationException.class,
+                    () -> svc.findAll(provider, MONDAY, MONDAY.plusYears(1), HOUR, OPEN, CLOSE));
+        }
+
+        @Test
+        void throws_NoSuchElementException_if_provider_does_not_exist() {
+            UUID uuid = UUID.randomUUID();
+            when(uSvc.findId(uuid)).thenThrow(NoSuchElementException.class);
+            assertThrows(NoSuchElementException.class,
+                    () -> svc.findAll(uuid, MONDAY, MONDAY.plusDays(1), HOUR, OPEN, CLOSE));
+        }
+    }
+}
@@ -6,17 +6,20 @@ import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.UUID;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
 
 @SpringBootTest
 @ActiveProfiles("test")
@@ -24,12 +27,14 @@ import static org.mockito.Mockito.when;
 @ExtendWith(MockitoExtension.class)
 class UserServiceTest {
     UserRepository repo;
+    ApplicationEventPublisher publisher;
     UserService svc;
 
     @BeforeEach
     void setup() {
         repo = mock(UserRepository.class);
-        svc = new UserService(repo);
+        publisher = mock(ApplicationEventPublisher.class);
+        svc = new UserService(repo, publisher, PasswordEncoderFactories.createDelegatingPasswordEncoder());
     }
 
     @Nested
@@ -37,13 +42,13 @@ class UserServiceTest {
         @Test
         void does_not_throw_exception_if_user_exists() {
             UUID uuid = UUID.randomUUID();
-            when(repo.existsByUuid(uuid)).thenReturn(true);
+            when(repo.findIdByUuid(uuid)).thenReturn(1L);
             assertDoesNotThrow(() -> svc.assertUserExists(uuid));
         }
 
         @Test
         void throws_NoSuchElementException_if_user_does_not_exist() {
-            when(repo.existsByUuid(any(UUID.class))).thenReturn(false);
+            when(repo.findIdByUuid(any(UUID.class))).thenReturn(null);
             assertThrows(NoSuchElementException.class, () -> svc.assertUserExists(UUID.randomUUID()));
         }
     }
@@ -74,6 +79,22 @@ class UserServiceTest {
         }
     }
 
+    @Nested
+    class FindId {
+        @Test
+        void can_find_id_by_uuid() {
+            UUID uuid = UUID.randomUUID();
+            when(repo.findIdByUuid(uuid)).thenReturn(1L);
+            assertEquals(1L, svc.findId(uuid));
+        }
+
+        @Test
+        void throws_NoSuchElementException_if_not_found() {
+            when(repo.findIdByUuid(any(UUID.class))).thenReturn(null);
+            assertThrows(NoSuchElementException.class, () -> svc.findId(UUID.randomUUID()));
+        }
+    }
+
 
     @Nested
     class FindAll {
@@ -96,6 +117,22 @@ class UserServiceTest {
             List<User> actual = svc.findAll();
             assertThat(actual).usingRecursiveComparison().isEqualTo(expected);
         }
+
+        @Test
+        void can_find_all_by_uuid_with_one_query() {
+            User user = User.builder().id(1L).uuid(UUID.randomUUID()).firstName("a").lastName("b").build();
+            UUID missing = UUID.randomUUID();
+            when(repo.findAllByUuidIn(anyCollection())).thenReturn(List.of(user));
+            Map<UUID, User> actual = svc.findAll(List.of(user.getUuid(), missing));
+            assertEquals(Map.of(user.getUuid(), user), actual);
+            verify(repo, times(1)).findAllByUuidIn(anyCollection());
+        }
+
+        @Test
+        void does_not_query_if_no_uuids_given() {
+            assertTrue(svc.findAll(List.of()).isEmpty());
+            verify(repo, never()).findAllByUuidIn(anyCollection());
+        }
     }
 
     @Nested
@@ -115,30 +152,58 @@ class UserServiceTest {
             User actual = svc.saveOne(expected);
             assertEquals(expected, actual);
         }
+
+        @Test
+        void publishes_user_changed_event() {
+            User user = User.builder().uuid(UUID.randomUUID()).firstName("a").lastName("b").build();
+            when(repo.save(user)).thenReturn(user);
+            svc.saveOne(user);
+            verify(publisher).publishEvent(argThat((UserChangedEvent e) -> e.getUuid().equals(user.getUuid())));
+        }
+
+        @Test
+        void stores_hash_of_given_password() {
+            User user = User.builder().uuid(UUID.randomUUID()).firstName("a").lastName("b").build();
+            when(repo.save(user)).thenReturn(user);
+            svc.saveOne(user, "password");
+            assertTrue(user.getPasswordHash().startsWith("{bcrypt}"));
+            assertTrue(PasswordEncoderFactories
+                    .createDelegatingPasswordEncoder()
+                    .matches("password", user.getPasswordHash()));
+        }
+
+        @Test
+        void keeps_password_hash_if_no_password_is_given() {
+            User user = User
+                    .builder()
+                    .uuid(UUID.randomUUID())
+                    .firstName("a")
+                    .lastName("b")
+                    .passwordHash("{noop}password")
+                    .build();
+            when(repo.save(user)).thenReturn(user);
+            svc.saveOne(user, null);
+            assertEquals("{noop}password", user.getPasswordHash());
+        }
     }
 
     @Nested
     class DeleteOne {
         @Test
-        void does_not_throw_exception_if_deletion_successful() {
+        void deletes_with_single_statement() {
             UUID uuid = UUID.randomUUID();
-            when(repo.existsByUuid(uuid)).thenReturn(true);
             when(repo.deleteByUuid(uuid)).thenReturn(1);
             assertDoesNotThrow(() -> svc.deleteOne(uuid));
+            verify(repo).deleteByUuid(uuid);
+            verifyNoMoreInteractions(repo);
+            verify(publisher).publishEvent(argThat((UserChangedEvent e) -> e.getUuid().equals(uuid)));
         }
 
         @Test
         void throws_NoSuchElementException_if_user_does_not_exist() {
-            when(repo.existsByUuid(any(UUID.class))).thenReturn(false);
+            when(repo.deleteByUuid(any(UUID.class))).thenReturn(0);
             assertThrows(NoSuchElementException.class, () -> svc.deleteOne(UUID.randomUUID()));
-        }
-
-        @Test
-        void throws_Exception_if_deletion_unsuccessful() {
-            UUID uuid = UUID.randomUUID();
-            when(repo.existsByUuid(uuid)).thenReturn(true);
-            when(repo.deleteByUuid(uuid)).thenReturn(0);
-            assertThrows(Exception.class, () -> svc.deleteOne(uuid));
+            verifyNoInteractions(publisher);
         }
     }
 }
@@ -0,0 +1,94 @@
+package com.portfolijo.schedjoeler.thread;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.condition.EnabledIf;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class PinningMonitorTest {
+    final List<String> PACKAGES = List.of("org.h2.", "org.hibernate.");
+
+    PinningMonitor monitor;
+
+    @AfterEach
+    void teardown() {
+        monitor.destroy();
+    }
+
+    @Test
+    void counts_pins_by_first_frame_on_the_jdbc_path() {
+        monitor = new PinningMonitor(false, Duration.ZERO, PACKAGES);
+        List<String> frames = List.of(
+                "java.lang.VirtualThread.parkOnCarrierThread",
+                "java.lang.Object.wait",
+                "org.h2.engine.SessionRemote.done",
+                "org.hibernate.engine.jdbc.internal.ResultSetReturnImpl.executeQuery",
+                "com.portfolijo.schedjoeler.service.AppointmentService.findAll");
+
+        monitor.record(frames, Duration.ofMillis(30));
+        monitor.record(frames, Duration.ofMillis(10));
+
+        PinningSite site = monitor.findAll().get(0);
+        assertEquals("org.h2.engine.SessionRemote.done", site.getSite());
+        assertTrue(site.isJdbc());
+        assertEquals(2, site.getCount());
+        assertEquals(40_000_000, site.getTotalNanos());
+        assertEquals(30_000_000, site.getMaxNanos());
+    }
+
+    @Test
+    void counts_other_pins_by_first_frame_outside_the_jdk() {
+        monitor = new PinningMonitor(false, Duration.ZERO, PACKAGES);
+
+        monitor.record(List.of("java.lang.Object.wait", "com.example.Lock.hold"), Duration.ofMillis(50));
+        monitor.record(List.of("java.lang.Object.wait"), Duration.ofMillis(20));
+        monitor.record(List.of("org.hibernate.A.b"), Duration.ofMillis(1));
+
+        List<String> sites = monitor.findAll().stream().map(PinningSite::getSite).toList();
+        assertEquals(List.of("org.hibernate.A.b", "com.example.Lock.hold", "other"), sites);
+        assertFalse(monitor.findAll().get(1).isJdbc());
+    }
+
+    @Test
+    void records_nothing_while_disabled() {
+        monitor = new PinningMonitor(false, Duration.ZERO, PACKAGES);
+
+        assertFalse(monitor.isEnabled());
+        assertTrue(monitor.findAll().isEmpty());
+    }
+
+    @Test
+    @EnabledIf("com.portfolijo.schedjoeler.thread.VirtualThreads#isSupported")
+    void records_threads_pinned_by_a_monitor_from_the_flight_recorder() throws Exception {
+        monitor = new PinningMonitor(true, Duration.ofMillis(1), List.of(PinningMonitorTest.class.getName()));
+        Object lock = new Object();
+        ThreadFactory factory = VirtualThreads.factory("pinned-");
+
+        // sleeping while holding a monitor cannot unmount the virtual thread
+        Thread thread = factory.newThread(() -> {
+            synchronized (lock) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+
+        long deadline = System.nanoTime()+Duration.ofSeconds(10).toNanos();
+        while (monitor.findAll().isEmpty() && System.nanoTime() < deadline)
+            Thread.sleep(100);
+
+        PinningSite site = monitor.findAll().get(0);
+        assertTrue(site.getSite().startsWith(PinningMonitorTest.class.getName()));
+        assertTrue(site.isJdbc());
+        assertTrue(site.getMaxNanos() > 0);
+    }
+}
@@ -0,0 +1,261 @@
+package com.portfolijo.schedjoeler.thread;
+
+import com.jayway.jsonpath.JsonPath;
+import com.portfolijo.schedjoeler.SchedjoelerApplication;
+import com.portfolijo.schedjoeler.domain.User;
+import com.portfolijo.schedjoeler.repository.UserRepository;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the throughput and latency of I/O-bound requests served on the Tomcat thread pool with that of the
+ * same requests served on virtual threads. The load mixes user listings with appointment and recurrence saves,
+ * which book under the lock of their provider. Every JDBC statement is delayed to stand in for the round trip to a
+ * remote database, and the JDBC pool is larger than the Tomcat pool, so that the platform threads rather than the
+ * connections cap the requests in flight. The pins recorded in virtual thread mode are printed after the run.
+ * Needs Java 21 or later to run the application on, so run with
+ * {@code mvn test -Pbenchmark -Djvm=<java 21>/bin/java -Dtest=VirtualThreadBenchmark}
+ */
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+@EnabledIf("com.portfolijo.schedjoeler.thread.VirtualThreads#isSupported")
+class VirtualThreadBenchmark {
+    static final int CLIENTS = 200;
+    static final int PROVIDERS = 10;
+    static final LocalDateTime START = LocalDateTime.of(2040, 1, 1, 0, 0);
+    static final int TOMCAT_THREADS = 10;
+    static final int JDBC_CONNECTIONS = 100;
+    static final long STATEMENT_LATENCY_MILLIS = 100;
+    static final Duration WARMUP = Duration.ofSeconds(3);
+    static final Duration DURATION = Duration.ofSeconds(10);
+
+    final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    /**
+     * Delays every statement executed through the data source by the statement latency, outside any lock of the
+     * driver, as waiting on the network would
+     */
+    static class LatencyInjector implements BeanPostProcessor {
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String name) {
+            return bean instanceof DataSource ? delayed(DataSource.class, bean) : bean;
+        }
+
+        /**
+         * Proxies the given JDBC object, delaying the executions of statements and proxying the connections and
+         * statements it returns in turn
+         */
+        static Object delayed(Class<?> type, Object target) {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                if (target instanceof Statement && method.getName().startsWith("execute"))
+                    Thread.sleep(STATEMENT_LATENCY_MILLIS);
+
+                Object result;
+
+                try {
+                    result = method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+
+                Class<?> returned = method.getReturnType();
+                return result != null && (returned == Connection.class || Statement.class.isAssignableFrom(returned))
+                        ? delayed(returned, result)
+                        : result;
+            });
+        }
+    }
+
+    /**
+     * Starts the application in the given thread mode
+     */
+    ConfigurableApplicationContext start(boolean virtual) {
+        return new SpringApplicationBuilder(SchedjoelerApplication.class)
+                .profiles("test")
+                .initializers(context -> context.getBeanFactory().addBeanPostProcessor(new LatencyInjector()))
+                .run("--server.port=0",
+                        "--schedjoeler.threads.virtual.enabled="+virtual,
+                        "--server.tomcat.threads.max="+TOMCAT_THREADS,
+                        "--spring.datasource.hikari.maximum-pool-size="+JDBC_CONNECTIONS,
+                        "--schedjoeler.rate-limit.enabled=false",
+                        "--schedjoeler.limit.min-limit=1000",
+                        "--schedjoeler.limit.initial-limit=1000",
+                        "--schedjoeler.limit.max-limit=1000",
+                        "--schedjoeler.bulkhead.writes.queue-capacity="+CLIENTS,
+                        "--logging.level.root=warn");
+    }
+
+    /**
+     * Saves a new user to the given application
+     */
+    User user(ConfigurableApplicationContext context, String email) {
+        return context.getBean(UserRepository.class).save(User
+                .builder()
+                .firstName("a")
+                .lastName("b")
+                .email(email)
+                .passwordHash("{noop}password")
+                .build());
+    }
+
+    /**
+     * Issues a bearer token for a new user of the given application
+     */
+    String token(ConfigurableApplicationContext context, String baseUrl) throws Exception {
+        String email = UUID.randomUUID()+"@example.com";
+        user(context, email);
+        String credentials = Base64.getEncoder().encodeToString((email+":password").getBytes(StandardCharsets.UTF_8));
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(URI.create(baseUrl+"/api/token"))
+                        .header("Authorization", "Basic "+credentials)
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        return JsonPath.read(response.body(), "$.data[0].token");
+    }
+
+    /**
+     * The latencies of the successful requests of a load test, and the number of failed requests
+     */
+    record Result(long[] latencies, long failures) {
+    }
+
+    /**
+     * Runs the clients, each sending the next request as soon as the previous one is answered, for the given
+     * duration
+     */
+    Result load(Supplier<HttpRequest> requests, Duration duration) throws Exception {
+        long end = System.nanoTime()+duration.toNanos();
+        List<List<Long>> latencies = new ArrayList<>();
+        AtomicLong failures = new AtomicLong();
+        List<Thread> clients = new ArrayList<>();
+
+        for (int i = 0; i < CLIENTS; i++) {
+            List<Long> own = new ArrayList<>();
+            latencies.add(own);
+            clients.add(new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    long start = System.nanoTime();
+
+                    try {
+                        HttpRequest request = requests.get();
+
+                        if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() / 100 == 2)
+                            own.add(System.nanoTime()-start);
+                        else
+                            failures.incrementAndGet();
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        clients.forEach(Thread::start);
+
+        for (Thread thread : clients)
+            thread.join();
+
+        long[] sorted = latencies.stream().flatMap(List::stream).mapToLong(Long::longValue).sorted().toArray();
+        return new Result(sorted, failures.get());
+    }
+
+    /**
+     * Measures the given thread mode and prints its throughput and latency percentiles
+     */
+    void measure(boolean virtual) throws Exception {
+        try (ConfigurableApplicationContext context = start(virtual)) {
+            String baseUrl = "http://localhost:"
+                    +((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            Supplier<HttpRequest> requests = requests(context, baseUrl);
+
+            load(requests, WARMUP);
+            Result result = load(requests, DURATION);
+
+            System.out.printf("%-8s %8.0f requests/s  p50 %6.1f ms  p99 %6.1f ms  %d failed%n",
+                    virtual ? "virtual" : "platform",
+                    result.latencies().length / (double) DURATION.toSeconds(),
+                    percentile(result.latencies(), 0.50),
+                    percentile(result.latencies(), 0.99),
+                    result.failures());
+
+            if (virtual)
+                context.getBean(PinningMonitor.class).findAll().forEach(site -> System.out.printf(
+                        "  pinned %5d times, %8.1f ms in total at %s%n",
+                        site.getCount(), site.getTotalNanos() / 1_000_000.0, site.getSite()));
+
+            assertEquals(0, result.failures());
+        }
+    }
+
+    /**
+     * Cycles through a user listing, an appointment save and a recurrence save. Each save books the next free
+     * hour of one of the providers, so saves of the same provider contend for its lock without conflicting
+     */
+    Supplier<HttpRequest> requests(ConfigurableApplicationContext context, String baseUrl) throws Exception {
+        String authorization = "Bearer "+token(context, baseUrl);
+        List<UUID> providers = new ArrayList<>();
+
+        for (int i = 0; i < PROVIDERS; i++)
+            providers.add(user(context, UUID.randomUUID()+"@example.com").getUuid());
+
+        UUID client = user(context, UUID.randomUUID()+"@example.com").getUuid();
+        AtomicLong sent = new AtomicLong();
+
+        return () -> {
+            long n = sent.getAndIncrement();
+            LocalDateTime dateTime = START.plusHours(n);
+            String booking = "\"dateTime\":\""+dateTime+"\",\"endDateTime\":\""+dateTime.plusMinutes(30)+"\","
+                    +"\"provider\":\""+providers.get((int) (n % PROVIDERS))+"\",\"client\":\""+client+"\"";
+
+            return switch ((int) (n % 3)) {
+                case 0 -> HttpRequest.newBuilder(URI.create(baseUrl+"/api/users"))
+                        .header("Authorization", authorization)
+                        .build();
+                case 1 -> HttpRequest.newBuilder(URI.create(baseUrl+"/api/appointments"))
+                        .header("Authorization", authorization)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{"+booking+"}"))
+                        .build();
+                default -> HttpRequest.newBuilder(URI.create(baseUrl+"/api/recurrences"))
+                        .header("Authorization", authorization)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{"+booking+",\"rule\":\"FREQ=DAILY;COUNT=1\"}"))
+                        .build();
+            };
+        };
+    }
+
+    static double percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length-1, sorted.length*p)] / 1_000_000.0;
+    }
+
+    @Test
+    void compare_platform_and_virtual_threads() throws Exception {
+        measure(false);
+        measure(true);
+    }
+}
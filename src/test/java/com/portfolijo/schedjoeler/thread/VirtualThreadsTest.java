@@ -0,0 +1,43 @@
+package com.portfolijo.schedjoeler.thread;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.condition.DisabledIf;
+import org.junit.jupiter.api.condition.EnabledIf;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)
+class VirtualThreadsTest {
+
+    @Test
+    @EnabledIf("com.portfolijo.schedjoeler.thread.VirtualThreads#isSupported")
+    void runs_each_task_on_a_new_named_virtual_thread() throws Exception {
+        ExecutorService executor = VirtualThreads.newExecutor("test-");
+
+        try {
+            Thread thread = executor.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+
+            assertTrue(VirtualThreads.isVirtual(thread));
+            assertTrue(thread.getName().startsWith("test-"));
+            assertFalse(VirtualThreads.isVirtual(Thread.currentThread()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisabledIf("com.portfolijo.schedjoeler.thread.VirtualThreads#isSupported")
+    void fails_with_the_property_to_disable_if_unsupported() {
+        IllegalStateException e = assertThrows(
+                IllegalStateException.class,
+                () -> VirtualThreads.checkSupported("schedjoeler.threads.virtual.enabled"));
+
+        assertTrue(e.getMessage().contains("Java 21"));
+        assertTrue(e.getMessage().contains("schedjoeler.threads.virtual.enabled"));
+        assertThrows(IllegalStateException.class, () -> VirtualThreads.newExecutor("test-"));
+        assertFalse(VirtualThreads.isVirtual(Thread.currentThread()));
+    }
+}